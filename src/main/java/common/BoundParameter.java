@@ -0,0 +1,31 @@
+package common;
+
+import net.sf.jsqlparser.expression.JdbcParameter;
+
+/**
+ * A "?" parameter of a prepared query, holding the value it is currently bound to. Prepared queries
+ * replace the parser's parameters with these, so that the expressions of a cached plan see new
+ * values without being rebuilt.
+ */
+public class BoundParameter extends JdbcParameter {
+  private static final long serialVersionUID = 1L;
+
+  private int value;
+  private boolean bound;
+
+  public BoundParameter(Integer index) {
+    super(index, false);
+  }
+
+  public int getValue() {
+    if (!bound) {
+      throw new IllegalStateException("Parameter " + getIndex() + " is not bound");
+    }
+    return value;
+  }
+
+  public void bind(int value) {
+    this.value = value;
+    this.bound = true;
+  }
+}
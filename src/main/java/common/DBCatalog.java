@@ -3,33 +3,62 @@ package common;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import storage.HashIndex;
+import storage.WriteAheadLog;
 
 /**
  * Class to contain information about database - names of tables, schema of each table and file
  * where each table is located. Uses singleton pattern.
  *
  * <p>Assumes dbDirectory has a schema.txt file and a /data subdirectory containing one file per
- * relation, named "relname".
+ * relation, named "relname". A relation may additionally be stored in the columnar layout, in a
+ * subdirectory of /data named "relname.col". Materialized views are stored as relations too, with
+ * their definitions in a /views subdirectory (see {@link MaterializedView}). Rows inserted into a
+ * table go through the write-ahead log in wal.log (see {@link WriteAheadLog}). Hash indexes on
+ * columns of text tables are stored in an /indexes subdirectory (see {@link HashIndex}).
  *
  * <p>Call by using DBCatalog.getInstance();
  */
 public class DBCatalog {
   private final Logger logger = LogManager.getLogger();
 
-  private final HashMap<String, ArrayList<Column>> tables;
+  // Schemas of the tables, read without locking by queries planned on other connections
+  private final ConcurrentHashMap<String, ArrayList<Column>> tables;
+  private final HashMap<String, MaterializedView> views;
+
+  // Hash indexes, keyed by "table.column"
+  private final HashMap<String, HashIndex> indexes;
   private static DBCatalog db;
 
   private String dbDirectory;
 
+  // Log of the appends made by INSERT statements, opened on first use
+  private WriteAheadLog writeAheadLog;
+
+  // Incremented whenever the schema changes, so cached plans can detect it
+  private final AtomicLong version = new AtomicLong();
+  // Incremented whenever the contents or layout of a table change, for the plans reading it
+  private final ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+
   /** Reads schemaFile and populates schema information */
   private DBCatalog() {
-    tables = new HashMap<>();
+    tables = new ConcurrentHashMap<>();
+    views = new HashMap<>();
+    indexes = new HashMap<>();
   }
 
   /**
@@ -51,7 +80,10 @@ public class DBCatalog {
    */
   public void setDataDirectory(String directory) {
     try {
+      closeWriteAheadLog();
+      closeHashIndexes();
       dbDirectory = directory;
+      tables.clear();
       BufferedReader br = new BufferedReader(new FileReader(directory + "/schema.txt"));
       String line;
       while ((line = br.readLine()) != null) {
@@ -67,6 +99,225 @@ public class DBCatalog {
     } catch (Exception e) {
       logger.error(e.getMessage());
     }
+    // Finish the appends of a previous run before any table is read
+    try {
+      WriteAheadLog.recover(new File(directory));
+    } catch (IOException e) {
+      logger.error("Could not recover the write-ahead log: " + e.getMessage());
+    }
+    loadMaterializedViews();
+    loadHashIndexes();
+    version.incrementAndGet();
+  }
+
+  /**
+   * Gets the write-ahead log through which rows are appended to the tables of the database.
+   *
+   * @return the log
+   * @throws IOException if the log cannot be opened
+   */
+  public synchronized WriteAheadLog getWriteAheadLog() throws IOException {
+    if (writeAheadLog == null) {
+      writeAheadLog = new WriteAheadLog(new File(dbDirectory));
+    }
+    return writeAheadLog;
+  }
+
+  private synchronized void closeWriteAheadLog() {
+    if (writeAheadLog != null) {
+      try {
+        writeAheadLog.close();
+      } catch (IOException e) {
+        logger.error(e.getMessage());
+      }
+      writeAheadLog = null;
+    }
+  }
+
+  /** Loads the definitions of the materialized views stored in the database directory. */
+  private void loadMaterializedViews() {
+    views.clear();
+    File[] viewFiles = new File(dbDirectory, "views").listFiles();
+    if (viewFiles == null) {
+      return;
+    }
+    for (File viewFile : viewFiles) {
+      try {
+        MaterializedView view = MaterializedView.load(viewFile);
+        views.put(view.getName(), view);
+      } catch (Exception e) {
+        logger.error("Could not load view " + viewFile + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /** Opens the hash indexes stored in the database directory. */
+  private synchronized void loadHashIndexes() {
+    File[] indexFiles = new File(dbDirectory, "indexes").listFiles();
+    if (indexFiles == null) {
+      return;
+    }
+    for (File indexFile : indexFiles) {
+      if (!indexFile.getName().endsWith(".hash")) {
+        continue;
+      }
+      try {
+        addHashIndex(HashIndex.open(indexFile));
+      } catch (Exception e) {
+        logger.error("Could not open index " + indexFile + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private synchronized void closeHashIndexes() {
+    for (HashIndex index : indexes.values()) {
+      try {
+        index.close();
+      } catch (IOException e) {
+        logger.error(e.getMessage());
+      }
+    }
+    indexes.clear();
+  }
+
+  /**
+   * Gets the page file of the hash index on a column; its directory is stored next to it.
+   *
+   * @param tableName table name
+   * @param columnName column name
+   * @return the index's page file
+   */
+  public File getIndexFile(String tableName, String columnName) {
+    return new File(dbDirectory + "/indexes/" + tableName + "." + columnName + ".hash");
+  }
+
+  /**
+   * Registers a hash index, which scans of its table may use from then on.
+   *
+   * @param index the index
+   */
+  public synchronized void addHashIndex(HashIndex index) {
+    indexes.put(index.getTableName() + "." + index.getColumnName(), index);
+    version.incrementAndGet();
+  }
+
+  /**
+   * Gets the hash index on a column.
+   *
+   * @param tableName table name
+   * @param columnName column name
+   * @return the index, or null if the column is not indexed
+   */
+  public synchronized HashIndex getHashIndex(String tableName, String columnName) {
+    return indexes.get(tableName + "." + columnName);
+  }
+
+  /**
+   * Adds a table to the schema, recording it in schema.txt. The table's data file must be created
+   * separately.
+   *
+   * @param tableName table name
+   * @param columnNames names of the table's columns, in order
+   * @throws IOException if schema.txt cannot be updated
+   */
+  public synchronized void addTable(String tableName, List<String> columnNames) throws IOException {
+    if (tables.containsKey(tableName)) {
+      throw new IllegalArgumentException("Table " + tableName + " already exists");
+    }
+    File schemaFile = new File(dbDirectory, "schema.txt");
+    StringBuilder line = new StringBuilder();
+    if (endsWithoutNewline(schemaFile)) {
+      line.append('\n');
+    }
+    line.append(tableName);
+    ArrayList<Column> cols = new ArrayList<>();
+    for (String columnName : columnNames) {
+      line.append(' ').append(columnName);
+      cols.add(new Column(new Table(null, tableName), columnName));
+    }
+    line.append('\n');
+    Files.writeString(
+        schemaFile.toPath(),
+        line,
+        StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+    tables.put(tableName, cols);
+    version.incrementAndGet();
+  }
+
+  private static boolean endsWithoutNewline(File file) throws IOException {
+    if (file.length() == 0) {
+      return false;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.seek(file.length() - 1);
+      return raf.read() != '\n';
+    }
+  }
+
+  /**
+   * Gets the file holding the definition and refresh state of a materialized view.
+   *
+   * @param viewName view name
+   * @return the view's definition file
+   */
+  public File getViewFile(String viewName) {
+    return new File(dbDirectory + "/views/" + viewName + ".view");
+  }
+
+  /**
+   * Registers a materialized view whose table has been added with {@link #addTable}.
+   *
+   * @param view the view
+   */
+  public synchronized void addMaterializedView(MaterializedView view) {
+    views.put(view.getName(), view);
+    version.incrementAndGet();
+  }
+
+  /**
+   * Gets a materialized view by the name of its table.
+   *
+   * @param tableName table name
+   * @return the view, or null if the table is not a materialized view
+   */
+  public synchronized MaterializedView getMaterializedView(String tableName) {
+    return views.get(tableName);
+  }
+
+  /**
+   * Records that the contents or the storage layout of a table changed. Plans built before the
+   * change that read the table are invalidated (see {@link #getTableVersion}).
+   *
+   * @param tableName table name
+   */
+  public void tableChanged(String tableName) {
+    tableVersions.computeIfAbsent(tableName, name -> new AtomicLong()).incrementAndGet();
+  }
+
+  /**
+   * Gets the version of a table, which changes whenever its contents or storage layout change.
+   * Cached plans remember the versions of the tables they read and are rebuilt when one of them no
+   * longer matches.
+   *
+   * @param tableName table name
+   * @return current version of the table
+   */
+  public long getTableVersion(String tableName) {
+    AtomicLong tableVersion = tableVersions.get(tableName);
+    return tableVersion == null ? 0 : tableVersion.get();
+  }
+
+  /**
+   * Gets the version of the catalog, which changes whenever the schema changes: tables, views or
+   * indexes are added, or the data directory is switched. Cached plans remember the version they
+   * were built against and are rebuilt when it no longer matches.
+   *
+   * @return current catalog version
+   */
+  public long getVersion() {
+    return version.get();
   }
 
   /**
@@ -79,6 +330,49 @@ public class DBCatalog {
     return new File(dbDirectory + "/data/" + tableName);
   }
 
+  /**
+   * Gets the directory holding the columnar copy of a table, one file per column. The directory
+   * need not exist; see {@link #isColumnar}.
+   *
+   * @param tableName table name
+   * @return directory where the columnar layout of the table is (or would be) stored
+   */
+  public File getColumnarDirectoryForTable(String tableName) {
+    return new File(dbDirectory + "/data/" + tableName + ".col");
+  }
+
+  /**
+   * Checks whether a table has been stored in the columnar layout. Scans prefer the columnar copy
+   * over the text file when both exist.
+   *
+   * @param tableName table name
+   * @return true if the columnar directory of the table exists
+   */
+  public boolean isColumnar(String tableName) {
+    return getColumnarDirectoryForTable(tableName).isDirectory();
+  }
+
+  /**
+   * Gets the number of bytes a table occupies on disk, in the layout scans will read it from. Only
+   * committed appends are counted (see {@link WriteAheadLog#committedLength}).
+   *
+   * @param tableName table name
+   * @return size of the table's file, or the total size of its column files if it is columnar
+   */
+  public long getTableSizeBytes(String tableName) {
+    if (isColumnar(tableName)) {
+      long size = 0;
+      File[] columnFiles = getColumnarDirectoryForTable(tableName).listFiles();
+      if (columnFiles != null) {
+        for (long length : WriteAheadLog.committedLengths(columnFiles)) {
+          size += length;
+        }
+      }
+      return size;
+    }
+    return WriteAheadLog.committedLength(getFileForTable(tableName));
+  }
+
   /** Gets the schema of a table */
   public ArrayList<Column> getColumns(String tableName) {
     return tables.get(tableName);
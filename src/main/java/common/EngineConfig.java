@@ -0,0 +1,396 @@
+package common;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Class to contain tunable settings of the query engine. Uses singleton pattern, like {@link
+ * DBCatalog}. Every setting has a default; the defaults can be overridden from an optional
+ * properties file (see {@link #loadProperties}).
+ *
+ * <p>Call by using EngineConfig.getInstance();
+ */
+public class EngineConfig {
+  private final Logger logger = LogManager.getLogger();
+
+  private static EngineConfig config;
+
+  // Number of pages a sequential scan keeps buffered ahead of its consumer; 0 disables read-ahead
+  private int readAheadDepth;
+  // Number of tuples in one read-ahead page
+  private int readAheadPageSize;
+  // Tables smaller than this are scanned synchronously
+  private long readAheadMinTableBytes;
+
+  // Format of query results: "csv" (text) or "binary" (pages of ints)
+  private String outputFormat;
+  // Whether results are formatted and written on a background thread
+  private boolean asyncOutput;
+  // Number of batches of results queued for the background writer
+  private int asyncOutputDepth;
+
+  // "pull" for iterator (getNextTuple) execution, "push" for produce/consume pipelines
+  private String executionMode;
+
+  // Memory a join may use to buffer its inner input before it spills to disk
+  private long joinMemoryBytes;
+  // Inner inputs of at most this many tuples are joined by nested loop rather than hashed
+  private int joinNestedLoopMaxTuples;
+  // Worker threads of a parallel hash join; 1 disables parallel joins
+  private int joinThreads;
+  // Inner inputs of at least this many tuples are hash-joined in parallel
+  private int joinParallelMinTuples;
+  // Outer inputs of at most this many tuples are joined by probing an index on the inner table
+  private int joinIndexMaxOuterTuples;
+  // Memory a sort may use to buffer its input before it spills sorted runs to disk
+  private long sortMemoryBytes;
+  // Worker threads that sort and spill runs, and merge them when there are many
+  private int sortThreads;
+  // Worker threads that parse input files during a bulk load
+  private int loadThreads;
+  // Directory for temporary files, such as spilled join partitions
+  private String tempDirectory;
+
+  // Whether a batch of statements shares one scan of each table read by several of them
+  private boolean sharedScans;
+  // Memory the shared scans of a batch may use to keep tables; larger tables are scanned per query
+  private long sharedScanMemoryBytes;
+
+  // Memory the buffers of all running sorts, joins and spools may hold together
+  private long memoryTotalBytes;
+  // Unit in which operators' grants of memory grow; a new grant is one page
+  private long memoryPageBytes;
+  // How long an operator waits for memory before it goes without and spills
+  private long memoryWaitMillis;
+
+  // Maximum number of prepared queries kept in the plan cache
+  private int planCacheSize;
+
+  private EngineConfig() {
+    readAheadDepth = 4;
+    readAheadPageSize = 1024;
+    readAheadMinTableBytes = 1 << 20;
+    outputFormat = "csv";
+    asyncOutput = false;
+    asyncOutputDepth = 16;
+    executionMode = "pull";
+    joinMemoryBytes = Runtime.getRuntime().maxMemory() / 4;
+    joinNestedLoopMaxTuples = 64;
+    joinThreads = Runtime.getRuntime().availableProcessors();
+    joinParallelMinTuples = 65536;
+    joinIndexMaxOuterTuples = 1024;
+    sortMemoryBytes = Runtime.getRuntime().maxMemory() / 4;
+    sortThreads = Runtime.getRuntime().availableProcessors();
+    loadThreads = Runtime.getRuntime().availableProcessors();
+    tempDirectory = System.getProperty("java.io.tmpdir");
+    sharedScans = false;
+    sharedScanMemoryBytes = Runtime.getRuntime().maxMemory() / 4;
+    memoryTotalBytes = Runtime.getRuntime().maxMemory() / 2;
+    memoryPageBytes = 1 << 20;
+    memoryWaitMillis = 10_000;
+    planCacheSize = 256;
+  }
+
+  /**
+   * Instance getter for singleton pattern, lazy initialization on first invocation
+   *
+   * @return unique engine configuration instance
+   */
+  public static EngineConfig getInstance() {
+    if (config == null) {
+      config = new EngineConfig();
+    }
+    return config;
+  }
+
+  /**
+   * Overrides settings from a properties file. Missing files and missing keys leave the current
+   * values unchanged. Recognized keys:
+   *
+   * <ul>
+   *   <li>readahead.depth
+   *   <li>readahead.pageSize
+   *   <li>readahead.minTableBytes
+   *   <li>output.format (csv or binary)
+   *   <li>output.async (true or false)
+   *   <li>output.asyncDepth
+   *   <li>execution.mode (pull or push)
+   *   <li>join.memoryBytes
+   *   <li>join.nestedLoopMaxTuples
+   *   <li>join.threads
+   *   <li>join.parallelMinTuples
+   *   <li>join.indexMaxOuterTuples
+   *   <li>sort.memoryBytes
+   *   <li>sort.threads
+   *   <li>load.threads
+   *   <li>temp.directory
+   *   <li>batch.sharedScans (true or false)
+   *   <li>batch.sharedScanMemoryBytes
+   *   <li>memory.totalBytes
+   *   <li>memory.pageBytes
+   *   <li>memory.waitMillis
+   *   <li>planCache.size
+   * </ul>
+   *
+   * @param propertiesFile the file to read
+   */
+  public void loadProperties(File propertiesFile) {
+    if (!propertiesFile.isFile()) {
+      return;
+    }
+    Properties properties = new Properties();
+    try (Reader reader = new FileReader(propertiesFile)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      return;
+    }
+    readAheadDepth = intProperty(properties, "readahead.depth", readAheadDepth);
+    readAheadPageSize = intProperty(properties, "readahead.pageSize", readAheadPageSize);
+    readAheadMinTableBytes =
+        longProperty(properties, "readahead.minTableBytes", readAheadMinTableBytes);
+    outputFormat = properties.getProperty("output.format", outputFormat).trim();
+    asyncOutput =
+        Boolean.parseBoolean(properties.getProperty("output.async", String.valueOf(asyncOutput)));
+    asyncOutputDepth = intProperty(properties, "output.asyncDepth", asyncOutputDepth);
+    executionMode = properties.getProperty("execution.mode", executionMode).trim();
+    joinMemoryBytes = longProperty(properties, "join.memoryBytes", joinMemoryBytes);
+    joinNestedLoopMaxTuples =
+        intProperty(properties, "join.nestedLoopMaxTuples", joinNestedLoopMaxTuples);
+    joinThreads = intProperty(properties, "join.threads", joinThreads);
+    joinParallelMinTuples =
+        intProperty(properties, "join.parallelMinTuples", joinParallelMinTuples);
+    joinIndexMaxOuterTuples =
+        intProperty(properties, "join.indexMaxOuterTuples", joinIndexMaxOuterTuples);
+    sortMemoryBytes = longProperty(properties, "sort.memoryBytes", sortMemoryBytes);
+    sortThreads = intProperty(properties, "sort.threads", sortThreads);
+    loadThreads = intProperty(properties, "load.threads", loadThreads);
+    tempDirectory = properties.getProperty("temp.directory", tempDirectory).trim();
+    sharedScans =
+        Boolean.parseBoolean(
+            properties.getProperty("batch.sharedScans", String.valueOf(sharedScans)));
+    sharedScanMemoryBytes =
+        longProperty(properties, "batch.sharedScanMemoryBytes", sharedScanMemoryBytes);
+    memoryTotalBytes = longProperty(properties, "memory.totalBytes", memoryTotalBytes);
+    memoryPageBytes = longProperty(properties, "memory.pageBytes", memoryPageBytes);
+    memoryWaitMillis = longProperty(properties, "memory.waitMillis", memoryWaitMillis);
+    planCacheSize = intProperty(properties, "planCache.size", planCacheSize);
+  }
+
+  private int intProperty(Properties properties, String key, int defaultValue) {
+    return (int) longProperty(properties, key, defaultValue);
+  }
+
+  private long longProperty(Properties properties, String key, long defaultValue) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      logger.error("Invalid value for " + key + ": " + value);
+      return defaultValue;
+    }
+  }
+
+  public int getReadAheadDepth() {
+    return readAheadDepth;
+  }
+
+  public void setReadAheadDepth(int readAheadDepth) {
+    this.readAheadDepth = readAheadDepth;
+  }
+
+  public int getReadAheadPageSize() {
+    return readAheadPageSize;
+  }
+
+  public void setReadAheadPageSize(int readAheadPageSize) {
+    this.readAheadPageSize = readAheadPageSize;
+  }
+
+  public long getReadAheadMinTableBytes() {
+    return readAheadMinTableBytes;
+  }
+
+  public void setReadAheadMinTableBytes(long readAheadMinTableBytes) {
+    this.readAheadMinTableBytes = readAheadMinTableBytes;
+  }
+
+  public String getOutputFormat() {
+    return outputFormat;
+  }
+
+  public void setOutputFormat(String outputFormat) {
+    this.outputFormat = outputFormat;
+  }
+
+  public boolean isAsyncOutput() {
+    return asyncOutput;
+  }
+
+  public void setAsyncOutput(boolean asyncOutput) {
+    this.asyncOutput = asyncOutput;
+  }
+
+  public int getAsyncOutputDepth() {
+    return asyncOutputDepth;
+  }
+
+  public void setAsyncOutputDepth(int asyncOutputDepth) {
+    this.asyncOutputDepth = asyncOutputDepth;
+  }
+
+  public String getExecutionMode() {
+    return executionMode;
+  }
+
+  public void setExecutionMode(String executionMode) {
+    this.executionMode = executionMode;
+  }
+
+  /**
+   * Whether plans should be run push-based (see {@link operator.Operator#produce}).
+   *
+   * @return true if the execution mode is "push"
+   */
+  public boolean isPushBasedExecution() {
+    return executionMode.equalsIgnoreCase("push");
+  }
+
+  public long getJoinMemoryBytes() {
+    return joinMemoryBytes;
+  }
+
+  public void setJoinMemoryBytes(long joinMemoryBytes) {
+    this.joinMemoryBytes = joinMemoryBytes;
+  }
+
+  public int getJoinNestedLoopMaxTuples() {
+    return joinNestedLoopMaxTuples;
+  }
+
+  public void setJoinNestedLoopMaxTuples(int joinNestedLoopMaxTuples) {
+    this.joinNestedLoopMaxTuples = joinNestedLoopMaxTuples;
+  }
+
+  public int getJoinThreads() {
+    return joinThreads;
+  }
+
+  public void setJoinThreads(int joinThreads) {
+    this.joinThreads = joinThreads;
+  }
+
+  public int getJoinParallelMinTuples() {
+    return joinParallelMinTuples;
+  }
+
+  public void setJoinParallelMinTuples(int joinParallelMinTuples) {
+    this.joinParallelMinTuples = joinParallelMinTuples;
+  }
+
+  public int getJoinIndexMaxOuterTuples() {
+    return joinIndexMaxOuterTuples;
+  }
+
+  public void setJoinIndexMaxOuterTuples(int joinIndexMaxOuterTuples) {
+    this.joinIndexMaxOuterTuples = joinIndexMaxOuterTuples;
+  }
+
+  public long getSortMemoryBytes() {
+    return sortMemoryBytes;
+  }
+
+  public void setSortMemoryBytes(long sortMemoryBytes) {
+    this.sortMemoryBytes = sortMemoryBytes;
+  }
+
+  public int getSortThreads() {
+    return sortThreads;
+  }
+
+  public void setSortThreads(int sortThreads) {
+    this.sortThreads = sortThreads;
+  }
+
+  public int getLoadThreads() {
+    return loadThreads;
+  }
+
+  public void setLoadThreads(int loadThreads) {
+    this.loadThreads = loadThreads;
+  }
+
+  public String getTempDirectory() {
+    return tempDirectory;
+  }
+
+  public void setTempDirectory(String tempDirectory) {
+    this.tempDirectory = tempDirectory;
+  }
+
+  /**
+   * Whether the statements of a batch share scans (see {@link SharedScans}).
+   *
+   * @return true if shared scans are enabled
+   */
+  public boolean isSharedScans() {
+    return sharedScans;
+  }
+
+  public void setSharedScans(boolean sharedScans) {
+    this.sharedScans = sharedScans;
+  }
+
+  public long getSharedScanMemoryBytes() {
+    return sharedScanMemoryBytes;
+  }
+
+  public void setSharedScanMemoryBytes(long sharedScanMemoryBytes) {
+    this.sharedScanMemoryBytes = sharedScanMemoryBytes;
+  }
+
+  /**
+   * Memory shared by the buffers of all running operators (see {@link MemoryManager}).
+   *
+   * @return the total in bytes
+   */
+  public long getMemoryTotalBytes() {
+    return memoryTotalBytes;
+  }
+
+  public void setMemoryTotalBytes(long memoryTotalBytes) {
+    this.memoryTotalBytes = memoryTotalBytes;
+  }
+
+  public long getMemoryPageBytes() {
+    return memoryPageBytes;
+  }
+
+  public void setMemoryPageBytes(long memoryPageBytes) {
+    this.memoryPageBytes = memoryPageBytes;
+  }
+
+  public long getMemoryWaitMillis() {
+    return memoryWaitMillis;
+  }
+
+  public void setMemoryWaitMillis(long memoryWaitMillis) {
+    this.memoryWaitMillis = memoryWaitMillis;
+  }
+
+  public int getPlanCacheSize() {
+    return planCacheSize;
+  }
+
+  public void setPlanCacheSize(int planCacheSize) {
+    this.planCacheSize = planCacheSize;
+  }
+}
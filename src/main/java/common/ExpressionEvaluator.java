@@ -60,6 +60,14 @@ public class ExpressionEvaluator extends ExpressionVisitorAdapter {
     tempValue = (int) longValue.getValue(); // Handle long value
   }
 
+  @Override
+  public void visit(JdbcParameter parameter) {
+    if (!(parameter instanceof BoundParameter)) {
+      throw new IllegalStateException("Parameter " + parameter + " is not bound");
+    }
+    tempValue = ((BoundParameter) parameter).getValue();
+  }
+
   @Override
   public void visit(DoubleValue doubleValue) {
     tempValue = (int) doubleValue.getValue(); // Handle double value (truncated to int)
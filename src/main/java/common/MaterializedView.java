@@ -0,0 +1,399 @@
+package common;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import operator.Operator;
+import storage.ByteRange;
+import storage.ColumnarTableWriter;
+import storage.ColumnarTupleReader;
+import storage.RowGroupRange;
+import storage.ScanRange;
+
+/**
+ * Materialized view: the stored result of a select-project-join query, kept as a table in the
+ * catalog and maintained incrementally as rows are appended to its base tables.
+ *
+ * <p>The view remembers how large each base table was when it was last refreshed: the length of a
+ * text table's file, or the number of row groups of a columnar table. Rows appended since then are
+ * the table's delta, read with a {@link ScanRange}. With base tables R1..Rn in FROM order, the rows
+ * to add to the view are the union, over each table Ri that grew, of the query evaluated with
+ * R1..Ri-1 at their new size, Ri restricted to its delta and Ri+1..Rn at their old size. Each term
+ * reads only the delta of one table, so a refresh costs the delta and the joins it probes, not a
+ * recomputation of the whole view. A base table that shrank or changed layout was rewritten, so the
+ * view is then recomputed in full.
+ *
+ * <p>Views are refreshed when a plan that reads them starts a run, by the scan of the view (see
+ * {@link #refreshIfView}); planning a query does no I/O. DISTINCT, ORDER BY, LIMIT and aggregates
+ * are not supported in view definitions; queries over a view may still use them.
+ *
+ * <p>A view named V is stored in data/V like any table, with its definition and refresh state in
+ * views/V.view.
+ */
+public class MaterializedView {
+  private final String name;
+  private final String definition;
+  private final Select query;
+
+  // FROM items of the query in join order, as alias -> table name
+  private final LinkedHashMap<String, String> fromTables;
+
+  // Size of each base table when the view was last refreshed, and the tables that were columnar
+  private Map<String, Long> refreshedSizes;
+  private Set<String> refreshedColumnar;
+
+  private MaterializedView(
+      String name, String definition, Map<String, Long> refreshedSizes, Set<String> columnar)
+      throws JSQLParserException {
+    this.name = name;
+    this.definition = definition;
+    Statement statement = CCJSqlParserUtil.parse(definition);
+    if (!(statement instanceof Select)) {
+      throw new IllegalArgumentException("A view must be defined by a SELECT statement.");
+    }
+    this.query = (Select) statement;
+    this.fromTables = collectFromTables(query);
+    this.refreshedSizes = refreshedSizes;
+    this.refreshedColumnar = columnar;
+  }
+
+  /**
+   * Checks that a query can be maintained incrementally and lists its FROM items.
+   *
+   * @param query the view definition
+   * @return table name per alias (or name), in FROM order
+   */
+  private static LinkedHashMap<String, String> collectFromTables(Select query) {
+    if (!(query.getSelectBody() instanceof PlainSelect)) {
+      throw new UnsupportedOperationException("Only plain SELECT queries can be materialized.");
+    }
+    PlainSelect plainSelect = (PlainSelect) query.getSelectBody();
+    if (plainSelect.getDistinct() != null
+        || plainSelect.getOrderByElements() != null
+        || plainSelect.getLimit() != null
+        || plainSelect.getOffset() != null
+        || plainSelect.getGroupBy() != null
+        || plainSelect.getHaving() != null) {
+      throw new UnsupportedOperationException(
+          "Materialized views support select, project and join queries only.");
+    }
+    List<FromItem> fromItems = new ArrayList<>();
+    fromItems.add(plainSelect.getFromItem());
+    if (plainSelect.getJoins() != null) {
+      for (Join join : plainSelect.getJoins()) {
+        fromItems.add(join.getRightItem());
+      }
+    }
+    LinkedHashMap<String, String> tables = new LinkedHashMap<>();
+    for (FromItem fromItem : fromItems) {
+      if (!(fromItem instanceof Table)) {
+        throw new UnsupportedOperationException("Only table FROM items are supported.");
+      }
+      Table table = (Table) fromItem;
+      String alias = table.getAlias() != null ? table.getAlias().getName() : table.getName();
+      tables.put(alias, table.getName());
+    }
+    return tables;
+  }
+
+  /**
+   * Creates a materialized view, computes its contents and adds it to the catalog.
+   *
+   * @param createView a CREATE MATERIALIZED VIEW statement
+   * @return the view
+   * @throws IOException if the view cannot be stored
+   * @throws JSQLParserException if the definition cannot be parsed
+   */
+  public static MaterializedView create(CreateView createView)
+      throws IOException, JSQLParserException {
+    if (!createView.isMaterialized()) {
+      throw new UnsupportedOperationException("Only materialized views are supported.");
+    }
+    DBCatalog catalog = DBCatalog.getInstance();
+    String name = createView.getView().getName();
+    if (catalog.getColumns(name) != null) {
+      throw new IllegalArgumentException("Table " + name + " already exists");
+    }
+    MaterializedView view =
+        new MaterializedView(
+            name, createView.getSelect().toString(), new HashMap<>(), new HashSet<>());
+    Set<String> columnar = view.columnarTables();
+    Map<String, Long> sizes = view.currentSizes(columnar);
+    List<String> columnNames = new ArrayList<>();
+    for (Column column : view.recompute(sizes, columnar)) {
+      if (columnNames.contains(column.getColumnName())) {
+        catalog.getFileForTable(name).delete();
+        throw new IllegalArgumentException(
+            "Column " + column.getColumnName() + " appears twice in view " + name);
+      }
+      columnNames.add(column.getColumnName());
+    }
+    view.refreshedSizes = sizes;
+    view.refreshedColumnar = columnar;
+    view.save();
+    catalog.addTable(name, columnNames);
+    catalog.addMaterializedView(view);
+    return view;
+  }
+
+  /**
+   * Loads a view from its definition file.
+   *
+   * @param viewFile the definition file, as written by {@link #save}
+   * @return the view
+   * @throws IOException if the file cannot be read
+   * @throws JSQLParserException if the definition cannot be parsed
+   */
+  static MaterializedView load(File viewFile) throws IOException, JSQLParserException {
+    Properties properties = new Properties();
+    try (Reader reader = new FileReader(viewFile, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    }
+    Map<String, Long> sizes = new HashMap<>();
+    Set<String> columnar = new HashSet<>();
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith("size.")) {
+        sizes.put(key.substring("size.".length()), Long.parseLong(properties.getProperty(key)));
+      } else if (key.startsWith("layout.") && properties.getProperty(key).equals("columnar")) {
+        columnar.add(key.substring("layout.".length()));
+      }
+    }
+    String fileName = viewFile.getName();
+    String name = fileName.substring(0, fileName.length() - ".view".length());
+    return new MaterializedView(name, properties.getProperty("query"), sizes, columnar);
+  }
+
+  /** Writes the definition and refresh state of the view to its definition file. */
+  private void save() throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("query", definition);
+    for (Map.Entry<String, Long> size : refreshedSizes.entrySet()) {
+      properties.setProperty("size." + size.getKey(), Long.toString(size.getValue()));
+    }
+    for (String table : refreshedColumnar) {
+      properties.setProperty("layout." + table, "columnar");
+    }
+    File viewFile = DBCatalog.getInstance().getViewFile(name);
+    File directory = viewFile.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create " + directory);
+    }
+    try (Writer writer = new FileWriter(viewFile, StandardCharsets.UTF_8)) {
+      properties.store(writer, "Materialized view " + name);
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Refreshes a table before it is read, if it is a materialized view.
+   *
+   * @param tableName name of the table
+   */
+  public static void refreshIfView(String tableName) {
+    MaterializedView view = DBCatalog.getInstance().getMaterializedView(tableName);
+    if (view != null) {
+      view.refresh();
+    }
+  }
+
+  /**
+   * Brings the view up to date with its base tables, adding the rows derived from the rows appended
+   * to them since the last refresh.
+   */
+  public synchronized void refresh() {
+    DBCatalog catalog = DBCatalog.getInstance();
+    try {
+      // Views over views read the base view's file, so it must be current first
+      for (String table : new HashSet<>(fromTables.values())) {
+        MaterializedView base = catalog.getMaterializedView(table);
+        if (base != null) {
+          base.refresh();
+        }
+      }
+      Set<String> columnar = columnarTables();
+      Map<String, Long> sizes = currentSizes(columnar);
+      if (sizes.equals(refreshedSizes) && columnar.equals(refreshedColumnar)) {
+        return;
+      }
+      if (canApplyDeltas(sizes, columnar)) {
+        appendDeltas(sizes, columnar);
+      } else {
+        recompute(sizes, columnar);
+      }
+      refreshedSizes = sizes;
+      refreshedColumnar = columnar;
+      save();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catalog.tableChanged(name);
+  }
+
+  /** Lists the base tables stored in the columnar layout. */
+  private Set<String> columnarTables() {
+    DBCatalog catalog = DBCatalog.getInstance();
+    Set<String> columnar = new HashSet<>();
+    for (String table : fromTables.values()) {
+      if (catalog.isColumnar(table)) {
+        columnar.add(table);
+      }
+    }
+    return columnar;
+  }
+
+  /**
+   * Measures the base tables, fixing the extent of the data the next refresh reads: the committed
+   * length of a text table's file, or the number of committed row groups of a columnar table.
+   *
+   * @param columnar the base tables in the columnar layout
+   */
+  private Map<String, Long> currentSizes(Set<String> columnar) throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    Map<String, Long> sizes = new HashMap<>();
+    for (String table : fromTables.values()) {
+      if (columnar.contains(table)) {
+        File columnFile =
+            ColumnarTableWriter.columnFile(
+                catalog.getColumnarDirectoryForTable(table),
+                catalog.getColumns(table).get(0).getColumnName());
+        sizes.put(table, ColumnarTupleReader.countRowGroups(columnFile));
+      } else {
+        sizes.put(table, catalog.getTableSizeBytes(table));
+      }
+    }
+    return sizes;
+  }
+
+  /** Checks that every base table only grew, in the same layout, since the last refresh. */
+  private boolean canApplyDeltas(Map<String, Long> sizes, Set<String> columnar) {
+    if (!columnar.equals(refreshedColumnar)) {
+      return false;
+    }
+    for (String table : sizes.keySet()) {
+      Long refreshedSize = refreshedSizes.get(table);
+      if (refreshedSize == null || refreshedSize > sizes.get(table)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Builds the range of a base table to scan, in the units of its layout. */
+  private static ScanRange scanRange(String table, Set<String> columnar, long start, long end) {
+    return columnar.contains(table) ? new RowGroupRange(start, end) : new ByteRange(start, end);
+  }
+
+  /**
+   * Appends to the view the rows derived from the base tables' deltas.
+   *
+   * @param sizes current sizes of the base tables
+   * @param columnar the base tables in the columnar layout
+   */
+  private void appendDeltas(Map<String, Long> sizes, Set<String> columnar) throws IOException {
+    List<String> aliases = new ArrayList<>(fromTables.keySet());
+    File dataFile = DBCatalog.getInstance().getFileForTable(name);
+    try (Writer out =
+        Files.newBufferedWriter(
+            dataFile.toPath(),
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+      for (int i = 0; i < aliases.size(); i++) {
+        String table = fromTables.get(aliases.get(i));
+        long before = refreshedSizes.get(table);
+        long after = sizes.get(table);
+        if (before == after) {
+          continue;
+        }
+        Map<String, ScanRange> ranges = new HashMap<>();
+        for (int j = 0; j < aliases.size(); j++) {
+          String other = fromTables.get(aliases.get(j));
+          if (j < i) {
+            ranges.put(aliases.get(j), scanRange(other, columnar, 0, sizes.get(other)));
+          } else if (j == i) {
+            ranges.put(aliases.get(j), scanRange(other, columnar, before, after));
+          } else {
+            ranges.put(aliases.get(j), scanRange(other, columnar, 0, refreshedSizes.get(other)));
+          }
+        }
+        writeResult(ranges, out);
+      }
+    }
+  }
+
+  /**
+   * Recomputes the whole view, replacing its file.
+   *
+   * @param sizes current sizes of the base tables, which are read up to these sizes
+   * @param columnar the base tables in the columnar layout
+   * @return the output schema of the view's query
+   */
+  private List<Column> recompute(Map<String, Long> sizes, Set<String> columnar) throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    Map<String, ScanRange> ranges = new HashMap<>();
+    for (Map.Entry<String, String> fromTable : fromTables.entrySet()) {
+      String table = fromTable.getValue();
+      ranges.put(fromTable.getKey(), scanRange(table, columnar, 0, sizes.get(table)));
+    }
+    File dataFile = catalog.getFileForTable(name);
+    File scratch = new File(dataFile.getPath() + ".tmp");
+    List<Column> schema;
+    try (Writer out = Files.newBufferedWriter(scratch.toPath(), StandardCharsets.UTF_8)) {
+      schema = writeResult(ranges, out);
+    }
+    Files.move(
+        scratch.toPath(),
+        dataFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return schema;
+  }
+
+  /**
+   * Runs the view's query over parts of the base tables and writes the result as text rows.
+   *
+   * @param ranges parts of the base tables to read, per alias
+   * @param out destination of the rows
+   * @return the output schema of the query
+   */
+  private List<Column> writeResult(Map<String, ScanRange> ranges, Writer out) throws IOException {
+    try (Operator plan = new QueryPlanBuilder().buildPlan(query, ranges)) {
+      plan.open();
+      Tuple tuple;
+      while ((tuple = plan.getNextTuple()) != null) {
+        out.write(tuple.toString());
+        out.write('\n');
+      }
+      return plan.getOutputSchema();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares the engine's memory among the operators that buffer tuples: sorts, joins and spools. Such
+ * an operator asks for a {@link Grant} before it starts buffering, and grows it a page
+ * (memory.pageBytes) at a time as its buffers grow, up to its configured budget (sort.memoryBytes,
+ * join.memoryBytes). When the grant cannot grow, because the memory is taken, the operator spills
+ * to disk instead. It releases the grant when it drops its buffers. The grants of all running
+ * queries together stay within memory.totalBytes (see {@link EngineConfig}), so concurrent heavy
+ * queries spill earlier instead of running the JVM out of memory, and a grant holds about what its
+ * operator buffers rather than its whole budget.
+ *
+ * <p>No grant exceeds half the total, so one operator cannot take all of it. A new grant starts at
+ * one page. When less than that is free, the request waits for other queries to release memory, for
+ * up to memory.waitMillis, and is then granted what is free, possibly nothing, so that its operator
+ * spills. It never waits on memory held by its own query, which could not be released before the
+ * request is served: a query runs on one thread, so a thread that already holds grants is granted
+ * what is free at once. The wait is on a lock condition rather than a monitor, so a query on a
+ * virtual thread does not pin its carrier thread while it waits.
+ *
+ * <p>Call by using MemoryManager.getInstance();
+ */
+public class MemoryManager {
+  private static MemoryManager instance;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  // Signalled whenever a grant is released
+  private final Condition memoryReleased = lock.newCondition();
+
+  // Bytes granted to and used by the grants not released yet, and the number of those grants
+  private long grantedBytes;
+  private long usedBytes;
+  private int activeGrants;
+
+  // Number of grants not released yet held by each thread
+  private final Map<Thread, Integer> grantsByThread = new HashMap<>();
+
+  /** Memory granted to one operator, to be released once its buffers are dropped. */
+  public class Grant implements AutoCloseable {
+    private final long limit;
+    private final Thread owner;
+    // Written under the manager's lock, read without it by the operator
+    private volatile long bytes;
+    private long used;
+    private boolean released;
+
+    private Grant(long bytes, long limit, Thread owner) {
+      this.bytes = bytes;
+      this.limit = limit;
+      this.owner = owner;
+    }
+
+    /**
+     * Returns the size of the grant, which the operator's buffers must stay within.
+     *
+     * @return the granted bytes
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Grows the grant, in whole pages, to hold the operator's buffers. It does not wait: if the
+     * memory is not free, or the buffers would exceed the operator's budget, the grant is left as
+     * it is and the operator should spill.
+     *
+     * @param neededBytes the bytes the buffers need
+     * @return true if the grant now holds at least neededBytes
+     */
+    public boolean grow(long neededBytes) {
+      lock.lock();
+      try {
+        if (neededBytes <= bytes) {
+          return true;
+        }
+        if (released || neededBytes > limit) {
+          return false;
+        }
+        long freeBytes = EngineConfig.getInstance().getMemoryTotalBytes() - grantedBytes;
+        if (neededBytes - bytes > freeBytes) {
+          return false;
+        }
+        long pageBytes = Math.max(1, EngineConfig.getInstance().getMemoryPageBytes());
+        long pages = (neededBytes + pageBytes - 1) / pageBytes;
+        long target = Math.min(limit, bytes + freeBytes);
+        if (pages <= target / pageBytes) {
+          target = pages * pageBytes;
+        }
+        grantedBytes += target - bytes;
+        bytes = target;
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Records how much of the grant the operator's buffers currently hold.
+     *
+     * @param usedBytes the bytes in use
+     */
+    public void setUsedBytes(long usedBytes) {
+      lock.lock();
+      try {
+        if (!released) {
+          MemoryManager.this.usedBytes += usedBytes - used;
+          used = usedBytes;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Returns the memory to the manager. Releasing a grant twice has no effect. */
+    @Override
+    public void close() {
+      release(this);
+    }
+  }
+
+  private MemoryManager() {}
+
+  /**
+   * Instance getter for singleton pattern, lazy initialization on first invocation
+   *
+   * @return unique memory manager instance
+   */
+  public static synchronized MemoryManager getInstance() {
+    if (instance == null) {
+      instance = new MemoryManager();
+    }
+    return instance;
+  }
+
+  /**
+   * Grants an operator its first page of memory, waiting if too little is free and the memory is
+   * held by other queries.
+   *
+   * @param budgetBytes the operator's budget, which the grant may grow to
+   * @return the grant, of at most one page, and of no bytes if no memory became free
+   */
+  public Grant acquire(long budgetBytes) {
+    EngineConfig config = EngineConfig.getInstance();
+    long totalBytes = config.getMemoryTotalBytes();
+    long pageBytes = config.getMemoryPageBytes();
+    long limit = Math.max(0, Math.min(budgetBytes, Math.max(pageBytes, totalBytes / 2)));
+    long minimum = Math.min(limit, pageBytes);
+    Thread owner = Thread.currentThread();
+
+    lock.lock();
+    try {
+      long remaining = TimeUnit.MILLISECONDS.toNanos(config.getMemoryWaitMillis());
+      while (totalBytes - grantedBytes < minimum
+          && !grantsByThread.containsKey(owner)
+          && remaining > 0) {
+        try {
+          remaining = memoryReleased.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+
+      long bytes = Math.max(0, Math.min(minimum, totalBytes - grantedBytes));
+      grantedBytes += bytes;
+      activeGrants++;
+      grantsByThread.merge(owner, 1, Integer::sum);
+      return new Grant(bytes, limit, owner);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release(Grant grant) {
+    lock.lock();
+    try {
+      if (grant.released) {
+        return;
+      }
+      grant.released = true;
+      grantedBytes -= grant.bytes;
+      usedBytes -= grant.used;
+      activeGrants--;
+      grantsByThread.computeIfPresent(grant.owner, (thread, count) -> count > 1 ? count - 1 : null);
+      memoryReleased.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the memory granted to operators and not released yet.
+   *
+   * @return the granted bytes
+   */
+  public long getGrantedBytes() {
+    lock.lock();
+    try {
+      return grantedBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the memory the operators report their buffers hold.
+   *
+   * @return the used bytes
+   */
+  public long getUsedBytes() {
+    lock.lock();
+    try {
+      return usedBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of grants not released yet.
+   *
+   * @return the active grants
+   */
+  public int getActiveGrants() {
+    lock.lock();
+    try {
+      return activeGrants;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
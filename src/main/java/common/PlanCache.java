@@ -0,0 +1,87 @@
+package common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+/**
+ * Cache of prepared queries, keyed by their normalized SQL text, so that a query shape run many
+ * times with different parameters is parsed and planned once. Holds at most planCache.size queries
+ * (see {@link EngineConfig}), evicting the least recently used one.
+ */
+public class PlanCache {
+  private final Map<String, PreparedQuery> queries;
+
+  public PlanCache() {
+    int capacity = EngineConfig.getInstance().getPlanCacheSize();
+    this.queries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, PreparedQuery> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  /**
+   * Returns the prepared query for a SQL statement, parsing and preparing it on a cache miss.
+   *
+   * @param sql a SELECT statement, optionally with "?" parameters in its WHERE clause
+   * @return the prepared query
+   * @throws JSQLParserException if the statement cannot be parsed
+   */
+  public synchronized PreparedQuery prepare(String sql) throws JSQLParserException {
+    String key = normalize(sql);
+    PreparedQuery query = queries.get(key);
+    if (query == null) {
+      query = new PreparedQuery(key, CCJSqlParserUtil.parse(key));
+      queries.put(key, query);
+    }
+    return query;
+  }
+
+  public synchronized int size() {
+    return queries.size();
+  }
+
+  public synchronized void clear() {
+    queries.clear();
+  }
+
+  /**
+   * Normalizes SQL text so that statements differing only in layout share a cache entry: runs of
+   * whitespace outside quotes become one space, and surrounding whitespace and trailing semicolons
+   * are removed.
+   *
+   * @param sql SQL text
+   * @return normalized text
+   */
+  public static String normalize(String sql) {
+    StringBuilder normalized = new StringBuilder(sql.length());
+    char quote = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+        normalized.append(c);
+      } else if (Character.isWhitespace(c)) {
+        if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+          normalized.append(' ');
+        }
+      } else {
+        if (c == '\'' || c == '"') {
+          quote = c;
+        }
+        normalized.append(c);
+      }
+    }
+    int end = normalized.length();
+    while (end > 0 && (normalized.charAt(end - 1) == ' ' || normalized.charAt(end - 1) == ';')) {
+      end--;
+    }
+    return normalized.substring(0, end);
+  }
+}
@@ -0,0 +1,73 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+
+/** Helper methods for taking WHERE clauses apart so their pieces can be placed in the plan. */
+public class PredicateUtils {
+
+  private PredicateUtils() {}
+
+  /**
+   * Splits an expression into the conjuncts of its top-level AND chain.
+   *
+   * @param expression The expression, possibly null.
+   * @return The conjuncts, in order; empty if the expression is null.
+   */
+  public static List<Expression> splitConjuncts(Expression expression) {
+    List<Expression> conjuncts = new ArrayList<>();
+    if (expression instanceof AndExpression) {
+      AndExpression and = (AndExpression) expression;
+      conjuncts.addAll(splitConjuncts(and.getLeftExpression()));
+      conjuncts.addAll(splitConjuncts(and.getRightExpression()));
+    } else if (expression != null) {
+      conjuncts.add(expression);
+    }
+    return conjuncts;
+  }
+
+  /**
+   * Combines conjuncts back into a single AND expression.
+   *
+   * @param conjuncts The conjuncts.
+   * @return Their conjunction, or null if there are none.
+   */
+  public static Expression conjoin(List<Expression> conjuncts) {
+    Expression result = null;
+    for (Expression conjunct : conjuncts) {
+      result = result == null ? conjunct : new AndExpression(result, conjunct);
+    }
+    return result;
+  }
+
+  /**
+   * Collects the tables (by alias, or name if unaliased) whose columns an expression references.
+   *
+   * @param expression The expression.
+   * @return The referenced table aliases, or null if some column is not qualified with a table.
+   */
+  public static Set<String> referencedTables(Expression expression) {
+    Set<String> tables = new HashSet<>();
+    boolean[] unqualified = new boolean[1];
+    expression.accept(
+        new ExpressionVisitorAdapter() {
+          @Override
+          public void visit(Column column) {
+            Table table = column.getTable();
+            if (table == null || table.getName() == null) {
+              unqualified[0] = true;
+            } else {
+              tables.add(table.getName());
+            }
+          }
+        });
+    return unqualified[0] ? null : tables;
+  }
+}
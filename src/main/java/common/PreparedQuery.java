@@ -0,0 +1,195 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import operator.Operator;
+
+/**
+ * A parsed and planned query that can be executed repeatedly with different values for its "?"
+ * parameters. Parameters may appear anywhere in the WHERE clause; they are numbered from 1 in the
+ * order they appear, unless written with an explicit index ("?2").
+ *
+ * <p>The plan is built once and re-run on every execution. It is rebuilt only when the catalog
+ * schema changes (see {@link DBCatalog#getVersion}) or one of the tables the query reads changes
+ * (see {@link DBCatalog#getTableVersion}); changes to other tables leave it cached. Materialized
+ * views the query reads are refreshed by their scans on every execution (see {@link
+ * MaterializedView#refreshIfView}). Since parameter values are not known when planning, predicates
+ * on parameters are not used to skip row groups, unlike predicates on constants.
+ *
+ * <p>A prepared query has a single plan, so one execution must be finished (its plan closed) before
+ * the next one starts. Callers that may run it concurrently hold its {@link #getExecutionLock} for
+ * the whole execution.
+ */
+public class PreparedQuery {
+  private final String sql;
+  private final Statement statement;
+  private final List<BoundParameter> parameters;
+
+  // Tables of the FROM clause, some of which may be materialized views
+  private final List<String> fromTables;
+
+  private Operator plan;
+  private long planVersion;
+  // Version of each table of fromTables when the plan was built
+  private final long[] planTableVersions;
+
+  // Held from execute() until the plan is closed by callers sharing the query between threads
+  private final ReentrantLock executionLock = new ReentrantLock();
+
+  /**
+   * Prepares a parsed statement, replacing its parameters with bindable ones.
+   *
+   * @param sql normalized text of the statement
+   * @param statement the parsed statement; it is modified in place
+   */
+  PreparedQuery(String sql, Statement statement) {
+    this.sql = sql;
+    this.statement = statement;
+    this.parameters = new ArrayList<>();
+    this.fromTables = new ArrayList<>();
+    if (statement instanceof Select
+        && ((Select) statement).getSelectBody() instanceof PlainSelect) {
+      PlainSelect plainSelect = (PlainSelect) ((Select) statement).getSelectBody();
+      addFromTable(plainSelect.getFromItem());
+      if (plainSelect.getJoins() != null) {
+        for (Join join : plainSelect.getJoins()) {
+          addFromTable(join.getRightItem());
+        }
+      }
+      if (plainSelect.getWhere() instanceof JdbcParameter) {
+        throw new IllegalArgumentException("WHERE clause cannot be a lone parameter");
+      }
+      if (plainSelect.getWhere() != null) {
+        plainSelect.getWhere().accept(new ParameterBinder());
+      }
+    }
+    this.planTableVersions = new long[fromTables.size()];
+  }
+
+  private void addFromTable(FromItem fromItem) {
+    if (fromItem instanceof Table) {
+      fromTables.add(((Table) fromItem).getName());
+    }
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public int getParameterCount() {
+    return parameters.size();
+  }
+
+  /**
+   * Gets the lock that serializes executions of this query. It is a lock rather than a monitor so
+   * that a virtual thread waiting on it, or streaming results while holding it, does not pin its
+   * carrier thread.
+   *
+   * @return the execution lock
+   */
+  public ReentrantLock getExecutionLock() {
+    return executionLock;
+  }
+
+  /**
+   * Binds the parameters and returns the plan, ready to produce the query's results. The caller
+   * must close the plan once it is done with it.
+   *
+   * @param values parameter values, in parameter order
+   * @return the opened plan
+   */
+  public synchronized Operator execute(int... values) {
+    if (values.length != parameters.size()) {
+      throw new IllegalArgumentException(
+          "Expected " + parameters.size() + " parameters, got " + values.length);
+    }
+    for (int i = 0; i < values.length; i++) {
+      parameters.get(i).bind(values[i]);
+    }
+
+    DBCatalog catalog = DBCatalog.getInstance();
+    long catalogVersion = catalog.getVersion();
+    boolean tablesChanged = tablesChanged();
+    if (plan == null || planVersion != catalogVersion || tablesChanged) {
+      if (plan != null) {
+        plan.close();
+      }
+      plan = new QueryPlanBuilder().buildPlan(statement);
+      planVersion = catalogVersion;
+    } else {
+      // Drop the state of the previous run, including runtime filters built from its parameters
+      plan.close();
+      plan.clearRuntimeFilters();
+      plan.reset();
+    }
+    plan.open();
+    return plan;
+  }
+
+  /**
+   * Checks the versions of the tables the query reads against those the plan was built with, and
+   * records the current ones.
+   *
+   * @return true if a table changed since the plan was built
+   */
+  private boolean tablesChanged() {
+    DBCatalog catalog = DBCatalog.getInstance();
+    boolean changed = false;
+    for (int i = 0; i < fromTables.size(); i++) {
+      long tableVersion = catalog.getTableVersion(fromTables.get(i));
+      changed |= tableVersion != planTableVersions[i];
+      planTableVersions[i] = tableVersion;
+    }
+    return changed;
+  }
+
+  /** Replaces every JdbcParameter below the visited expression with a BoundParameter. */
+  private class ParameterBinder extends ExpressionVisitorAdapter {
+    private Expression bind(Expression expression) {
+      if (!(expression instanceof JdbcParameter)) {
+        return expression;
+      }
+      JdbcParameter jdbcParameter = (JdbcParameter) expression;
+      int index =
+          jdbcParameter.isUseFixedIndex() ? jdbcParameter.getIndex() : parameters.size() + 1;
+      while (parameters.size() < index) {
+        parameters.add(new BoundParameter(parameters.size() + 1));
+      }
+      return parameters.get(index - 1);
+    }
+
+    @Override
+    protected void visitBinaryExpression(BinaryExpression expression) {
+      // Bind and visit left before right, so parameters are numbered in textual order
+      expression.setLeftExpression(bind(expression.getLeftExpression()));
+      expression.getLeftExpression().accept(this);
+      expression.setRightExpression(bind(expression.getRightExpression()));
+      expression.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(Parenthesis parenthesis) {
+      parenthesis.setExpression(bind(parenthesis.getExpression()));
+      super.visit(parenthesis);
+    }
+
+    @Override
+    public void visit(NotExpression notExpression) {
+      notExpression.setExpression(bind(notExpression.getExpression()));
+      super.visit(notExpression);
+    }
+  }
+}
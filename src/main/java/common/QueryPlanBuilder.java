@@ -2,15 +2,26 @@ package common;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.AllValue;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.*;
 import operator.*;
+import storage.ColumnRange;
+import storage.HashIndex;
+import storage.ScanRange;
 
 /**
  * The QueryPlanBuilder class is responsible for building the query execution plan based on the
@@ -21,6 +32,18 @@ public class QueryPlanBuilder {
   // A map to store table aliases (alias name -> table name)
   private Map<String, String> tableAliases;
 
+  // Columns referenced by the current query, per table alias; null if every column is needed
+  private Map<String, Set<String>> requiredColumns;
+
+  // Value ranges implied by the WHERE clause, per table alias and column name
+  private Map<String, Map<String, ColumnRange>> columnRanges;
+
+  // Parts of the table files to scan, per table alias; tables without one are scanned in full
+  private Map<String, ScanRange> scanRanges;
+
+  // Shared scans of the batch of statements the plans belong to, or null
+  private SharedScans sharedScans;
+
   // Singleton instance of the database catalog, used to retrieve schema
   // information
   private DBCatalog dbCatalog;
@@ -33,6 +56,16 @@ public class QueryPlanBuilder {
     dbCatalog = DBCatalog.getInstance(); // Get a singleton instance of the database catalog
   }
 
+  /**
+   * Makes the plans built from now on scan tables through the shared scans of a batch of
+   * statements.
+   *
+   * @param sharedScans The shared scans, or null to scan every table from storage.
+   */
+  public void setSharedScans(SharedScans sharedScans) {
+    this.sharedScans = sharedScans;
+  }
+
   /**
    * Builds a query execution plan based on the provided SQL statement. This method supports SELECT
    * statements with optional WHERE, JOIN, ORDER BY, and DISTINCT clauses.
@@ -41,6 +74,20 @@ public class QueryPlanBuilder {
    * @return The root operator of the constructed query execution plan.
    */
   public Operator buildPlan(Statement stmt) {
+    return buildPlan(stmt, Map.of());
+  }
+
+  /**
+   * Builds a query execution plan in which some tables are only scanned over part of their storage.
+   * Materialized views use this to evaluate a query over the rows appended to one table.
+   *
+   * @param stmt The SQL statement to build the plan for.
+   * @param scanRanges Parts of the tables to scan, keyed by table alias (or name).
+   * @return The root operator of the constructed query execution plan.
+   */
+  public Operator buildPlan(Statement stmt, Map<String, ScanRange> scanRanges) {
+    this.scanRanges = scanRanges;
+
     // Ensure the statement is a SELECT statement
     if (!(stmt instanceof Select)) {
       throw new IllegalArgumentException("Only SELECT statements are supported.");
@@ -51,29 +98,72 @@ public class QueryPlanBuilder {
     // Extract the WHERE clause (if present)
     Expression whereExpression = plainSelect.getWhere();
 
+    // Work out which columns of each table the query references so scans only decode those
+    requiredColumns = collectRequiredColumns(plainSelect);
+
+    // Push comparisons against constants down to the scans so they can skip blocks and rows
+    columnRanges = collectColumnRanges(whereExpression);
+
     // Process the FROM clause and initialize the base operator
     FromItem fromItem = plainSelect.getFromItem();
     List<Join> joins = plainSelect.getJoins();
+    List<FromItem> fromItems = new ArrayList<>();
+    fromItems.add(fromItem);
+    if (joins != null) {
+      for (Join join : joins) {
+        fromItems.add(join.getRightItem());
+      }
+    }
+
+    // Split the WHERE clause so each conjunct is evaluated as low in the plan as possible
+    List<Expression> remainingConjuncts =
+        new ArrayList<>(PredicateUtils.splitConjuncts(whereExpression));
+    Set<String> joinedAliases = new HashSet<>();
 
     // Create the base operator for the first table in the FROM clause
-    Operator currentOperator = processFromItem(fromItem);
+    Operator currentOperator =
+        applySelection(processFromItem(fromItem), aliasOf(fromItem), remainingConjuncts);
+    joinedAliases.add(aliasOf(fromItem));
 
-    // Process JOINs (if any), adding JoinOperators without specific join conditions
-    if (joins != null) {
-      for (Join join : joins) {
-        // Process the table being joined
-        Operator rightOperator = processFromItem(join.getRightItem());
+    // Process JOINs (if any), evaluating each join predicate at the first join that covers it
+    for (int i = 1; i < fromItems.size(); i++) {
+      FromItem rightItem = fromItems.get(i);
+      String rightAlias = aliasOf(rightItem);
+
+      // Process the table being joined, filtered by its own selection predicates
+      Operator rightScan = processFromItem(rightItem);
+      List<Expression> rightSelection = takeSelection(rightAlias, remainingConjuncts);
+      Operator rightOperator = withSelection(rightScan, rightSelection);
+      if (rightOperator != rightScan) {
+        // A nested loop join rescans its inner side; replay it rather than recompute it
+        rightOperator = new SpoolOperator(rightOperator);
+      }
+      joinedAliases.add(rightAlias);
 
-        // Create a JoinOperator (currently without a condition)
-        currentOperator = new JoinOperator(currentOperator, rightOperator, null, tableAliases);
+      List<Expression> joinConjuncts = new ArrayList<>();
+      for (Expression conjunct : new ArrayList<>(remainingConjuncts)) {
+        Set<String> tables = PredicateUtils.referencedTables(conjunct);
+        if (tables != null && tables.contains(rightAlias) && joinedAliases.containsAll(tables)) {
+          joinConjuncts.add(conjunct);
+          remainingConjuncts.remove(conjunct);
+        }
       }
+
+      currentOperator =
+          buildJoin(
+              currentOperator,
+              rightScan,
+              rightOperator,
+              rightAlias,
+              rightSelection,
+              PredicateUtils.conjoin(joinConjuncts));
     }
 
     Operator root = currentOperator;
 
-    // Apply the WHERE clause using a SelectOperator
-    if (whereExpression != null) {
-      root = new SelectOperator(root, whereExpression, tableAliases);
+    // Apply what is left of the WHERE clause (e.g. constant conditions) using a SelectOperator
+    if (!remainingConjuncts.isEmpty()) {
+      root = new SelectOperator(root, PredicateUtils.conjoin(remainingConjuncts), tableAliases);
     }
 
     // Apply projection using a ProjectOperator
@@ -107,9 +197,62 @@ public class QueryPlanBuilder {
       root = new DuplicateElementEliminationOperator(root.getOutputSchema(), root);
     }
 
+    // Apply LIMIT/OFFSET last so that it stops pulling from everything below it
+    Limit limit = plainSelect.getLimit();
+    Offset offset = plainSelect.getOffset();
+    if ((limit != null && limit.getRowCount() != null) || offset != null) {
+      root = buildLimitOperator(root, limit, offset);
+    }
+
     return root; // Return the root operator of the query plan
   }
 
+  /**
+   * Creates a LimitOperator from the LIMIT and OFFSET clauses. Both the "LIMIT n OFFSET m" and
+   * "LIMIT m, n" forms are supported; LIMIT ALL/NULL only apply the offset.
+   *
+   * @param child The operator whose output is limited.
+   * @param limit The LIMIT clause, or null if absent.
+   * @param offset The OFFSET clause, or null if absent.
+   * @return The LimitOperator on top of the child.
+   */
+  private Operator buildLimitOperator(Operator child, Limit limit, Offset offset) {
+    long rowCount = Long.MAX_VALUE;
+    long skip = 0;
+    if (limit != null) {
+      Expression limitRows = limit.getRowCount();
+      if (limitRows != null
+          && !(limitRows instanceof AllValue)
+          && !(limitRows instanceof NullValue)) {
+        rowCount = constantValue(limit.getRowCount());
+      }
+      if (limit.getOffset() != null) {
+        skip = constantValue(limit.getOffset());
+      }
+    }
+    if (offset != null && offset.getOffset() != null) {
+      skip = constantValue(offset.getOffset());
+    }
+    return new LimitOperator(child, rowCount, skip);
+  }
+
+  /**
+   * Reads the value of an integer constant used in LIMIT or OFFSET.
+   *
+   * @param expression The constant expression.
+   * @return Its value.
+   */
+  private long constantValue(Expression expression) {
+    if (!(expression instanceof LongValue)) {
+      throw new IllegalArgumentException("LIMIT and OFFSET must be integer constants.");
+    }
+    long value = ((LongValue) expression).getValue();
+    if (value < 0) {
+      throw new IllegalArgumentException("LIMIT and OFFSET must not be negative.");
+    }
+    return value;
+  }
+
   /**
    * Processes a FROM item in the SQL query and creates the appropriate base operator. Only tables
    * are supported as FROM items.
@@ -130,9 +273,9 @@ public class QueryPlanBuilder {
       // Retrieve the columns for the table from the catalog
       ArrayList<Column> tableColumns = dbCatalog.getColumns(tableName);
 
-      // Create aliased columns for the table schema
+      // Create aliased columns for the table schema, keeping only the referenced columns
       ArrayList<Column> aliasedColumns = new ArrayList<>();
-      for (Column col : tableColumns) {
+      for (Column col : prunedColumns(tableAlias, tableColumns)) {
         // Create a new Table object and set the alias
         Table colTable = new Table();
         colTable.setName(tableName);
@@ -143,10 +286,314 @@ public class QueryPlanBuilder {
         aliasedColumns.add(aliasedColumn);
       }
 
-      // Create and return a ScanOperator with the aliased schema
-      return new ScanOperator(aliasedColumns, tableName);
+      // Serve an equality on an indexed column from the index instead of scanning the table
+      Operator indexScan = indexScanFor(tableName, tableAlias, aliasedColumns);
+      if (indexScan != null) {
+        return indexScan;
+      }
+
+      // Create and return a ScanOperator with the aliased (pruned) schema
+      return new ScanOperator(
+          aliasedColumns,
+          tableName,
+          columnRanges.getOrDefault(tableAlias, Map.of()),
+          scanRanges.get(tableAlias),
+          sharedScans);
     } else {
       throw new UnsupportedOperationException("Only table FROM items are supported.");
     }
   }
+
+  /**
+   * Looks for a comparison of an indexed column with a constant among the WHERE clause's
+   * comparisons on a table. The selection above the table still evaluates every conjunct, so the
+   * index only has to produce the rows with the key.
+   *
+   * @param tableName The table.
+   * @param tableAlias The alias (or name) the table is referenced by.
+   * @param aliasedColumns The columns to produce.
+   * @return An IndexScanOperator, or null if no index applies and the table must be scanned.
+   */
+  private Operator indexScanFor(
+      String tableName, String tableAlias, ArrayList<Column> aliasedColumns) {
+    // Indexes hold offsets into the text file, which scan ranges and columnar copies bypass
+    if (scanRanges.containsKey(tableAlias) || dbCatalog.isColumnar(tableName)) {
+      return null;
+    }
+    for (Map.Entry<String, ColumnRange> range :
+        columnRanges.getOrDefault(tableAlias, Map.of()).entrySet()) {
+      HashIndex index = dbCatalog.getHashIndex(tableName, range.getKey());
+      if (index != null && range.getValue().isSingleValue()) {
+        return new IndexScanOperator(
+            aliasedColumns, tableName, index, (int) range.getValue().getLow());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Computes the set of columns referenced by the SELECT list, WHERE clause and ORDER BY clause,
+   * grouped by the alias (or name) of the table they belong to.
+   *
+   * @param plainSelect The query.
+   * @return Referenced column names per table alias, or null if all columns of every table are
+   *     needed (e.g. SELECT * or an unqualified column reference).
+   */
+  private Map<String, Set<String>> collectRequiredColumns(PlainSelect plainSelect) {
+    Map<String, Set<String>> columns = new HashMap<>();
+    boolean[] needsAll = new boolean[1];
+    ExpressionVisitorAdapter collector =
+        new ExpressionVisitorAdapter() {
+          @Override
+          public void visit(Column column) {
+            Table table = column.getTable();
+            if (table == null || table.getName() == null) {
+              needsAll[0] = true;
+            } else {
+              columns
+                  .computeIfAbsent(table.getName(), k -> new HashSet<>())
+                  .add(column.getColumnName());
+            }
+          }
+        };
+
+    for (SelectItem item : plainSelect.getSelectItems()) {
+      if (item instanceof SelectExpressionItem) {
+        ((SelectExpressionItem) item).getExpression().accept(collector);
+      } else {
+        // SELECT * or SELECT T.*
+        return null;
+      }
+    }
+    if (plainSelect.getWhere() != null) {
+      plainSelect.getWhere().accept(collector);
+    }
+    if (plainSelect.getOrderByElements() != null) {
+      for (OrderByElement element : plainSelect.getOrderByElements()) {
+        element.getExpression().accept(collector);
+      }
+    }
+    return needsAll[0] ? null : columns;
+  }
+
+  /**
+   * Restricts a table's columns to the ones the current query references, preserving table order.
+   * At least one column is always kept so that every scanned row still produces a tuple.
+   *
+   * @param tableAlias The alias (or name) the table is referenced by.
+   * @param tableColumns All columns of the table.
+   * @return The columns the scan needs to produce.
+   */
+  private List<Column> prunedColumns(String tableAlias, ArrayList<Column> tableColumns) {
+    if (requiredColumns == null) {
+      return tableColumns;
+    }
+    Set<String> referenced = requiredColumns.getOrDefault(tableAlias, Set.of());
+    List<Column> pruned = new ArrayList<>();
+    for (Column col : tableColumns) {
+      if (referenced.contains(col.getColumnName())) {
+        pruned.add(col);
+      }
+    }
+    if (pruned.isEmpty() && !tableColumns.isEmpty()) {
+      pruned.add(tableColumns.get(0));
+    }
+    return pruned;
+  }
+
+  /**
+   * Returns the alias a FROM item is referenced by, or its table name if it has no alias.
+   *
+   * @param fromItem The FROM item.
+   * @return The alias or table name.
+   */
+  private static String aliasOf(FromItem fromItem) {
+    if (fromItem.getAlias() != null) {
+      return fromItem.getAlias().getName();
+    }
+    if (fromItem instanceof Table) {
+      return ((Table) fromItem).getName();
+    }
+    throw new UnsupportedOperationException("Only table FROM items are supported.");
+  }
+
+  /**
+   * Wraps the base operator of a table in a SelectOperator evaluating the conjuncts that only
+   * reference that table, and removes those conjuncts from the list.
+   *
+   * @param base The scan of the table.
+   * @param alias The alias (or name) the table is referenced by.
+   * @param conjuncts The conjuncts of the WHERE clause not yet placed in the plan.
+   * @return The base operator, filtered if any conjunct applies to it.
+   */
+  private Operator applySelection(Operator base, String alias, List<Expression> conjuncts) {
+    return withSelection(base, takeSelection(alias, conjuncts));
+  }
+
+  /**
+   * Removes the conjuncts that only reference one table from the list.
+   *
+   * @param alias The alias (or name) the table is referenced by.
+   * @param conjuncts The conjuncts of the WHERE clause not yet placed in the plan.
+   * @return The removed conjuncts.
+   */
+  private static List<Expression> takeSelection(String alias, List<Expression> conjuncts) {
+    List<Expression> selection = new ArrayList<>();
+    for (Expression conjunct : new ArrayList<>(conjuncts)) {
+      Set<String> tables = PredicateUtils.referencedTables(conjunct);
+      if (tables != null && tables.size() == 1 && tables.contains(alias)) {
+        selection.add(conjunct);
+        conjuncts.remove(conjunct);
+      }
+    }
+    return selection;
+  }
+
+  /**
+   * Wraps an operator in a SelectOperator evaluating the given conjuncts, if there are any.
+   *
+   * @param base The operator to filter.
+   * @param selection The conjuncts.
+   * @return The filtered operator.
+   */
+  private Operator withSelection(Operator base, List<Expression> selection) {
+    if (selection.isEmpty()) {
+      return base;
+    }
+    return new SelectOperator(base, PredicateUtils.conjoin(selection), tableAliases);
+  }
+
+  /**
+   * Joins the plan built so far with the next table. If the table has a hash index on a column the
+   * join condition equates with a column of the plan, the join may probe that index instead of
+   * reading the table (see {@link IndexNestedLoopJoinOperator}); it decides at runtime, from the
+   * size of its outer input. A join condition that only compares the two sides by inequality is
+   * joined by sorting (see {@link InequalityJoinOperator}).
+   *
+   * @param left The plan built so far.
+   * @param rightScan The scan of the table being joined.
+   * @param right The scan, filtered by the table's selection.
+   * @param rightAlias The alias (or name) the table is referenced by.
+   * @param rightSelection The conjuncts of the table's selection.
+   * @param joinCondition The join condition, possibly null.
+   * @return The join operator.
+   */
+  private Operator buildJoin(
+      Operator left,
+      Operator rightScan,
+      Operator right,
+      String rightAlias,
+      List<Expression> rightSelection,
+      Expression joinCondition) {
+    String tableName = tableAliases.get(rightAlias);
+    if (rightScan instanceof ScanOperator
+        && !scanRanges.containsKey(rightAlias)
+        && !dbCatalog.isColumnar(tableName)) {
+      for (Expression conjunct : PredicateUtils.splitConjuncts(joinCondition)) {
+        if (!(conjunct instanceof EqualsTo)
+            || !(((EqualsTo) conjunct).getLeftExpression() instanceof Column)
+            || !(((EqualsTo) conjunct).getRightExpression() instanceof Column)) {
+          continue;
+        }
+        Column first = (Column) ((EqualsTo) conjunct).getLeftExpression();
+        Column second = (Column) ((EqualsTo) conjunct).getRightExpression();
+        Column inner = rightAlias.equals(tableNameOf(first)) ? first : second;
+        Column outer = inner == first ? second : first;
+        HashIndex index = dbCatalog.getHashIndex(tableName, inner.getColumnName());
+        if (index == null
+            || !rightAlias.equals(tableNameOf(inner))
+            || rightAlias.equals(tableNameOf(outer))) {
+          continue;
+        }
+        IndexScanOperator indexScan =
+            new IndexScanOperator(rightScan.getOutputSchema(), tableName, index, 0);
+        return new IndexNestedLoopJoinOperator(
+            left,
+            right,
+            joinCondition,
+            tableAliases,
+            withSelection(indexScan, rightSelection),
+            indexScan,
+            outer);
+      }
+    }
+    if (InequalityJoinOperator.suits(
+        left.getOutputSchema(), right.getOutputSchema(), joinCondition)) {
+      return new InequalityJoinOperator(left, right, joinCondition, tableAliases);
+    }
+    return new AdaptiveJoinOperator(left, right, joinCondition, tableAliases);
+  }
+
+  private static String tableNameOf(Column column) {
+    return column.getTable() != null ? column.getTable().getName() : null;
+  }
+
+  /**
+   * Derives column value ranges from the conjuncts of the WHERE clause that compare a column with
+   * an integer constant (e.g. S.B &lt;= 200 or 3 &lt; S.A). Other conjuncts are ignored; the
+   * conjuncts are still evaluated by the selections above the scans, so the ranges only need to be
+   * implied by them.
+   *
+   * @param whereExpression The WHERE clause, possibly null.
+   * @return Ranges per table alias and column name.
+   */
+  private Map<String, Map<String, ColumnRange>> collectColumnRanges(Expression whereExpression) {
+    Map<String, Map<String, ColumnRange>> ranges = new HashMap<>();
+    for (Expression conjunct : PredicateUtils.splitConjuncts(whereExpression)) {
+      if (!(conjunct instanceof ComparisonOperator)) {
+        continue;
+      }
+      ComparisonOperator comparison = (ComparisonOperator) conjunct;
+      Expression left = comparison.getLeftExpression();
+      Expression right = comparison.getRightExpression();
+      String operator = comparison.getStringExpression();
+      if (left instanceof LongValue && right instanceof Column) {
+        // Normalize "constant op column" to "column op' constant"
+        Expression swap = left;
+        left = right;
+        right = swap;
+        operator = mirrorComparison(operator);
+      }
+      if (!(left instanceof Column) || !(right instanceof LongValue)) {
+        continue;
+      }
+      Column column = (Column) left;
+      if (column.getTable() == null || column.getTable().getName() == null) {
+        continue;
+      }
+      // Match ExpressionEvaluator, which compares constants truncated to int
+      int value = (int) ((LongValue) right).getValue();
+      ColumnRange range =
+          ranges
+              .computeIfAbsent(column.getTable().getName(), k -> new HashMap<>())
+              .computeIfAbsent(column.getColumnName(), k -> new ColumnRange());
+      switch (operator) {
+        case "=" -> range.restrictEqualTo(value);
+        case "<" -> range.restrictAtMost((long) value - 1);
+        case "<=" -> range.restrictAtMost(value);
+        case ">" -> range.restrictAtLeast((long) value + 1);
+        case ">=" -> range.restrictAtLeast(value);
+        default -> {
+          // != and other comparisons do not bound the range
+        }
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * Returns the comparison that holds when the operands are swapped, e.g. "&lt;" for "&gt;".
+   *
+   * @param operator The comparison operator.
+   * @return The mirrored operator.
+   */
+  private static String mirrorComparison(String operator) {
+    return switch (operator) {
+      case "<" -> ">";
+      case "<=" -> ">=";
+      case ">" -> "<";
+      case ">=" -> "<=";
+      default -> operator;
+    };
+  }
 }
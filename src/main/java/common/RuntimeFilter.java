@@ -0,0 +1,81 @@
+package common;
+
+/**
+ * Filter built by a join from the join-key values of its build (inner) input and pushed into the
+ * probe (outer) side, so that probe tuples whose key cannot match are dropped before they reach the
+ * join. It combines the min/max range of the build keys with a Bloom filter; neither ever rejects a
+ * key that is present on the build side.
+ */
+public class RuntimeFilter {
+  private static final int BITS_PER_KEY = 10;
+  private static final int HASH_FUNCTIONS = 3;
+
+  private final long[] bits;
+  private final int mask;
+  private int min;
+  private int max;
+  private boolean empty;
+
+  /**
+   * Creates a filter over the given build-side keys.
+   *
+   * @param keys join-key values of the build input
+   * @param count number of keys in the array
+   */
+  public RuntimeFilter(int[] keys, int count) {
+    int size = 64;
+    while (size < (long) count * BITS_PER_KEY && size < (1 << 30)) {
+      size <<= 1;
+    }
+    bits = new long[size / 64];
+    mask = size - 1;
+    min = Integer.MAX_VALUE;
+    max = Integer.MIN_VALUE;
+    empty = count == 0;
+    for (int i = 0; i < count; i++) {
+      add(keys[i]);
+    }
+  }
+
+  private void add(int key) {
+    min = Math.min(min, key);
+    max = Math.max(max, key);
+    int h1 = mix(key);
+    int h2 = mix(h1) | 1;
+    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+      int bit = (h1 + i * h2) & mask;
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Checks whether a probe key may have a match on the build side.
+   *
+   * @param key the probe-side join-key value
+   * @return false only if no build tuple has this key
+   */
+  public boolean mightContain(int key) {
+    if (empty || key < min || key > max) {
+      return false;
+    }
+    int h1 = mix(key);
+    int h2 = mix(h1) | 1;
+    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+      int bit = (h1 + i * h2) & mask;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Finalization step of MurmurHash3, spreading every input bit over the whole hash. */
+  private static int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -0,0 +1,247 @@
+package common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import storage.ColumnarTupleReader;
+import storage.TextTupleReader;
+import storage.TupleReader;
+
+/**
+ * Shares the scans of a batch of statements, such as the queries of queries.sql. The batch is
+ * analyzed up front to count the scans of each table its queries will do. The first scan of a table
+ * that is scanned more than once reads it from storage and keeps its rows in memory; the other
+ * scans of the batch read them from there, each applying its own column selection, pushed-down
+ * ranges and runtime filters, and the query's predicates above it. Each table is thus read from
+ * storage once per batch. A table's rows are dropped as soon as the last statement that scans it
+ * has finished.
+ *
+ * <p>Tables whose rows would not fit in what is left of batch.sharedScanMemoryBytes (see {@link
+ * EngineConfig}) are scanned by each query as usual. The budget bounds the rows as held in memory,
+ * which can be much larger than the table's file, so a table that outgrows it while being read is
+ * given up on. A table that changes during the batch, for example through an INSERT, is read again
+ * by its next scan.
+ */
+public class SharedScans {
+  // Scans of each table by the statements of the batch that have not finished yet
+  private final Map<String, Integer> remainingScans;
+  private final Map<String, SharedTable> tables;
+  private long usedBytes;
+
+  // Tables found not to fit: their size on disk, and the memory that was left, at the time
+  private final Map<String, long[]> rejected;
+
+  /**
+   * Rows of a table kept for the scans of the batch.
+   *
+   * @param rows the values of every column, row after row
+   * @param rowCount number of rows
+   * @param width number of columns
+   * @param sizeBytes size of the table on disk when it was read
+   */
+  private record SharedTable(int[] rows, int rowCount, int width, long sizeBytes) {
+    long heapBytes() {
+      return 4L * rows.length;
+    }
+  }
+
+  /**
+   * Prepares to share the scans of a batch.
+   *
+   * @param statements the statements of the batch, in the order they will run
+   */
+  public SharedScans(List<Statement> statements) {
+    this.remainingScans = new HashMap<>();
+    this.tables = new HashMap<>();
+    this.rejected = new HashMap<>();
+    for (Statement statement : statements) {
+      for (String tableName : scannedTables(statement)) {
+        remainingScans.merge(tableName, 1, Integer::sum);
+      }
+    }
+  }
+
+  /**
+   * Lists the tables a statement scans, once per FROM item.
+   *
+   * @param statement the statement
+   * @return names of the scanned tables; empty for statements other than queries
+   */
+  private static List<String> scannedTables(Statement statement) {
+    List<String> tableNames = new ArrayList<>();
+    if (!(statement instanceof Select)
+        || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+      return tableNames;
+    }
+    PlainSelect plainSelect = (PlainSelect) ((Select) statement).getSelectBody();
+    List<FromItem> fromItems = new ArrayList<>();
+    fromItems.add(plainSelect.getFromItem());
+    if (plainSelect.getJoins() != null) {
+      for (Join join : plainSelect.getJoins()) {
+        fromItems.add(join.getRightItem());
+      }
+    }
+    for (FromItem fromItem : fromItems) {
+      if (fromItem instanceof Table) {
+        tableNames.add(((Table) fromItem).getName());
+      }
+    }
+    return tableNames;
+  }
+
+  /**
+   * Opens a reader over the shared rows of a table, reading the table first if this is its first
+   * shared scan.
+   *
+   * @param tableName the table
+   * @param columnIndexes positions of the columns to produce (in increasing order), or null for
+   *     every column
+   * @param width number of columns in each produced tuple
+   * @return the reader, or null if the table is not shared and must be scanned from storage
+   * @throws IOException if the table cannot be read
+   */
+  public synchronized TupleReader openReader(String tableName, int[] columnIndexes, int width)
+      throws IOException {
+    long sizeBytes = DBCatalog.getInstance().getTableSizeBytes(tableName);
+    SharedTable table = tables.get(tableName);
+    if (table != null && table.sizeBytes() != sizeBytes) {
+      drop(tableName);
+      table = null;
+    }
+    if (table == null) {
+      long availableBytes = EngineConfig.getInstance().getSharedScanMemoryBytes() - usedBytes;
+      long[] rejection = rejected.get(tableName);
+      if (remainingScans.getOrDefault(tableName, 0) < 2
+          || (rejection != null && rejection[0] == sizeBytes && rejection[1] >= availableBytes)) {
+        return null;
+      }
+      table = load(tableName, sizeBytes, availableBytes);
+      if (table == null) {
+        rejected.put(tableName, new long[] {sizeBytes, availableBytes});
+        return null;
+      }
+      rejected.remove(tableName);
+      tables.put(tableName, table);
+      usedBytes += table.heapBytes();
+    }
+    return new SharedTableReader(table, columnIndexes, width);
+  }
+
+  /**
+   * Checks whether the rows of a table are currently kept for the batch.
+   *
+   * @param tableName the table
+   * @return true if the next shared scan of the table reads it from memory
+   */
+  public synchronized boolean holdsTable(String tableName) {
+    return tables.containsKey(tableName);
+  }
+
+  /**
+   * Records that a statement of the batch has finished, dropping the tables no remaining statement
+   * scans.
+   *
+   * @param statement the statement
+   */
+  public synchronized void finished(Statement statement) {
+    for (String tableName : scannedTables(statement)) {
+      int remaining = remainingScans.getOrDefault(tableName, 0) - 1;
+      if (remaining > 0) {
+        remainingScans.put(tableName, remaining);
+      } else {
+        remainingScans.remove(tableName);
+        rejected.remove(tableName);
+        drop(tableName);
+      }
+    }
+  }
+
+  private void drop(String tableName) {
+    SharedTable table = tables.remove(tableName);
+    if (table != null) {
+      usedBytes -= table.heapBytes();
+    }
+  }
+
+  /**
+   * Reads every column of a table, from its columnar copy if it has one, giving up once the rows no
+   * longer fit in the given memory.
+   *
+   * @return the rows, or null if they do not fit
+   */
+  private static SharedTable load(String tableName, long sizeBytes, long availableBytes)
+      throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    List<String> columnNames = new ArrayList<>();
+    for (Column column : catalog.getColumns(tableName)) {
+      columnNames.add(column.getColumnName());
+    }
+    int width = columnNames.size();
+    long maxRows = availableBytes / (4L * width);
+    if (maxRows == 0) {
+      return null;
+    }
+    long maxValues = Math.min(maxRows, Integer.MAX_VALUE / width - 1) * width;
+    int[] rows = new int[(int) Math.min(1024L * width, maxValues)];
+    int rowCount = 0;
+    try (TupleReader reader =
+        catalog.isColumnar(tableName)
+            ? new ColumnarTupleReader(catalog.getColumnarDirectoryForTable(tableName), columnNames)
+            : new TextTupleReader(catalog.getFileForTable(tableName), null, width)) {
+      Tuple tuple;
+      while ((tuple = reader.readNextTuple()) != null) {
+        if ((rowCount + 1L) * width > rows.length) {
+          if (rows.length >= maxValues) {
+            return null;
+          }
+          rows = Arrays.copyOf(rows, (int) Math.min(rows.length * 2L, maxValues));
+        }
+        for (int i = 0; i < width; i++) {
+          rows[rowCount * width + i] = tuple.getElementAtIndex(i);
+        }
+        rowCount++;
+      }
+    }
+    return new SharedTable(Arrays.copyOf(rows, rowCount * width), rowCount, width, sizeBytes);
+  }
+
+  /** Produces the requested columns of the shared rows of a table. */
+  private static class SharedTableReader implements TupleReader {
+    private final SharedTable table;
+    private final int[] columnIndexes;
+    private final int width;
+    private int row;
+
+    SharedTableReader(SharedTable table, int[] columnIndexes, int width) {
+      this.table = table;
+      this.columnIndexes = columnIndexes;
+      this.width = width;
+    }
+
+    @Override
+    public Tuple readNextTuple() {
+      if (row == table.rowCount()) {
+        return null;
+      }
+      int offset = row++ * table.width();
+      int[] values = new int[width];
+      for (int i = 0; i < width; i++) {
+        values[i] = table.rows()[offset + (columnIndexes == null ? i : columnIndexes[i])];
+      }
+      return new Tuple(values);
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,204 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.RowConstructor;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.values.ValuesStatement;
+import operator.Operator;
+import storage.ColumnarTableWriter;
+import storage.WriteAheadLog;
+import storage.WriteAheadLog.FileAppend;
+
+/**
+ * Executes INSERT INTO ... VALUES and INSERT INTO ... SELECT statements. The new rows are appended
+ * to the end of the table through the database's {@link WriteAheadLog}, so existing data is never
+ * rewritten: text tables get new lines, and columnar tables get new row groups, each with its own
+ * zone map. All rows of one statement are committed atomically.
+ */
+public class TableInserter {
+
+  /**
+   * Executes an INSERT statement.
+   *
+   * @param insert the statement
+   * @return number of rows inserted
+   * @throws IOException if the rows cannot be logged or appended
+   */
+  public static long execute(Insert insert) throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    String tableName = insert.getTable().getName();
+    ArrayList<Column> tableColumns = catalog.getColumns(tableName);
+    if (tableColumns == null) {
+      throw new IllegalArgumentException("Unknown table " + tableName);
+    }
+    if (catalog.getMaterializedView(tableName) != null) {
+      throw new UnsupportedOperationException("Cannot insert into materialized view " + tableName);
+    }
+    int width = tableColumns.size();
+    int[] positions = resolvePositions(insert.getColumns(), tableColumns);
+
+    List<int[]> rows = collectRows(insert.getSelect());
+    int[] packed = new int[rows.size() * width];
+    for (int r = 0; r < rows.size(); r++) {
+      int[] row = rows.get(r);
+      if (row.length != width) {
+        throw new IllegalArgumentException(
+            "Expected " + width + " values per row, got " + row.length);
+      }
+      for (int c = 0; c < width; c++) {
+        packed[r * width + c] = row[positions[c]];
+      }
+    }
+    if (rows.isEmpty()) {
+      return 0;
+    }
+
+    List<FileAppend> appends = new ArrayList<>();
+    if (catalog.isColumnar(tableName)) {
+      byte[][] columns = ColumnarTableWriter.encodeAppendedRows(packed, rows.size(), width);
+      for (int c = 0; c < width; c++) {
+        appends.add(
+            new FileAppend(
+                ColumnarTableWriter.columnFile(
+                    catalog.getColumnarDirectoryForTable(tableName),
+                    tableColumns.get(c).getColumnName()),
+                columns[c],
+                false));
+      }
+    } else {
+      appends.add(new FileAppend(catalog.getFileForTable(tableName), toLines(packed, width), true));
+    }
+    catalog.getWriteAheadLog().commit(appends);
+    catalog.tableChanged(tableName);
+    return rows.size();
+  }
+
+  /**
+   * Maps each table column to the position of its value in the inserted rows.
+   *
+   * @param columns the statement's column list, or null for table order
+   * @param tableColumns the table's columns
+   * @return for each table column, the index of its value in an inserted row
+   */
+  private static int[] resolvePositions(List<Column> columns, List<Column> tableColumns) {
+    int[] positions = new int[tableColumns.size()];
+    if (columns == null) {
+      for (int c = 0; c < positions.length; c++) {
+        positions[c] = c;
+      }
+      return positions;
+    }
+    if (columns.size() != tableColumns.size()) {
+      throw new IllegalArgumentException("INSERT must give a value for every column");
+    }
+    for (int c = 0; c < tableColumns.size(); c++) {
+      positions[c] = -1;
+      for (int i = 0; i < columns.size(); i++) {
+        if (columns.get(i).getColumnName().equals(tableColumns.get(c).getColumnName())) {
+          positions[c] = i;
+        }
+      }
+      if (positions[c] == -1) {
+        throw new IllegalArgumentException(
+            "INSERT must give a value for column " + tableColumns.get(c).getColumnName());
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * Evaluates the rows to insert: the VALUES list, or the result of the query. A query is run to
+   * completion before anything is appended, so it may read the table being inserted into.
+   *
+   * @param select the VALUES list or query of the statement
+   * @return the rows, in statement column order
+   */
+  private static List<int[]> collectRows(Select select) {
+    List<int[]> rows = new ArrayList<>();
+    SelectBody body = select.getSelectBody();
+    if (body instanceof SetOperationList
+        && ((SetOperationList) body).getSelects().size() == 1
+        && ((SetOperationList) body).getSelects().get(0) instanceof ValuesStatement) {
+      ValuesStatement values = (ValuesStatement) ((SetOperationList) body).getSelects().get(0);
+      for (Expression row : ((ExpressionList) values.getExpressions()).getExpressions()) {
+        rows.add(rowValues(row));
+      }
+    } else if (body instanceof PlainSelect) {
+      try (Operator plan = new QueryPlanBuilder().buildPlan(select)) {
+        plan.open();
+        Tuple tuple;
+        while ((tuple = plan.getNextTuple()) != null) {
+          int[] row = new int[tuple.size()];
+          for (int i = 0; i < row.length; i++) {
+            row[i] = tuple.getElementAtIndex(i);
+          }
+          rows.add(row);
+        }
+      }
+    } else {
+      throw new UnsupportedOperationException(
+          "Only INSERT ... VALUES and ... SELECT are supported.");
+    }
+    return rows;
+  }
+
+  private static int[] rowValues(Expression row) {
+    List<Expression> expressions;
+    if (row instanceof RowConstructor) {
+      expressions = ((RowConstructor) row).getExprList().getExpressions();
+    } else if (row instanceof Parenthesis) {
+      expressions = List.of(((Parenthesis) row).getExpression());
+    } else {
+      expressions = List.of(row);
+    }
+    int[] values = new int[expressions.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = constantValue(expressions.get(i));
+    }
+    return values;
+  }
+
+  private static int constantValue(Expression expression) {
+    if (expression instanceof LongValue) {
+      return (int) ((LongValue) expression).getValue();
+    }
+    if (expression instanceof SignedExpression) {
+      SignedExpression signed = (SignedExpression) expression;
+      int value = constantValue(signed.getExpression());
+      return signed.getSign() == '-' ? -value : value;
+    }
+    throw new IllegalArgumentException("INSERT values must be integer constants: " + expression);
+  }
+
+  /** Formats rows as lines of a text table. */
+  private static byte[] toLines(int[] rows, int width) {
+    ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    StringBuilder line = new StringBuilder();
+    for (int r = 0; r < rows.length / width; r++) {
+      line.setLength(0);
+      for (int c = 0; c < width; c++) {
+        if (c > 0) {
+          line.append(',');
+        }
+        line.append(rows[r * width + c]);
+      }
+      line.append('\n');
+      lines.writeBytes(line.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+    return lines.toByteArray();
+  }
+}
@@ -3,11 +3,12 @@ package common;
 import java.util.ArrayList;
 
 /**
- * Class to encapsulate functionality about a database tuple. A tuple is an ArrayList of integers.
+ * Class to encapsulate functionality about a database tuple. A tuple is an array of ints, so its
+ * values are stored without boxing.
  */
 public class Tuple {
 
-  ArrayList<Integer> tupleArray;
+  private final int[] values;
 
   /**
    * Creates a tuple using string representation of the tuple. Delimiter between the columns is a
@@ -16,9 +17,10 @@ public class Tuple {
    * @param s String representation of the tuple.
    */
   public Tuple(String s) {
-    tupleArray = new ArrayList<Integer>();
-    for (String attribute : s.split(",")) {
-      tupleArray.add(Integer.parseInt(attribute));
+    String[] attributes = s.split(",");
+    values = new int[attributes.length];
+    for (int i = 0; i < attributes.length; i++) {
+      values[i] = Integer.parseInt(attributes[i]);
     }
   }
 
@@ -28,8 +30,20 @@ public class Tuple {
    * @param elements ArrayList with elements of the tuple, in order
    */
   public Tuple(ArrayList<Integer> elements) {
-    tupleArray = new ArrayList<Integer>();
-    tupleArray.addAll(elements);
+    values = new int[elements.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = elements.get(i);
+    }
+  }
+
+  /**
+   * Creates a tuple over an array of values. The tuple takes the array over, so the caller must not
+   * modify it afterwards.
+   *
+   * @param values the elements of the tuple, in order
+   */
+  public Tuple(int[] values) {
+    this.values = values;
   }
 
   /**
@@ -39,7 +53,27 @@ public class Tuple {
    * @return Element at index i in the tuple.
    */
   public int getElementAtIndex(int i) {
-    return tupleArray.get(i);
+    return values[i];
+  }
+
+  /**
+   * Returns the number of elements in the tuple.
+   *
+   * @return number of elements
+   */
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Estimates the heap footprint of a tuple (the tuple and its array of values), for operators that
+   * must keep their buffers within a memory budget.
+   *
+   * @param width number of elements in the tuple
+   * @return approximate size in bytes
+   */
+  public static long estimatedHeapBytes(int width) {
+    return 32 + 4L * width;
   }
 
   /**
@@ -48,7 +82,11 @@ public class Tuple {
    * @return ArrayList containing the elements in the tuple.
    */
   public ArrayList<Integer> getAllElements() {
-    return new ArrayList<Integer>(tupleArray);
+    ArrayList<Integer> elements = new ArrayList<>(values.length);
+    for (int value : values) {
+      elements.add(value);
+    }
+    return elements;
   }
 
   /**
@@ -59,10 +97,10 @@ public class Tuple {
   @Override
   public String toString() {
     StringBuilder stringRepresentation = new StringBuilder();
-    for (int i = 0; i < tupleArray.size() - 1; i++) {
-      stringRepresentation.append(tupleArray.get(i)).append(",");
+    for (int i = 0; i < values.length - 1; i++) {
+      stringRepresentation.append(values[i]).append(",");
     }
-    stringRepresentation.append(tupleArray.get(tupleArray.size() - 1));
+    stringRepresentation.append(values[values.length - 1]);
     return stringRepresentation.toString();
   }
 
@@ -0,0 +1,177 @@
+package compiler;
+
+import common.DBCatalog;
+import common.EngineConfig;
+import common.Tuple;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import operator.Operator;
+import operator.SortOperator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import storage.ColumnarTableWriter;
+import storage.ParallelTextParser;
+
+/**
+ * Bulk loads large text files into tables. The file is parsed on several threads (see {@link
+ * ParallelTextParser}) and written straight into the columnar layout, with its zone maps, replacing
+ * the table's previous contents. The rows can optionally be sorted on a column on the way, which
+ * makes the zone maps of that column selective. Tables that are not in the catalog yet are added to
+ * it.
+ *
+ * <p>Usage: BulkLoader dbDirectory table inputFile [--sort column] [column ...]. The column names
+ * are required for a new table; for an existing table they must match its schema.
+ */
+public class BulkLoader {
+  private static final Logger logger = LogManager.getLogger();
+
+  /**
+   * Loads a text file into a table, replacing its contents.
+   *
+   * @param tableName table to load
+   * @param input text file with one row per line, values separated by commas and/or whitespace
+   * @param columnNames names of the columns of a new table; may be empty for an existing table
+   * @param sortColumn column to sort the rows on, or null to keep the input order
+   * @return number of rows loaded
+   * @throws IOException if the input cannot be read or the table cannot be written
+   */
+  public static long load(String tableName, File input, List<String> columnNames, String sortColumn)
+      throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    ArrayList<Column> existing = catalog.getColumns(tableName);
+    List<String> names = new ArrayList<>(columnNames);
+    if (existing != null) {
+      List<String> existingNames = new ArrayList<>();
+      for (Column column : existing) {
+        existingNames.add(column.getColumnName());
+      }
+      if (!names.isEmpty() && !names.equals(existingNames)) {
+        throw new IllegalArgumentException(
+            "Columns " + names + " do not match the schema of " + tableName);
+      }
+      names = existingNames;
+    } else if (names.isEmpty()) {
+      throw new IllegalArgumentException("Column names are required for new table " + tableName);
+    }
+    if (sortColumn != null && !names.contains(sortColumn)) {
+      throw new IllegalArgumentException("Unknown sort column " + sortColumn);
+    }
+
+    // Write into a scratch directory first so a failed load leaves the table as it was
+    File scratch = new File(catalog.getColumnarDirectoryForTable(tableName).getPath() + ".load");
+    ColumnarTableWriter.deleteDirectory(scratch);
+    long rowCount = 0;
+    int threads = Math.max(1, EngineConfig.getInstance().getLoadThreads());
+    try (ParallelTextParser parser = new ParallelTextParser(input, names.size(), threads);
+        ColumnarTableWriter writer = new ColumnarTableWriter(scratch, names)) {
+      if (sortColumn == null) {
+        ParallelTextParser.Chunk chunk;
+        while ((chunk = parser.nextChunk()) != null) {
+          writer.writeRows(chunk.rows(), chunk.rowCount());
+          rowCount += chunk.rowCount();
+        }
+      } else {
+        ArrayList<Column> schema = new ArrayList<>();
+        for (String name : names) {
+          schema.add(new Column(new Table(null, tableName), name));
+        }
+        OrderByElement orderBy = new OrderByElement();
+        orderBy.setExpression(new Column(new Table(null, tableName), sortColumn));
+        try (Operator sorted =
+            new SortOperator(schema, new ChunkOperator(schema, parser), List.of(orderBy))) {
+          sorted.open();
+          Tuple tuple;
+          while ((tuple = sorted.getNextTuple()) != null) {
+            writer.writeTuple(tuple);
+            rowCount++;
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      ColumnarTableWriter.deleteDirectory(scratch);
+      throw e;
+    }
+
+    if (existing == null) {
+      catalog.addTable(tableName, names);
+    }
+    ColumnarTableWriter.installTable(tableName, scratch);
+    // The text file held the previous contents; keeping it would let the two layouts disagree
+    Files.deleteIfExists(catalog.getFileForTable(tableName).toPath());
+    return rowCount;
+  }
+
+  /** Produces the rows of a parser's chunks as tuples, as input to the sort. */
+  private static class ChunkOperator extends Operator {
+    private final ParallelTextParser parser;
+    private final int width;
+    private ParallelTextParser.Chunk chunk;
+    private int row;
+
+    ChunkOperator(ArrayList<Column> outputSchema, ParallelTextParser parser) {
+      super(outputSchema);
+      this.parser = parser;
+      this.width = outputSchema.size();
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+      try {
+        while (chunk == null || row == chunk.rowCount()) {
+          chunk = parser.nextChunk();
+          row = 0;
+          if (chunk == null) {
+            return null;
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      int offset = row++ * width;
+      return new Tuple(Arrays.copyOfRange(chunk.rows(), offset, offset + width));
+    }
+
+    @Override
+    public void reset() {
+      throw new UnsupportedOperationException("A bulk load input can only be read once");
+    }
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 3) {
+      System.err.println(
+          "Usage: BulkLoader dbDirectory table inputFile [--sort column] [column ...]");
+      return;
+    }
+    DBCatalog.getInstance().setDataDirectory(args[0]);
+    List<String> rest = new ArrayList<>(Arrays.asList(args).subList(3, args.length));
+    String sortColumn = null;
+    int sortFlag = rest.indexOf("--sort");
+    if (sortFlag >= 0 && sortFlag + 1 < rest.size()) {
+      sortColumn = rest.get(sortFlag + 1);
+      rest.subList(sortFlag, sortFlag + 2).clear();
+    }
+    try {
+      long start = System.nanoTime();
+      long rows = load(args[1], new File(args[2]), rest, sortColumn);
+      logger.info(
+          "Loaded "
+              + rows
+              + " rows into "
+              + args[1]
+              + " in "
+              + (System.nanoTime() - start) / 1_000_000
+              + " ms");
+    } catch (Exception e) {
+      logger.error("Could not load " + args[1] + ": " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package compiler;
+
+import common.DBCatalog;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import storage.ColumnarTableWriter;
+
+/**
+ * Command line tool that converts text tables of a database into the columnar layout.
+ *
+ * <p>Usage: ColumnarConverter dbDirectory table [table ...]
+ */
+public class ColumnarConverter {
+  private static final Logger logger = LogManager.getLogger();
+
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println("Usage: ColumnarConverter dbDirectory table [table ...]");
+      return;
+    }
+    DBCatalog.getInstance().setDataDirectory(args[0]);
+    for (int i = 1; i < args.length; i++) {
+      try {
+        ColumnarTableWriter.convertTable(args[i]);
+        logger.info("Converted " + args[i] + " to the columnar layout");
+      } catch (Exception e) {
+        logger.error("Could not convert " + args[i] + ": " + e.getMessage());
+      }
+    }
+  }
+}
@@ -1,16 +1,31 @@
 package compiler;
 
 import common.DBCatalog;
+import common.EngineConfig;
+import common.MaterializedView;
 import common.QueryPlanBuilder;
+import common.SharedScans;
+import common.TableInserter;
 import java.io.File;
-import java.io.PrintStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.Statements;
+import net.sf.jsqlparser.statement.create.index.CreateIndex;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.insert.Insert;
 import operator.Operator;
 import org.apache.logging.log4j.*;
+import storage.AsyncResultWriter;
+import storage.BinaryResultWriter;
+import storage.CsvResultWriter;
+import storage.HashIndex;
+import storage.ResultWriter;
 
 /**
  * Top level harness class; reads queries from an input file one at a time, processes them and sends
@@ -37,11 +52,19 @@ public class Compiler {
     inputDir = args[0];
     outputDir = args[1];
     DBCatalog.getInstance().setDataDirectory(inputDir + "/db");
+    EngineConfig.getInstance().loadProperties(new File(inputDir + "/engine.properties"));
     try {
       String str = Files.readString(Paths.get(inputDir + "/queries.sql"));
       Statements statements = CCJSqlParserUtil.parseStatements(str);
       QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder();
 
+      // Queries reading the same tables share one scan of each, if enabled
+      SharedScans sharedScans = null;
+      if (EngineConfig.getInstance().isSharedScans()) {
+        sharedScans = new SharedScans(statements.getStatements());
+        queryPlanBuilder.setSharedScans(sharedScans);
+      }
+
       if (outputToFiles) {
         for (File file : (new File(outputDir).listFiles())) file.delete(); // clean output directory
       }
@@ -52,17 +75,37 @@ public class Compiler {
         logger.info("Processing query: " + statement);
 
         try {
-          Operator plan = queryPlanBuilder.buildPlan(statement);
-
-          if (outputToFiles) {
-            File outfile = new File(outputDir + "/query" + counter);
-            plan.dump(new PrintStream(outfile));
-          } else {
-            plan.dump(System.out);
+          if (statement instanceof CreateView) {
+            MaterializedView.create((CreateView) statement);
+            ++counter;
+            continue;
+          }
+          if (statement instanceof CreateIndex) {
+            HashIndex.create((CreateIndex) statement);
+            ++counter;
+            continue;
+          }
+          if (statement instanceof Insert) {
+            long rows = TableInserter.execute((Insert) statement);
+            logger.info("Inserted " + rows + " rows");
+            ++counter;
+            continue;
+          }
+          try (Operator plan = queryPlanBuilder.buildPlan(statement);
+              ResultWriter resultWriter = openResultWriter(counter)) {
+            plan.open();
+            if (EngineConfig.getInstance().isPushBasedExecution()) {
+              plan.dumpPushBased(resultWriter);
+            } else {
+              plan.dump(resultWriter);
+            }
           }
         } catch (Exception e) {
           logger.error(e.getMessage());
         }
+        if (sharedScans != null) {
+          sharedScans.finished(statement);
+        }
 
         ++counter;
       }
@@ -71,4 +114,41 @@ public class Compiler {
       logger.error(e.getMessage());
     }
   }
+
+  /**
+   * Opens the result writer for a query, in the format configured in {@link EngineConfig}. Closing
+   * the writer closes the query's output file, but never System.out.
+   *
+   * @param queryNumber number of the query, used to name its output file
+   * @return the writer
+   */
+  private static ResultWriter openResultWriter(int queryNumber) throws IOException {
+    OutputStream out;
+    if (outputToFiles) {
+      out = new FileOutputStream(outputDir + "/query" + queryNumber);
+    } else {
+      out =
+          new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+              flush();
+            }
+          };
+    }
+
+    EngineConfig config = EngineConfig.getInstance();
+    ResultWriter resultWriter =
+        config.getOutputFormat().equalsIgnoreCase("binary")
+            ? new BinaryResultWriter(out)
+            : new CsvResultWriter(out);
+    if (config.isAsyncOutput()) {
+      resultWriter = new AsyncResultWriter(resultWriter, config.getAsyncOutputDepth());
+    }
+    return resultWriter;
+  }
 }
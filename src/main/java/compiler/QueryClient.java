@@ -0,0 +1,137 @@
+package compiler;
+
+import common.PlanCache;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Client for a {@link QueryServer}. Sends statements over one connection and reads back their
+ * result rows.
+ *
+ * <p>Usage: QueryClient (host:port | --socket path) [sqlFile]. Statements separated by semicolons
+ * are read from the file, or from standard input, and their results are printed to standard output.
+ */
+public class QueryClient implements Closeable {
+  private final SocketChannel channel;
+  private final BufferedReader in;
+  private final Writer out;
+
+  /**
+   * Connects to a server.
+   *
+   * @param address the server's TCP or Unix domain socket address
+   * @throws IOException if the connection fails
+   */
+  public QueryClient(SocketAddress address) throws IOException {
+    if (address instanceof UnixDomainSocketAddress) {
+      channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+    } else {
+      channel = SocketChannel.open();
+    }
+    channel.connect(address);
+    in =
+        new BufferedReader(
+            new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Runs a statement, passing each result row to a consumer as it arrives.
+   *
+   * @param sql the statement
+   * @param rows consumer of the result rows, as CSV lines
+   * @throws IOException if the connection fails, or the server reports an error
+   */
+  public void query(String sql, Consumer<String> rows) throws IOException {
+    out.write(PlanCache.normalize(sql) + "\n");
+    out.flush();
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.equals("OK")) {
+        return;
+      }
+      if (line.startsWith("ERROR")) {
+        throw new IOException(line.substring("ERROR".length()).trim());
+      }
+      rows.accept(line);
+    }
+    throw new IOException("Connection closed by server");
+  }
+
+  /**
+   * Runs a statement.
+   *
+   * @param sql the statement
+   * @return the result rows, as CSV lines
+   * @throws IOException if the connection fails, or the server reports an error
+   */
+  public List<String> query(String sql) throws IOException {
+    List<String> rows = new ArrayList<>();
+    query(sql, rows::add);
+    return rows;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: QueryClient (host:port | --socket path) [sqlFile]");
+      System.exit(2);
+    }
+    SocketAddress address;
+    int next;
+    if (args[0].equals("--socket") && args.length >= 2) {
+      address = UnixDomainSocketAddress.of(Path.of(args[1]));
+      next = 2;
+    } else {
+      int colon = args[0].lastIndexOf(':');
+      address =
+          colon < 0
+              ? new InetSocketAddress(args[0], QueryServer.DEFAULT_PORT)
+              : new InetSocketAddress(
+                  args[0].substring(0, colon), Integer.parseInt(args[0].substring(colon + 1)));
+      next = 1;
+    }
+    String script =
+        args.length > next
+            ? Files.readString(Path.of(args[next]))
+            : new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
+
+    boolean failed = false;
+    try (QueryClient client = new QueryClient(address)) {
+      for (String statement : script.split(";")) {
+        if (statement.isBlank()) {
+          continue;
+        }
+        try {
+          client.query(statement, System.out::println);
+        } catch (IOException e) {
+          System.err.println(
+              "Error in \"" + PlanCache.normalize(statement) + "\": " + e.getMessage());
+          failed = true;
+        }
+      }
+    }
+    System.out.flush();
+    System.exit(failed ? 1 : 0);
+  }
+}
@@ -0,0 +1,246 @@
+package compiler;
+
+import common.DBCatalog;
+import common.EngineConfig;
+import common.MaterializedView;
+import common.PlanCache;
+import common.PreparedQuery;
+import common.TableInserter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.create.index.CreateIndex;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.insert.Insert;
+import operator.Operator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import storage.CsvResultWriter;
+import storage.HashIndex;
+import storage.ResultWriter;
+
+/**
+ * Long-running query server. It loads the catalog and engine settings once and keeps them, the plan
+ * cache and the JIT-compiled engine warm across queries, so that short queries do not pay for JVM
+ * startup. Clients connect over loopback TCP or a Unix domain socket; see {@link QueryClient}.
+ *
+ * <p>Protocol: the client sends one SQL statement per line. For each statement the server streams
+ * back the result tuples as CSV lines, followed by a status line: "OK", or "ERROR " and a message.
+ * CREATE MATERIALIZED VIEW, CREATE INDEX and INSERT statements only get the status line. Each
+ * connection is served by its own virtual thread; statements on one connection run in order.
+ *
+ * <p>Usage: QueryServer inputDir [port | --socket path]. The input directory is laid out as for
+ * {@link Compiler}; the default is TCP port 5433 on the loopback address.
+ */
+public class QueryServer implements Closeable {
+  private static final Logger logger = LogManager.getLogger();
+
+  public static final int DEFAULT_PORT = 5433;
+
+  private final ServerSocketChannel serverChannel;
+  private final PlanCache planCache;
+
+  /**
+   * Opens the server's listening socket. The catalog must already be set up.
+   *
+   * @param address loopback TCP address, or Unix domain socket address
+   * @throws IOException if the socket cannot be bound
+   */
+  public QueryServer(SocketAddress address) throws IOException {
+    if (address instanceof UnixDomainSocketAddress) {
+      serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    } else {
+      serverChannel = ServerSocketChannel.open();
+    }
+    serverChannel.bind(address);
+    planCache = new PlanCache();
+  }
+
+  /**
+   * Gets the address the server listens on, e.g. to find the port picked for port 0.
+   *
+   * @return the bound address
+   * @throws IOException if the address cannot be read
+   */
+  public SocketAddress getAddress() throws IOException {
+    return serverChannel.getLocalAddress();
+  }
+
+  /** Accepts connections until the server is closed, serving each on a virtual thread. */
+  public void serve() {
+    while (serverChannel.isOpen()) {
+      try {
+        SocketChannel connection = serverChannel.accept();
+        Thread.ofVirtual().name("query-connection").start(() -> serveConnection(connection));
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        logger.error(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Runs the statements sent over one connection until the client closes it.
+   *
+   * @param connection the client connection
+   */
+  private void serveConnection(SocketChannel connection) {
+    try (connection;
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(
+                    Channels.newInputStream(connection), StandardCharsets.UTF_8));
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(connection))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        String status = runStatement(line, out);
+        out.write((status + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+      }
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+  }
+
+  /**
+   * Runs one statement, streaming its result tuples to the client.
+   *
+   * @param sql the statement
+   * @param out stream to the client; left open
+   * @return the status line
+   */
+  private String runStatement(String sql, OutputStream out) throws IOException {
+    logger.info("Processing query: " + sql);
+    if (sql.regionMatches(true, 0, "CREATE", 0, "CREATE".length())
+        || sql.regionMatches(true, 0, "INSERT", 0, "INSERT".length())) {
+      return runUpdate(sql);
+    }
+    PreparedQuery query;
+    try {
+      query = planCache.prepare(sql);
+    } catch (Exception e) {
+      return errorStatus(e);
+    }
+    // The cached plan of a query can only run once at a time
+    ReentrantLock executionLock = query.getExecutionLock();
+    executionLock.lock();
+    try (Operator plan = query.execute();
+        ResultWriter resultWriter = new CsvResultWriter(nonClosing(out))) {
+      if (EngineConfig.getInstance().isPushBasedExecution()) {
+        plan.dumpPushBased(resultWriter);
+      } else {
+        plan.dump(resultWriter);
+      }
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      return errorStatus(e);
+    } finally {
+      executionLock.unlock();
+    }
+    return "OK";
+  }
+
+  /**
+   * Runs a statement that produces no tuples: CREATE MATERIALIZED VIEW, CREATE INDEX or INSERT.
+   * These are not cached, since each one is only run once.
+   *
+   * @param sql the statement
+   * @return the status line
+   */
+  private static String runUpdate(String sql) {
+    try {
+      Statement statement = CCJSqlParserUtil.parse(sql);
+      if (statement instanceof CreateView) {
+        MaterializedView.create((CreateView) statement);
+      } else if (statement instanceof CreateIndex) {
+        HashIndex.create((CreateIndex) statement);
+      } else if (statement instanceof Insert) {
+        TableInserter.execute((Insert) statement);
+      } else {
+        return "ERROR Only CREATE MATERIALIZED VIEW, CREATE INDEX and INSERT are supported.";
+      }
+      return "OK";
+    } catch (Exception e) {
+      return errorStatus(e);
+    }
+  }
+
+  private static String errorStatus(Exception e) {
+    String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    return "ERROR " + message.replaceAll("\\s+", " ");
+  }
+
+  /** Wraps the connection's stream so that closing a result writer only flushes it. */
+  private static OutputStream nonClosing(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        this.out.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    };
+  }
+
+  /** Stops accepting connections. */
+  @Override
+  public void close() throws IOException {
+    SocketAddress address = serverChannel.getLocalAddress();
+    serverChannel.close();
+    if (address instanceof UnixDomainSocketAddress) {
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+    }
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.err.println("Usage: QueryServer inputDir [port | --socket path]");
+      return;
+    }
+    String inputDir = args[0];
+    DBCatalog.getInstance().setDataDirectory(inputDir + "/db");
+    EngineConfig.getInstance().loadProperties(new File(inputDir + "/engine.properties"));
+
+    SocketAddress address;
+    if (args.length >= 3 && args[1].equals("--socket")) {
+      address = UnixDomainSocketAddress.of(Path.of(args[2]));
+    } else {
+      int port = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+      address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+    try (QueryServer server = new QueryServer(address)) {
+      logger.info("Listening on " + server.getAddress());
+      server.serve();
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,604 @@
+package operator;
+
+import common.EngineConfig;
+import common.ExpressionEvaluator;
+import common.MemoryManager;
+import common.Tuple;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import net.sf.jsqlparser.expression.Expression;
+import storage.SpillFile;
+import storage.TupleReader;
+
+/**
+ * A join that picks its algorithm at runtime instead of trusting estimates. It first buffers the
+ * right (inner) input, and once it has seen how many tuples that input really has, it runs one of:
+ *
+ * <ul>
+ *   <li>an in-memory nested loop, for small inner inputs or joins without equality conditions;
+ *   <li>an in-memory hash join on the equi-join keys, when the inner input fits in memory;
+ *   <li>a parallel hash join, when the inner input fits in memory but is large: worker threads
+ *       build a radix-partitioned hash table, then probe it with batches of left tuples;
+ *   <li>a partitioned hash join, when it does not: both inputs are hash-partitioned into spill
+ *       files and each pair of partitions is joined in memory;
+ *   <li>the rescanning nested loop of {@link JoinOperator}, when the inner input does not fit in
+ *       memory and there is no equality condition to partition on.
+ * </ul>
+ *
+ * <p>{@link IndexNestedLoopJoinOperator} adds an index nested loop join to these, for inner tables
+ * with an index on the join column, and {@link InequalityJoinOperator} a sort-based join for
+ * conditions that compare the inputs by inequality only.
+ *
+ * <p>The in-memory algorithms produce tuples in the same order as the nested loop join. The
+ * partitioned hash join produces them partition by partition.
+ */
+public class AdaptiveJoinOperator extends JoinOperator {
+  /** The algorithms the join can choose from. */
+  public enum Strategy {
+    NESTED_LOOP,
+    HASH,
+    PARALLEL_HASH,
+    PARTITIONED_HASH,
+    RESCAN_NESTED_LOOP,
+    INDEX_NESTED_LOOP,
+    INEQUALITY
+  }
+
+  // Number of partitions of a spilling join; a power of two
+  private static final int SPILL_PARTITIONS = 32;
+  private static final int PARTITION_SHIFT = 32 - Integer.numberOfTrailingZeros(SPILL_PARTITIONS);
+
+  // Number of left tuples a worker of the parallel hash join probes at a time
+  private static final int PROBE_BATCH_SIZE = 1024;
+
+  private final int rightWidth;
+  private final int leftWidth;
+
+  // The chosen algorithm, or null before the right input has been buffered
+  private Strategy strategy;
+  private boolean closed;
+
+  // Memory granted for the buffered right input, held until the join releases its buffers
+  private MemoryManager.Grant memory;
+
+  // Buffered right input (nested loop) or its hash table on the equi-join keys (hash joins)
+  private List<Tuple> rightTuples;
+  private Map<Integer, List<Tuple>> hashTable;
+
+  // Spill files of the partitioned hash join, and the partition being joined
+  private SpillFile[] rightPartitions;
+  private SpillFile[] leftPartitions;
+  private int currentPartition;
+  private TupleReader probeReader;
+
+  // Parallel hash join: its workers, its table, and the probe batches in flight, in left order
+  private ExecutorService workers;
+  private PartitionedHashTable partitionedTable;
+  private ArrayDeque<Future<List<Tuple>>> probeBatches;
+  private boolean leftExhausted;
+  private List<Tuple> fillingBatch;
+  private List<Tuple> batchOutput;
+  private int batchOutputIndex;
+
+  // Current left tuple and the right tuples it may join with
+  private Tuple leftTuple;
+  private List<Tuple> candidates;
+  private int candidateIndex;
+
+  /**
+   * Constructs an AdaptiveJoinOperator.
+   *
+   * @param leftChild The left child operator for the join.
+   * @param rightChild The right child operator for the join.
+   * @param joinCondition The join condition (can be null for Cartesian product).
+   * @param tableAliases A map of table aliases to their actual names.
+   */
+  public AdaptiveJoinOperator(
+      Operator leftChild,
+      Operator rightChild,
+      Expression joinCondition,
+      Map<String, String> tableAliases) {
+    super(leftChild, rightChild, joinCondition, tableAliases);
+    this.leftWidth = leftChild.getOutputSchema().size();
+    this.rightWidth = rightChild.getOutputSchema().size();
+    this.candidates = List.of();
+  }
+
+  /**
+   * Returns the algorithm chosen for the join.
+   *
+   * @return the strategy, or null if the join has not started yet
+   */
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * Buffers the right input and chooses the join algorithm from its actual size. The right input is
+   * buffered for as long as the memory granted for it can grow, up to the join memory budget; past
+   * that point the join either spills it to partitions or, without equi-join keys, gives up on
+   * buffering.
+   */
+  private void build() {
+    EngineConfig config = EngineConfig.getInstance();
+    memory = MemoryManager.getInstance().acquire(config.getJoinMemoryBytes());
+    long tupleBytes = Tuple.estimatedHeapBytes(rightWidth);
+    rightTuples = new ArrayList<>();
+    rightPartitions = null;
+    boolean complete =
+        rightChild.produce(
+            tuple -> {
+              if (rightPartitions != null) {
+                spill(rightPartitions, tuple, rightKeyIndexes);
+                return true;
+              }
+              rightTuples.add(tuple);
+              long bufferedBytes = rightTuples.size() * tupleBytes;
+              if (bufferedBytes <= memory.getBytes()
+                  || memory.grow(bufferedBytes)
+                  || rightTuples.size() == 1) {
+                return true;
+              }
+              if (leftKeys.isEmpty()) {
+                return false;
+              }
+              rightPartitions = createPartitions(rightWidth);
+              for (Tuple buffered : rightTuples) {
+                spill(rightPartitions, buffered, rightKeyIndexes);
+              }
+              rightTuples = null;
+              return true;
+            });
+
+    if (!complete) {
+      strategy = Strategy.RESCAN_NESTED_LOOP;
+      rightTuples = null;
+      memory.close();
+      memory = null;
+      rightChild.reset();
+      return;
+    }
+    if (rightPartitions != null) {
+      strategy = Strategy.PARTITIONED_HASH;
+      if (!runtimeFiltersBuilt) {
+        runtimeFiltersBuilt = true;
+        pushRuntimeFilters(new TupleSupplier(rightPartitions));
+      }
+      leftPartitions = createPartitions(leftWidth);
+      leftChild.produce(
+          tuple -> {
+            spill(leftPartitions, tuple, leftKeyIndexes);
+            return true;
+          });
+      currentPartition = -1;
+      return;
+    }
+
+    memory.setUsedBytes(rightTuples.size() * Tuple.estimatedHeapBytes(rightWidth));
+    if (!runtimeFiltersBuilt) {
+      runtimeFiltersBuilt = true;
+      pushRuntimeFilters(new TupleSupplier(rightTuples));
+    }
+    if (leftKeys.isEmpty() || rightTuples.size() <= config.getJoinNestedLoopMaxTuples()) {
+      strategy = Strategy.NESTED_LOOP;
+    } else if (config.getJoinThreads() > 1
+        && rightTuples.size() >= config.getJoinParallelMinTuples()) {
+      strategy = Strategy.PARALLEL_HASH;
+      int threads = config.getJoinThreads();
+      workers =
+          Executors.newFixedThreadPool(
+              threads, Thread.ofPlatform().daemon().name("join-worker-", 0).factory());
+      int partitionBits = 32 - Integer.numberOfLeadingZeros(threads * 4 - 1);
+      partitionedTable =
+          new PartitionedHashTable(rightTuples, rightKeyIndexes, partitionBits, workers, threads);
+      rightTuples = null;
+      probeBatches = new ArrayDeque<>();
+      leftExhausted = false;
+    } else {
+      strategy = Strategy.HASH;
+      hashTable = buildHashTable(rightTuples);
+      rightTuples = null;
+    }
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
+    if (strategy == null) {
+      build();
+    }
+    if (strategy == Strategy.RESCAN_NESTED_LOOP) {
+      return super.getNextTuple();
+    }
+    if (strategy == Strategy.PARALLEL_HASH) {
+      Tuple tuple = nextParallelTuple();
+      if (tuple == null) {
+        finish();
+      }
+      return tuple;
+    }
+    while (true) {
+      while (candidateIndex < candidates.size()) {
+        Tuple joinedTuple = joinTuples(leftTuple, candidates.get(candidateIndex++));
+        if (joinCondition == null || evaluateJoinCondition(joinedTuple)) {
+          return joinedTuple;
+        }
+      }
+      leftTuple = nextProbeTuple();
+      if (leftTuple == null) {
+        finish();
+        return null;
+      }
+      candidates = candidatesFor(leftTuple);
+      candidateIndex = 0;
+    }
+  }
+
+  /** Fuses the probe into the left child's pipeline when the join runs in memory. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    if (strategy == null) {
+      build();
+    }
+    if (strategy == Strategy.NESTED_LOOP || strategy == Strategy.HASH) {
+      boolean complete =
+          leftChild.produce(
+              left -> {
+                for (Tuple right : candidatesFor(left)) {
+                  Tuple joinedTuple = joinTuples(left, right);
+                  if ((joinCondition == null || evaluateJoinCondition(joinedTuple))
+                      && !consumer.accept(joinedTuple)) {
+                    return false;
+                  }
+                }
+                return true;
+              });
+      if (complete) {
+        finish();
+      }
+      return complete;
+    }
+    if (strategy == Strategy.PARALLEL_HASH) {
+      boolean complete = produceParallel(consumer);
+      if (complete) {
+        finish();
+      }
+      return complete;
+    }
+    Tuple tuple;
+    while ((tuple = getNextTuple()) != null) {
+      if (!consumer.accept(tuple)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the next joined tuple of the parallel hash join. Batches of left tuples are read on the
+   * calling thread and probed by the workers, with up to two batches per worker in flight; the
+   * queue of pending batches is consumed in submission order, so the output keeps the nested loop
+   * order.
+   */
+  private Tuple nextParallelTuple() {
+    while (true) {
+      if (batchOutput != null && batchOutputIndex < batchOutput.size()) {
+        return batchOutput.get(batchOutputIndex++);
+      }
+      while (!leftExhausted && probeBatches.size() < maxBatchesInFlight()) {
+        List<Tuple> batch = new ArrayList<>(PROBE_BATCH_SIZE);
+        Tuple tuple;
+        while (batch.size() < PROBE_BATCH_SIZE && (tuple = leftChild.getNextTuple()) != null) {
+          batch.add(tuple);
+        }
+        leftExhausted = batch.size() < PROBE_BATCH_SIZE;
+        if (!batch.isEmpty()) {
+          submitProbe(batch);
+        }
+      }
+      if (probeBatches.isEmpty()) {
+        return null;
+      }
+      batchOutput = PartitionedHashTable.await(probeBatches.poll());
+      batchOutputIndex = 0;
+    }
+  }
+
+  /**
+   * Push-based parallel hash join: the left child's pipeline fills probe batches, and the results
+   * of finished batches are pushed to the consumer in submission order.
+   */
+  private boolean produceParallel(TupleConsumer consumer) {
+    fillingBatch = new ArrayList<>(PROBE_BATCH_SIZE);
+    boolean complete =
+        leftChild.produce(
+            tuple -> {
+              fillingBatch.add(tuple);
+              if (fillingBatch.size() < PROBE_BATCH_SIZE) {
+                return true;
+              }
+              submitProbe(fillingBatch);
+              fillingBatch = new ArrayList<>(PROBE_BATCH_SIZE);
+              while (probeBatches.size() >= maxBatchesInFlight()) {
+                if (!pushBatch(probeBatches.poll(), consumer)) {
+                  return false;
+                }
+              }
+              return true;
+            });
+    if (!complete) {
+      return false;
+    }
+    if (!fillingBatch.isEmpty()) {
+      submitProbe(fillingBatch);
+    }
+    fillingBatch = null;
+    while (!probeBatches.isEmpty()) {
+      if (!pushBatch(probeBatches.poll(), consumer)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean pushBatch(Future<List<Tuple>> probeBatch, TupleConsumer consumer) {
+    for (Tuple tuple : PartitionedHashTable.await(probeBatch)) {
+      if (!consumer.accept(tuple)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int maxBatchesInFlight() {
+    return 2 * EngineConfig.getInstance().getJoinThreads();
+  }
+
+  /**
+   * Hands a batch of left tuples to a worker, which joins them with the partitioned table. Each
+   * task evaluates the join condition with its own evaluator, as evaluators are not thread-safe.
+   */
+  private void submitProbe(List<Tuple> batch) {
+    PartitionedHashTable table = partitionedTable;
+    probeBatches.add(
+        workers.submit(
+            () -> {
+              ExpressionEvaluator evaluator = new ExpressionEvaluator(tableAliases);
+              List<Tuple> output = new ArrayList<>();
+              for (Tuple left : batch) {
+                for (Tuple right : table.get(left, leftKeyIndexes)) {
+                  Tuple joinedTuple = joinTuples(left, right);
+                  if (joinCondition == null
+                      || evaluator.evaluate(joinCondition, joinedTuple, outputSchema)) {
+                    output.add(joinedTuple);
+                  }
+                }
+              }
+              return output;
+            }));
+  }
+
+  /**
+   * Returns the next left tuple to probe with: from the left child for in-memory joins, or from the
+   * left spill files for the partitioned hash join, loading each partition's hash table in turn.
+   */
+  private Tuple nextProbeTuple() {
+    if (strategy != Strategy.PARTITIONED_HASH) {
+      return leftChild.getNextTuple();
+    }
+    try {
+      while (true) {
+        if (probeReader != null) {
+          Tuple tuple = probeReader.readNextTuple();
+          if (tuple != null) {
+            return tuple;
+          }
+          probeReader.close();
+          probeReader = null;
+        }
+        if (++currentPartition >= SPILL_PARTITIONS) {
+          hashTable = null;
+          return null;
+        }
+        if (leftPartitions[currentPartition].getTupleCount() == 0
+            || rightPartitions[currentPartition].getTupleCount() == 0) {
+          continue;
+        }
+        // A partition that is still too large for the budget is loaded anyway
+        List<Tuple> partition = new ArrayList<>();
+        TupleSupplier supplier = new TupleSupplier(rightPartitions[currentPartition]);
+        Tuple tuple;
+        while ((tuple = supplier.get()) != null) {
+          partition.add(tuple);
+        }
+        hashTable = buildHashTable(partition);
+        probeReader = leftPartitions[currentPartition].openReader();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private List<Tuple> candidatesFor(Tuple left) {
+    if (strategy == Strategy.NESTED_LOOP) {
+      return rightTuples;
+    }
+    return hashTable.getOrDefault(keyHash(left, leftKeyIndexes), List.of());
+  }
+
+  /**
+   * Builds a hash table from right tuples, keeping the tuples of each bucket in input order. The
+   * buckets are keyed by a hash of all equi-join keys; the join condition is still evaluated on
+   * every candidate, which weeds out hash collisions.
+   */
+  private Map<Integer, List<Tuple>> buildHashTable(List<Tuple> tuples) {
+    Map<Integer, List<Tuple>> table = new HashMap<>();
+    for (Tuple tuple : tuples) {
+      table.computeIfAbsent(keyHash(tuple, rightKeyIndexes), k -> new ArrayList<>()).add(tuple);
+    }
+    return table;
+  }
+
+  static int keyHash(Tuple tuple, int[] keyIndexes) {
+    int hash = 0;
+    for (int index : keyIndexes) {
+      hash = hash * 31 + tuple.getElementAtIndex(index);
+    }
+    return hash;
+  }
+
+  private SpillFile[] createPartitions(int width) {
+    File directory = new File(EngineConfig.getInstance().getTempDirectory());
+    SpillFile[] partitions = new SpillFile[SPILL_PARTITIONS];
+    try {
+      for (int i = 0; i < SPILL_PARTITIONS; i++) {
+        partitions[i] = new SpillFile(directory, width);
+      }
+    } catch (IOException e) {
+      deletePartitions(partitions);
+      throw new UncheckedIOException(e);
+    }
+    return partitions;
+  }
+
+  private static void spill(SpillFile[] partitions, Tuple tuple, int[] keyIndexes) {
+    // Partitions use the high bits of a scrambled key hash; the hash tables use all of it
+    int partition = (keyHash(tuple, keyIndexes) * 0x9E3779B9) >>> PARTITION_SHIFT;
+    try {
+      partitions[partition].writeTuple(tuple);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void deletePartitions(SpillFile[] partitions) {
+    if (partitions == null) {
+      return;
+    }
+    for (SpillFile partition : partitions) {
+      if (partition != null) {
+        try {
+          partition.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the buffers and memory of a join that has produced every tuple, without waiting for it to
+   * be closed. It produces nothing more until it is reset.
+   */
+  private void finish() {
+    release();
+    closed = true;
+  }
+
+  /** Drops the buffered input and spill files; the next call rebuilds the join. */
+  private void release() {
+    if (probeReader != null) {
+      try {
+        probeReader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      probeReader = null;
+    }
+    deletePartitions(rightPartitions);
+    deletePartitions(leftPartitions);
+    rightPartitions = null;
+    leftPartitions = null;
+    if (workers != null) {
+      workers.shutdownNow();
+      workers = null;
+    }
+    partitionedTable = null;
+    probeBatches = null;
+    fillingBatch = null;
+    batchOutput = null;
+    batchOutputIndex = 0;
+    rightTuples = null;
+    hashTable = null;
+    leftTuple = null;
+    candidates = List.of();
+    candidateIndex = 0;
+    if (memory != null) {
+      memory.close();
+      memory = null;
+    }
+  }
+
+  @Override
+  public void reset() {
+    release();
+    strategy = null;
+    closed = false;
+    super.reset();
+  }
+
+  @Override
+  public void close() {
+    release();
+    closed = true;
+    super.close();
+  }
+
+  /** Supplies the tuples of a list or of a series of spill files, then null. */
+  private static class TupleSupplier implements Supplier<Tuple> {
+    private final List<Tuple> tuples;
+    private final SpillFile[] files;
+    private int position;
+    private TupleReader reader;
+
+    TupleSupplier(List<Tuple> tuples) {
+      this.tuples = tuples;
+      this.files = null;
+    }
+
+    TupleSupplier(SpillFile... files) {
+      this.tuples = null;
+      this.files = files;
+    }
+
+    @Override
+    public Tuple get() {
+      if (tuples != null) {
+        return position < tuples.size() ? tuples.get(position++) : null;
+      }
+      try {
+        while (true) {
+          if (reader != null) {
+            Tuple tuple = reader.readNextTuple();
+            if (tuple != null) {
+              return tuple;
+            }
+            reader.close();
+            reader = null;
+          }
+          if (position == files.length) {
+            return null;
+          }
+          reader = files[position++].openReader();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -10,6 +10,9 @@ public class DuplicateElementEliminationOperator extends Operator {
   private Operator childOperator;
   private Tuple lastTuple;
 
+  // Whether the operator was closed and has not been reset since
+  private boolean closed;
+
   /**
    * Constructor for DuplicateElementEliminationOperator.
    *
@@ -28,6 +31,24 @@ public class DuplicateElementEliminationOperator extends Operator {
   public void reset() {
     childOperator.reset();
     lastTuple = null;
+    closed = false;
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    childOperator.clearRuntimeFilters();
+  }
+
+  @Override
+  public void open() {
+    childOperator.open();
+  }
+
+  /** Closes the child operator. */
+  @Override
+  public void close() {
+    childOperator.close();
+    closed = true;
   }
 
   /**
@@ -37,6 +58,9 @@ public class DuplicateElementEliminationOperator extends Operator {
    */
   @Override
   public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
     Tuple currentTuple;
     while ((currentTuple = childOperator.getNextTuple()) != null) {
       if (lastTuple == null || !currentTuple.equals(lastTuple)) {
@@ -47,6 +71,22 @@ public class DuplicateElementEliminationOperator extends Operator {
     return null;
   }
 
+  /** Fuses duplicate elimination into the child's pipeline. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    return childOperator.produce(
+        currentTuple -> {
+          if (lastTuple != null && currentTuple.equals(lastTuple)) {
+            return true;
+          }
+          lastTuple = currentTuple;
+          return consumer.accept(currentTuple);
+        });
+  }
+
   /**
    * Gets all unique tuples from the child operator.
    *
@@ -0,0 +1,343 @@
+package operator;
+
+import common.EngineConfig;
+import common.MemoryManager;
+import common.Tuple;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import storage.SpillFile;
+import storage.TupleReader;
+
+/**
+ * Parallel external sort. Rows are buffered in a {@link PackedSortBuffer}, which only grows by a
+ * chunk once the {@link MemoryManager} has grown the sort's grant to hold it, up to the sort memory
+ * budget (see {@link EngineConfig#getSortMemoryBytes}). The buffer always has at least one chunk,
+ * so a sort granted no memory still writes runs of a few KiB. Input that fits is radix-sorted in
+ * memory; large inputs are cut into one slice per worker thread, sorted concurrently and merged.
+ * Otherwise, each time the buffer fills up it is cut into slices the same way, and the workers sort
+ * their slices and write them out as sorted runs concurrently. When there are more runs than can be
+ * merged at once, groups of consecutive runs are merged into longer runs in parallel, as the inner
+ * levels of a merge tree; the last level is merged as the sorted output is read.
+ *
+ * <p>The sort is stable: tuples that compare equal keep their input order. Runs hold consecutive
+ * stretches of the input, and merges break ties in favour of the earlier run.
+ */
+class ExternalSorter implements Closeable {
+  // Maximum number of runs merged at once
+  private static final int MERGE_FAN_IN = 32;
+  // In-memory inputs of at least this many rows are sorted by several workers
+  private static final int PARALLEL_SORT_ROWS = 1 << 15;
+
+  private final int[] keyColumns;
+  private final boolean[] descending;
+  private final Comparator<Tuple> comparator;
+  private final int threads;
+  private final long memoryBytes;
+
+  private PackedSortBuffer buffer;
+  private MemoryManager.Grant memory;
+  private int width;
+
+  // Sorted runs on disk, in input order
+  private final List<SpillFile> runs;
+  private ExecutorService workers;
+
+  /**
+   * Creates a sorter configured from the engine settings.
+   *
+   * @param keyColumns positions of the sort keys in the tuples, most significant first
+   * @param descending for each key, whether it sorts in descending order
+   */
+  ExternalSorter(int[] keyColumns, boolean[] descending) {
+    EngineConfig config = EngineConfig.getInstance();
+    this.keyColumns = keyColumns;
+    this.descending = descending;
+    this.comparator = keyComparator(keyColumns, descending);
+    this.threads = Math.max(1, config.getSortThreads());
+    this.memoryBytes = config.getSortMemoryBytes();
+    this.runs = new ArrayList<>();
+  }
+
+  /**
+   * Builds the comparator matching the sort order, for merging runs.
+   *
+   * @param keyColumns positions of the sort keys, most significant first
+   * @param descending for each key, whether it sorts in descending order
+   * @return comparator of tuples on the keys
+   */
+  static Comparator<Tuple> keyComparator(int[] keyColumns, boolean[] descending) {
+    return (t1, t2) -> {
+      for (int k = 0; k < keyColumns.length; k++) {
+        int comparison =
+            Integer.compare(
+                t1.getElementAtIndex(keyColumns[k]), t2.getElementAtIndex(keyColumns[k]));
+        if (comparison != 0) {
+          return descending[k] ? -comparison : comparison;
+        }
+      }
+      return 0;
+    };
+  }
+
+  /**
+   * Adds a tuple to the input, spilling sorted runs when the buffer is full.
+   *
+   * @param tuple the tuple
+   */
+  void add(Tuple tuple) {
+    if (buffer == null) {
+      width = tuple.size();
+      buffer = new PackedSortBuffer(width, keyColumns, descending);
+      memory = MemoryManager.getInstance().acquire(memoryBytes);
+    }
+    if (buffer.getRowCount() == buffer.getCapacity() && !growBuffer()) {
+      spillBuffer();
+    }
+    buffer.add(tuple);
+  }
+
+  /**
+   * Grows the memory grant to hold one more chunk of rows, and adds the chunk to the buffer. The
+   * first chunk is added even if the grant cannot hold it.
+   *
+   * @return false if the buffer is full and must be spilled
+   */
+  private boolean growBuffer() {
+    long neededBytes =
+        ((long) buffer.getCapacity() + PackedSortBuffer.chunkRows(width))
+            * PackedSortBuffer.bytesPerRow(width);
+    if (!memory.grow(neededBytes) && buffer.getCapacity() > 0) {
+      return false;
+    }
+    buffer.addChunk();
+    return true;
+  }
+
+  /**
+   * Sorts the input. Runs that were spilled are merged with the remainder of the input still in
+   * memory.
+   *
+   * @return reader producing every input tuple in sorted order
+   */
+  TupleReader sort() {
+    if (buffer == null) {
+      return new RowReader(null, new int[0]);
+    }
+    List<TupleReader> sources = new ArrayList<>();
+    mergeTreeLevels();
+    try {
+      for (SpillFile run : runs) {
+        sources.add(run.openReader());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    // The buffered rows are the end of the input, so they come after the runs
+    int rowCount = buffer.getRowCount();
+    memory.setUsedBytes(rowCount * PackedSortBuffer.bytesPerRow(width));
+    if (threads > 1 && rowCount >= PARALLEL_SORT_ROWS) {
+      for (int[] slice : sortSlices()) {
+        sources.add(new RowReader(buffer, slice));
+      }
+    } else {
+      sources.add(new RowReader(buffer, buffer.sortedRows(0, rowCount)));
+    }
+    if (sources.size() == 1) {
+      return sources.get(0);
+    }
+    try {
+      return new MergingReader(sources, comparator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Cuts the buffered rows into one slice per worker and has the workers sort them concurrently.
+   *
+   * @return the sorted row numbers of each slice, in input order
+   */
+  private List<int[]> sortSlices() {
+    int rowCount = buffer.getRowCount();
+    List<Future<int[]>> tasks = new ArrayList<>();
+    int sliceSize = (rowCount + threads - 1) / threads;
+    for (int start = 0; start < rowCount; start += sliceSize) {
+      int from = start;
+      int to = Math.min(rowCount, start + sliceSize);
+      tasks.add(workers().submit(() -> buffer.sortedRows(from, to)));
+    }
+    List<int[]> slices = new ArrayList<>();
+    for (Future<int[]> task : tasks) {
+      slices.add(PartitionedHashTable.await(task));
+    }
+    return slices;
+  }
+
+  /** Sorts the full buffer in slices, which the workers write out as runs concurrently. */
+  private void spillBuffer() {
+    File directory = new File(EngineConfig.getInstance().getTempDirectory());
+    List<Future<SpillFile>> tasks = new ArrayList<>();
+    for (int[] slice : sortSlices()) {
+      tasks.add(
+          workers()
+              .submit(
+                  () -> {
+                    SpillFile run = new SpillFile(directory, width);
+                    for (int row : slice) {
+                      run.writeTuple(buffer.getTuple(row));
+                    }
+                    return run;
+                  }));
+    }
+    for (Future<SpillFile> task : tasks) {
+      runs.add(PartitionedHashTable.await(task));
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Merges groups of consecutive runs in parallel until few enough are left for the final merge
+   * (which also takes the in-memory remainder).
+   */
+  private void mergeTreeLevels() {
+    File directory = new File(EngineConfig.getInstance().getTempDirectory());
+    while (runs.size() >= MERGE_FAN_IN) {
+      List<Future<SpillFile>> tasks = new ArrayList<>();
+      for (int start = 0; start < runs.size(); start += MERGE_FAN_IN) {
+        List<SpillFile> group = runs.subList(start, Math.min(runs.size(), start + MERGE_FAN_IN));
+        List<SpillFile> inputs = new ArrayList<>(group);
+        tasks.add(
+            workers()
+                .submit(
+                    () -> {
+                      List<TupleReader> sources = new ArrayList<>();
+                      for (SpillFile input : inputs) {
+                        sources.add(input.openReader());
+                      }
+                      SpillFile merged = new SpillFile(directory, width);
+                      try (MergingReader reader = new MergingReader(sources, comparator)) {
+                        Tuple tuple;
+                        while ((tuple = reader.readNextTuple()) != null) {
+                          merged.writeTuple(tuple);
+                        }
+                      }
+                      for (SpillFile input : inputs) {
+                        input.close();
+                      }
+                      return merged;
+                    }));
+      }
+      List<SpillFile> merged = new ArrayList<>();
+      for (Future<SpillFile> task : tasks) {
+        merged.add(PartitionedHashTable.await(task));
+      }
+      runs.clear();
+      runs.addAll(merged);
+    }
+  }
+
+  private ExecutorService workers() {
+    if (workers == null) {
+      workers =
+          Executors.newFixedThreadPool(
+              threads, Thread.ofPlatform().daemon().name("sort-worker-", 0).factory());
+    }
+    return workers;
+  }
+
+  /** Stops the workers and deletes the runs. */
+  @Override
+  public void close() {
+    if (workers != null) {
+      workers.shutdownNow();
+      workers = null;
+    }
+    for (SpillFile run : runs) {
+      try {
+        run.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    runs.clear();
+    buffer = null;
+    if (memory != null) {
+      memory.close();
+      memory = null;
+    }
+  }
+
+  /** Reads buffered rows in sorted order. */
+  private static class RowReader implements TupleReader {
+    private final PackedSortBuffer buffer;
+    private final int[] rows;
+    private int position;
+
+    RowReader(PackedSortBuffer buffer, int[] rows) {
+      this.buffer = buffer;
+      this.rows = rows;
+    }
+
+    @Override
+    public Tuple readNextTuple() {
+      return position < rows.length ? buffer.getTuple(rows[position++]) : null;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /**
+   * k-way merge of sorted runs. Among equal tuples, the one from the earliest run comes first, so
+   * merging runs of consecutive input keeps the sort stable.
+   */
+  private static class MergingReader implements TupleReader {
+    private final List<TupleReader> sources;
+    private final PriorityQueue<Head> heads;
+
+    /** Next tuple of one run. */
+    private record Head(Tuple tuple, int source) {}
+
+    MergingReader(List<TupleReader> sources, Comparator<Tuple> comparator) throws IOException {
+      this.sources = sources;
+      Comparator<Head> order = Comparator.comparing(Head::tuple, comparator);
+      this.heads = new PriorityQueue<>(order.thenComparingInt(Head::source));
+      for (int i = 0; i < sources.size(); i++) {
+        Tuple tuple = sources.get(i).readNextTuple();
+        if (tuple != null) {
+          heads.add(new Head(tuple, i));
+        }
+      }
+    }
+
+    @Override
+    public Tuple readNextTuple() throws IOException {
+      Head head = heads.poll();
+      if (head == null) {
+        return null;
+      }
+      Tuple next = sources.get(head.source()).readNextTuple();
+      if (next != null) {
+        heads.add(new Head(next, head.source()));
+      }
+      return head.tuple();
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (TupleReader source : sources) {
+        source.close();
+      }
+    }
+  }
+}
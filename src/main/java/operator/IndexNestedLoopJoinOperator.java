@@ -0,0 +1,193 @@
+package operator;
+
+import common.EngineConfig;
+import common.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import storage.HashIndex;
+
+/**
+ * An {@link AdaptiveJoinOperator} whose inner table has a {@link HashIndex} on the join column. It
+ * first buffers the outer (left) input. If that has at most join.indexMaxOuterTuples tuples (see
+ * {@link EngineConfig}), because the outer table is small or its selection is selective, the key of
+ * each outer tuple is looked up in the index and only the matching inner rows are read, so the join
+ * costs in proportion to the outer input instead of the inner table. A larger outer input is read
+ * again from the start and joined by the adaptive strategies, which read the inner table once.
+ *
+ * <p>The index probes produce tuples in the same order as the nested loop join.
+ */
+public class IndexNestedLoopJoinOperator extends AdaptiveJoinOperator {
+  // The inner side as read through the index: the lookup, possibly under the inner selection
+  private final Operator probe;
+  private final IndexScanOperator indexScan;
+
+  // Position in the left schema of the column whose values are looked up in the index
+  private final int outerKeyIndex;
+
+  // Whether the outer input has been measured, and whether it was small enough for the index
+  private boolean decided;
+  private boolean useIndex;
+  private boolean closed;
+
+  // Buffered outer input, the next outer tuple to probe with, and the one being probed
+  private List<Tuple> outerTuples;
+  private int outerIndex;
+  private Tuple outerTuple;
+
+  /**
+   * Constructs an IndexNestedLoopJoinOperator.
+   *
+   * @param leftChild The left (outer) child operator for the join.
+   * @param rightChild The right (inner) child operator, which scans the inner table.
+   * @param joinCondition The join condition, which equates outerKey with the indexed column.
+   * @param tableAliases A map of table aliases to their actual names.
+   * @param probe The inner side read through the index; produces the same schema as rightChild.
+   * @param indexScan The index lookup at the bottom of probe.
+   * @param outerKey The column of the left child whose values are looked up.
+   */
+  public IndexNestedLoopJoinOperator(
+      Operator leftChild,
+      Operator rightChild,
+      Expression joinCondition,
+      Map<String, String> tableAliases,
+      Operator probe,
+      IndexScanOperator indexScan,
+      Column outerKey) {
+    super(leftChild, rightChild, joinCondition, tableAliases);
+    this.probe = probe;
+    this.indexScan = indexScan;
+    this.outerKeyIndex = findColumnIndex(leftChild.getOutputSchema(), outerKey);
+    if (outerKeyIndex == -1) {
+      throw new IllegalArgumentException("Column " + outerKey + " not found in the outer input");
+    }
+  }
+
+  /**
+   * Returns the algorithm chosen for the join.
+   *
+   * @return INDEX_NESTED_LOOP if the index is probed, otherwise the adaptive strategy, or null if
+   *     the join has not started yet
+   */
+  @Override
+  public Strategy getStrategy() {
+    return useIndex ? Strategy.INDEX_NESTED_LOOP : super.getStrategy();
+  }
+
+  /**
+   * Buffers the outer input up to the limit. If it ends within the limit, the join probes the
+   * index, refreshed once here for all the probes of the run; otherwise the outer input is reset
+   * for the adaptive strategies.
+   */
+  private void decide() {
+    decided = true;
+    int maxOuterTuples = EngineConfig.getInstance().getJoinIndexMaxOuterTuples();
+    List<Tuple> buffered = new ArrayList<>();
+    boolean complete =
+        leftChild.produce(
+            tuple -> {
+              buffered.add(tuple);
+              return buffered.size() <= maxOuterTuples;
+            });
+    if (complete) {
+      useIndex = true;
+      indexScan.refresh();
+      outerTuples = buffered;
+      outerIndex = 0;
+    } else {
+      leftChild.reset();
+    }
+  }
+
+  /** Looks up the key of the next outer tuple. */
+  private boolean nextOuterTuple() {
+    if (outerIndex == outerTuples.size()) {
+      outerTuple = null;
+      return false;
+    }
+    outerTuple = outerTuples.get(outerIndex++);
+    indexScan.setKey(outerTuple.getElementAtIndex(outerKeyIndex));
+    probe.reset();
+    return true;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
+    if (!decided) {
+      decide();
+    }
+    if (!useIndex) {
+      return super.getNextTuple();
+    }
+    while (outerTuple != null || nextOuterTuple()) {
+      Tuple innerTuple;
+      while ((innerTuple = probe.getNextTuple()) != null) {
+        Tuple joinedTuple = joinTuples(outerTuple, innerTuple);
+        if (joinCondition == null || evaluateJoinCondition(joinedTuple)) {
+          return joinedTuple;
+        }
+      }
+      outerTuple = null;
+    }
+    return null;
+  }
+
+  /** Pushes each outer tuple's matches from the index into the consumer. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    if (!decided) {
+      decide();
+    }
+    if (!useIndex) {
+      return super.produce(consumer);
+    }
+    while (nextOuterTuple()) {
+      Tuple left = outerTuple;
+      boolean complete =
+          probe.produce(
+              right -> {
+                Tuple joinedTuple = joinTuples(left, right);
+                return (joinCondition != null && !evaluateJoinCondition(joinedTuple))
+                    || consumer.accept(joinedTuple);
+              });
+      if (!complete) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Opens the outer input only; the inner input is opened once the join knows which it reads. */
+  @Override
+  public void open() {
+    leftChild.open();
+  }
+
+  @Override
+  public void reset() {
+    decided = false;
+    useIndex = false;
+    closed = false;
+    outerTuples = null;
+    outerTuple = null;
+    probe.reset();
+    super.reset();
+  }
+
+  @Override
+  public void close() {
+    outerTuples = null;
+    outerTuple = null;
+    closed = true;
+    probe.close();
+    super.close();
+  }
+}
@@ -0,0 +1,135 @@
+package operator;
+
+import common.DBCatalog;
+import common.MaterializedView;
+import common.Tuple;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import net.sf.jsqlparser.schema.Column;
+import storage.HashIndex;
+import storage.TextTupleReader;
+
+/**
+ * Produces the rows of a text table whose indexed column equals a key, reading only those rows
+ * through the column's {@link HashIndex} instead of scanning the table. The rows come out in file
+ * order, as from a {@link ScanOperator} filtered on the key. The key can be changed between runs,
+ * so a join can probe the index with the key of each outer tuple; the index is brought up to date
+ * once, before the first lookup, and not again until the operator is closed.
+ */
+public class IndexScanOperator extends Operator {
+  private final String tableName;
+  private final HashIndex index;
+
+  // Positions in the table file of the columns in outputSchema, or null if every column is read
+  private final int[] columnIndexes;
+
+  private int key;
+
+  // Offsets of the matching lines, looked up on the first call to getNextTuple, and the next one
+  private long[] offsets;
+  private int position;
+
+  // Whether the table (if a view) and the index have been brought up to date since the last close
+  private boolean refreshed;
+
+  private RandomAccessFile tableFile;
+
+  // Whether the lookup was closed and has not been reset since
+  private boolean closed;
+
+  /**
+   * Creates a lookup of one key in an index.
+   *
+   * @param outputSchema columns to produce, a subset of the table's columns in table order
+   * @param tableName name of the table in the catalog
+   * @param index hash index on a column of the table
+   * @param key value of the indexed column to look up
+   */
+  public IndexScanOperator(
+      ArrayList<Column> outputSchema, String tableName, HashIndex index, int key) {
+    super(outputSchema);
+    this.tableName = tableName;
+    this.index = index;
+    this.columnIndexes = ScanOperator.resolveColumnIndexes(outputSchema, tableName);
+    this.key = key;
+  }
+
+  /**
+   * Changes the key to look up. The next call to getNextTuple starts producing the rows of the new
+   * key.
+   *
+   * @param key value of the indexed column
+   */
+  public void setKey(int key) {
+    this.key = key;
+    this.offsets = null;
+  }
+
+  /**
+   * Brings the table, if it is a materialized view, and the index up to date, so that lookups find
+   * the rows appended so far. Later lookups until the next close reuse the refreshed index.
+   */
+  public void refresh() {
+    MaterializedView.refreshIfView(tableName);
+    try {
+      index.refresh();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    refreshed = true;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
+    try {
+      if (offsets == null) {
+        if (!refreshed) {
+          refresh();
+        }
+        offsets = index.lookup(key);
+        position = 0;
+      }
+      if (position == offsets.length) {
+        return null;
+      }
+      if (tableFile == null) {
+        tableFile = new RandomAccessFile(DBCatalog.getInstance().getFileForTable(tableName), "r");
+      }
+      return TextTupleReader.readRowAt(
+          tableFile, offsets[position++], columnIndexes, outputSchema.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Starts the lookup over. The index is not refreshed again, so a join can rewind its probe for
+   * each outer tuple cheaply; rows appended since the last close are found after close and reset.
+   */
+  @Override
+  public void reset() {
+    offsets = null;
+    closed = false;
+  }
+
+  /** Closes the table file; the lookup produces nothing more until it is reset. */
+  @Override
+  public void close() {
+    if (tableFile != null) {
+      try {
+        tableFile.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      tableFile = null;
+    }
+    offsets = null;
+    refreshed = false;
+    closed = true;
+  }
+}
@@ -0,0 +1,541 @@
+package operator;
+
+import common.EngineConfig;
+import common.ExpressionEvaluator;
+import common.MemoryManager;
+import common.PredicateUtils;
+import common.Tuple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * An {@link AdaptiveJoinOperator} for joins whose condition compares a column of each input with
+ * {@code <}, {@code <=}, {@code >} or {@code >=} and has no equality to hash on, such as {@code
+ * S1.A < S2.A} or the band {@code S1.B > S2.B AND S1.C < S2.C}. It buffers both inputs and joins
+ * them IEJoin-style on up to two such comparisons instead of comparing every pair:
+ *
+ * <ul>
+ *   <li>the right tuples are sorted on the right column of each comparison, so the right tuples
+ *       satisfying one comparison with a left tuple are a range of the sorted order, found by
+ *       binary search;
+ *   <li>with two comparisons, the left tuples are visited in the order of their second column, so
+ *       the right tuples satisfying the second comparison only ever grow; they are marked in a bit
+ *       array kept in the order of the first column, and each left tuple's matches are the set bits
+ *       in its range of the first comparison.
+ * </ul>
+ *
+ * <p>The other conjuncts of the condition, such as {@code S1.A != S2.A}, are evaluated on the
+ * matching pairs only. The output of an inequality join can be quadratic, so the pairs are not all
+ * collected up front: the left tuples are joined a block at a time, in input order, and each
+ * block's pairs are sorted before they are produced, so the join produces tuples in the same order
+ * as the nested loop join. Blocks are sized so that their pairs fit in about a page of memory
+ * beyond the buffered inputs.
+ *
+ * <p>If the inputs together do not fit in the memory the {@link MemoryManager} grants for
+ * join.memoryBytes (see {@link EngineConfig}), they are read again from the start and joined by the
+ * adaptive strategies.
+ */
+public class InequalityJoinOperator extends AdaptiveJoinOperator {
+  /** A comparison of a left column with a right column, as {@code left op right}. */
+  private enum Op {
+    LT,
+    LE,
+    GT,
+    GE;
+
+    Op flipped() {
+      return switch (this) {
+        case LT -> GT;
+        case LE -> GE;
+        case GT -> LT;
+        case GE -> LE;
+      };
+    }
+  }
+
+  /**
+   * An inequality conjunct of the join condition.
+   *
+   * @param leftIndex position of the compared column in the left schema
+   * @param op the comparison, with the left column on its left
+   * @param rightIndex position of the compared column in the right schema
+   */
+  private record Inequality(int leftIndex, Op op, int rightIndex) {}
+
+  // The (at most two) comparisons the join runs on, and the rest of the condition
+  private final List<Inequality> inequalities;
+  private final Expression residualCondition;
+  private final ExpressionEvaluator residualEvaluator;
+
+  // Whether the inputs have been measured, and whether they fit in memory for the sorted join
+  private boolean decided;
+  private boolean sorted;
+  private boolean closed;
+
+  // Memory granted for the buffered inputs, the memory the inputs take, and the inputs
+  private MemoryManager.Grant memory;
+  private long inputBytes;
+  private List<Tuple> leftTuples;
+  private List<Tuple> rightTuples;
+
+  // Right positions and values in the order of each comparison's right column, the rank of each
+  // right position in the first order, and the bit array of the two-comparison join
+  private int[] rightByFirst;
+  private int[] firstValues;
+  private int[] rightBySecond;
+  private int[] secondValues;
+  private int[] firstRank;
+  private long[] marked;
+
+  // Left tuples before nextLeft have been joined; the current block's matching pairs (left
+  // position << 32 | right position) in order, and the size of the next block of a two-comparison
+  // join, which shrinks when a block's pairs do not fit in maxPairs
+  private int nextLeft;
+  private int blockSize;
+  private int maxPairs;
+  private long[] pairs;
+  private int pairCount;
+  private int pairIndex;
+
+  /**
+   * Constructs an InequalityJoinOperator.
+   *
+   * @param leftChild The left child operator for the join.
+   * @param rightChild The right child operator for the join.
+   * @param joinCondition The join condition, with at least one comparison of a left column with a
+   *     right column.
+   * @param tableAliases A map of table aliases to their actual names.
+   */
+  public InequalityJoinOperator(
+      Operator leftChild,
+      Operator rightChild,
+      Expression joinCondition,
+      Map<String, String> tableAliases) {
+    super(leftChild, rightChild, joinCondition, tableAliases);
+    this.inequalities = new ArrayList<>();
+    List<Expression> residual = new ArrayList<>();
+    for (Expression conjunct : PredicateUtils.splitConjuncts(joinCondition)) {
+      Inequality inequality =
+          inequalities.size() < 2
+              ? toInequality(leftChild.getOutputSchema(), rightChild.getOutputSchema(), conjunct)
+              : null;
+      if (inequality != null) {
+        inequalities.add(inequality);
+      } else {
+        residual.add(conjunct);
+      }
+    }
+    if (inequalities.isEmpty()) {
+      throw new IllegalArgumentException(
+          "No inequality between the join inputs in " + joinCondition);
+    }
+    this.residualCondition = PredicateUtils.conjoin(residual);
+    this.residualEvaluator = new ExpressionEvaluator(tableAliases);
+  }
+
+  /**
+   * Checks whether a join condition suits this operator: it compares a left column with a right
+   * column by inequality, and has no equality between them that a hash join could use.
+   *
+   * @param leftSchema the schema of the left input
+   * @param rightSchema the schema of the right input
+   * @param joinCondition the join condition, possibly null
+   * @return true if the join should be an inequality join
+   */
+  public static boolean suits(
+      List<Column> leftSchema, List<Column> rightSchema, Expression joinCondition) {
+    boolean hasInequality = false;
+    for (Expression conjunct : PredicateUtils.splitConjuncts(joinCondition)) {
+      if (conjunct instanceof EqualsTo
+          && isBetweenInputs(leftSchema, rightSchema, (EqualsTo) conjunct)) {
+        return false;
+      }
+      hasInequality |= toInequality(leftSchema, rightSchema, conjunct) != null;
+    }
+    return hasInequality;
+  }
+
+  private static boolean isBetweenInputs(
+      List<Column> leftSchema, List<Column> rightSchema, ComparisonOperator comparison) {
+    if (!(comparison.getLeftExpression() instanceof Column)
+        || !(comparison.getRightExpression() instanceof Column)) {
+      return false;
+    }
+    Column first = (Column) comparison.getLeftExpression();
+    Column second = (Column) comparison.getRightExpression();
+    return (findColumnIndex(leftSchema, first) != -1 && findColumnIndex(rightSchema, second) != -1)
+        || (findColumnIndex(leftSchema, second) != -1 && findColumnIndex(rightSchema, first) != -1);
+  }
+
+  /** Reads a conjunct as a comparison of a left column with a right column, or returns null. */
+  private static Inequality toInequality(
+      List<Column> leftSchema, List<Column> rightSchema, Expression conjunct) {
+    Op op;
+    if (conjunct instanceof MinorThan) {
+      op = Op.LT;
+    } else if (conjunct instanceof MinorThanEquals) {
+      op = Op.LE;
+    } else if (conjunct instanceof GreaterThan) {
+      op = Op.GT;
+    } else if (conjunct instanceof GreaterThanEquals) {
+      op = Op.GE;
+    } else {
+      return null;
+    }
+    ComparisonOperator comparison = (ComparisonOperator) conjunct;
+    if (!isBetweenInputs(leftSchema, rightSchema, comparison)) {
+      return null;
+    }
+    Column first = (Column) comparison.getLeftExpression();
+    Column second = (Column) comparison.getRightExpression();
+    int leftIndex = findColumnIndex(leftSchema, first);
+    if (leftIndex != -1 && findColumnIndex(rightSchema, second) != -1) {
+      return new Inequality(leftIndex, op, findColumnIndex(rightSchema, second));
+    }
+    return new Inequality(
+        findColumnIndex(leftSchema, second), op.flipped(), findColumnIndex(rightSchema, first));
+  }
+
+  /**
+   * Returns the algorithm chosen for the join.
+   *
+   * @return INEQUALITY if the sorted join runs, otherwise the adaptive strategy, or null if the
+   *     join has not started yet
+   */
+  @Override
+  public Strategy getStrategy() {
+    return sorted ? Strategy.INEQUALITY : super.getStrategy();
+  }
+
+  /**
+   * Buffers both inputs within the memory granted for the join memory budget. If they fit, the
+   * right input is sorted for the sorted join; otherwise both inputs are reset for the adaptive
+   * strategies.
+   */
+  private void decide() {
+    decided = true;
+    memory = MemoryManager.getInstance().acquire(EngineConfig.getInstance().getJoinMemoryBytes());
+    long leftTupleBytes = Tuple.estimatedHeapBytes(leftChild.getOutputSchema().size());
+    long rightTupleBytes = Tuple.estimatedHeapBytes(rightChild.getOutputSchema().size());
+    List<Tuple> left = new ArrayList<>();
+    List<Tuple> right = new ArrayList<>();
+    boolean fits =
+        rightChild.produce(
+                tuple -> {
+                  right.add(tuple);
+                  return holds(right.size() * rightTupleBytes);
+                })
+            && leftChild.produce(
+                tuple -> {
+                  left.add(tuple);
+                  return holds(right.size() * rightTupleBytes + left.size() * leftTupleBytes);
+                });
+    if (!fits) {
+      memory.close();
+      memory = null;
+      leftChild.reset();
+      rightChild.reset();
+      return;
+    }
+    inputBytes = right.size() * rightTupleBytes + left.size() * leftTupleBytes;
+    memory.setUsedBytes(inputBytes);
+    sorted = true;
+    leftTuples = left;
+    rightTuples = right;
+    sortRightInput();
+  }
+
+  /** Checks whether the memory grant holds, or can grow to hold, the given bytes. */
+  private boolean holds(long bytes) {
+    return bytes <= memory.getBytes() || memory.grow(bytes);
+  }
+
+  /** Sorts the right positions on the compared columns, and sizes the blocks of pairs. */
+  private void sortRightInput() {
+    int rightCount = rightTuples.size();
+    Inequality first = inequalities.get(0);
+    rightByFirst = new int[rightCount];
+    firstValues = new int[rightCount];
+    sortPositions(rightTuples, first.rightIndex(), rightByFirst, firstValues);
+    if (inequalities.size() == 2) {
+      Inequality second = inequalities.get(1);
+      rightBySecond = new int[rightCount];
+      secondValues = new int[rightCount];
+      sortPositions(rightTuples, second.rightIndex(), rightBySecond, secondValues);
+      firstRank = new int[rightCount];
+      for (int position = 0; position < rightCount; position++) {
+        firstRank[rightByFirst[position]] = position;
+      }
+      marked = new long[(rightCount + 63) >>> 6];
+    }
+
+    // A block's pairs take what the grant holds, grown by a page if it can, beyond the inputs; but
+    // one left tuple's always fit
+    holds(inputBytes + EngineConfig.getInstance().getMemoryPageBytes());
+    long freeBytes = memory.getBytes() - inputBytes;
+    maxPairs = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, freeBytes / Long.BYTES));
+    blockSize = Math.max(1, Math.min(leftTuples.size(), 1024));
+    pairs = new long[16];
+    nextLeft = 0;
+    pairCount = 0;
+    pairIndex = 0;
+  }
+
+  /**
+   * Finds the matching pairs of the next block of left tuples and sorts them into nested loop
+   * order.
+   */
+  private void joinNextBlock() {
+    int leftCount = leftTuples.size();
+    pairCount = 0;
+    pairIndex = 0;
+    if (inequalities.size() == 1) {
+      Inequality first = inequalities.get(0);
+      for (; nextLeft < leftCount && pairCount < maxPairs; nextLeft++) {
+        int[] range =
+            range(first.op(), firstValues, value(leftTuples, nextLeft, first.leftIndex()));
+        for (int position = range[0]; position < range[1]; position++) {
+          addPair(nextLeft, rightByFirst[position]);
+        }
+      }
+    } else {
+      int end = Math.min(leftCount, nextLeft + blockSize);
+      while (!joinMarked(nextLeft, end)) {
+        // Too many pairs: retry with half the block, down to a single left tuple
+        blockSize = Math.max(1, (end - nextLeft) / 2);
+        end = nextLeft + blockSize;
+        pairCount = 0;
+      }
+      if (pairCount < maxPairs / 4 && blockSize < leftCount) {
+        blockSize = (int) Math.min(leftCount, 2L * blockSize);
+      }
+      nextLeft = end;
+    }
+    Arrays.sort(pairs, 0, pairCount);
+  }
+
+  /**
+   * Finds the pairs of the left tuples in [from, to) with the two comparisons.
+   *
+   * @return false if the block has more than maxPairs pairs and more than one left tuple
+   */
+  private boolean joinMarked(int from, int to) {
+    Inequality first = inequalities.get(0);
+    Inequality second = inequalities.get(1);
+    int rightCount = rightTuples.size();
+
+    // Left positions in the order of the second comparison's left column. If left > right, the
+    // right tuples satisfying the second comparison are a prefix of rightBySecond, which grows as
+    // the left value increases; if left < right, a suffix, which grows as it decreases.
+    int blockCount = to - from;
+    int[] leftBySecond = new int[blockCount];
+    sortPositions(
+        leftTuples.subList(from, to), second.leftIndex(), leftBySecond, new int[blockCount]);
+    boolean ascending = second.op() == Op.GT || second.op() == Op.GE;
+    Arrays.fill(marked, 0);
+    int next = ascending ? 0 : rightCount;
+    for (int k = 0; k < blockCount; k++) {
+      int i = from + leftBySecond[ascending ? k : blockCount - 1 - k];
+      int[] secondRange =
+          range(second.op(), secondValues, value(leftTuples, i, second.leftIndex()));
+      if (ascending) {
+        for (; next < secondRange[1]; next++) {
+          int rank = firstRank[rightBySecond[next]];
+          marked[rank >>> 6] |= 1L << rank;
+        }
+      } else {
+        while (next > secondRange[0]) {
+          int rank = firstRank[rightBySecond[--next]];
+          marked[rank >>> 6] |= 1L << rank;
+        }
+      }
+      int[] firstRange = range(first.op(), firstValues, value(leftTuples, i, first.leftIndex()));
+      addMarkedPairs(i, marked, firstRange[0], firstRange[1], rightByFirst);
+      if (pairCount > maxPairs && blockCount > 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Adds a pair for each marked right tuple in [from, to) of the first comparison's order. */
+  private void addMarkedPairs(int left, long[] marked, int from, int to, int[] rightByFirst) {
+    if (from >= to) {
+      return;
+    }
+    int lastWord = (to - 1) >>> 6;
+    for (int w = from >>> 6; w <= lastWord; w++) {
+      long word = marked[w];
+      if (w == from >>> 6) {
+        word &= -1L << from;
+      }
+      if (w == lastWord) {
+        word &= -1L >>> (63 - ((to - 1) & 63));
+      }
+      while (word != 0) {
+        addPair(left, rightByFirst[(w << 6) + Long.numberOfTrailingZeros(word)]);
+        word &= word - 1;
+      }
+    }
+  }
+
+  private void addPair(int left, int right) {
+    if (pairCount == pairs.length) {
+      pairs = Arrays.copyOf(pairs, pairs.length * 2);
+      memory.setUsedBytes(inputBytes + (long) Long.BYTES * pairs.length);
+    }
+    pairs[pairCount++] = (long) left << 32 | right;
+  }
+
+  private static int value(List<Tuple> tuples, int position, int column) {
+    return tuples.get(position).getElementAtIndex(column);
+  }
+
+  /**
+   * Sorts the positions of tuples on a column.
+   *
+   * @param tuples the tuples
+   * @param column the column to sort on
+   * @param positions receives the positions of the tuples, in increasing order of the column
+   * @param values receives the column's values, in the same order
+   */
+  private static void sortPositions(List<Tuple> tuples, int column, int[] positions, int[] values) {
+    long[] keyed = new long[tuples.size()];
+    for (int i = 0; i < keyed.length; i++) {
+      keyed[i] = (long) value(tuples, i, column) << 32 | i;
+    }
+    Arrays.sort(keyed);
+    for (int i = 0; i < keyed.length; i++) {
+      positions[i] = (int) keyed[i];
+      values[i] = (int) (keyed[i] >> 32);
+    }
+  }
+
+  /**
+   * Finds the right values a left value satisfies a comparison with.
+   *
+   * @param op the comparison, as {@code left op right}
+   * @param values the right values, sorted
+   * @param left the left value
+   * @return the range [from, to) of the satisfying right values
+   */
+  private static int[] range(Op op, int[] values, int left) {
+    return switch (op) {
+      case LT -> new int[] {firstAbove(values, left), values.length};
+      case LE -> new int[] {firstAbove(values, left - 1L), values.length};
+      case GT -> new int[] {0, firstAbove(values, left - 1L)};
+      case GE -> new int[] {0, firstAbove(values, left)};
+    };
+  }
+
+  /** Returns the position of the first sorted value greater than bound. */
+  private static int firstAbove(int[] values, long bound) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (values[middle] > bound) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
+    if (!decided) {
+      decide();
+    }
+    if (!sorted) {
+      return super.getNextTuple();
+    }
+    while (true) {
+      while (pairIndex < pairCount) {
+        long pair = pairs[pairIndex++];
+        Tuple joinedTuple =
+            joinTuples(leftTuples.get((int) (pair >>> 32)), rightTuples.get((int) pair));
+        if (residualCondition == null
+            || residualEvaluator.evaluate(residualCondition, joinedTuple, outputSchema)) {
+          return joinedTuple;
+        }
+      }
+      if (leftTuples == null || nextLeft == leftTuples.size()) {
+        break;
+      }
+      joinNextBlock();
+    }
+    // Every pair has been produced: give back the buffers' memory without waiting for close
+    release();
+    return null;
+  }
+
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    if (!decided) {
+      decide();
+    }
+    if (!sorted) {
+      return super.produce(consumer);
+    }
+    Tuple tuple;
+    while ((tuple = getNextTuple()) != null) {
+      if (!consumer.accept(tuple)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void release() {
+    leftTuples = null;
+    rightTuples = null;
+    rightByFirst = null;
+    firstValues = null;
+    rightBySecond = null;
+    secondValues = null;
+    firstRank = null;
+    marked = null;
+    pairs = null;
+    nextLeft = 0;
+    pairCount = 0;
+    pairIndex = 0;
+    if (memory != null) {
+      memory.close();
+      memory = null;
+    }
+  }
+
+  @Override
+  public void reset() {
+    release();
+    decided = false;
+    sorted = false;
+    closed = false;
+    super.reset();
+  }
+
+  @Override
+  public void close() {
+    release();
+    closed = true;
+    super.close();
+  }
+}
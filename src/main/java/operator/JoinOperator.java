@@ -1,11 +1,18 @@
 package operator;
 
 import common.ExpressionEvaluator;
+import common.PredicateUtils;
+import common.RuntimeFilter;
 import common.Tuple;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 
@@ -16,14 +23,20 @@ import net.sf.jsqlparser.schema.Table;
  */
 public class JoinOperator extends Operator {
   // Left and right child operators that provide tuples for the join
-  private Operator leftChild;
-  private Operator rightChild;
+  protected Operator leftChild;
+  protected Operator rightChild;
 
   // The condition to evaluate for the join (e.g., ON clause in SQL)
-  private Expression joinCondition;
+  protected Expression joinCondition;
+
+  // Equi-join conjuncts (left column = right column) of the join condition: the left columns, and
+  // the positions of both sides' columns in the children's schemas
+  protected final List<Column> leftKeys;
+  protected final int[] leftKeyIndexes;
+  protected final int[] rightKeyIndexes;
 
   // A map of table aliases used for expression evaluation
-  private Map<String, String> tableAliases;
+  protected Map<String, String> tableAliases;
 
   // Current tuples being processed from the left and right child operators
   private Tuple leftTuple;
@@ -32,6 +45,13 @@ public class JoinOperator extends Operator {
   // Expression evaluator used to evaluate the join condition
   private ExpressionEvaluator expressionEvaluator;
 
+  // Whether the first tuples have been fetched, and whether runtime filters have been pushed
+  protected boolean initialized;
+  protected boolean runtimeFiltersBuilt;
+
+  // Whether the join was closed and has not been reset since
+  private boolean closed;
+
   /**
    * Constructs a JoinOperator.
    *
@@ -56,9 +76,96 @@ public class JoinOperator extends Operator {
     // Initialize the expression evaluator for evaluating join conditions
     this.expressionEvaluator = new ExpressionEvaluator(tableAliases);
 
-    // Fetch the first tuple from both the left and right child operators
-    this.leftTuple = leftChild.getNextTuple();
-    this.rightTuple = rightChild.getNextTuple();
+    this.leftKeys = new ArrayList<>();
+    List<Integer> leftIndexes = new ArrayList<>();
+    List<Integer> rightIndexes = new ArrayList<>();
+    findEquiJoinKeys(leftIndexes, rightIndexes);
+    this.leftKeyIndexes = leftIndexes.stream().mapToInt(Integer::intValue).toArray();
+    this.rightKeyIndexes = rightIndexes.stream().mapToInt(Integer::intValue).toArray();
+
+    // The first tuples are fetched on the first call to getNextTuple
+    this.initialized = false;
+    this.runtimeFiltersBuilt = false;
+  }
+
+  /**
+   * Fetches the first tuple from both children. Before that, on the first initialization only, the
+   * runtime filters of the equi-join keys are built from the right (build) child and pushed into
+   * the left (probe) child.
+   */
+  private void initialize() {
+    if (!runtimeFiltersBuilt) {
+      runtimeFiltersBuilt = true;
+      pushRuntimeFilters(rightChild::getNextTuple);
+      rightChild.reset();
+    }
+    leftTuple = leftChild.getNextTuple();
+    rightTuple = rightChild.getNextTuple();
+    initialized = true;
+  }
+
+  /**
+   * Finds the equi-join conjuncts (column = column, one column from each child) of the join
+   * condition and records their columns.
+   */
+  private void findEquiJoinKeys(List<Integer> leftIndexes, List<Integer> rightIndexes) {
+    for (Expression conjunct : PredicateUtils.splitConjuncts(joinCondition)) {
+      if (!(conjunct instanceof EqualsTo)) {
+        continue;
+      }
+      EqualsTo equalsTo = (EqualsTo) conjunct;
+      if (!(equalsTo.getLeftExpression() instanceof Column)
+          || !(equalsTo.getRightExpression() instanceof Column)) {
+        continue;
+      }
+      Column first = (Column) equalsTo.getLeftExpression();
+      Column second = (Column) equalsTo.getRightExpression();
+      if (findColumnIndex(leftChild.getOutputSchema(), first) != -1
+          && findColumnIndex(rightChild.getOutputSchema(), second) != -1) {
+        leftKeys.add(first);
+        leftIndexes.add(findColumnIndex(leftChild.getOutputSchema(), first));
+        rightIndexes.add(findColumnIndex(rightChild.getOutputSchema(), second));
+      } else if (findColumnIndex(leftChild.getOutputSchema(), second) != -1
+          && findColumnIndex(rightChild.getOutputSchema(), first) != -1) {
+        leftKeys.add(second);
+        leftIndexes.add(findColumnIndex(leftChild.getOutputSchema(), second));
+        rightIndexes.add(findColumnIndex(rightChild.getOutputSchema(), first));
+      }
+    }
+  }
+
+  /**
+   * Builds a runtime filter (Bloom filter plus min/max range) over the right child's values of
+   * every equi-join key of the join condition, and offers it to the left child. Left tuples whose
+   * key has no match on the right are then dropped by the probe-side scan or select before they
+   * reach this operator, saving a full pass over the right child for each of them.
+   *
+   * @param buildTuples supplies the right child's tuples, then null
+   */
+  protected void pushRuntimeFilters(Supplier<Tuple> buildTuples) {
+    if (leftKeys.isEmpty()) {
+      return;
+    }
+
+    // One pass over the build side collects the values of every key
+    int[][] keys = new int[leftKeys.size()][16];
+    int count = 0;
+    Tuple tuple;
+    while ((tuple = buildTuples.get()) != null) {
+      if (count == keys[0].length) {
+        for (int k = 0; k < keys.length; k++) {
+          keys[k] = Arrays.copyOf(keys[k], count * 2);
+        }
+      }
+      for (int k = 0; k < keys.length; k++) {
+        keys[k][count] = tuple.getElementAtIndex(rightKeyIndexes[k]);
+      }
+      count++;
+    }
+
+    for (int k = 0; k < keys.length; k++) {
+      leftChild.addRuntimeFilter(leftKeys.get(k), new RuntimeFilter(keys[k], count));
+    }
   }
 
   /**
@@ -69,6 +176,9 @@ public class JoinOperator extends Operator {
    */
   @Override
   public Tuple getNextTuple() {
+    if (!initialized) {
+      initialize();
+    }
     while (leftTuple != null) { // Iterate through the left child tuples
       while (rightTuple != null) { // Iterate through the right child tuples
         // Combine the current left and right tuples into a joined tuple
@@ -95,6 +205,37 @@ public class JoinOperator extends Operator {
     return null; // No more tuples to process
   }
 
+  /**
+   * Push-based join. The right child is a pipeline breaker: its pipeline is run once into an
+   * in-memory buffer, from which the runtime filters are built. The left child's pipeline then
+   * drives the probe, joining each left tuple with the buffered right tuples, so the output order
+   * is the same as in pull-based execution.
+   */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    List<Tuple> rightTuples = new ArrayList<>();
+    rightChild.produce(rightTuples::add);
+    if (!runtimeFiltersBuilt) {
+      runtimeFiltersBuilt = true;
+      Iterator<Tuple> iterator = rightTuples.iterator();
+      pushRuntimeFilters(() -> iterator.hasNext() ? iterator.next() : null);
+    }
+    return leftChild.produce(
+        left -> {
+          for (Tuple right : rightTuples) {
+            Tuple joinedTuple = joinTuples(left, right);
+            if ((joinCondition == null || evaluateJoinCondition(joinedTuple))
+                && !consumer.accept(joinedTuple)) {
+              return false;
+            }
+          }
+          return true;
+        });
+  }
+
   /**
    * Resets the join operation, allowing both child operators to be re-executed from the beginning.
    */
@@ -104,9 +245,47 @@ public class JoinOperator extends Operator {
     leftChild.reset();
     rightChild.reset();
 
-    // Re-fetch the first tuple from both the left and right children
-    leftTuple = leftChild.getNextTuple();
-    rightTuple = rightChild.getNextTuple();
+    // Re-fetch the first tuple from both the left and right children on the next call
+    initialized = false;
+    closed = false;
+  }
+
+  /** Opens both child operators; the first tuples are still fetched lazily. */
+  @Override
+  public void open() {
+    leftChild.open();
+    rightChild.open();
+  }
+
+  /** Closes both child operators and stops producing joined tuples. */
+  @Override
+  public void close() {
+    leftChild.close();
+    rightChild.close();
+    leftTuple = null;
+    rightTuple = null;
+    initialized = true;
+    closed = true;
+  }
+
+  /** Clears the children's filters, including those this join pushed, so they are rebuilt. */
+  @Override
+  public void clearRuntimeFilters() {
+    leftChild.clearRuntimeFilters();
+    rightChild.clearRuntimeFilters();
+    runtimeFiltersBuilt = false;
+  }
+
+  /** Passes the filter on to whichever child produces the column. */
+  @Override
+  public boolean addRuntimeFilter(Column column, RuntimeFilter filter) {
+    if (findColumnIndex(leftChild.getOutputSchema(), column) != -1) {
+      return leftChild.addRuntimeFilter(column, filter);
+    }
+    if (findColumnIndex(rightChild.getOutputSchema(), column) != -1) {
+      return rightChild.addRuntimeFilter(column, filter);
+    }
+    return false;
   }
 
   /**
@@ -165,10 +344,16 @@ public class JoinOperator extends Operator {
    * @param right The tuple from the right child.
    * @return A new tuple combining elements from both the left and right tuples.
    */
-  private Tuple joinTuples(Tuple left, Tuple right) {
-    // Create a new list by concatenating the elements of both tuples
-    ArrayList<Integer> combinedData = new ArrayList<>(left.getAllElements());
-    combinedData.addAll(right.getAllElements());
+  protected Tuple joinTuples(Tuple left, Tuple right) {
+    // Create a new array by concatenating the elements of both tuples
+    int leftSize = left.size();
+    int[] combinedData = new int[leftSize + right.size()];
+    for (int i = 0; i < leftSize; i++) {
+      combinedData[i] = left.getElementAtIndex(i);
+    }
+    for (int i = 0; i < combinedData.length - leftSize; i++) {
+      combinedData[leftSize + i] = right.getElementAtIndex(i);
+    }
     return new Tuple(combinedData); // Return the joined tuple
   }
 
@@ -178,7 +363,7 @@ public class JoinOperator extends Operator {
    * @param tuple The tuple for which the condition is evaluated.
    * @return True if the join condition is satisfied, false otherwise.
    */
-  private boolean evaluateJoinCondition(Tuple tuple) {
+  protected boolean evaluateJoinCondition(Tuple tuple) {
     return expressionEvaluator.evaluate(joinCondition, tuple, this.outputSchema);
   }
 }
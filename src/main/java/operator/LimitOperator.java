@@ -0,0 +1,141 @@
+package operator;
+
+import common.Tuple;
+import java.util.ArrayList;
+
+/**
+ * Operator that implements LIMIT/OFFSET. It stops pulling from its child once the requested number
+ * of tuples has been returned and closes the child right away, so that scans and joins below it do
+ * no further work.
+ */
+public class LimitOperator extends Operator {
+  private final Operator child;
+  private final long limit;
+  private final long offset;
+
+  // Number of tuples returned so far
+  private long returned;
+  private boolean skippedOffset;
+
+  // Whether the child was closed, once the limit was reached, the child ran out or the operator was
+  // closed; the operator then returns nothing more until it is reset
+  private boolean childClosed;
+
+  /**
+   * Constructs a LimitOperator.
+   *
+   * @param child The child operator providing input tuples
+   * @param limit The maximum number of tuples to return
+   * @param offset The number of leading tuples to skip before returning any
+   */
+  public LimitOperator(Operator child, long limit, long offset) {
+    super(new ArrayList<>(child.getOutputSchema()));
+    this.child = child;
+    this.limit = limit;
+    this.offset = offset;
+    this.returned = 0;
+    this.skippedOffset = false;
+    this.childClosed = false;
+  }
+
+  /**
+   * Returns the next tuple from the child until the limit is reached.
+   *
+   * @return The next tuple, or null once the limit is reached or the child is exhausted
+   */
+  @Override
+  public Tuple getNextTuple() {
+    if (childClosed) {
+      return null;
+    }
+    if (returned >= limit) {
+      closeChild();
+      return null;
+    }
+
+    if (!skippedOffset) {
+      skippedOffset = true;
+      for (long i = 0; i < offset; i++) {
+        if (child.getNextTuple() == null) {
+          closeChild();
+          return null;
+        }
+      }
+    }
+
+    Tuple tuple = child.getNextTuple();
+    if (tuple == null) {
+      closeChild();
+      return null;
+    }
+
+    returned++;
+    // Release the subtree as soon as the quota is met instead of waiting for the next call
+    if (returned >= limit) {
+      closeChild();
+    }
+    return tuple;
+  }
+
+  /** Stops the child's pipeline as soon as the quota is reached, then closes the child. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (childClosed) {
+      return true;
+    }
+    long[] skipped = {skippedOffset ? offset : 0};
+    skippedOffset = true;
+    boolean[] consumerStopped = {false};
+    if (returned < limit) {
+      child.produce(
+          tuple -> {
+            if (skipped[0] < offset) {
+              skipped[0]++;
+              return true;
+            }
+            returned++;
+            if (!consumer.accept(tuple)) {
+              consumerStopped[0] = true;
+              return false;
+            }
+            return returned < limit;
+          });
+    }
+    closeChild();
+    return !consumerStopped[0];
+  }
+
+  /** Resets the operator so the limit is counted again from the start of the child's output. */
+  @Override
+  public void reset() {
+    child.reset();
+    returned = 0;
+    skippedOffset = false;
+    childClosed = false;
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    child.clearRuntimeFilters();
+  }
+
+  @Override
+  public void open() {
+    if (!childClosed) {
+      child.open();
+    }
+  }
+
+  /** Closes the child operator. */
+  @Override
+  public void close() {
+    closeChild();
+  }
+
+  private void closeChild() {
+    if (!childClosed) {
+      child.close();
+      childClosed = true;
+    }
+  }
+}
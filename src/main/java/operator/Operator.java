@@ -1,10 +1,13 @@
 package operator;
 
+import common.RuntimeFilter;
 import common.Tuple;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 import net.sf.jsqlparser.schema.Column;
+import storage.ResultWriter;
 
 /**
  * Abstract class to represent relational operators. Every operator has a reference to an
@@ -12,7 +15,7 @@ import net.sf.jsqlparser.schema.Column;
  * of Column objects. Each Column has an embedded Table object with the name and alias (if required)
  * fields set appropriately.
  */
-public abstract class Operator {
+public abstract class Operator implements AutoCloseable {
 
   protected ArrayList<Column> outputSchema;
 
@@ -34,6 +37,88 @@ public abstract class Operator {
    */
   public abstract Tuple getNextTuple();
 
+  /**
+   * Acquires the resources (open files, reader threads) this operator and its children need to
+   * produce tuples. Constructing a plan does no I/O; operators acquire their resources here, or
+   * lazily on the first call to getNextTuple if open was not called. Opening an open operator has
+   * no effect.
+   */
+  public void open() {}
+
+  /**
+   * Releases any resources (open files, buffered tuples, temporary files) held by this operator and
+   * its children. Parents call this as soon as they know they will not pull any more tuples, so
+   * that the work below them stops early. A closed operator produces no more tuples, and opening it
+   * has no effect, until it is reset; it may then be reused.
+   */
+  @Override
+  public void close() {}
+
+  /**
+   * Offers a runtime filter on one of this operator's output columns. An operator that accepts it
+   * (itself or through one of its children) may from then on drop tuples whose value for that
+   * column is rejected by the filter. Joins use this to push filters built from their build input
+   * into the probe side of the plan.
+   *
+   * @param column the column the filter applies to
+   * @param filter the filter
+   * @return true if the filter was accepted
+   */
+  public boolean addRuntimeFilter(Column column, RuntimeFilter filter) {
+    return false;
+  }
+
+  /**
+   * Drops the runtime filters accepted by this operator and its children, and lets joins build new
+   * ones on their next run. Needed before re-running a plan whose inputs have changed, e.g. after
+   * binding new parameter values, since the old filters could then reject matching tuples.
+   */
+  public void clearRuntimeFilters() {}
+
+  /**
+   * Finds a column in a schema, matching both the table alias (or name) and the column name.
+   *
+   * @param schema the schema to search
+   * @param column the column, qualified with a table alias or name
+   * @return the index of the column in the schema, or -1 if not found
+   */
+  protected static int findColumnIndex(List<Column> schema, Column column) {
+    String tableAlias = column.getTable() != null ? column.getTable().getName() : null;
+    for (int i = 0; i < schema.size(); i++) {
+      Column schemaColumn = schema.get(i);
+      String schemaTableAlias =
+          schemaColumn.getTable().getAlias() != null
+              ? schemaColumn.getTable().getAlias().getName()
+              : schemaColumn.getTable().getName();
+      if (schemaColumn.getColumnName().equals(column.getColumnName())
+          && tableAlias != null
+          && tableAlias.equals(schemaTableAlias)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Pushes this operator's remaining tuples into a consumer, as the push-based counterpart of
+   * repeatedly calling getNextTuple. This default implementation simply pulls; operators override
+   * it to fuse themselves into their child's pipeline (select, project, probe) or to act as a
+   * pipeline breaker (sort, join build side). It is meant to be called instead of getNextTuple on
+   * an operator that has not been pulled from since it was created or reset.
+   *
+   * @param consumer receives the tuples in the same order getNextTuple would return them
+   * @return true if every tuple was produced, false if the consumer stopped early
+   */
+  public boolean produce(TupleConsumer consumer) {
+    Tuple t;
+    while ((t = getNextTuple()) != null) {
+      if (!consumer.accept(t)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Collects all tuples of this operator.
    *
@@ -60,4 +145,42 @@ public abstract class Operator {
       printStream.println(t);
     }
   }
+
+  /**
+   * Iterate through output of operator and send it all to the specified result writer. The writer
+   * is not closed.
+   *
+   * @param resultWriter writer to receive output, one tuple at a time.
+   * @throws IOException if the writer fails
+   */
+  public void dump(ResultWriter resultWriter) throws IOException {
+    Tuple t;
+    while ((t = this.getNextTuple()) != null) {
+      resultWriter.writeTuple(t);
+    }
+  }
+
+  /**
+   * Like {@link #dump(ResultWriter)}, but executes the plan push-based: the scans at the bottom of
+   * each pipeline drive tuples up through the operators into the writer.
+   *
+   * @param resultWriter writer to receive output, one tuple at a time.
+   * @throws IOException if the writer fails
+   */
+  public void dumpPushBased(ResultWriter resultWriter) throws IOException {
+    IOException[] failure = new IOException[1];
+    produce(
+        t -> {
+          try {
+            resultWriter.writeTuple(t);
+            return true;
+          } catch (IOException e) {
+            failure[0] = e;
+            return false;
+          }
+        });
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+  }
 }
@@ -0,0 +1,203 @@
+package operator;
+
+import common.Tuple;
+import java.util.Arrays;
+
+/**
+ * Sort buffer holding rows packed back to back in int[] chunks instead of as Tuple objects. The
+ * buffer grows a chunk of about 4 KiB at a time, and only when its owner adds one, so its memory
+ * follows the owner's memory grant instead of doubling past it; chunks are never copied. Rows are
+ * sorted through a permutation of their row numbers, using an LSD radix sort on normalized sort
+ * keys: each key value is mapped to an unsigned int whose byte-wise order is the requested order
+ * (sign bit flipped, all bits inverted for descending keys), and the keys are sorted one byte at a
+ * time, from the last ORDER BY column's lowest byte to the first column's highest. Each pass is a
+ * stable counting sort, so rows with equal keys keep their input order.
+ */
+class PackedSortBuffer {
+  // Below this many rows, an insertion sort is cheaper than the radix passes
+  private static final int INSERTION_SORT_ROWS = 32;
+  // Heap bytes a chunk's rows take at most, counted as in bytesPerRow
+  private static final int CHUNK_BYTES = 4096;
+
+  private final int width;
+  private final int[] keyColumns;
+  private final boolean[] descending;
+
+  // Rows per chunk, a power of two, so a row is found with a shift and a mask
+  private final int chunkShift;
+  private final int chunkMask;
+  private int[][] chunks;
+  private int chunkCount;
+  private int rowCount;
+
+  /**
+   * Creates an empty buffer, with no chunks.
+   *
+   * @param width number of values in each row
+   * @param keyColumns positions of the sort keys in a row, most significant first
+   * @param descending for each key, whether it sorts in descending order
+   */
+  PackedSortBuffer(int width, int[] keyColumns, boolean[] descending) {
+    this.width = width;
+    this.keyColumns = keyColumns;
+    this.descending = descending;
+    this.chunkShift = Integer.numberOfTrailingZeros(chunkRows(width));
+    this.chunkMask = chunkRows(width) - 1;
+    this.chunks = new int[4][];
+    this.chunkCount = 0;
+    this.rowCount = 0;
+  }
+
+  /**
+   * Rows held by one chunk.
+   *
+   * @param width number of values in each row
+   * @return rows per chunk
+   */
+  static int chunkRows(int width) {
+    return Integer.highestOneBit((int) Math.max(1, CHUNK_BYTES / bytesPerRow(width)));
+  }
+
+  /**
+   * Heap bytes used per buffered row, including the arrays used while sorting.
+   *
+   * @param width number of values in each row
+   * @return bytes per row
+   */
+  static long bytesPerRow(int width) {
+    return 4L * width + 16;
+  }
+
+  /**
+   * Adds a row. The buffer must have room for it (see {@link #addChunk}).
+   *
+   * @param tuple the row
+   */
+  void add(Tuple tuple) {
+    int[] chunk = chunks[rowCount >>> chunkShift];
+    int offset = (rowCount & chunkMask) * width;
+    for (int i = 0; i < width; i++) {
+      chunk[offset + i] = tuple.getElementAtIndex(i);
+    }
+    rowCount++;
+  }
+
+  /** Makes room for another chunk of rows. */
+  void addChunk() {
+    if (chunkCount == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunkCount * 2);
+    }
+    chunks[chunkCount++] = new int[(chunkMask + 1) * width];
+  }
+
+  int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns how many rows the buffer has room for.
+   *
+   * @return rows the chunks hold
+   */
+  int getCapacity() {
+    return chunkCount << chunkShift;
+  }
+
+  /** Empties the buffer, keeping its chunks for reuse. */
+  void clear() {
+    rowCount = 0;
+  }
+
+  /**
+   * Creates a tuple holding one row.
+   *
+   * @param row row number
+   * @return the row as a tuple
+   */
+  Tuple getTuple(int row) {
+    int offset = (row & chunkMask) * width;
+    return new Tuple(Arrays.copyOfRange(chunks[row >>> chunkShift], offset, offset + width));
+  }
+
+  /**
+   * Sorts a range of rows. Ranges may be sorted concurrently, as long as no rows are added.
+   *
+   * @param from first row of the range
+   * @param to end (exclusive) of the range
+   * @return the row numbers of the range in sorted order
+   */
+  int[] sortedRows(int from, int to) {
+    int n = to - from;
+    int[] rows = new int[n];
+    for (int i = 0; i < n; i++) {
+      rows[i] = from + i;
+    }
+    if (n <= INSERTION_SORT_ROWS) {
+      insertionSort(rows);
+      return rows;
+    }
+
+    int[] keys = new int[n];
+    int[] scratchRows = new int[n];
+    int[] scratchKeys = new int[n];
+    int[] counts = new int[257];
+    for (int k = keyColumns.length - 1; k >= 0; k--) {
+      for (int i = 0; i < n; i++) {
+        keys[i] = normalizedKey(rows[i], k);
+      }
+      for (int shift = 0; shift < 32; shift += 8) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < n; i++) {
+          counts[((keys[i] >>> shift) & 0xFF) + 1]++;
+        }
+        if (counts[((keys[0] >>> shift) & 0xFF) + 1] == n) {
+          continue; // Every key has the same byte here
+        }
+        for (int b = 0; b < 256; b++) {
+          counts[b + 1] += counts[b];
+        }
+        for (int i = 0; i < n; i++) {
+          int target = counts[(keys[i] >>> shift) & 0xFF]++;
+          scratchRows[target] = rows[i];
+          scratchKeys[target] = keys[i];
+        }
+        int[] swap = rows;
+        rows = scratchRows;
+        scratchRows = swap;
+        swap = keys;
+        keys = scratchKeys;
+        scratchKeys = swap;
+      }
+    }
+    return rows;
+  }
+
+  private int normalizedKey(int row, int key) {
+    int normalized =
+        chunks[row >>> chunkShift][(row & chunkMask) * width + keyColumns[key]] ^ Integer.MIN_VALUE;
+    return descending[key] ? ~normalized : normalized;
+  }
+
+  /** Stable insertion sort of row numbers, for small ranges. */
+  private void insertionSort(int[] rows) {
+    for (int i = 1; i < rows.length; i++) {
+      int row = rows[i];
+      int j = i - 1;
+      while (j >= 0 && compareRows(rows[j], row) > 0) {
+        rows[j + 1] = rows[j];
+        j--;
+      }
+      rows[j + 1] = row;
+    }
+  }
+
+  private int compareRows(int first, int second) {
+    for (int k = 0; k < keyColumns.length; k++) {
+      int comparison = Integer.compareUnsigned(normalizedKey(first, k), normalizedKey(second, k));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,137 @@
+package operator;
+
+import common.Tuple;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Hash table over the build input of a parallel hash join, radix-partitioned on the key hash so
+ * that worker threads can build the partitions independently. Building takes two parallel passes:
+ * each worker scatters a contiguous slice of the input into per-partition lists, then each worker
+ * builds the hash tables of a subset of the partitions from those lists, taking the slices in input
+ * order. Buckets therefore keep their tuples in input order, as in a sequential hash join. Once
+ * built, the table is read-only and can be probed from any thread.
+ */
+class PartitionedHashTable {
+  private final int partitionShift;
+  private final List<Map<Integer, List<Tuple>>> partitions;
+
+  /**
+   * Builds the table.
+   *
+   * @param tuples the build input
+   * @param keyIndexes positions of the join keys in the build tuples
+   * @param partitionBits log2 of the number of partitions, at least 1
+   * @param workers threads to build with
+   * @param threads number of tasks to split each pass into
+   */
+  PartitionedHashTable(
+      List<Tuple> tuples,
+      int[] keyIndexes,
+      int partitionBits,
+      ExecutorService workers,
+      int threads) {
+    this.partitionShift = 32 - partitionBits;
+    int partitionCount = 1 << partitionBits;
+
+    // Pass 1: scatter slices of the input into per-slice, per-partition lists
+    List<List<List<Tuple>>> scattered = new ArrayList<>();
+    List<Future<?>> tasks = new ArrayList<>();
+    int sliceSize = (tuples.size() + threads - 1) / threads;
+    for (int start = 0; start < tuples.size(); start += sliceSize) {
+      List<Tuple> slice = tuples.subList(start, Math.min(tuples.size(), start + sliceSize));
+      List<List<Tuple>> slicePartitions = new ArrayList<>(partitionCount);
+      for (int p = 0; p < partitionCount; p++) {
+        slicePartitions.add(new ArrayList<>());
+      }
+      scattered.add(slicePartitions);
+      tasks.add(
+          workers.submit(
+              () -> {
+                for (Tuple tuple : slice) {
+                  slicePartitions.get(partitionOf(tuple, keyIndexes)).add(tuple);
+                }
+              }));
+    }
+    awaitAll(tasks);
+
+    // Pass 2: build each partition's hash table from its lists, slice by slice
+    partitions = new ArrayList<>(partitionCount);
+    for (int p = 0; p < partitionCount; p++) {
+      partitions.add(new HashMap<>());
+    }
+    tasks.clear();
+    for (int worker = 0; worker < threads; worker++) {
+      int firstPartition = worker;
+      tasks.add(
+          workers.submit(
+              () -> {
+                for (int p = firstPartition; p < partitionCount; p += threads) {
+                  Map<Integer, List<Tuple>> table = partitions.get(p);
+                  for (List<List<Tuple>> slicePartitions : scattered) {
+                    for (Tuple tuple : slicePartitions.get(p)) {
+                      table
+                          .computeIfAbsent(
+                              AdaptiveJoinOperator.keyHash(tuple, keyIndexes),
+                              k -> new ArrayList<>())
+                          .add(tuple);
+                    }
+                  }
+                }
+              }));
+    }
+    awaitAll(tasks);
+  }
+
+  /**
+   * Finds the build tuples whose keys hash like the probe tuple's keys.
+   *
+   * @param probe a probe tuple
+   * @param probeKeyIndexes positions of the join keys in the probe tuple
+   * @return the candidate build tuples, in input order
+   */
+  List<Tuple> get(Tuple probe, int[] probeKeyIndexes) {
+    int hash = AdaptiveJoinOperator.keyHash(probe, probeKeyIndexes);
+    return partitions.get((hash * 0x9E3779B9) >>> partitionShift).getOrDefault(hash, List.of());
+  }
+
+  private int partitionOf(Tuple tuple, int[] keyIndexes) {
+    return (AdaptiveJoinOperator.keyHash(tuple, keyIndexes) * 0x9E3779B9) >>> partitionShift;
+  }
+
+  /**
+   * Waits for tasks to finish, rethrowing the first failure.
+   *
+   * @param tasks the tasks
+   */
+  static void awaitAll(List<? extends Future<?>> tasks) {
+    for (Future<?> task : tasks) {
+      await(task);
+    }
+  }
+
+  /**
+   * Waits for a task to finish and returns its result, rethrowing its failure.
+   *
+   * @param task the task
+   * @return the task's result
+   */
+  static <T> T await(Future<T> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while joining", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
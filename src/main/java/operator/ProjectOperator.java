@@ -24,6 +24,9 @@ public class ProjectOperator extends Operator {
   // A list of indexes corresponding to the selected columns in the child schema
   private List<Integer> projectionIndexes;
 
+  // Whether the operator was closed and has not been reset since
+  private boolean closed;
+
   /**
    * Constructs a ProjectOperator.
    *
@@ -94,6 +97,24 @@ public class ProjectOperator extends Operator {
   @Override
   public void reset() {
     child.reset();
+    closed = false;
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    child.clearRuntimeFilters();
+  }
+
+  @Override
+  public void open() {
+    child.open();
+  }
+
+  /** Closes the child operator. */
+  @Override
+  public void close() {
+    child.close();
+    closed = true;
   }
 
   /**
@@ -104,18 +125,40 @@ public class ProjectOperator extends Operator {
    */
   @Override
   public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
     // Get the next tuple from the child operator
     Tuple childTuple = child.getNextTuple();
     if (childTuple == null) {
       return null; // No more tuples available
     }
+    return project(childTuple);
+  }
 
-    // Create a new list to hold the projected values
-    ArrayList<Integer> projectedValues = new ArrayList<>();
-    for (int index : projectionIndexes) {
+  /** Fuses the projection into the child's pipeline. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    return child.produce(childTuple -> consumer.accept(project(childTuple)));
+  }
+
+  /**
+   * Applies the projection to one tuple of the child.
+   *
+   * @param childTuple The tuple to project.
+   * @return The tuple with only the selected columns.
+   */
+  private Tuple project(Tuple childTuple) {
+    // Create a new array to hold the projected values
+    int[] projectedValues = new int[projectionIndexes.size()];
+    for (int i = 0; i < projectedValues.length; i++) {
+      int index = projectionIndexes.get(i);
       // Ensure the index is valid, then add the value from the corresponding column
-      if (index >= 0 && index < childTuple.getAllElements().size()) {
-        projectedValues.add(childTuple.getElementAtIndex(index));
+      if (index >= 0 && index < childTuple.size()) {
+        projectedValues[i] = childTuple.getElementAtIndex(index);
       } else {
         // Throw an error if the projection index is invalid (out of bounds)
         throw new IndexOutOfBoundsException("Invalid projection index: " + index);
@@ -1,56 +1,265 @@
 package operator;
 
 import common.DBCatalog;
+import common.EngineConfig;
+import common.MaterializedView;
+import common.RuntimeFilter;
+import common.SharedScans;
 import common.Tuple;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import net.sf.jsqlparser.schema.Column;
+import storage.ByteRange;
+import storage.ColumnRange;
+import storage.ColumnarTupleReader;
+import storage.ReadAheadTupleReader;
+import storage.RowGroupRange;
+import storage.ScanRange;
+import storage.TextTupleReader;
+import storage.TupleReader;
 
 /** Class to represent scan operators. e.g. select * from table */
 public class ScanOperator extends Operator {
-  private int cursor = 0;
-  private ArrayList<String> tableData;
+  private final String tableName;
 
+  // Reader over the table, opened lazily on the first call to getNextTuple
+  private TupleReader reader;
+
+  // Whether the scan was closed and has not been reset since
+  private boolean closed;
+
+  // Positions in the table file of the columns in outputSchema, or null if every column is read
+  private final int[] columnIndexes;
+
+  // Range each output column must lie in (null entries are unrestricted), or null
+  private final ColumnRange[] columnRanges;
+
+  // Part of the table to read, or null to read the whole table
+  private final ScanRange scanRange;
+
+  // Whether the table, if it is a materialized view, was refreshed since the scan was last closed
+  private boolean viewRefreshed;
+
+  // Shared scans of the batch the query belongs to, or null
+  private final SharedScans sharedScans;
+
+  // Runtime filters pushed down by joins above, and the output columns they apply to
+  private final ArrayList<RuntimeFilter> runtimeFilters = new ArrayList<>();
+  private final ArrayList<Integer> runtimeFilterColumns = new ArrayList<>();
+
+  /**
+   * Creates a scan over a table. The output schema may be any subset of the table's columns, in
+   * table order; only those columns are decoded from storage.
+   *
+   * @param outputSchema columns to produce, a subset of the table's columns
+   * @param tableName name of the table in the catalog
+   */
   public ScanOperator(ArrayList<Column> outputSchema, String tableName) {
+    this(outputSchema, tableName, Map.of());
+  }
+
+  /**
+   * Creates a scan over a table that only produces rows whose column values lie in the given
+   * ranges. The ranges come from predicates pushed down from the WHERE clause; on columnar tables
+   * they are also checked against the zone maps so that whole row groups are skipped.
+   *
+   * @param outputSchema columns to produce, a subset of the table's columns
+   * @param tableName name of the table in the catalog
+   * @param columnRanges ranges keyed by column name; each column must be in outputSchema
+   */
+  public ScanOperator(
+      ArrayList<Column> outputSchema, String tableName, Map<String, ColumnRange> columnRanges) {
+    this(outputSchema, tableName, columnRanges, null);
+  }
+
+  /**
+   * Creates a scan over part of a table, such as the rows appended since a materialized view was
+   * last refreshed.
+   *
+   * @param outputSchema columns to produce, a subset of the table's columns
+   * @param tableName name of the table in the catalog
+   * @param columnRanges ranges keyed by column name; each column must be in outputSchema
+   * @param scanRange part of the table to read, in the units of its layout, or null to read the
+   *     whole table
+   */
+  public ScanOperator(
+      ArrayList<Column> outputSchema,
+      String tableName,
+      Map<String, ColumnRange> columnRanges,
+      ScanRange scanRange) {
+    this(outputSchema, tableName, columnRanges, scanRange, null);
+  }
+
+  /**
+   * Creates a scan that reads the table through the shared scans of a batch of statements, if the
+   * table is shared.
+   *
+   * @param outputSchema columns to produce, a subset of the table's columns
+   * @param tableName name of the table in the catalog
+   * @param columnRanges ranges keyed by column name; each column must be in outputSchema
+   * @param scanRange part of the table to read, in the units of its layout, or null to read the
+   *     whole table
+   * @param sharedScans shared scans of the batch, or null
+   */
+  public ScanOperator(
+      ArrayList<Column> outputSchema,
+      String tableName,
+      Map<String, ColumnRange> columnRanges,
+      ScanRange scanRange,
+      SharedScans sharedScans) {
     super(outputSchema);
-    tableData = readTableFile(tableName);
+    this.tableName = tableName;
+    this.columnIndexes = resolveColumnIndexes(outputSchema, tableName);
+    this.columnRanges = resolveColumnRanges(outputSchema, columnRanges);
+    this.scanRange = scanRange;
+    this.sharedScans = sharedScans;
+  }
+
+  /**
+   * Aligns the pushed-down ranges with the output schema.
+   *
+   * @return one range (or null) per output column, or null if no column is restricted
+   */
+  private static ColumnRange[] resolveColumnRanges(
+      ArrayList<Column> outputSchema, Map<String, ColumnRange> columnRanges) {
+    if (columnRanges.isEmpty()) {
+      return null;
+    }
+    ColumnRange[] ranges = new ColumnRange[outputSchema.size()];
+    for (int i = 0; i < outputSchema.size(); i++) {
+      ranges[i] = columnRanges.get(outputSchema.get(i).getColumnName());
+    }
+    return ranges;
   }
 
   /**
-   * Reads a table file, deserializes each line, and returns the rows
+   * Maps each output column to its position in the table file.
    *
-   * @param tableName
+   * @return the positions, or null if the output schema is the full table schema
    */
-  private ArrayList<String> readTableFile(String tableName) {
+  static int[] resolveColumnIndexes(ArrayList<Column> outputSchema, String tableName) {
+    ArrayList<Column> tableColumns = DBCatalog.getInstance().getColumns(tableName);
+    if (tableColumns == null) {
+      return null;
+    }
+    int[] indexes = new int[outputSchema.size()];
+    boolean allColumns = outputSchema.size() == tableColumns.size();
+    for (int i = 0; i < outputSchema.size(); i++) {
+      String columnName = outputSchema.get(i).getColumnName();
+      indexes[i] = -1;
+      for (int j = 0; j < tableColumns.size(); j++) {
+        if (tableColumns.get(j).getColumnName().equals(columnName)) {
+          indexes[i] = j;
+          break;
+        }
+      }
+      if (indexes[i] == -1) {
+        throw new IllegalArgumentException("Column " + columnName + " not found in " + tableName);
+      }
+      if (i > 0 && indexes[i] <= indexes[i - 1]) {
+        throw new IllegalArgumentException("Scan columns must be listed in table order");
+      }
+      allColumns &= indexes[i] == i;
+    }
+    return allColumns ? null : indexes;
+  }
+
+  /**
+   * Opens a reader over the table. The columnar copy of the table is used if one exists, otherwise
+   * the text file; a scan restricted to a byte range reads the text file, and one restricted to a
+   * row group range the columnar copy. Rows are decoded one at a time as they are requested, so a
+   * consumer that stops early never reads the rest of the table. Large tables are read ahead of the
+   * consumer on a background thread, as configured in {@link EngineConfig}. A table shared by the
+   * statements of a batch is read from their {@link SharedScans} instead.
+   *
+   * <p>A materialized view is first brought up to date with its base tables, once per run of the
+   * plan: rescans of the view within a run read the same rows.
+   */
+  private TupleReader openTableReader() throws IOException {
+    if (!viewRefreshed && scanRange == null) {
+      MaterializedView.refreshIfView(tableName);
+      viewRefreshed = true;
+    }
+    if (sharedScans != null && scanRange == null) {
+      TupleReader sharedReader =
+          sharedScans.openReader(tableName, columnIndexes, outputSchema.size());
+      if (sharedReader != null) {
+        return sharedReader;
+      }
+    }
     DBCatalog dbDirectory = DBCatalog.getInstance();
-    File tableFile = dbDirectory.getFileForTable(tableName);
-    ArrayList<String> rows = new ArrayList<>();
-    try (InputStream inputStream = new FileInputStream(tableFile);
-        BufferedReader br = new BufferedReader(new InputStreamReader(inputStream))) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        String serializedTokens = line.replaceAll("\\s+", ",");
-        rows.add(serializedTokens);
+    TupleReader tableReader;
+    if (scanRange instanceof RowGroupRange
+        || (scanRange == null && dbDirectory.isColumnar(tableName))) {
+      List<String> columnNames = new ArrayList<>();
+      for (Column column : outputSchema) {
+        columnNames.add(column.getColumnName());
       }
-      br.close();
-    } catch (IOException e) {
-      e.printStackTrace();
+      tableReader =
+          new ColumnarTupleReader(
+              dbDirectory.getColumnarDirectoryForTable(tableName),
+              columnNames,
+              columnRanges,
+              (RowGroupRange) scanRange);
+    } else {
+      File tableFile = dbDirectory.getFileForTable(tableName);
+      tableReader =
+          new TextTupleReader(tableFile, (ByteRange) scanRange, columnIndexes, outputSchema.size());
+    }
+
+    EngineConfig config = EngineConfig.getInstance();
+    if (config.getReadAheadDepth() > 0
+        && dbDirectory.getTableSizeBytes(tableName) >= config.getReadAheadMinTableBytes()) {
+      tableReader =
+          new ReadAheadTupleReader(
+              tableReader, config.getReadAheadDepth(), config.getReadAheadPageSize());
     }
-    return rows;
+    return tableReader;
   }
 
   /** Resets cursor on the operator to the beginning */
   public void reset() {
-    cursor = 0;
+    closeReader();
+    closed = false;
+  }
+
+  /** Opens the underlying table file, unless the pushed-down ranges rule out every row. */
+  @Override
+  public void open() {
+    if (reader == null && !closed && !hasEmptyRange()) {
+      try {
+        reader = openTableReader();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Closes the underlying table file; the scan produces nothing more until it is reset. The next
+   * run refreshes the table again if it is a materialized view.
+   */
+  @Override
+  public void close() {
+    closeReader();
+    closed = true;
+    viewRefreshed = false;
+  }
+
+  private void closeReader() {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      reader = null;
+    }
   }
-  ;
 
   /**
    * Get next tuple from operator
@@ -58,12 +267,102 @@ public class ScanOperator extends Operator {
    * @return next Tuple, or null if we are at the end
    */
   public Tuple getNextTuple() {
-    if (cursor < tableData.size()) {
-      return new Tuple(tableData.get(cursor++));
+    try {
+      if (reader == null) {
+        if (closed || hasEmptyRange()) {
+          return null;
+        }
+        reader = openTableReader();
+      }
+      Tuple tuple;
+      while ((tuple = reader.readNextTuple()) != null) {
+        if (inColumnRanges(tuple) && passesRuntimeFilters(tuple)) {
+          return tuple;
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
     }
     return null;
   }
 
+  /** Reads the table in a tight loop, pushing every qualifying row into the consumer. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    try {
+      if (reader == null) {
+        if (closed || hasEmptyRange()) {
+          return true;
+        }
+        reader = openTableReader();
+      }
+      Tuple tuple;
+      while ((tuple = reader.readNextTuple()) != null) {
+        if (inColumnRanges(tuple) && passesRuntimeFilters(tuple) && !consumer.accept(tuple)) {
+          return false;
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return true;
+  }
+
+  /** Checks whether the column or scan ranges rule out every row, so the table need not be read. */
+  private boolean hasEmptyRange() {
+    if (scanRange != null && scanRange.start() >= scanRange.end()) {
+      return true;
+    }
+    if (columnRanges != null) {
+      for (ColumnRange range : columnRanges) {
+        if (range != null && range.isEmpty()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean inColumnRanges(Tuple tuple) {
+    if (columnRanges != null) {
+      for (int i = 0; i < columnRanges.length; i++) {
+        if (columnRanges[i] != null && !columnRanges[i].contains(tuple.getElementAtIndex(i))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Accepts the filter if the column is one of this scan's output columns. */
+  @Override
+  public boolean addRuntimeFilter(Column column, RuntimeFilter filter) {
+    int index = findColumnIndex(outputSchema, column);
+    if (index == -1) {
+      return false;
+    }
+    runtimeFilters.add(filter);
+    runtimeFilterColumns.add(index);
+    return true;
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    runtimeFilters.clear();
+    runtimeFilterColumns.clear();
+  }
+
+  private boolean passesRuntimeFilters(Tuple tuple) {
+    for (int i = 0; i < runtimeFilters.size(); i++) {
+      if (!runtimeFilters
+          .get(i)
+          .mightContain(tuple.getElementAtIndex(runtimeFilterColumns.get(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Collects all tuples of this operator.
    *
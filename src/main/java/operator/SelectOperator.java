@@ -1,6 +1,7 @@
 package operator;
 
 import common.ExpressionEvaluator;
+import common.RuntimeFilter;
 import common.Tuple;
 import java.util.ArrayList;
 import java.util.Map;
@@ -12,6 +13,13 @@ public class SelectOperator extends Operator {
   private Expression whereExpression;
   private ExpressionEvaluator evaluator;
 
+  // Whether the operator was closed and has not been reset since
+  private boolean closed;
+
+  // Runtime filters that could not be pushed into the child, and the columns they apply to
+  private final ArrayList<RuntimeFilter> runtimeFilters = new ArrayList<>();
+  private final ArrayList<Integer> runtimeFilterColumns = new ArrayList<>();
+
   public SelectOperator(
       Operator child, Expression whereExpression, Map<String, String> tableAliases) {
     super(new ArrayList<>(child.getOutputSchema()));
@@ -23,19 +31,80 @@ public class SelectOperator extends Operator {
   @Override
   public void reset() {
     child.reset();
+    closed = false;
+  }
+
+  @Override
+  public void open() {
+    child.open();
+  }
+
+  @Override
+  public void close() {
+    child.close();
+    closed = true;
   }
 
   @Override
   public Tuple getNextTuple() {
-    while (true) {
+    while (!closed) {
       Tuple nextTuple = child.getNextTuple();
       if (nextTuple == null) {
         return null;
       }
-      if (evaluator.evaluate(whereExpression, nextTuple, getOutputSchema())) {
+      if (passesRuntimeFilters(nextTuple)
+          && evaluator.evaluate(whereExpression, nextTuple, getOutputSchema())) {
         return nextTuple;
       }
     }
+    return null;
+  }
+
+  /** Fuses the predicate into the child's pipeline. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    ArrayList<Column> schema = getOutputSchema();
+    return child.produce(
+        tuple ->
+            !passesRuntimeFilters(tuple)
+                || !evaluator.evaluate(whereExpression, tuple, schema)
+                || consumer.accept(tuple));
+  }
+
+  /** Pushes the filter into the child if possible, otherwise applies it before the predicate. */
+  @Override
+  public boolean addRuntimeFilter(Column column, RuntimeFilter filter) {
+    if (child.addRuntimeFilter(column, filter)) {
+      return true;
+    }
+    int index = findColumnIndex(getOutputSchema(), column);
+    if (index == -1) {
+      return false;
+    }
+    runtimeFilters.add(filter);
+    runtimeFilterColumns.add(index);
+    return true;
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    runtimeFilters.clear();
+    runtimeFilterColumns.clear();
+    child.clearRuntimeFilters();
+  }
+
+  private boolean passesRuntimeFilters(Tuple tuple) {
+    for (int i = 0; i < runtimeFilters.size(); i++) {
+      if (!runtimeFilters
+          .get(i)
+          .mightContain(tuple.getElementAtIndex(runtimeFilterColumns.get(i)))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -1,25 +1,38 @@
 package operator;
 
 import common.Tuple;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.select.OrderByElement;
+import storage.TupleReader;
 
 /**
  * SortOperator class implements sorting functionality for database operations. It sorts tuples
- * based on specified ORDER BY elements.
+ * based on specified ORDER BY elements. Sorting is done by an {@link ExternalSorter}, which packs
+ * the rows into an int[] arena and radix-sorts them on their keys, in parallel for large inputs,
+ * and merges sorted runs spilled to disk when the input exceeds the sort memory budget. The sort is
+ * stable.
  */
 public class SortOperator extends Operator {
   private final Operator childOperator;
   private final List<OrderByElement> orderByElements;
   private final ArrayList<Column> outputSchema;
-  private List<Tuple> sortedTuples;
-  private int currentIndex;
+
+  // Positions of the ORDER BY columns in the output schema, resolved once, and their directions
+  private final int[] keyColumns;
+  private final boolean[] descending;
+
+  // The sort in progress and its output, or null until the child has been sorted
+  private ExternalSorter sorter;
+  private TupleReader sortedTuples;
+
+  // Whether the operator was closed and has not been reset since
+  private boolean closed;
 
   /**
    * Constructor for SortOperator.
@@ -37,7 +50,41 @@ public class SortOperator extends Operator {
     this.orderByElements = orderByElements;
     this.outputSchema = outputSchema;
     this.sortedTuples = null;
-    this.currentIndex = 0;
+
+    // ORDER BY elements that are not columns of the output are ignored
+    List<Integer> columns = new ArrayList<>();
+    List<Boolean> directions = new ArrayList<>();
+    for (OrderByElement orderByElement : orderByElements) {
+      Expression expr = orderByElement.getExpression();
+      if (expr instanceof Column) {
+        int columnIndex = findColumnIndex((Column) expr);
+        if (columnIndex != -1) {
+          columns.add(columnIndex);
+          directions.add(!orderByElement.isAsc());
+        }
+      }
+    }
+    this.keyColumns = columns.stream().mapToInt(Integer::intValue).toArray();
+    this.descending = new boolean[directions.size()];
+    for (int i = 0; i < descending.length; i++) {
+      descending[i] = directions.get(i);
+    }
+  }
+
+  /**
+   * Finds the index of a column in the output schema.
+   *
+   * @param column The column to find.
+   * @return The index of the column, or -1 if not found.
+   */
+  private int findColumnIndex(Column column) {
+    String columnName = column.getColumnName();
+    for (int i = 0; i < outputSchema.size(); i++) {
+      if (outputSchema.get(i).getColumnName().equalsIgnoreCase(columnName)) {
+        return i;
+      }
+    }
+    return -1; // Column not found
   }
 
   /**
@@ -47,86 +94,118 @@ public class SortOperator extends Operator {
    */
   @Override
   public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
     if (sortedTuples == null) {
       bufferAndSortTuples();
     }
-    if (currentIndex < sortedTuples.size()) {
-      return sortedTuples.get(currentIndex++);
+    try {
+      Tuple tuple = sortedTuples.readNextTuple();
+      if (tuple == null && sorter != null) {
+        // Every tuple has been read: give back the sort's memory without waiting for close
+        sorter.close();
+        sorter = null;
+      }
+      return tuple;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-    return null;
   }
 
   /** Buffers all tuples from the child operator and sorts them. */
   private void bufferAndSortTuples() {
-    sortedTuples = new ArrayList<>();
+    sorter = new ExternalSorter(keyColumns, descending);
     Tuple tuple;
     while ((tuple = childOperator.getNextTuple()) != null) {
-      sortedTuples.add(tuple);
+      sorter.add(tuple);
     }
-    Collections.sort(sortedTuples, new TupleComparator());
+    sortedTuples = sorter.sort();
   }
 
   /**
-   * Inner class implementing Comparator for Tuple objects. Used for sorting tuples based on ORDER
-   * BY elements.
+   * Pipeline breaker: lets the child's pipeline fill the sort buffer, then pushes the sorted tuples
+   * into the consumer.
    */
-  private class TupleComparator implements Comparator<Tuple> {
-    @Override
-    public int compare(Tuple t1, Tuple t2) {
-      for (OrderByElement orderByElement : orderByElements) {
-        Expression expr = orderByElement.getExpression();
-        if (expr instanceof Column) {
-          Column column = (Column) expr;
-          int columnIndex = findColumnIndex(column);
-          if (columnIndex != -1) {
-            int value1 = t1.getElementAtIndex(columnIndex);
-            int value2 = t2.getElementAtIndex(columnIndex);
-            int comparison = Integer.compare(value1, value2);
-            if (comparison != 0) {
-              return orderByElement.isAsc() ? comparison : -comparison;
-            }
-          }
-        }
-      }
-      return 0;
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
     }
-
-    /**
-     * Finds the index of a column in the output schema.
-     *
-     * @param column The column to find.
-     * @return The index of the column, or -1 if not found.
-     */
-    private int findColumnIndex(Column column) {
-      String columnName = column.getColumnName();
-      for (int i = 0; i < outputSchema.size(); i++) {
-        if (outputSchema.get(i).getColumnName().equalsIgnoreCase(columnName)) {
-          return i;
-        }
+    if (sortedTuples == null) {
+      ExternalSorter input = new ExternalSorter(keyColumns, descending);
+      sorter = input;
+      childOperator.produce(
+          tuple -> {
+            input.add(tuple);
+            return true;
+          });
+      sortedTuples = sorter.sort();
+    }
+    Tuple tuple;
+    while ((tuple = getNextTuple()) != null) {
+      if (!consumer.accept(tuple)) {
+        return false;
       }
-      return -1; // Column not found
     }
+    return true;
   }
 
   /** Resets the operator to its initial state. */
   @Override
   public void reset() {
     childOperator.reset();
-    sortedTuples = null;
-    currentIndex = 0;
+    releaseSort();
+    closed = false;
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    childOperator.clearRuntimeFilters();
+  }
+
+  @Override
+  public void open() {
+    childOperator.open();
+  }
+
+  /** Releases the sort buffer and closes the child operator. */
+  @Override
+  public void close() {
+    childOperator.close();
+    releaseSort();
+    closed = true;
+  }
+
+  /** Drops the sorted output and deletes any spilled runs. */
+  private void releaseSort() {
+    if (sortedTuples != null) {
+      try {
+        sortedTuples.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      sortedTuples = null;
+    }
+    if (sorter != null) {
+      sorter.close();
+      sorter = null;
+    }
   }
 
   /**
-   * Retrieves all tuples in sorted order.
+   * Retrieves the remaining tuples in sorted order.
    *
-   * @return A list of all tuples, sorted according to ORDER BY elements.
+   * @return A list of the tuples, sorted according to ORDER BY elements.
    */
   @Override
   public List<Tuple> getAllTuples() {
-    if (sortedTuples == null) {
-      bufferAndSortTuples();
+    List<Tuple> tuples = new ArrayList<>();
+    Tuple tuple;
+    while ((tuple = getNextTuple()) != null) {
+      tuples.add(tuple);
     }
-    return new ArrayList<>(sortedTuples);
+    return tuples;
   }
 
   /**
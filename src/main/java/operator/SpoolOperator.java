@@ -0,0 +1,230 @@
+package operator;
+
+import common.EngineConfig;
+import common.MemoryManager;
+import common.RuntimeFilter;
+import common.Tuple;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+import storage.SpillFile;
+import storage.TupleReader;
+
+/**
+ * Materializes its child so that rescanning it is cheap, for the inner side of a nested loop join
+ * that is more than a plain scan (e.g. a selection, whose predicate would otherwise be evaluated
+ * again on every row for every outer tuple). A child that is read once costs nothing extra: the
+ * first pass streams straight through. After a reset, the next complete pass is recorded as it
+ * streams, in memory for as long as the {@link MemoryManager} grants it memory, up to
+ * join.memoryBytes (see {@link EngineConfig}), and in a spill file past that, and every later reset
+ * replays the recording instead of recomputing the child.
+ *
+ * <p>Closing the spool drops the recording, since the child may produce different tuples when it is
+ * run again, e.g. with new parameter values.
+ */
+public class SpoolOperator extends Operator {
+  private final Operator child;
+
+  // Whether the spool was closed and has not been reset since; the reset that follows a close
+  // starts a new run rather than a rescan
+  private boolean closed;
+
+  // The recording: its first tuples in memory, within the granted memory, the rest in a spill
+  // file; complete once the child has been read to the end while recording
+  private MemoryManager.Grant memory;
+  private List<Tuple> buffered;
+  private SpillFile spilled;
+  private boolean recording;
+  private boolean complete;
+
+  // Replay position: in the buffered tuples, then in the spill file
+  private int replayIndex;
+  private TupleReader replayReader;
+
+  /**
+   * Creates a spool over an operator.
+   *
+   * @param child the operator to materialize
+   */
+  public SpoolOperator(Operator child) {
+    super(child.getOutputSchema());
+    this.child = child;
+  }
+
+  /**
+   * Checks whether the spool replays its recording instead of reading its child.
+   *
+   * @return true once a complete pass of the child has been recorded
+   */
+  public boolean isReplaying() {
+    return complete;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    if (closed) {
+      return null;
+    }
+    if (complete) {
+      return nextReplayedTuple();
+    }
+    Tuple tuple = child.getNextTuple();
+    if (recording) {
+      if (tuple == null) {
+        finishRecording();
+      } else {
+        record(tuple);
+      }
+    }
+    return tuple;
+  }
+
+  /** Streams through the child's pipeline, recording the tuples if this pass is recorded. */
+  @Override
+  public boolean produce(TupleConsumer consumer) {
+    if (closed) {
+      return true;
+    }
+    if (complete) {
+      return super.produce(consumer);
+    }
+    if (!recording) {
+      return child.produce(consumer);
+    }
+    boolean finished =
+        child.produce(
+            tuple -> {
+              record(tuple);
+              return consumer.accept(tuple);
+            });
+    if (finished) {
+      finishRecording();
+    }
+    return finished;
+  }
+
+  private void finishRecording() {
+    complete = true;
+    recording = false;
+    memory.setUsedBytes(buffered.size() * Tuple.estimatedHeapBytes(getOutputSchema().size()));
+  }
+
+  private void record(Tuple tuple) {
+    long bufferedBytes =
+        (buffered.size() + 1L) * Tuple.estimatedHeapBytes(getOutputSchema().size());
+    if (spilled == null
+        && (buffered.isEmpty()
+            || bufferedBytes <= memory.getBytes()
+            || memory.grow(bufferedBytes))) {
+      buffered.add(tuple);
+      return;
+    }
+    try {
+      if (spilled == null) {
+        spilled =
+            new SpillFile(
+                new File(EngineConfig.getInstance().getTempDirectory()), getOutputSchema().size());
+      }
+      spilled.writeTuple(tuple);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Tuple nextReplayedTuple() {
+    if (replayIndex < buffered.size()) {
+      return buffered.get(replayIndex++);
+    }
+    if (spilled == null) {
+      return null;
+    }
+    try {
+      if (replayReader == null) {
+        replayReader = spilled.openReader();
+      }
+      return replayReader.readNextTuple();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void closeReplayReader() {
+    if (replayReader != null) {
+      try {
+        replayReader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      replayReader = null;
+    }
+  }
+
+  /** Drops the recording, complete or not. */
+  private void dropRecording() {
+    closeReplayReader();
+    if (spilled != null) {
+      try {
+        spilled.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      spilled = null;
+    }
+    buffered = null;
+    if (memory != null) {
+      memory.close();
+      memory = null;
+    }
+    replayIndex = 0;
+    recording = false;
+    complete = false;
+  }
+
+  /**
+   * Rewinds to the first tuple. A complete recording is replayed from the start; otherwise the
+   * child is reset and its next pass is recorded, unless the spool was just closed.
+   */
+  @Override
+  public void reset() {
+    if (complete) {
+      closeReplayReader();
+      replayIndex = 0;
+      return;
+    }
+    dropRecording();
+    child.reset();
+    if (!closed) {
+      memory = MemoryManager.getInstance().acquire(EngineConfig.getInstance().getJoinMemoryBytes());
+      buffered = new ArrayList<>();
+      recording = true;
+    }
+    closed = false;
+  }
+
+  @Override
+  public void open() {
+    if (!complete) {
+      child.open();
+    }
+  }
+
+  @Override
+  public void close() {
+    dropRecording();
+    closed = true;
+    child.close();
+  }
+
+  @Override
+  public boolean addRuntimeFilter(Column column, RuntimeFilter filter) {
+    return child.addRuntimeFilter(column, filter);
+  }
+
+  @Override
+  public void clearRuntimeFilters() {
+    child.clearRuntimeFilters();
+  }
+}
@@ -0,0 +1,20 @@
+package operator;
+
+import common.Tuple;
+
+/**
+ * Receives the tuples an operator produces in push-based execution (see {@link Operator#produce}).
+ * Operators chain consumers so that a single loop in the scan at the bottom of a pipeline drives
+ * each tuple through the selections, projections and join probes above it.
+ */
+@FunctionalInterface
+public interface TupleConsumer {
+
+  /**
+   * Consumes one tuple.
+   *
+   * @param tuple the tuple
+   * @return true to keep receiving tuples, false to stop the producer (e.g. a LIMIT was reached)
+   */
+  boolean accept(Tuple tuple);
+}
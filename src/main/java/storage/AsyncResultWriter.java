@@ -0,0 +1,139 @@
+package storage;
+
+import common.Tuple;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Wraps another result writer and performs the actual formatting and writing on a background
+ * thread, so that producing the output overlaps with executing the rest of the query. Tuples are
+ * handed over in batches through a bounded queue; the query thread only blocks when the writer
+ * falls more than the queue depth behind.
+ */
+public class AsyncResultWriter implements ResultWriter {
+  private static final int BATCH_SIZE = 1024;
+
+  // Markers sent through the queue in place of a batch
+  private static final List<Tuple> FLUSH = new ArrayList<>(0);
+  private static final List<Tuple> END = new ArrayList<>(0);
+
+  private final ResultWriter delegate;
+  private final BlockingQueue<List<Tuple>> batches;
+  private final Semaphore flushed;
+  private final Thread writer;
+  private volatile IOException failure;
+
+  private List<Tuple> currentBatch;
+
+  /**
+   * Starts the background writer.
+   *
+   * @param delegate writer that formats the output; owned and closed by this writer
+   * @param depth maximum number of batches queued for the background writer
+   */
+  public AsyncResultWriter(ResultWriter delegate, int depth) {
+    this.delegate = delegate;
+    this.batches = new ArrayBlockingQueue<>(Math.max(depth, 1));
+    this.flushed = new Semaphore(0);
+    this.currentBatch = new ArrayList<>(BATCH_SIZE);
+    this.writer = Thread.ofPlatform().name("result-writer").daemon().start(this::writeBatches);
+  }
+
+  /** Body of the background writer. After a failure it keeps draining so producers never block. */
+  private void writeBatches() {
+    while (true) {
+      List<Tuple> batch;
+      try {
+        batch = batches.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (batch == END) {
+        return;
+      }
+      try {
+        if (failure == null) {
+          if (batch == FLUSH) {
+            delegate.flush();
+          } else {
+            for (Tuple tuple : batch) {
+              delegate.writeTuple(tuple);
+            }
+          }
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
+      if (batch == FLUSH) {
+        flushed.release();
+      }
+    }
+  }
+
+  @Override
+  public void writeTuple(Tuple tuple) throws IOException {
+    currentBatch.add(tuple);
+    if (currentBatch.size() == BATCH_SIZE) {
+      handOff(currentBatch);
+      currentBatch = new ArrayList<>(BATCH_SIZE);
+    }
+  }
+
+  private void handOff(List<Tuple> batch) throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    try {
+      batches.put(batch);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while handing off results", e);
+    }
+  }
+
+  /** Hands off the pending batch and waits until the background writer has flushed everything. */
+  @Override
+  public void flush() throws IOException {
+    if (!currentBatch.isEmpty()) {
+      handOff(currentBatch);
+      currentBatch = new ArrayList<>(BATCH_SIZE);
+    }
+    handOff(FLUSH);
+    try {
+      flushed.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while flushing results", e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Writes the remaining tuples, stops the background writer and closes the wrapped writer. */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!currentBatch.isEmpty()) {
+        handOff(currentBatch);
+        currentBatch = new ArrayList<>(0);
+      }
+    } finally {
+      try {
+        batches.put(END);
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        writer.interrupt();
+      }
+      delegate.close();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
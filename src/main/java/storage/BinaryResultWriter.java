@@ -0,0 +1,81 @@
+package storage;
+
+import common.Tuple;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Writes result tuples in the binary page format: the output is a sequence of {@link #PAGE_SIZE}
+ * byte pages, each starting with two ints (the number of attributes per tuple and the number of
+ * tuples on the page) followed by the tuples' attributes as big-endian ints. The unused end of
+ * every page is zero-filled.
+ */
+public class BinaryResultWriter implements ResultWriter {
+  public static final int PAGE_SIZE = 4096;
+  private static final int HEADER_SIZE = 8;
+
+  private final OutputStream out;
+  private final ByteBuffer page;
+  private int attributes;
+  private int tuplesOnPage;
+
+  /**
+   * Creates a writer over a stream.
+   *
+   * @param out stream receiving the pages; closed when this writer is closed
+   */
+  public BinaryResultWriter(OutputStream out) {
+    this.out = out;
+    this.page = ByteBuffer.allocate(PAGE_SIZE);
+    this.attributes = -1;
+    this.tuplesOnPage = 0;
+    page.position(HEADER_SIZE);
+  }
+
+  @Override
+  public void writeTuple(Tuple tuple) throws IOException {
+    if (attributes == -1) {
+      attributes = tuple.size();
+    } else if (tuple.size() != attributes) {
+      throw new IOException("All tuples written to a binary result must have the same width");
+    }
+    if (page.remaining() < attributes * Integer.BYTES) {
+      writePage();
+    }
+    for (int i = 0; i < attributes; i++) {
+      page.putInt(tuple.getElementAtIndex(i));
+    }
+    tuplesOnPage++;
+  }
+
+  /** Fills in the header of the current page, writes it out and starts a new page. */
+  private void writePage() throws IOException {
+    if (tuplesOnPage == 0) {
+      return;
+    }
+    page.putInt(0, attributes);
+    page.putInt(4, tuplesOnPage);
+    Arrays.fill(page.array(), page.position(), PAGE_SIZE, (byte) 0);
+    out.write(page.array(), 0, PAGE_SIZE);
+    page.clear();
+    page.position(HEADER_SIZE);
+    tuplesOnPage = 0;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writePage();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      writePage();
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package storage;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Packs non-negative integers into a fixed number of bits each. Values are laid out little-endian
+ * within a continuous bit stream, so count values of width w take exactly ceil(count * w / 8)
+ * bytes. Widths up to 56 bits are supported, which covers the difference between any two ints.
+ */
+final class BitPacker {
+  private BitPacker() {}
+
+  /**
+   * Returns the number of bits needed to represent every value in [0, maxValue].
+   *
+   * @param maxValue largest (non-negative) value that will be packed
+   * @return number of bits, 0 if every value is zero
+   */
+  static int bitWidth(long maxValue) {
+    return 64 - Long.numberOfLeadingZeros(maxValue);
+  }
+
+  /**
+   * Writes values using bitWidth bits each.
+   *
+   * @param values values to pack, each in [0, 2^bitWidth)
+   * @param count number of values to pack
+   * @param bitWidth bits per value
+   * @param out stream receiving the packed bytes
+   */
+  static void pack(long[] values, int count, int bitWidth, DataOutputStream out)
+      throws IOException {
+    if (bitWidth == 0) {
+      return;
+    }
+    long buffer = 0;
+    int bits = 0;
+    for (int i = 0; i < count; i++) {
+      buffer |= values[i] << bits;
+      bits += bitWidth;
+      while (bits >= 8) {
+        out.writeByte((int) buffer);
+        buffer >>>= 8;
+        bits -= 8;
+      }
+    }
+    if (bits > 0) {
+      out.writeByte((int) buffer);
+    }
+  }
+
+  /**
+   * Reads values written by {@link #pack}.
+   *
+   * @param in buffer positioned at the first packed byte; advanced past the packed values
+   * @param count number of values to read
+   * @param bitWidth bits per value
+   * @param dest array receiving the values
+   */
+  static void unpack(ByteBuffer in, int count, int bitWidth, long[] dest) {
+    if (bitWidth == 0) {
+      Arrays.fill(dest, 0, count, 0L);
+      return;
+    }
+    long mask = (1L << bitWidth) - 1;
+    long buffer = 0;
+    int bits = 0;
+    for (int i = 0; i < count; i++) {
+      while (bits < bitWidth) {
+        buffer |= (long) (in.get() & 0xFF) << bits;
+        bits += 8;
+      }
+      dest[i] = buffer & mask;
+      buffer >>>= bitWidth;
+      bits -= bitWidth;
+    }
+  }
+}
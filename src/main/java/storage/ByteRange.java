@@ -0,0 +1,51 @@
+package storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Range [start, end) of byte offsets in a table file. Scans of a text table use it as their {@link
+ * ScanRange}, and readers use it to stop at a file's committed length. Both ends must lie on row
+ * boundaries.
+ *
+ * @param start offset of the first byte of the range
+ * @param end offset just past the last byte of the range
+ */
+public record ByteRange(long start, long end) implements ScanRange {
+
+  /**
+   * Restricts a stream over the whole file to the bytes of the range.
+   *
+   * @param in stream positioned at the start of the file; closed with the returned stream
+   * @return stream over the range
+   * @throws IOException if the stream cannot be skipped to the start of the range
+   */
+  InputStream limit(InputStream in) throws IOException {
+    in.skipNBytes(start);
+    return new FilterInputStream(in) {
+      private long remaining = end - start;
+
+      @Override
+      public int read() throws IOException {
+        if (remaining <= 0) {
+          return -1;
+        }
+        remaining--;
+        return super.read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+          return -1;
+        }
+        int count = super.read(b, off, (int) Math.min(len, remaining));
+        if (count > 0) {
+          remaining -= count;
+        }
+        return count;
+      }
+    };
+  }
+}
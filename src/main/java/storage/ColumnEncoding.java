@@ -0,0 +1,234 @@
+package storage;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lightweight encodings for one row group of an integer column. The columnar writer encodes each
+ * row group with every encoding and keeps the smallest, so sorted, clustered, low-cardinality and
+ * repetitive columns all compress well without a general-purpose compressor.
+ */
+public enum ColumnEncoding {
+  /** Values stored as 4-byte ints. */
+  PLAIN(0) {
+    @Override
+    void encode(int[] values, int count, DataOutputStream out) throws IOException {
+      for (int i = 0; i < count; i++) {
+        out.writeInt(values[i]);
+      }
+    }
+
+    @Override
+    void decode(ByteBuffer in, int count, int[] dest) {
+      for (int i = 0; i < count; i++) {
+        dest[i] = in.getInt();
+      }
+    }
+  },
+
+  /** Runs of equal values stored as (value, run length) pairs. */
+  RUN_LENGTH(1) {
+    @Override
+    void encode(int[] values, int count, DataOutputStream out) throws IOException {
+      int runs = 0;
+      for (int i = 0; i < count; i++) {
+        if (i == 0 || values[i] != values[i - 1]) {
+          runs++;
+        }
+      }
+      out.writeInt(runs);
+      int start = 0;
+      for (int i = 1; i <= count; i++) {
+        if (i == count || values[i] != values[start]) {
+          out.writeInt(values[start]);
+          out.writeInt(i - start);
+          start = i;
+        }
+      }
+    }
+
+    @Override
+    void decode(ByteBuffer in, int count, int[] dest) {
+      int runs = in.getInt();
+      int position = 0;
+      for (int r = 0; r < runs; r++) {
+        int value = in.getInt();
+        int length = in.getInt();
+        Arrays.fill(dest, position, position + length, value);
+        position += length;
+      }
+    }
+  },
+
+  /** Sorted dictionary of the distinct values followed by bit-packed dictionary codes. */
+  DICTIONARY(2) {
+    @Override
+    void encode(int[] values, int count, DataOutputStream out) throws IOException {
+      int[] sorted = Arrays.copyOf(values, count);
+      Arrays.sort(sorted);
+      int distinct = 0;
+      for (int i = 0; i < count; i++) {
+        if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+          sorted[distinct++] = sorted[i];
+        }
+      }
+      out.writeInt(distinct);
+      for (int i = 0; i < distinct; i++) {
+        out.writeInt(sorted[i]);
+      }
+      long[] codes = new long[count];
+      for (int i = 0; i < count; i++) {
+        codes[i] = Arrays.binarySearch(sorted, 0, distinct, values[i]);
+      }
+      int bitWidth = BitPacker.bitWidth(Math.max(distinct - 1, 0));
+      out.writeByte(bitWidth);
+      BitPacker.pack(codes, count, bitWidth, out);
+    }
+
+    @Override
+    void decode(ByteBuffer in, int count, int[] dest) {
+      int distinct = in.getInt();
+      int[] dictionary = new int[distinct];
+      for (int i = 0; i < distinct; i++) {
+        dictionary[i] = in.getInt();
+      }
+      int bitWidth = in.get();
+      long[] codes = new long[count];
+      BitPacker.unpack(in, count, bitWidth, codes);
+      for (int i = 0; i < count; i++) {
+        dest[i] = dictionary[(int) codes[i]];
+      }
+    }
+  },
+
+  /** Minimum of the row group followed by each value's offset from it, bit-packed. */
+  FRAME_OF_REFERENCE(3) {
+    @Override
+    void encode(int[] values, int count, DataOutputStream out) throws IOException {
+      int min = Integer.MAX_VALUE;
+      int max = Integer.MIN_VALUE;
+      for (int i = 0; i < count; i++) {
+        min = Math.min(min, values[i]);
+        max = Math.max(max, values[i]);
+      }
+      long[] offsets = new long[count];
+      for (int i = 0; i < count; i++) {
+        offsets[i] = (long) values[i] - min;
+      }
+      int bitWidth = BitPacker.bitWidth(count == 0 ? 0 : (long) max - min);
+      out.writeInt(min);
+      out.writeByte(bitWidth);
+      BitPacker.pack(offsets, count, bitWidth, out);
+    }
+
+    @Override
+    void decode(ByteBuffer in, int count, int[] dest) {
+      int min = in.getInt();
+      int bitWidth = in.get();
+      long[] offsets = new long[count];
+      BitPacker.unpack(in, count, bitWidth, offsets);
+      for (int i = 0; i < count; i++) {
+        dest[i] = (int) (min + offsets[i]);
+      }
+    }
+  },
+
+  /**
+   * First value followed by the differences between consecutive values, stored as a frame of
+   * reference over the smallest difference. Suited to sorted or slowly changing columns.
+   */
+  DELTA(4) {
+    @Override
+    void encode(int[] values, int count, DataOutputStream out) throws IOException {
+      out.writeInt(count == 0 ? 0 : values[0]);
+      long minDelta = Long.MAX_VALUE;
+      long maxDelta = Long.MIN_VALUE;
+      for (int i = 1; i < count; i++) {
+        long delta = (long) values[i] - values[i - 1];
+        minDelta = Math.min(minDelta, delta);
+        maxDelta = Math.max(maxDelta, delta);
+      }
+      if (count < 2) {
+        minDelta = 0;
+        maxDelta = 0;
+      }
+      long[] offsets = new long[Math.max(count - 1, 0)];
+      for (int i = 1; i < count; i++) {
+        offsets[i - 1] = (long) values[i] - values[i - 1] - minDelta;
+      }
+      int bitWidth = BitPacker.bitWidth(maxDelta - minDelta);
+      out.writeLong(minDelta);
+      out.writeByte(bitWidth);
+      BitPacker.pack(offsets, offsets.length, bitWidth, out);
+    }
+
+    @Override
+    void decode(ByteBuffer in, int count, int[] dest) {
+      int first = in.getInt();
+      long minDelta = in.getLong();
+      int bitWidth = in.get();
+      int deltas = Math.max(count - 1, 0);
+      long[] offsets = new long[deltas];
+      BitPacker.unpack(in, deltas, bitWidth, offsets);
+      if (count > 0) {
+        dest[0] = first;
+      }
+      long value = first;
+      for (int i = 1; i < count; i++) {
+        value += offsets[i - 1] + minDelta;
+        dest[i] = (int) value;
+      }
+    }
+  };
+
+  private final int id;
+
+  ColumnEncoding(int id) {
+    this.id = id;
+  }
+
+  /**
+   * Returns the identifier stored in row group headers.
+   *
+   * @return the encoding's id
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Looks up an encoding by the identifier stored in a row group header.
+   *
+   * @param id identifier read from the file
+   * @return the encoding
+   * @throws IOException if the identifier is unknown
+   */
+  public static ColumnEncoding fromId(int id) throws IOException {
+    for (ColumnEncoding encoding : values()) {
+      if (encoding.id == id) {
+        return encoding;
+      }
+    }
+    throw new IOException("Unknown column encoding " + id);
+  }
+
+  /**
+   * Encodes the first count values.
+   *
+   * @param values column values of the row group
+   * @param count number of values in the row group
+   * @param out stream receiving the encoded payload
+   */
+  abstract void encode(int[] values, int count, DataOutputStream out) throws IOException;
+
+  /**
+   * Decodes a payload written by {@link #encode}.
+   *
+   * @param in buffer positioned at the start of the payload
+   * @param count number of values in the row group
+   * @param dest array receiving the decoded values
+   */
+  abstract void decode(ByteBuffer in, int count, int[] dest);
+}
@@ -0,0 +1,81 @@
+package storage;
+
+/**
+ * Inclusive range of values a column may take, derived from comparisons against constants in a
+ * WHERE clause (e.g. S.B &lt;= 200 AND S.B &gt; 100). Scans use it to drop rows early and to skip
+ * row groups whose zone map (min/max) lies entirely outside the range.
+ */
+public class ColumnRange {
+  private long low;
+  private long high;
+
+  /** Creates an unbounded range. */
+  public ColumnRange() {
+    low = Integer.MIN_VALUE;
+    high = Integer.MAX_VALUE;
+  }
+
+  /** Narrows the range to values equal to the constant. */
+  public void restrictEqualTo(int value) {
+    restrictAtLeast(value);
+    restrictAtMost(value);
+  }
+
+  /** Narrows the range to values greater than or equal to the constant. */
+  public void restrictAtLeast(long value) {
+    low = Math.max(low, value);
+  }
+
+  /** Narrows the range to values less than or equal to the constant. */
+  public void restrictAtMost(long value) {
+    high = Math.min(high, value);
+  }
+
+  /**
+   * Checks whether a value lies in the range.
+   *
+   * @param value the value
+   * @return true if low &lt;= value &lt;= high
+   */
+  public boolean contains(int value) {
+    return value >= low && value <= high;
+  }
+
+  /**
+   * Checks whether any value of a row group with the given zone map can lie in the range.
+   *
+   * @param min smallest value in the row group
+   * @param max largest value in the row group
+   * @return false if the whole row group can be skipped
+   */
+  public boolean overlaps(int min, int max) {
+    return max >= low && min <= high;
+  }
+
+  /**
+   * Checks whether no value can satisfy the range, e.g. for S.B &lt; 3 AND S.B &gt; 5.
+   *
+   * @return true if the range is empty
+   */
+  public boolean isEmpty() {
+    return low > high;
+  }
+
+  /**
+   * Checks whether exactly one value satisfies the range, as for S.A = 3.
+   *
+   * @return true if low == high
+   */
+  public boolean isSingleValue() {
+    return low == high;
+  }
+
+  public long getLow() {
+    return low;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + low + ", " + high + "]";
+  }
+}
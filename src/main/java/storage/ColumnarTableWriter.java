@@ -0,0 +1,261 @@
+package storage;
+
+import common.DBCatalog;
+import common.Tuple;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Writes a table in the columnar layout: a directory with one file per column. Each column file
+ * holds a short header followed by row groups of up to {@link #ROW_GROUP_SIZE} values. Every row
+ * group is stored as
+ *
+ * <pre>
+ *   int rowCount | byte encodingId | int min | int max | int payloadLength | payload
+ * </pre>
+ *
+ * where the payload is encoded with whichever {@link ColumnEncoding} is smallest for that group.
+ * The min/max pair is the row group's zone map: readers use it to skip the payload of row groups
+ * that cannot satisfy a range predicate.
+ */
+public class ColumnarTableWriter implements Closeable {
+  public static final int MAGIC = 0x434F4C31; // "COL1"
+  public static final int ROW_GROUP_SIZE = 4096;
+  public static final String COLUMN_FILE_SUFFIX = ".bin";
+
+  private final DataOutputStream[] columnStreams;
+  private final int[][] rowGroup;
+  private int rowsInGroup;
+
+  /**
+   * Creates the column files of a table in the given directory.
+   *
+   * @param directory directory that will hold the column files; created if missing
+   * @param columnNames names of the table's columns, in table order
+   * @throws IOException if a column file cannot be created
+   */
+  public ColumnarTableWriter(File directory, List<String> columnNames) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create " + directory);
+    }
+    columnStreams = new DataOutputStream[columnNames.size()];
+    rowGroup = new int[columnNames.size()][ROW_GROUP_SIZE];
+    for (int c = 0; c < columnNames.size(); c++) {
+      File columnFile = columnFile(directory, columnNames.get(c));
+      columnStreams[c] =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnFile)));
+      columnStreams[c].writeInt(MAGIC);
+      columnStreams[c].writeInt(ROW_GROUP_SIZE);
+    }
+    rowsInGroup = 0;
+  }
+
+  /**
+   * Returns the file holding one column of a columnar table.
+   *
+   * @param directory the table's directory
+   * @param columnName the column
+   * @return the column file
+   */
+  public static File columnFile(File directory, String columnName) {
+    return new File(directory, columnName + COLUMN_FILE_SUFFIX);
+  }
+
+  /**
+   * Appends a row to the table.
+   *
+   * @param tuple the row; must have one value per column
+   */
+  public void writeTuple(Tuple tuple) throws IOException {
+    for (int c = 0; c < columnStreams.length; c++) {
+      rowGroup[c][rowsInGroup] = tuple.getElementAtIndex(c);
+    }
+    if (++rowsInGroup == ROW_GROUP_SIZE) {
+      flushRowGroup();
+    }
+  }
+
+  /**
+   * Appends rows packed back to back in an array, as produced by a {@link ParallelTextParser}.
+   *
+   * @param rows the values, row after row, one per column
+   * @param rowCount number of rows to append
+   */
+  public void writeRows(int[] rows, int rowCount) throws IOException {
+    int width = columnStreams.length;
+    for (int r = 0; r < rowCount; r++) {
+      int offset = r * width;
+      for (int c = 0; c < width; c++) {
+        rowGroup[c][rowsInGroup] = rows[offset + c];
+      }
+      if (++rowsInGroup == ROW_GROUP_SIZE) {
+        flushRowGroup();
+      }
+    }
+  }
+
+  /** Encodes the buffered row group of every column and writes it out. */
+  private void flushRowGroup() throws IOException {
+    if (rowsInGroup == 0) {
+      return;
+    }
+    for (int c = 0; c < columnStreams.length; c++) {
+      columnStreams[c].write(encodeRowGroup(rowGroup[c], rowsInGroup));
+    }
+    rowsInGroup = 0;
+  }
+
+  /**
+   * Encodes one row group of a column, header and payload, with whichever encoding is smallest.
+   *
+   * @param values the column's values
+   * @param count number of values in the row group, at most {@link #ROW_GROUP_SIZE}
+   * @return the bytes of the row group
+   */
+  private static byte[] encodeRowGroup(int[] values, int count) throws IOException {
+    ColumnEncoding bestEncoding = null;
+    ByteArrayOutputStream bestPayload = null;
+    for (ColumnEncoding encoding : ColumnEncoding.values()) {
+      ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      DataOutputStream payloadStream = new DataOutputStream(payload);
+      encoding.encode(values, count, payloadStream);
+      payloadStream.flush();
+      if (bestPayload == null || payload.size() < bestPayload.size()) {
+        bestEncoding = encoding;
+        bestPayload = payload;
+      }
+    }
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < count; i++) {
+      min = Math.min(min, values[i]);
+      max = Math.max(max, values[i]);
+    }
+    ByteArrayOutputStream group = new ByteArrayOutputStream(bestPayload.size() + 17);
+    DataOutputStream out = new DataOutputStream(group);
+    out.writeInt(count);
+    out.writeByte(bestEncoding.getId());
+    out.writeInt(min);
+    out.writeInt(max);
+    out.writeInt(bestPayload.size());
+    bestPayload.writeTo(out);
+    out.flush();
+    return group.toByteArray();
+  }
+
+  /**
+   * Encodes rows as row groups to be appended to the column files of an existing table. Each
+   * appended row group carries its own zone map, so readers keep skipping groups without the
+   * existing ones being rewritten.
+   *
+   * @param rows the values, row after row, one per column
+   * @param rowCount number of rows
+   * @param width number of columns
+   * @return for each column, the bytes to append to its file
+   */
+  public static byte[][] encodeAppendedRows(int[] rows, int rowCount, int width)
+      throws IOException {
+    byte[][] columns = new byte[width][];
+    int[] values = new int[ROW_GROUP_SIZE];
+    for (int c = 0; c < width; c++) {
+      ByteArrayOutputStream column = new ByteArrayOutputStream();
+      for (int start = 0; start < rowCount; start += ROW_GROUP_SIZE) {
+        int count = Math.min(ROW_GROUP_SIZE, rowCount - start);
+        for (int i = 0; i < count; i++) {
+          values[i] = rows[(start + i) * width + c];
+        }
+        column.write(encodeRowGroup(values, count));
+      }
+      columns[c] = column.toByteArray();
+    }
+    return columns;
+  }
+
+  /** Flushes the last, possibly partial, row group and closes the column files. */
+  @Override
+  public void close() throws IOException {
+    try {
+      flushRowGroup();
+    } finally {
+      for (DataOutputStream stream : columnStreams) {
+        stream.close();
+      }
+    }
+  }
+
+  /**
+   * Converts a row-oriented text table of the catalog into the columnar layout. The columnar copy
+   * is written next to the text file, in the directory returned by {@link
+   * DBCatalog#getColumnarDirectoryForTable}, and is used by scans from then on.
+   *
+   * @param tableName name of the table to convert
+   * @throws IOException if the table cannot be read or written
+   */
+  public static void convertTable(String tableName) throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    ArrayList<Column> columns = catalog.getColumns(tableName);
+    if (columns == null) {
+      throw new IllegalArgumentException("Unknown table " + tableName);
+    }
+    List<String> columnNames = new ArrayList<>();
+    for (Column column : columns) {
+      columnNames.add(column.getColumnName());
+    }
+
+    // Write into a scratch directory first so a failed conversion never shadows the text table
+    File target = catalog.getColumnarDirectoryForTable(tableName);
+    File scratch = new File(target.getPath() + ".tmp");
+    deleteDirectory(scratch);
+    try (TupleReader reader =
+            new TextTupleReader(catalog.getFileForTable(tableName), null, columns.size());
+        ColumnarTableWriter writer = new ColumnarTableWriter(scratch, columnNames)) {
+      Tuple tuple;
+      while ((tuple = reader.readNextTuple()) != null) {
+        writer.writeTuple(tuple);
+      }
+    }
+    installTable(tableName, scratch);
+  }
+
+  /**
+   * Makes a columnar table written to a scratch directory the columnar copy of a catalog table,
+   * replacing the previous copy.
+   *
+   * @param tableName name of the table
+   * @param scratch directory holding the new column files
+   * @throws IOException if the directories cannot be replaced
+   */
+  public static void installTable(String tableName, File scratch) throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    File target = catalog.getColumnarDirectoryForTable(tableName);
+    deleteDirectory(target);
+    Files.move(scratch.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    catalog.tableChanged(tableName);
+  }
+
+  /**
+   * Deletes a directory of column files, if it exists.
+   *
+   * @param directory the directory
+   * @throws IOException if a file cannot be deleted
+   */
+  public static void deleteDirectory(File directory) throws IOException {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        Files.delete(file.toPath());
+      }
+    }
+    Files.deleteIfExists(directory.toPath());
+  }
+}
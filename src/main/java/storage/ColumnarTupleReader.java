@@ -0,0 +1,271 @@
+package storage;
+
+import common.Tuple;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Reads a table stored in the columnar layout written by {@link ColumnarTableWriter}. Only the
+ * files of the requested columns are opened, and each row group is decoded into a primitive buffer
+ * per column before tuples are assembled from it. Row groups whose zone maps fall outside the
+ * requested column ranges are skipped without being decoded. The column files are read up to their
+ * committed lengths as of the reader's opening (see {@link WriteAheadLog#committedLengths}), so row
+ * groups being appended meanwhile are not read. A reader may be limited to a {@link RowGroupRange}
+ * of the table.
+ */
+public class ColumnarTupleReader implements TupleReader {
+  private final DataInputStream[] columnStreams;
+  private final int[][] values;
+  private byte[] payload;
+
+  // Per-column value ranges used to skip row groups, or null
+  private final ColumnRange[] columnRanges;
+  private int rowGroupsSkipped;
+
+  // Row groups to read, and the number of the next row group
+  private final long firstRowGroup;
+  private final long endRowGroup;
+  private long rowGroup;
+
+  // Row group headers of the group currently being read
+  private final int[] groupCounts;
+  private final ColumnEncoding[] groupEncodings;
+  private final int[] groupMins;
+  private final int[] groupMaxes;
+  private final int[] groupLengths;
+
+  // Number of rows in the current row group and the next row to return from it
+  private int rowsInGroup;
+  private int position;
+
+  /**
+   * Opens the column files of a columnar table.
+   *
+   * @param directory the table's directory
+   * @param columnNames the columns to read, in the order they should appear in tuples
+   * @throws IOException if a column file is missing or not in the columnar format
+   */
+  public ColumnarTupleReader(File directory, List<String> columnNames) throws IOException {
+    this(directory, columnNames, null);
+  }
+
+  /**
+   * Opens the column files of a columnar table, skipping row groups whose zone maps show that no
+   * row can fall within the given ranges.
+   *
+   * @param directory the table's directory
+   * @param columnNames the columns to read, in the order they should appear in tuples
+   * @param columnRanges for each column in columnNames, the range its values must lie in, or null
+   *     if the column is unrestricted; the array itself may be null
+   * @throws IOException if a column file is missing or not in the columnar format
+   */
+  public ColumnarTupleReader(File directory, List<String> columnNames, ColumnRange[] columnRanges)
+      throws IOException {
+    this(directory, columnNames, columnRanges, null);
+  }
+
+  /**
+   * Opens the column files of a columnar table to read some of its row groups, skipping those whose
+   * zone maps show that no row can fall within the given ranges.
+   *
+   * @param directory the table's directory
+   * @param columnNames the columns to read, in the order they should appear in tuples
+   * @param columnRanges for each column in columnNames, the range its values must lie in, or null
+   *     if the column is unrestricted; the array itself may be null
+   * @param rowGroupRange row groups to read, or null for every row group
+   * @throws IOException if a column file is missing or not in the columnar format
+   */
+  public ColumnarTupleReader(
+      File directory,
+      List<String> columnNames,
+      ColumnRange[] columnRanges,
+      RowGroupRange rowGroupRange)
+      throws IOException {
+    this.columnRanges = columnRanges;
+    this.firstRowGroup = rowGroupRange == null ? 0 : rowGroupRange.start();
+    this.endRowGroup = rowGroupRange == null ? Long.MAX_VALUE : rowGroupRange.end();
+    this.rowGroup = 0;
+    columnStreams = new DataInputStream[columnNames.size()];
+    int rowGroupSize = ColumnarTableWriter.ROW_GROUP_SIZE;
+    File[] columnFiles = new File[columnNames.size()];
+    for (int c = 0; c < columnFiles.length; c++) {
+      columnFiles[c] = ColumnarTableWriter.columnFile(directory, columnNames.get(c));
+    }
+    long[] committedLengths = WriteAheadLog.committedLengths(columnFiles);
+    try {
+      for (int c = 0; c < columnNames.size(); c++) {
+        File columnFile = columnFiles[c];
+        columnStreams[c] =
+            new DataInputStream(
+                new BufferedInputStream(
+                    new ByteRange(0, committedLengths[c]).limit(new FileInputStream(columnFile))));
+        if (columnStreams[c].readInt() != ColumnarTableWriter.MAGIC) {
+          throw new IOException(columnFile + " is not a columnar table file");
+        }
+        rowGroupSize = columnStreams[c].readInt();
+      }
+    } catch (IOException e) {
+      closeStreams();
+      throw e;
+    }
+    values = new int[columnNames.size()][rowGroupSize];
+    groupCounts = new int[columnNames.size()];
+    groupEncodings = new ColumnEncoding[columnNames.size()];
+    groupMins = new int[columnNames.size()];
+    groupMaxes = new int[columnNames.size()];
+    groupLengths = new int[columnNames.size()];
+    rowGroupsSkipped = 0;
+    payload = new byte[0];
+    rowsInGroup = 0;
+    position = 0;
+  }
+
+  @Override
+  public Tuple readNextTuple() throws IOException {
+    if (position == rowsInGroup && !readRowGroup()) {
+      return null;
+    }
+    int[] row = new int[values.length];
+    for (int c = 0; c < values.length; c++) {
+      row[c] = values[c][position];
+    }
+    position++;
+    return new Tuple(row);
+  }
+
+  /**
+   * Decodes the next row group of the range of every requested column whose zone map overlaps the
+   * column ranges. Row groups that cannot match are skipped without reading their payloads.
+   *
+   * @return false if there are no more row groups
+   */
+  private boolean readRowGroup() throws IOException {
+    while (rowGroup < endRowGroup && readRowGroupHeaders()) {
+      boolean inRange = rowGroup++ >= firstRowGroup;
+      if (!inRange || !zoneMapsMatch()) {
+        for (int c = 0; c < columnStreams.length; c++) {
+          columnStreams[c].skipNBytes(groupLengths[c]);
+        }
+        if (inRange) {
+          rowGroupsSkipped++;
+        }
+        continue;
+      }
+      for (int c = 0; c < columnStreams.length; c++) {
+        int length = groupLengths[c];
+        if (payload.length < length) {
+          payload = new byte[length];
+        }
+        columnStreams[c].readFully(payload, 0, length);
+        groupEncodings[c].decode(ByteBuffer.wrap(payload, 0, length), groupCounts[c], values[c]);
+      }
+      rowsInGroup = groupCounts.length == 0 ? 0 : groupCounts[0];
+      position = 0;
+      return rowsInGroup > 0;
+    }
+    return false;
+  }
+
+  /**
+   * Reads the header of the next row group from every column file.
+   *
+   * @return false if the end of the table has been reached
+   */
+  private boolean readRowGroupHeaders() throws IOException {
+    for (int c = 0; c < columnStreams.length; c++) {
+      DataInputStream in = columnStreams[c];
+      try {
+        groupCounts[c] = in.readInt();
+      } catch (EOFException e) {
+        if (c == 0) {
+          return false;
+        }
+        throw new IOException("Column files have different row counts");
+      }
+      if (groupCounts[c] != groupCounts[0]) {
+        throw new IOException("Column files have different row counts");
+      }
+      groupEncodings[c] = ColumnEncoding.fromId(in.readByte());
+      groupMins[c] = in.readInt();
+      groupMaxes[c] = in.readInt();
+      groupLengths[c] = in.readInt();
+    }
+    return columnStreams.length > 0;
+  }
+
+  /** Checks the zone maps of the current row group against the column ranges. */
+  private boolean zoneMapsMatch() {
+    if (columnRanges == null) {
+      return true;
+    }
+    for (int c = 0; c < columnStreams.length; c++) {
+      ColumnRange range = columnRanges[c];
+      if (range != null && !range.overlaps(groupMins[c], groupMaxes[c])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Counts the committed row groups of a columnar table, from the headers of one of its column
+   * files.
+   *
+   * @param columnFile a column file of the table
+   * @return number of row groups
+   * @throws IOException if the file cannot be read or is not in the columnar format
+   */
+  public static long countRowGroups(File columnFile) throws IOException {
+    long length = WriteAheadLog.committedLength(columnFile);
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(
+                new ByteRange(0, length).limit(new FileInputStream(columnFile))))) {
+      if (in.readInt() != ColumnarTableWriter.MAGIC) {
+        throw new IOException(columnFile + " is not a columnar table file");
+      }
+      in.readInt();
+      long rowGroups = 0;
+      while (true) {
+        try {
+          in.readInt();
+        } catch (EOFException e) {
+          return rowGroups;
+        }
+        in.readByte();
+        in.readInt();
+        in.readInt();
+        in.skipNBytes(in.readInt());
+        rowGroups++;
+      }
+    }
+  }
+
+  /**
+   * Returns how many row groups were skipped thanks to their zone maps.
+   *
+   * @return number of skipped row groups
+   */
+  public int getRowGroupsSkipped() {
+    return rowGroupsSkipped;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeStreams();
+  }
+
+  private void closeStreams() throws IOException {
+    for (DataInputStream stream : columnStreams) {
+      if (stream != null) {
+        stream.close();
+      }
+    }
+  }
+}
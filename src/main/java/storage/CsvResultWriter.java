@@ -0,0 +1,100 @@
+package storage;
+
+import common.Tuple;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes result tuples as text, one tuple per line with attributes separated by commas (the same
+ * text as printing each tuple). Integers are formatted straight into a byte buffer, so no
+ * intermediate Strings are created and no charset encoding takes place.
+ */
+public class CsvResultWriter implements ResultWriter {
+  private static final int BUFFER_SIZE = 1 << 16;
+  // Longest int, "-2147483648", plus a separator
+  private static final int MAX_INT_CHARS = 12;
+  private static final byte[] MIN_VALUE_BYTES =
+      Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+  private final OutputStream out;
+  private final byte[] lineSeparator;
+  private final byte[] buffer;
+  private int position;
+
+  /**
+   * Creates a writer over a stream.
+   *
+   * @param out stream receiving the text; closed when this writer is closed
+   */
+  public CsvResultWriter(OutputStream out) {
+    this.out = out;
+    this.lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    this.buffer = new byte[BUFFER_SIZE];
+    this.position = 0;
+  }
+
+  @Override
+  public void writeTuple(Tuple tuple) throws IOException {
+    int size = tuple.size();
+    for (int i = 0; i < size; i++) {
+      if (BUFFER_SIZE - position < MAX_INT_CHARS) {
+        flushBuffer();
+      }
+      if (i > 0) {
+        buffer[position++] = ',';
+      }
+      writeInt(tuple.getElementAtIndex(i));
+    }
+    if (BUFFER_SIZE - position < lineSeparator.length) {
+      flushBuffer();
+    }
+    for (byte b : lineSeparator) {
+      buffer[position++] = b;
+    }
+  }
+
+  /** Formats an int as decimal digits at the current buffer position. */
+  private void writeInt(int value) {
+    if (value == Integer.MIN_VALUE) {
+      System.arraycopy(MIN_VALUE_BYTES, 0, buffer, position, MIN_VALUE_BYTES.length);
+      position += MIN_VALUE_BYTES.length;
+      return;
+    }
+    if (value < 0) {
+      buffer[position++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (int bound = 10; digits < 10 && value >= bound; bound *= 10) {
+      digits++;
+    }
+    int end = position + digits;
+    int p = end;
+    do {
+      buffer[--p] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    position = end;
+  }
+
+  private void flushBuffer() throws IOException {
+    out.write(buffer, 0, position);
+    position = 0;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBuffer();
+    } finally {
+      out.close();
+    }
+  }
+}
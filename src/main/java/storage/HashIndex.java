@@ -0,0 +1,591 @@
+package storage;
+
+import common.DBCatalog;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.create.index.CreateIndex;
+
+/**
+ * On-disk extendible hash index on an integer column of a text table, for equality lookups. The
+ * index maps each key to the byte offsets of the lines holding it in the table file. Its directory
+ * is kept in memory, so a lookup reads one bucket page and then the matching lines of the table.
+ *
+ * <p>Buckets are 4 KiB pages of (key, offset) entries. A full bucket is split in two on the next
+ * bit of the key hash, doubling the directory when the bucket already uses every bit of it. Entries
+ * whose keys all hash alike cannot be separated by splitting, so such a bucket gets overflow pages
+ * chained after it instead. The entries of one key stay in file order.
+ *
+ * <p>Like a materialized view, the index remembers how much of the table file it covers, and {@link
+ * #refresh} adds the lines appended since. A table file that shrank was rewritten, and the index is
+ * then rebuilt. The index of column C of table T is stored in indexes/T.C.hash (the bucket pages)
+ * and indexes/T.C.dir (the directory and the rest of its state). The directory file is removed
+ * while buckets are being changed, so an index interrupted mid-update is rebuilt when next opened.
+ */
+public class HashIndex implements Closeable {
+  static final int PAGE_SIZE = 4096;
+
+  // Page header: local depth, entry count, next page of the chain and, in the first page of a
+  // bucket, the last page of its chain
+  private static final int DEPTH = 0;
+  private static final int COUNT = 4;
+  private static final int NEXT = 8;
+  private static final int LAST = 12;
+  private static final int HEADER_BYTES = 16;
+
+  // Entries are an int key and the long offset of its line
+  private static final int ENTRY_BYTES = 12;
+  static final int PAGE_CAPACITY = (PAGE_SIZE - HEADER_BYTES) / ENTRY_BYTES;
+
+  private static final int NO_PAGE = -1;
+  private static final int MAX_DEPTH = 24;
+
+  // Bucket pages kept in memory; dirty pages are written back when evicted or flushed
+  private static final int CACHED_PAGES = 256;
+
+  private final String tableName;
+  private final String columnName;
+  private final File directoryFile;
+  private final FileChannel pages;
+  private final LinkedHashMap<Integer, ByteBuffer> cache;
+  private final Set<Integer> dirtyPages;
+
+  // Directory: the first page of the bucket for each value of the low globalDepth hash bits
+  private int globalDepth;
+  private int[] directory;
+  private int pageCount;
+  private final ArrayDeque<Integer> freePages;
+
+  // Length of the table file the index covers
+  private long coveredBytes;
+
+  private HashIndex(String tableName, String columnName, File pageFile) throws IOException {
+    this.tableName = tableName;
+    this.columnName = columnName;
+    this.directoryFile = directoryFileOf(pageFile);
+    this.pages =
+        FileChannel.open(
+            pageFile.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    this.dirtyPages = new HashSet<>();
+    this.freePages = new ArrayDeque<>();
+  }
+
+  /**
+   * Creates a hash index from a CREATE INDEX statement, e.g. CREATE INDEX SailorsA ON Sailors (A)
+   * USING HASH. Hash is the only index type, so the USING clause may be left out. Indexes are
+   * identified by their table and column; the index name is not used.
+   *
+   * @param createIndex the statement
+   * @return the index
+   * @throws IOException if the index cannot be written
+   */
+  public static HashIndex create(CreateIndex createIndex) throws IOException {
+    List<String> columns = createIndex.getIndex().getColumnsNames();
+    if (columns.size() != 1) {
+      throw new UnsupportedOperationException("Only single-column indexes are supported.");
+    }
+    List<String> types = new ArrayList<>();
+    types.add(createIndex.getIndex().getType());
+    types.add(createIndex.getIndex().getUsing());
+    if (createIndex.getTailParameters() != null) {
+      int using = createIndex.getTailParameters().indexOf("USING");
+      if (using >= 0 && using + 1 < createIndex.getTailParameters().size()) {
+        types.add(createIndex.getTailParameters().get(using + 1));
+      }
+    }
+    for (String type : types) {
+      if (type != null && !type.equalsIgnoreCase("HASH")) {
+        throw new UnsupportedOperationException("Only hash indexes are supported.");
+      }
+    }
+    return create(createIndex.getTable().getName(), columns.get(0));
+  }
+
+  /**
+   * Builds a hash index on a column of a catalog table and adds it to the catalog.
+   *
+   * @param tableName name of the table, which must be stored in the text layout
+   * @param columnName name of the column
+   * @return the index
+   * @throws IOException if the table cannot be read or the index cannot be written
+   */
+  public static HashIndex create(String tableName, String columnName) throws IOException {
+    DBCatalog catalog = DBCatalog.getInstance();
+    if (catalog.getColumns(tableName) == null) {
+      throw new IllegalArgumentException("Unknown table " + tableName);
+    }
+    columnIndex(tableName, columnName);
+    if (catalog.isColumnar(tableName)) {
+      throw new UnsupportedOperationException(
+          "Hash indexes are only supported on tables in the text layout");
+    }
+    if (catalog.getHashIndex(tableName, columnName) != null) {
+      throw new IllegalArgumentException(tableName + "." + columnName + " is already indexed");
+    }
+    File pageFile = catalog.getIndexFile(tableName, columnName);
+    File directory = pageFile.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create " + directory);
+    }
+    Files.deleteIfExists(directoryFileOf(pageFile).toPath());
+    HashIndex index = open(pageFile);
+    catalog.addHashIndex(index);
+    return index;
+  }
+
+  /**
+   * Opens a stored index, rebuilding it if its directory was not saved.
+   *
+   * @param pageFile the index's page file, named table.column.hash
+   * @return the index
+   * @throws IOException if the index cannot be read or rebuilt
+   */
+  public static HashIndex open(File pageFile) throws IOException {
+    String name = pageFile.getName();
+    int dot = name.indexOf('.');
+    if (dot < 0 || !name.endsWith(".hash")) {
+      throw new IllegalArgumentException("Not an index file: " + pageFile);
+    }
+    HashIndex index =
+        new HashIndex(
+            name.substring(0, dot),
+            name.substring(dot + 1, name.length() - ".hash".length()),
+            pageFile);
+    try {
+      if (!index.loadDirectory()) {
+        index.rebuild();
+      }
+    } catch (IOException | RuntimeException e) {
+      index.close();
+      throw e;
+    }
+    return index;
+  }
+
+  private static File directoryFileOf(File pageFile) {
+    String path = pageFile.getPath();
+    return new File(path.substring(0, path.length() - ".hash".length()) + ".dir");
+  }
+
+  /** Finds the position of the indexed column in the table file. */
+  private static int columnIndex(String tableName, String columnName) {
+    List<Column> columns = DBCatalog.getInstance().getColumns(tableName);
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).getColumnName().equals(columnName)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Column " + columnName + " not found in " + tableName);
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public String getColumnName() {
+    return columnName;
+  }
+
+  /**
+   * Brings the index up to date with the table file, indexing the lines appended since the last
+   * refresh. Lines are only read up to the file's committed length (see {@link
+   * WriteAheadLog#committedLength}), so a row still being appended is not indexed.
+   *
+   * @throws IOException if the table cannot be read or the index cannot be written
+   */
+  public synchronized void refresh() throws IOException {
+    long size = committedLength();
+    if (size == coveredBytes) {
+      return;
+    }
+    if (size < coveredBytes) {
+      rebuild();
+      return;
+    }
+    Files.deleteIfExists(directoryFile.toPath());
+    indexLines(size);
+    flush();
+    saveDirectory();
+  }
+
+  /** Empties the index and indexes the whole table file. */
+  private void rebuild() throws IOException {
+    Files.deleteIfExists(directoryFile.toPath());
+    pages.truncate(0);
+    cache.clear();
+    dirtyPages.clear();
+    freePages.clear();
+    pageCount = 0;
+    globalDepth = 0;
+    directory = new int[] {allocatePage(0)};
+    coveredBytes = 0;
+    indexLines(committedLength());
+    flush();
+    saveDirectory();
+  }
+
+  private long committedLength() {
+    return WriteAheadLog.committedLength(DBCatalog.getInstance().getFileForTable(tableName));
+  }
+
+  /**
+   * Indexes the complete lines of the table file between the covered length and the committed
+   * length, and covers the file up to the byte after the last line break. A last line without a
+   * line break is indexed and covered only if it ends at the committed length: such a line was not
+   * written by the log, which ends every append with a line break, so it is the complete last row
+   * of the file as loaded, and the log starts the next append on a new line.
+   *
+   * @param size the committed length of the table file
+   */
+  private void indexLines(long size) throws IOException {
+    int column = columnIndex(tableName, columnName);
+    File tableFile = DBCatalog.getInstance().getFileForTable(tableName);
+    try (InputStream in = new BufferedInputStream(new FileInputStream(tableFile))) {
+      in.skipNBytes(coveredBytes);
+      byte[] buffer = new byte[64 * 1024];
+      long position = coveredBytes;
+      long lineStart = position;
+      int field = 0;
+      boolean inField = false;
+      boolean negative = false;
+      long value = 0;
+      while (position < size) {
+        int count = in.read(buffer, 0, (int) Math.min(buffer.length, size - position));
+        if (count < 0) {
+          break;
+        }
+        for (int i = 0; i < count; i++, position++) {
+          byte b = buffer[i];
+          boolean lineEnd = b == '\n';
+          if (lineEnd || b == ',' || b == ' ' || b == '\t' || b == '\r') {
+            if (inField) {
+              inField = false;
+              field++;
+            }
+            if (lineEnd) {
+              if (field > column) {
+                insert((int) (negative ? -value : value), lineStart);
+              }
+              field = 0;
+              lineStart = position + 1;
+              coveredBytes = lineStart;
+            }
+            continue;
+          }
+          if (!inField) {
+            inField = true;
+            if (field == column) {
+              negative = false;
+              value = 0;
+            }
+          }
+          if (field == column) {
+            if (b == '-' && value == 0) {
+              negative = true;
+            } else if (b >= '0' && b <= '9') {
+              value = value * 10 + (b - '0');
+            } else if (b != '+') {
+              throw new NumberFormatException(
+                  "Malformed value of " + columnName + " in " + tableName + " at byte " + position);
+            }
+          }
+        }
+      }
+      if (position == size && position == committedLength()) {
+        if (inField) {
+          field++;
+        }
+        if (field > column) {
+          insert((int) (negative ? -value : value), lineStart);
+        }
+        coveredBytes = size;
+      }
+    }
+  }
+
+  /**
+   * Looks up the lines holding a key.
+   *
+   * @param key the key
+   * @return byte offsets of the lines in the table file, in file order
+   * @throws IOException if the index cannot be read
+   */
+  public synchronized long[] lookup(int key) throws IOException {
+    long[] offsets = new long[4];
+    int count = 0;
+    int pageNumber = directory[hash(key) & (directory.length - 1)];
+    while (pageNumber != NO_PAGE) {
+      ByteBuffer page = page(pageNumber);
+      int entries = page.getInt(COUNT);
+      for (int i = 0; i < entries; i++) {
+        int position = HEADER_BYTES + i * ENTRY_BYTES;
+        if (page.getInt(position) == key) {
+          if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+          }
+          offsets[count++] = page.getLong(position + 4);
+        }
+      }
+      pageNumber = page.getInt(NEXT);
+    }
+    return Arrays.copyOf(offsets, count);
+  }
+
+  private static int hash(int key) {
+    int hash = key * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /** Adds an entry, splitting its bucket first if it is full and splitting would separate it. */
+  private void insert(int key, long offset) throws IOException {
+    int hash = hash(key);
+    while (true) {
+      int first = directory[hash & (directory.length - 1)];
+      ByteBuffer firstPage = page(first);
+      int localDepth = firstPage.getInt(DEPTH);
+      int last = firstPage.getInt(LAST);
+      if (page(last).getInt(COUNT) < PAGE_CAPACITY
+          || localDepth == MAX_DEPTH
+          || !canSplit(first, hash)) {
+        appendEntry(first, key, offset);
+        return;
+      }
+      split(first);
+    }
+  }
+
+  /**
+   * Checks whether splitting a full bucket would make room for a hash. A bucket only has overflow
+   * pages if all of its entries share one hash, so that case needs no scan of the chain.
+   */
+  private boolean canSplit(int first, int hash) throws IOException {
+    ByteBuffer page = page(first);
+    if (page.getInt(NEXT) != NO_PAGE) {
+      return hash(page.getInt(HEADER_BYTES)) != hash;
+    }
+    for (int i = 0; i < page.getInt(COUNT); i++) {
+      if (hash(page.getInt(HEADER_BYTES + i * ENTRY_BYTES)) != hash) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Appends an entry to the last page of a bucket, chaining an overflow page if it is full. */
+  private void appendEntry(int first, int key, long offset) throws IOException {
+    int last = page(first).getInt(LAST);
+    if (page(last).getInt(COUNT) == PAGE_CAPACITY) {
+      int overflow = allocatePage(page(first).getInt(DEPTH));
+      page(last).putInt(NEXT, overflow);
+      dirtyPages.add(last);
+      page(first).putInt(LAST, overflow);
+      dirtyPages.add(first);
+      last = overflow;
+    }
+    ByteBuffer page = page(last);
+    int count = page.getInt(COUNT);
+    int position = HEADER_BYTES + count * ENTRY_BYTES;
+    page.putInt(position, key);
+    page.putLong(position + 4, offset);
+    page.putInt(COUNT, count + 1);
+    dirtyPages.add(last);
+  }
+
+  /**
+   * Splits a bucket on the next bit of the hash: entries with the bit set move to a new bucket, and
+   * the directory entries with the bit set point to it.
+   */
+  private void split(int first) throws IOException {
+    int localDepth = page(first).getInt(DEPTH);
+    List<Integer> chain = new ArrayList<>();
+    for (int pageNumber = first;
+        pageNumber != NO_PAGE;
+        pageNumber = page(pageNumber).getInt(NEXT)) {
+      chain.add(pageNumber);
+    }
+    int[] keys = new int[chain.size() * PAGE_CAPACITY];
+    long[] offsets = new long[keys.length];
+    int count = 0;
+    for (int pageNumber : chain) {
+      ByteBuffer page = page(pageNumber);
+      for (int i = 0; i < page.getInt(COUNT); i++) {
+        int position = HEADER_BYTES + i * ENTRY_BYTES;
+        keys[count] = page.getInt(position);
+        offsets[count++] = page.getLong(position + 4);
+      }
+    }
+
+    if (localDepth == globalDepth) {
+      directory = Arrays.copyOf(directory, directory.length * 2);
+      System.arraycopy(directory, 0, directory, directory.length / 2, directory.length / 2);
+      globalDepth++;
+    }
+    freePages.addAll(chain.subList(1, chain.size()));
+    initPage(first, localDepth + 1);
+    int sibling = allocatePage(localDepth + 1);
+    int bit = 1 << localDepth;
+    for (int i = 0; i < count; i++) {
+      appendEntry((hash(keys[i]) & bit) == 0 ? first : sibling, keys[i], offsets[i]);
+    }
+    for (int i = 0; i < directory.length; i++) {
+      if (directory[i] == first && (i & bit) != 0) {
+        directory[i] = sibling;
+      }
+    }
+  }
+
+  /** Takes a free page, or adds one to the file, as the empty first page of a bucket. */
+  private int allocatePage(int localDepth) throws IOException {
+    int pageNumber = freePages.isEmpty() ? pageCount++ : freePages.poll();
+    initPage(pageNumber, localDepth);
+    return pageNumber;
+  }
+
+  private void initPage(int pageNumber, int localDepth) throws IOException {
+    ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+    page.putInt(DEPTH, localDepth);
+    page.putInt(COUNT, 0);
+    page.putInt(NEXT, NO_PAGE);
+    page.putInt(LAST, pageNumber);
+    cache.put(pageNumber, page);
+    dirtyPages.add(pageNumber);
+    evict();
+  }
+
+  /** Gets a page through the cache. */
+  private ByteBuffer page(int pageNumber) throws IOException {
+    ByteBuffer page = cache.get(pageNumber);
+    if (page == null) {
+      page = ByteBuffer.allocate(PAGE_SIZE);
+      long position = (long) pageNumber * PAGE_SIZE;
+      while (page.hasRemaining()) {
+        if (pages.read(page, position + page.position()) < 0) {
+          break;
+        }
+      }
+      page.clear();
+      cache.put(pageNumber, page);
+      evict();
+    }
+    return page;
+  }
+
+  /** Evicts the least recently used page, writing it back if dirty, once the cache is full. */
+  private void evict() throws IOException {
+    if (cache.size() <= CACHED_PAGES) {
+      return;
+    }
+    Iterator<Map.Entry<Integer, ByteBuffer>> eldest = cache.entrySet().iterator();
+    Map.Entry<Integer, ByteBuffer> entry = eldest.next();
+    if (dirtyPages.remove(entry.getKey())) {
+      writePage(entry.getKey(), entry.getValue());
+    }
+    eldest.remove();
+  }
+
+  private void writePage(int pageNumber, ByteBuffer page) throws IOException {
+    ByteBuffer contents = page.duplicate().clear();
+    long position = (long) pageNumber * PAGE_SIZE;
+    while (contents.hasRemaining()) {
+      pages.write(contents, position + contents.position());
+    }
+  }
+
+  /** Writes the dirty pages back and syncs the page file. */
+  private void flush() throws IOException {
+    for (int pageNumber : dirtyPages) {
+      writePage(pageNumber, cache.get(pageNumber));
+    }
+    dirtyPages.clear();
+    pages.force(false);
+  }
+
+  private void saveDirectory() throws IOException {
+    File scratch = new File(directoryFile.getPath() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(scratch)))) {
+      out.writeLong(coveredBytes);
+      out.writeInt(pageCount);
+      out.writeInt(freePages.size());
+      for (int pageNumber : freePages) {
+        out.writeInt(pageNumber);
+      }
+      out.writeInt(globalDepth);
+      for (int pageNumber : directory) {
+        out.writeInt(pageNumber);
+      }
+    }
+    Files.move(
+        scratch.toPath(),
+        directoryFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads the saved directory.
+   *
+   * @return false if there is none, in which case the index must be rebuilt
+   */
+  private boolean loadDirectory() throws IOException {
+    if (!directoryFile.isFile()) {
+      return false;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(directoryFile)))) {
+      coveredBytes = in.readLong();
+      pageCount = in.readInt();
+      int freeCount = in.readInt();
+      for (int i = 0; i < freeCount; i++) {
+        freePages.add(in.readInt());
+      }
+      globalDepth = in.readInt();
+      directory = new int[1 << globalDepth];
+      for (int i = 0; i < directory.length; i++) {
+        directory[i] = in.readInt();
+      }
+    } catch (EOFException e) {
+      freePages.clear();
+      return false;
+    }
+    return true;
+  }
+
+  /** Writes back any pending changes and closes the page file. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (pages.isOpen()) {
+      if (!dirtyPages.isEmpty()) {
+        flush();
+      }
+      pages.close();
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a large text table on several threads. The file is read sequentially in chunks cut at line
+ * boundaries, and each chunk is parsed by a worker straight from its bytes into a packed int[] of
+ * rows, without creating a String or a boxed value per field. Chunks are handed out in file order,
+ * so the rows keep their input order. A bounded number of chunks is parsed ahead of the consumer.
+ *
+ * <p>The format matches {@link TextTupleReader}: one row per line, values separated by commas
+ * and/or whitespace, blank lines ignored. Every row must have exactly the expected number of
+ * values.
+ */
+public class ParallelTextParser implements Closeable {
+  // Bytes read per chunk; a chunk is extended if a single line is longer
+  static final int CHUNK_BYTES = 1 << 20;
+
+  private final InputStream in;
+  private final int width;
+  private final int maxInFlight;
+  private final ExecutorService workers;
+  private final ArrayDeque<Future<Chunk>> inFlight;
+
+  // Start of a line cut off at the end of the previous chunk
+  private byte[] carry;
+  private int carryLength;
+  private boolean endOfFile;
+
+  /**
+   * Rows parsed from one chunk of the file.
+   *
+   * @param rows the values, row after row
+   * @param rowCount number of rows in the chunk
+   */
+  public record Chunk(int[] rows, int rowCount) {}
+
+  /**
+   * Opens a parser over a text table file.
+   *
+   * @param file the file
+   * @param width number of values in each row
+   * @param threads number of worker threads
+   * @throws IOException if the file cannot be opened
+   */
+  public ParallelTextParser(File file, int width, int threads) throws IOException {
+    this.in = new FileInputStream(file);
+    this.width = width;
+    this.maxInFlight = 2 * Math.max(1, threads);
+    this.workers =
+        Executors.newFixedThreadPool(
+            Math.max(1, threads), Thread.ofPlatform().daemon().name("load-worker-", 0).factory());
+    this.inFlight = new ArrayDeque<>();
+    this.carry = new byte[0];
+    this.carryLength = 0;
+    this.endOfFile = false;
+  }
+
+  /**
+   * Returns the next chunk of rows, in file order.
+   *
+   * @return the chunk, or null after the last one
+   * @throws IOException if the file cannot be read
+   * @throws NumberFormatException if the file holds a malformed row
+   */
+  public Chunk nextChunk() throws IOException {
+    while (!endOfFile && inFlight.size() < maxInFlight) {
+      submitChunk();
+    }
+    Future<Chunk> next = inFlight.poll();
+    if (next == null) {
+      return null;
+    }
+    try {
+      return next.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new UncheckedIOException(new IOException(e.getCause()));
+    }
+  }
+
+  /** Reads the next chunk of whole lines and hands it to a worker. */
+  private void submitChunk() throws IOException {
+    byte[] buffer = Arrays.copyOf(carry, Math.max(CHUNK_BYTES, carryLength * 2));
+    int length = carryLength;
+    int cut;
+    while (true) {
+      int count = in.readNBytes(buffer, length, buffer.length - length);
+      int scanFrom = length;
+      length += count;
+      if (length < buffer.length) {
+        endOfFile = true;
+        cut = length;
+        break;
+      }
+      cut = lastNewline(buffer, scanFrom, length);
+      if (cut >= 0) {
+        cut++;
+        break;
+      }
+      // A line longer than the chunk: read on until it ends
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    carryLength = length - cut;
+    carry = Arrays.copyOfRange(buffer, cut, length);
+    byte[] bytes = buffer;
+    int end = cut;
+    inFlight.add(workers.submit(() -> parse(bytes, end, width)));
+  }
+
+  private static int lastNewline(byte[] buffer, int from, int to) {
+    for (int i = to - 1; i >= from; i--) {
+      if (buffer[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses whole lines of text into rows.
+   *
+   * @param bytes the text
+   * @param length number of bytes of text
+   * @param width number of values in each row
+   * @return the rows
+   */
+  static Chunk parse(byte[] bytes, int length, int width) {
+    // Each value takes at least one digit and one delimiter
+    int[] rows = new int[(length / (2 * width) + 1) * width];
+    int rowCount = 0;
+    int position = 0;
+    while (position < length) {
+      int field = 0;
+      int offset = rowCount * width;
+      byte b;
+      while (position < length && (b = bytes[position]) != '\n') {
+        if (b == ',' || b == ' ' || b == '\t' || b == '\r') {
+          position++;
+          continue;
+        }
+        boolean negative = b == '-';
+        if (negative || b == '+') {
+          position++;
+        }
+        long value = 0;
+        int start = position;
+        while (position < length && (b = bytes[position]) >= '0' && b <= '9') {
+          value = value * 10 + (b - '0');
+          if (value > 1L + Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range");
+          }
+          position++;
+        }
+        if (position == start
+            || (position < length && !isDelimiter(bytes[position]))
+            || field == width) {
+          throw new NumberFormatException("Malformed row, expected " + width + " integers");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+          throw new NumberFormatException("Value out of int range");
+        }
+        rows[offset + field++] = (int) value;
+      }
+      position++;
+      if (field == 0) {
+        continue; // Blank line
+      }
+      if (field != width) {
+        throw new NumberFormatException("Malformed row, expected " + width + " integers");
+      }
+      rowCount++;
+    }
+    return new Chunk(rows, rowCount);
+  }
+
+  private static boolean isDelimiter(byte b) {
+    return b == ',' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+
+  /** Stops the workers and closes the file. */
+  @Override
+  public void close() throws IOException {
+    workers.shutdownNow();
+    in.close();
+  }
+}
@@ -0,0 +1,114 @@
+package storage;
+
+import common.Tuple;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Wraps another reader and reads ahead of the consumer on a background virtual thread. Tuples are
+ * handed over in pages through a bounded queue, so at most depth pages are buffered; the background
+ * reader blocks when the consumer falls behind. This overlaps disk I/O with the predicate
+ * evaluation and joins that consume the scan.
+ */
+public class ReadAheadTupleReader implements TupleReader {
+  // Marks the end of the table (or a read failure) in the page queue
+  private static final List<Tuple> END_OF_TABLE = new ArrayList<>(0);
+
+  private final TupleReader source;
+  private final int pageSize;
+  private final BlockingQueue<List<Tuple>> pages;
+  private final Thread reader;
+
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  // Page currently being consumed and the next tuple to return from it
+  private List<Tuple> currentPage;
+  private int position;
+  private boolean finished;
+
+  /**
+   * Starts reading ahead of the consumer.
+   *
+   * @param source reader to read from; owned and closed by this reader
+   * @param depth maximum number of pages buffered ahead of the consumer
+   * @param pageSize number of tuples per page
+   */
+  public ReadAheadTupleReader(TupleReader source, int depth, int pageSize) {
+    this.source = source;
+    this.pageSize = Math.max(pageSize, 1);
+    this.pages = new ArrayBlockingQueue<>(Math.max(depth, 1));
+    this.closed = false;
+    this.finished = false;
+    this.reader = Thread.ofVirtual().name("read-ahead").start(this::fillPages);
+  }
+
+  /** Body of the background reader: reads pages until the end of the table or until closed. */
+  private void fillPages() {
+    try {
+      while (!closed) {
+        List<Tuple> page = new ArrayList<>(pageSize);
+        Tuple tuple;
+        while (page.size() < pageSize && (tuple = source.readNextTuple()) != null) {
+          page.add(tuple);
+        }
+        if (!page.isEmpty()) {
+          pages.put(page);
+        }
+        if (page.size() < pageSize) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+    } catch (InterruptedException e) {
+      // Closed while waiting for the consumer; nobody is waiting for the end marker
+      return;
+    }
+    try {
+      pages.put(END_OF_TABLE);
+    } catch (InterruptedException e) {
+      // Closed while waiting for the consumer
+    }
+  }
+
+  @Override
+  public Tuple readNextTuple() throws IOException {
+    while (!finished && (currentPage == null || position == currentPage.size())) {
+      try {
+        currentPage = pages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for read-ahead", e);
+      }
+      position = 0;
+      if (currentPage == END_OF_TABLE) {
+        finished = true;
+        if (failure != null) {
+          throw failure;
+        }
+      }
+    }
+    if (finished) {
+      return null;
+    }
+    return currentPage.get(position++);
+  }
+
+  /** Stops the background reader, waits for it to exit and closes the underlying reader. */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    reader.interrupt();
+    try {
+      reader.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    pages.clear();
+    source.close();
+  }
+}
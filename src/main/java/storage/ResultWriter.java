@@ -0,0 +1,27 @@
+package storage;
+
+import common.Tuple;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interface for sinks that receive the result tuples of a query. Implementations decide the output
+ * format; closing a writer flushes it and closes the stream it writes to.
+ */
+public interface ResultWriter extends Closeable {
+
+  /**
+   * Writes one result tuple.
+   *
+   * @param tuple the tuple
+   * @throws IOException if the output cannot be written
+   */
+  void writeTuple(Tuple tuple) throws IOException;
+
+  /**
+   * Pushes any buffered output to the underlying stream without closing it.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  void flush() throws IOException;
+}
@@ -0,0 +1,10 @@
+package storage;
+
+/**
+ * Range [start, end) of the row groups of a columnar table, numbered from 0 in file order. Row
+ * groups are only ever appended, so a range taken at one time still holds the same rows later.
+ *
+ * @param start number of the first row group of the range
+ * @param end number just past the last row group of the range
+ */
+public record RowGroupRange(long start, long end) implements ScanRange {}
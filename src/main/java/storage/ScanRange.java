@@ -0,0 +1,24 @@
+package storage;
+
+/**
+ * Part of a table a scan is restricted to, in the units of the table's layout: a {@link ByteRange}
+ * of a text table's file, or a {@link RowGroupRange} of a columnar table. Materialized views use it
+ * to scan only the rows appended to a base table since their last refresh, or only the rows that
+ * were there before.
+ */
+public sealed interface ScanRange permits ByteRange, RowGroupRange {
+
+  /**
+   * Returns the start of the range.
+   *
+   * @return the first unit of the range
+   */
+  long start();
+
+  /**
+   * Returns the end of the range.
+   *
+   * @return the unit just past the last one of the range
+   */
+  long end();
+}
@@ -0,0 +1,102 @@
+package storage;
+
+import common.Tuple;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Temporary file holding tuples of a fixed width that do not fit in memory, e.g. the partitions of
+ * a spilling join. Tuples are appended as raw ints, then read back in the order they were written.
+ * The file is deleted when it is closed.
+ */
+public class SpillFile implements Closeable {
+  private final File file;
+  private final int width;
+  private DataOutputStream output;
+  private long tupleCount;
+
+  /**
+   * Creates an empty spill file in a directory.
+   *
+   * @param directory directory to create the file in
+   * @param width number of columns of every tuple written
+   * @throws IOException if the file cannot be created
+   */
+  public SpillFile(File directory, int width) throws IOException {
+    this.file = Files.createTempFile(directory.toPath(), "spill", ".bin").toFile();
+    this.width = width;
+    this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    this.tupleCount = 0;
+  }
+
+  /**
+   * Appends a tuple to the file.
+   *
+   * @param tuple tuple of the file's width
+   * @throws IOException if the write fails
+   */
+  public void writeTuple(Tuple tuple) throws IOException {
+    for (int i = 0; i < width; i++) {
+      output.writeInt(tuple.getElementAtIndex(i));
+    }
+    tupleCount++;
+  }
+
+  public long getTupleCount() {
+    return tupleCount;
+  }
+
+  /**
+   * Finishes writing and opens a reader over the tuples written so far. No more tuples can be
+   * written afterwards.
+   *
+   * @return reader producing the tuples in the order they were written
+   * @throws IOException if the file cannot be read
+   */
+  public TupleReader openReader() throws IOException {
+    if (output != null) {
+      output.close();
+      output = null;
+    }
+    DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+    return new TupleReader() {
+      @Override
+      public Tuple readNextTuple() throws IOException {
+        int[] values = new int[width];
+        try {
+          for (int i = 0; i < width; i++) {
+            values[i] = input.readInt();
+          }
+        } catch (EOFException e) {
+          return null;
+        }
+        return new Tuple(values);
+      }
+
+      @Override
+      public void close() throws IOException {
+        input.close();
+      }
+    };
+  }
+
+  /** Deletes the file. */
+  @Override
+  public void close() throws IOException {
+    if (output != null) {
+      output.close();
+      output = null;
+    }
+    Files.deleteIfExists(file.toPath());
+  }
+}
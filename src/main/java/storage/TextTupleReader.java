@@ -0,0 +1,271 @@
+package storage;
+
+import common.Tuple;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a row-oriented text table, one row per line with columns separated by commas and/or
+ * whitespace. Only the requested columns are parsed, and blank lines are skipped. A reader may be
+ * limited to a {@link ByteRange} of the file, and never reads past the file's committed length as
+ * of its opening (see {@link WriteAheadLog#committedLength}), so rows being appended meanwhile are
+ * not read half-written.
+ *
+ * <p>The file is read in blocks into a reusable byte buffer, and the requested fields are decoded
+ * from its bytes straight into the int array of the tuple, without a String per line or field or a
+ * boxed value.
+ */
+public class TextTupleReader implements TupleReader {
+  // Bytes read from the file at a time
+  private static final int BUFFER_BYTES = 1 << 16;
+
+  private final InputStream in;
+
+  // Bytes read from the file; those in [position, limit) have not been parsed yet
+  private byte[] buffer;
+  private int position;
+  private int limit;
+  private boolean endOfFile;
+
+  // Offset in the file of the first byte of the buffer
+  private long bufferOffset;
+
+  // Positions of the columns to decode, in increasing order, or null to decode every column
+  private final int[] columnIndexes;
+  private final int width;
+
+  /**
+   * Opens a reader over a text table file.
+   *
+   * @param tableFile file holding the table
+   * @param columnIndexes positions of the columns to produce (in increasing order), or null for
+   *     every column
+   * @param width number of columns in each produced tuple
+   * @throws IOException if the file cannot be opened
+   */
+  public TextTupleReader(File tableFile, int[] columnIndexes, int width) throws IOException {
+    this(tableFile, null, columnIndexes, width);
+  }
+
+  /**
+   * Opens a reader over part of a text table file.
+   *
+   * @param tableFile file holding the table
+   * @param range part of the file to read, or null for the whole file
+   * @param columnIndexes positions of the columns to produce (in increasing order), or null for
+   *     every column
+   * @param width number of columns in each produced tuple
+   * @throws IOException if the file cannot be opened
+   */
+  public TextTupleReader(File tableFile, ByteRange range, int[] columnIndexes, int width)
+      throws IOException {
+    long committedLength = WriteAheadLog.committedLength(tableFile);
+    if (range == null) {
+      range = new ByteRange(0, committedLength);
+    } else if (range.end() > committedLength) {
+      range = new ByteRange(range.start(), committedLength);
+    }
+    this.in = range.limit(new FileInputStream(tableFile));
+    this.bufferOffset = range.start();
+    this.buffer = new byte[BUFFER_BYTES];
+    this.columnIndexes = columnIndexes;
+    this.width = width;
+  }
+
+  @Override
+  public Tuple readNextTuple() throws IOException {
+    while (true) {
+      int end = lineEnd();
+      if (end < 0) {
+        return null;
+      }
+      int start = position;
+      position = Math.min(end + 1, limit);
+      if (!isBlank(buffer, start, end)) {
+        return parseRow(buffer, start, end, bufferOffset + start, columnIndexes, width);
+      }
+    }
+  }
+
+  /**
+   * Finds the end of the line starting at the current position, reading more of the file into the
+   * buffer as needed. The unread bytes are moved to the front of the buffer before it is refilled,
+   * and the buffer only grows for a line longer than itself.
+   *
+   * @return position of the line's newline, or the end of the data for a last line without one, or
+   *     -1 at the end of the file
+   */
+  private int lineEnd() throws IOException {
+    int scan = position;
+    while (true) {
+      for (; scan < limit; scan++) {
+        if (buffer[scan] == '\n') {
+          return scan;
+        }
+      }
+      if (endOfFile) {
+        return position < limit ? limit : -1;
+      }
+      if (position > 0) {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        bufferOffset += position;
+        scan -= position;
+        limit -= position;
+        position = 0;
+      } else if (limit == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      int count = in.read(buffer, limit, buffer.length - limit);
+      if (count < 0) {
+        endOfFile = true;
+      } else {
+        limit += count;
+      }
+    }
+  }
+
+  /**
+   * Reads the row starting at an offset of a text table file, such as an offset found in a {@link
+   * HashIndex}.
+   *
+   * @param tableFile the open table file
+   * @param offset offset of the start of the row's line
+   * @param columnIndexes positions of the columns to produce (in increasing order), or null for
+   *     every column
+   * @param width number of columns in the produced tuple
+   * @return tuple holding the requested columns
+   * @throws IOException if the file cannot be read
+   * @throws NumberFormatException if the row is malformed
+   */
+  public static Tuple readRowAt(
+      RandomAccessFile tableFile, long offset, int[] columnIndexes, int width) throws IOException {
+    byte[] line = new byte[128];
+    int length = 0;
+    tableFile.seek(offset);
+    while (true) {
+      if (length == line.length) {
+        line = Arrays.copyOf(line, length * 2);
+      }
+      int count = tableFile.read(line, length, line.length - length);
+      if (count < 0) {
+        break;
+      }
+      int end = length + count;
+      while (length < end && line[length] != '\n') {
+        length++;
+      }
+      if (length < end) {
+        break;
+      }
+    }
+    return parseRow(line, 0, length, offset, columnIndexes, width);
+  }
+
+  /**
+   * Decodes the requested columns of one row of the table file straight from its bytes. Fields that
+   * are not requested are skipped without being parsed.
+   *
+   * @param bytes bytes holding the row
+   * @param from position of the row's first byte
+   * @param to end (exclusive) of the row
+   * @param offset offset of the row in the table file, for error messages
+   * @param columnIndexes positions of the columns to produce, or null for every column
+   * @param width number of columns in the produced tuple
+   * @return tuple holding the requested columns
+   * @throws NumberFormatException if a requested field is not an int, or the row ends before the
+   *     last requested field
+   */
+  private static Tuple parseRow(
+      byte[] bytes, int from, int to, long offset, int[] columnIndexes, int width) {
+    int[] values = new int[width];
+    int count = 0;
+    int position = from;
+    int field = 0;
+    while (position < to && count < width) {
+      while (position < to && isDelimiter(bytes[position])) {
+        position++;
+      }
+      int start = position;
+      while (position < to && !isDelimiter(bytes[position])) {
+        position++;
+      }
+      if (start == position) {
+        break;
+      }
+      if (columnIndexes == null || columnIndexes[count] == field) {
+        values[count++] = parseInt(bytes, start, position);
+      }
+      field++;
+    }
+    if (count < width) {
+      throw new NumberFormatException(
+          "Malformed row at byte offset " + offset + ", expected " + width + " integers");
+    }
+    return new Tuple(values);
+  }
+
+  /** Parses a decimal int with an optional sign, like Integer.parseInt, but from bytes. */
+  private static int parseInt(byte[] bytes, int from, int to) {
+    int position = from;
+    boolean negative = bytes[position] == '-';
+    if (negative || bytes[position] == '+') {
+      position++;
+    }
+    if (position == to) {
+      throw numberFormatException(bytes, from, to);
+    }
+    long value = 0;
+    for (; position < to; position++) {
+      int digit = bytes[position] - '0';
+      if (digit < 0 || digit > 9) {
+        throw numberFormatException(bytes, from, to);
+      }
+      value = value * 10 + digit;
+      if (value > 1L + Integer.MAX_VALUE) {
+        throw numberFormatException(bytes, from, to);
+      }
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw numberFormatException(bytes, from, to);
+    }
+    return (int) value;
+  }
+
+  private static NumberFormatException numberFormatException(byte[] bytes, int from, int to) {
+    return new NumberFormatException(
+        "For input string: \""
+            + new String(bytes, from, to - from, StandardCharsets.US_ASCII)
+            + "\"");
+  }
+
+  /**
+   * Matches the delimiters of the format: commas and the ASCII characters Java calls whitespace.
+   */
+  private static boolean isDelimiter(byte b) {
+    return b == ',' || isWhitespace(b);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+  }
+
+  private static boolean isBlank(byte[] bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (!isWhitespace(bytes[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,20 @@
+package storage;
+
+import common.Tuple;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interface for reading the rows of a stored table one tuple at a time. Implementations decode a
+ * particular on-disk layout; the scan operator only sees tuples.
+ */
+public interface TupleReader extends Closeable {
+
+  /**
+   * Reads the next row of the table.
+   *
+   * @return next Tuple, or null if the end of the table has been reached
+   * @throws IOException if the underlying file cannot be read
+   */
+  Tuple readNextTuple() throws IOException;
+}
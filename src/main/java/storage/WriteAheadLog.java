@@ -0,0 +1,408 @@
+package storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log for appends to the files of a database, with group commit. Writers hand in the
+ * bytes to append to each file; the appends of every writer waiting at that moment are written to
+ * the log as one group and made durable with a single fsync, then applied to the table files, which
+ * are only synced at checkpoints. While one group is being synced, the next writers queue up and
+ * are committed together by whichever of them gets the commit lock first.
+ *
+ * <p>The log holds commit groups, each written as
+ *
+ * <pre>
+ *   int length | group | long crc32(group)
+ * </pre>
+ *
+ * where a group is an int count of appends followed by, for each append, the file's path relative
+ * to the database directory (modified UTF-8), the long offset it was written at, an int length and
+ * the bytes. Replaying an append writes the same bytes at the same offset, so recovery is
+ * idempotent; groups cut short by a crash were never applied and are ignored.
+ *
+ * <p>Queries read the files while appends are applied to them, so a reader must not read past the
+ * file's committed length (see {@link #committedLength}): the bytes of the appends applied so far,
+ * which always end on a complete row. The log takes the offsets of new appends from the same
+ * lengths rather than from the files, which may hold part of an append that failed. After such a
+ * failure the group is durable in the log but not in the file, so the log refuses further commits;
+ * the group is applied when the database is next opened and the log recovered.
+ */
+public class WriteAheadLog implements Closeable {
+  public static final String LOG_FILE = "wal.log";
+
+  // Log size at which the table files are synced and the log truncated
+  static final long CHECKPOINT_BYTES = 16 << 20;
+
+  private final File directory;
+  private final FileChannel log;
+  private final ReentrantLock commitLock;
+  private final List<Commit> pending;
+  private final Set<File> dirtyFiles;
+
+  // Error that left a durable group unapplied, after which nothing more is committed
+  private IOException failure;
+
+  // Committed length of each file appended to by an open log, shared by every reader
+  private static final Map<File, Long> committedLengths = new HashMap<>();
+  private static final ReadWriteLock committedLengthsLock = new ReentrantReadWriteLock();
+
+  /**
+   * Bytes to append to one file.
+   *
+   * @param file the file; created if missing
+   * @param bytes the bytes to append
+   * @param text whether the bytes are lines of a text table, which must start on a new line
+   */
+  public record FileAppend(File file, byte[] bytes, boolean text) {}
+
+  /** Appends of one writer, and the outcome of committing them. */
+  private static class Commit {
+    final List<FileAppend> appends;
+    boolean done;
+    IOException error;
+
+    Commit(List<FileAppend> appends) {
+      this.appends = appends;
+    }
+  }
+
+  /**
+   * Opens the log of a database directory, first recovering any appends it still holds.
+   *
+   * @param directory the database directory
+   * @throws IOException if the log cannot be opened or replayed
+   */
+  public WriteAheadLog(File directory) throws IOException {
+    this.directory = directory;
+    recover(directory);
+    this.log =
+        FileChannel.open(
+            new File(directory, LOG_FILE).toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    this.commitLock = new ReentrantLock();
+    this.pending = new ArrayList<>();
+    this.dirtyFiles = new HashSet<>();
+  }
+
+  /**
+   * Durably appends bytes to files. Returns once the appends are in the synced log and applied to
+   * the files; the appends of one call are committed atomically.
+   *
+   * @param appends the appends, applied in order
+   * @throws IOException if the log cannot be written, or failed before
+   */
+  public void commit(List<FileAppend> appends) throws IOException {
+    Commit commit = new Commit(appends);
+    synchronized (pending) {
+      pending.add(commit);
+    }
+    commitLock.lock();
+    try {
+      if (!commit.done) {
+        List<Commit> group;
+        synchronized (pending) {
+          group = new ArrayList<>(pending);
+          pending.clear();
+        }
+        IOException error = null;
+        if (failure != null) {
+          error = new IOException("the log failed earlier; reopen the database to recover it");
+        } else {
+          try {
+            writeGroup(group);
+          } catch (IOException e) {
+            error = e;
+          }
+        }
+        for (Commit member : group) {
+          member.error = error;
+          member.done = true;
+        }
+      }
+    } finally {
+      commitLock.unlock();
+    }
+    if (commit.error != null) {
+      throw new IOException("Commit failed: " + commit.error.getMessage(), commit.error);
+    }
+  }
+
+  /**
+   * Logs, syncs and applies the appends of a group of commits. Any error marks the log failed,
+   * since the log or a file may be left holding part of the group.
+   */
+  private void writeGroup(List<Commit> group) throws IOException {
+    try {
+      applyGroup(logGroup(group));
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    }
+  }
+
+  /** Appends of a group with the offsets they are written at. */
+  private record LoggedAppends(List<File> files, List<Long> offsets, List<byte[]> contents) {}
+
+  /** Decides where the appends of a group go, and writes and syncs the group to the log. */
+  private LoggedAppends logGroup(List<Commit> group) throws IOException {
+    // Offsets are decided here, as the files only grow through the log
+    Map<File, Long> sizes = new HashMap<>();
+    List<File> files = new ArrayList<>();
+    List<Long> offsets = new ArrayList<>();
+    List<byte[]> contents = new ArrayList<>();
+    for (Commit commit : group) {
+      for (FileAppend append : commit.appends) {
+        File file = append.file();
+        byte[] bytes = append.bytes();
+        Long size = sizes.get(file);
+        if (size == null) {
+          size = trackLength(file);
+          if (append.text() && size > 0 && byteAt(file, size - 1) != '\n') {
+            byte[] line = new byte[bytes.length + 1];
+            line[0] = '\n';
+            System.arraycopy(bytes, 0, line, 1, bytes.length);
+            bytes = line;
+          }
+        }
+        files.add(file);
+        offsets.add(size);
+        contents.add(bytes);
+        sizes.put(file, size + bytes.length);
+      }
+    }
+
+    ByteArrayOutputStream groupBytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(groupBytes);
+    out.writeInt(files.size());
+    for (int i = 0; i < files.size(); i++) {
+      out.writeUTF(directory.toPath().relativize(files.get(i).toPath()).toString());
+      out.writeLong(offsets.get(i));
+      out.writeInt(contents.get(i).length);
+      out.write(contents.get(i));
+    }
+    out.flush();
+    byte[] body = groupBytes.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    ByteBuffer record = ByteBuffer.allocate(body.length + 12);
+    record.putInt(body.length).put(body).putLong(crc.getValue()).flip();
+    while (record.hasRemaining()) {
+      log.write(record);
+    }
+    log.force(false);
+    return new LoggedAppends(files, offsets, contents);
+  }
+
+  /** Applies the logged appends of a group to the files, then publishes their new lengths. */
+  private void applyGroup(LoggedAppends appends) throws IOException {
+    Map<File, Long> lengths = new HashMap<>();
+    for (int i = 0; i < appends.files().size(); i++) {
+      File file = appends.files().get(i);
+      byte[] bytes = appends.contents().get(i);
+      writeAt(file, appends.offsets().get(i), bytes, false);
+      dirtyFiles.add(file);
+      lengths.put(file, appends.offsets().get(i) + bytes.length);
+    }
+    committedLengthsLock.writeLock().lock();
+    try {
+      committedLengths.putAll(lengths);
+    } finally {
+      committedLengthsLock.writeLock().unlock();
+    }
+    if (log.size() >= CHECKPOINT_BYTES) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * Gets the committed length of a file about to be appended to, starting to track it at its
+   * current length if no append has been committed to it yet. A reader that finds a file untracked
+   * thus reads a length no append has been applied past.
+   */
+  private static long trackLength(File file) {
+    committedLengthsLock.writeLock().lock();
+    try {
+      return committedLengths.computeIfAbsent(file, File::length);
+    } finally {
+      committedLengthsLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the committed length of a file: how much of it a reader may read without meeting part of
+   * an append still being applied.
+   *
+   * @param file the file
+   * @return the file's length when the last append to it was applied, or its length if it has not
+   *     been appended to through an open log
+   */
+  public static long committedLength(File file) {
+    return committedLengths(new File[] {file})[0];
+  }
+
+  /**
+   * Gets the committed lengths of several files, such as the column files of a columnar table, as
+   * of the same commit group.
+   *
+   * @param files the files
+   * @return the committed length of each file
+   */
+  public static long[] committedLengths(File[] files) {
+    long[] lengths = new long[files.length];
+    committedLengthsLock.readLock().lock();
+    try {
+      for (int i = 0; i < files.length; i++) {
+        Long committed = committedLengths.get(files[i]);
+        long length = files[i].length();
+        // A file rewritten since as a whole is read as it is now
+        lengths[i] = committed == null ? length : Math.min(committed, length);
+      }
+    } finally {
+      committedLengthsLock.readLock().unlock();
+    }
+    return lengths;
+  }
+
+  private static int byteAt(File file, long position) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.seek(position);
+      return raf.read();
+    }
+  }
+
+  private static void writeAt(File file, long offset, byte[] bytes, boolean sync)
+      throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      long position = offset;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      if (sync) {
+        channel.force(false);
+      }
+    }
+  }
+
+  /** Syncs the files changed since the last checkpoint, after which the log can be emptied. */
+  private void checkpoint() throws IOException {
+    for (File file : dirtyFiles) {
+      if (file.exists()) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+          channel.force(false);
+        }
+      }
+    }
+    dirtyFiles.clear();
+    log.truncate(0);
+    log.force(false);
+  }
+
+  /**
+   * Replays the complete commit groups of a database's log and empties it. Does nothing if the
+   * database has no log.
+   *
+   * @param directory the database directory
+   * @return number of appends replayed
+   * @throws IOException if the log or a table file cannot be accessed
+   */
+  public static int recover(File directory) throws IOException {
+    File logFile = new File(directory, LOG_FILE);
+    if (!logFile.isFile() || logFile.length() == 0) {
+      return 0;
+    }
+    int replayed = 0;
+    try (FileChannel channel =
+            FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        InputStream stream = Channels.newInputStream(channel)) {
+      DataInputStream in = new DataInputStream(stream);
+      while (true) {
+        byte[] body;
+        long checksum;
+        try {
+          int length = in.readInt();
+          if (length < 0 || length > logFile.length()) {
+            break;
+          }
+          body = in.readNBytes(length);
+          if (body.length < length) {
+            break;
+          }
+          checksum = in.readLong();
+        } catch (EOFException e) {
+          break;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if (crc.getValue() != checksum) {
+          break;
+        }
+        DataInputStream group = new DataInputStream(new ByteArrayInputStream(body));
+        int count = group.readInt();
+        for (int i = 0; i < count; i++) {
+          File file = new File(directory, group.readUTF());
+          long offset = group.readLong();
+          byte[] bytes = group.readNBytes(group.readInt());
+          writeAt(file, offset, bytes, true);
+          replayed++;
+        }
+      }
+      channel.truncate(0);
+      channel.force(false);
+    }
+    return replayed;
+  }
+
+  /**
+   * Checkpoints and closes the log. The files it appended to are no longer tracked, so their whole
+   * length is then committed.
+   */
+  @Override
+  public void close() throws IOException {
+    commitLock.lock();
+    try {
+      if (failure == null) {
+        checkpoint();
+      }
+      log.close();
+    } finally {
+      untrackFiles();
+      commitLock.unlock();
+    }
+  }
+
+  private void untrackFiles() {
+    committedLengthsLock.writeLock().lock();
+    try {
+      committedLengths.keySet().removeIf(file -> file.toPath().startsWith(directory.toPath()));
+    } finally {
+      committedLengthsLock.writeLock().unlock();
+    }
+  }
+}
@@ -0,0 +1,268 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import operator.AdaptiveJoinOperator;
+import operator.InequalityJoinOperator;
+import operator.JoinOperator;
+import operator.Operator;
+import operator.ScanOperator;
+import operator.SelectOperator;
+import operator.SpoolOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AdaptiveJoinTests {
+  private static final Map<String, String> aliases = Map.of("S", "Sailors", "R", "Reserves");
+
+  private static long defaultMemoryBytes;
+  private static int defaultNestedLoopMaxTuples;
+  private static String defaultTempDirectory;
+
+  @TempDir Path spillDirectory;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = AdaptiveJoinTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+
+    EngineConfig config = EngineConfig.getInstance();
+    defaultMemoryBytes = config.getJoinMemoryBytes();
+    defaultNestedLoopMaxTuples = config.getJoinNestedLoopMaxTuples();
+    defaultTempDirectory = config.getTempDirectory();
+  }
+
+  @AfterEach
+  void restoreConfig() {
+    EngineConfig config = EngineConfig.getInstance();
+    config.setJoinMemoryBytes(defaultMemoryBytes);
+    config.setJoinNestedLoopMaxTuples(defaultNestedLoopMaxTuples);
+    config.setTempDirectory(defaultTempDirectory);
+  }
+
+  private static ArrayList<Column> aliasedSchema(String tableName, String alias) {
+    ArrayList<Column> schema = new ArrayList<>();
+    for (Column column : DBCatalog.getInstance().getColumns(tableName)) {
+      Table table = new Table(tableName);
+      table.setAlias(new Alias(alias));
+      schema.add(new Column(table, column.getColumnName()));
+    }
+    return schema;
+  }
+
+  /** Operator producing a fixed list of (X, Y) tuples of a table. */
+  private static class ListOperator extends Operator {
+    private final List<Tuple> tuples;
+    private int position;
+
+    ListOperator(String tableName, List<Tuple> tuples) {
+      super(new ArrayList<>());
+      for (String columnName : List.of("X", "Y")) {
+        outputSchema.add(new Column(new Table(tableName), columnName));
+      }
+      this.tuples = tuples;
+    }
+
+    @Override
+    public void reset() {
+      position = 0;
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+      return position < tuples.size() ? tuples.get(position++) : null;
+    }
+  }
+
+  private static List<Tuple> nestedLoopJoin(Expression condition) {
+    return HelperMethods.collectAllTuples(
+        new JoinOperator(
+            new ScanOperator(aliasedSchema("Sailors", "S"), "Sailors"),
+            new ScanOperator(aliasedSchema("Reserves", "R"), "Reserves"),
+            condition,
+            aliases));
+  }
+
+  private static AdaptiveJoinOperator adaptiveJoin(Expression condition) {
+    return new AdaptiveJoinOperator(
+        new ScanOperator(aliasedSchema("Sailors", "S"), "Sailors"),
+        new ScanOperator(aliasedSchema("Reserves", "R"), "Reserves"),
+        condition,
+        aliases);
+  }
+
+  @Test
+  public void testInMemoryStrategiesKeepNestedLoopOrder() throws JSQLParserException {
+    Expression condition = CCJSqlParserUtil.parseCondExpression("S.A = R.G AND R.H > 101");
+    List<Tuple> expected = nestedLoopJoin(condition);
+
+    AdaptiveJoinOperator nestedLoop = adaptiveJoin(condition);
+    Assertions.assertEquals(expected, HelperMethods.collectAllTuples(nestedLoop));
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.NESTED_LOOP, nestedLoop.getStrategy());
+
+    EngineConfig.getInstance().setJoinNestedLoopMaxTuples(0);
+    AdaptiveJoinOperator hash = adaptiveJoin(condition);
+    Assertions.assertEquals(expected, HelperMethods.collectAllTuples(hash));
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.HASH, hash.getStrategy());
+
+    List<Tuple> pushed = new ArrayList<>();
+    adaptiveJoin(condition).produce(pushed::add);
+    Assertions.assertEquals(expected, pushed);
+  }
+
+  @Test
+  public void testJoinSpillsWhenInnerInputExceedsMemory() throws JSQLParserException {
+    EngineConfig.getInstance().setJoinMemoryBytes(1);
+    EngineConfig.getInstance().setTempDirectory(spillDirectory.toString());
+
+    Expression condition = CCJSqlParserUtil.parseCondExpression("S.A = R.G");
+    List<Tuple> expected = new ArrayList<>(nestedLoopJoin(condition));
+    AdaptiveJoinOperator join = adaptiveJoin(condition);
+    List<Tuple> actual = new ArrayList<>(HelperMethods.collectAllTuples(join));
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.PARTITIONED_HASH, join.getStrategy());
+
+    expected.sort(Comparator.comparing(Tuple::toString));
+    actual.sort(Comparator.comparing(Tuple::toString));
+    Assertions.assertEquals(expected, actual);
+
+    join.close();
+    Assertions.assertEquals(0, spillDirectory.toFile().list().length, "Spill files were left");
+  }
+
+  @Test
+  public void testCartesianProductFallsBackToRescanning() {
+    EngineConfig.getInstance().setJoinMemoryBytes(1);
+
+    AdaptiveJoinOperator join = adaptiveJoin(null);
+    Assertions.assertEquals(nestedLoopJoin(null), HelperMethods.collectAllTuples(join));
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.RESCAN_NESTED_LOOP, join.getStrategy());
+  }
+
+  @Test
+  public void testInequalityJoinKeepsNestedLoopOrder() throws JSQLParserException {
+    for (String sql :
+        List.of(
+            "S.A < R.G",
+            "R.G <= S.A",
+            "S.B > R.H",
+            "S.A >= R.G AND S.A != R.G",
+            "S.A <= R.G AND S.C > R.H",
+            "S.A > R.G AND R.H < S.B",
+            "S.A >= R.G AND S.A < R.H AND S.B > R.G",
+            "R.G < S.A AND R.H <= S.C")) {
+      Expression condition = CCJSqlParserUtil.parseCondExpression(sql);
+      InequalityJoinOperator join =
+          new InequalityJoinOperator(
+              new ScanOperator(aliasedSchema("Sailors", "S"), "Sailors"),
+              new ScanOperator(aliasedSchema("Reserves", "R"), "Reserves"),
+              condition,
+              aliases);
+      Assertions.assertEquals(nestedLoopJoin(condition), HelperMethods.collectAllTuples(join), sql);
+      Assertions.assertEquals(AdaptiveJoinOperator.Strategy.INEQUALITY, join.getStrategy());
+    }
+  }
+
+  @Test
+  public void testInequalityJoinProducesPairsInBlocks() throws JSQLParserException {
+    Random random = new Random(47);
+    List<Tuple> left = new ArrayList<>();
+    List<Tuple> right = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      left.add(new Tuple(new int[] {random.nextInt(100), random.nextInt(100)}));
+      right.add(new Tuple(new int[] {random.nextInt(100), random.nextInt(100)}));
+    }
+    // Room for the inputs, but only for a few thousand of the tens of thousands of pairs at once
+    EngineConfig.getInstance()
+        .setJoinMemoryBytes(800 * Tuple.estimatedHeapBytes(2) + 4096 * Long.BYTES);
+
+    Map<String, String> tables = Map.of("L", "L", "R", "R");
+    for (String sql :
+        List.of("L.X < R.X", "L.X <= R.X AND L.Y > R.Y", "L.X > R.Y AND L.Y <= R.X")) {
+      Expression condition = CCJSqlParserUtil.parseCondExpression(sql);
+      List<Tuple> expected =
+          HelperMethods.collectAllTuples(
+              new JoinOperator(
+                  new ListOperator("L", left), new ListOperator("R", right), condition, tables));
+      InequalityJoinOperator join =
+          new InequalityJoinOperator(
+              new ListOperator("L", left), new ListOperator("R", right), condition, tables);
+      Assertions.assertEquals(expected, HelperMethods.collectAllTuples(join), sql);
+      Assertions.assertEquals(AdaptiveJoinOperator.Strategy.INEQUALITY, join.getStrategy());
+      Assertions.assertTrue(expected.size() > 20000, "Too few pairs to need several blocks");
+    }
+  }
+
+  @Test
+  public void testInequalityJoinFallsBackWhenInputsExceedMemory() throws JSQLParserException {
+    EngineConfig.getInstance().setJoinMemoryBytes(1);
+    Expression condition = CCJSqlParserUtil.parseCondExpression("S.A < R.G AND S.B > R.H");
+    InequalityJoinOperator join =
+        new InequalityJoinOperator(
+            new ScanOperator(aliasedSchema("Sailors", "S"), "Sailors"),
+            new ScanOperator(aliasedSchema("Reserves", "R"), "Reserves"),
+            condition,
+            aliases);
+    Assertions.assertEquals(nestedLoopJoin(condition), HelperMethods.collectAllTuples(join));
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.RESCAN_NESTED_LOOP, join.getStrategy());
+  }
+
+  @Test
+  public void testSpoolReplaysInnerSideOfRescanningJoin() throws JSQLParserException {
+    EngineConfig.getInstance().setJoinMemoryBytes(1);
+    EngineConfig.getInstance().setTempDirectory(spillDirectory.toString());
+    int[] innerReads = new int[1];
+    ScanOperator reserves =
+        new ScanOperator(aliasedSchema("Reserves", "R"), "Reserves") {
+          @Override
+          public Tuple getNextTuple() {
+            Tuple tuple = super.getNextTuple();
+            if (tuple != null) {
+              innerReads[0]++;
+            }
+            return tuple;
+          }
+        };
+    SpoolOperator spool =
+        new SpoolOperator(
+            new SelectOperator(
+                reserves, CCJSqlParserUtil.parseCondExpression("R.H > 101"), aliases));
+    Expression condition = CCJSqlParserUtil.parseCondExpression("S.A <= R.G");
+    JoinOperator join =
+        new JoinOperator(
+            new ScanOperator(aliasedSchema("Sailors", "S"), "Sailors"), spool, condition, aliases);
+
+    List<Tuple> expected = new ArrayList<>();
+    for (Tuple tuple : nestedLoopJoin(condition)) {
+      if (tuple.getElementAtIndex(4) > 101) {
+        expected.add(tuple);
+      }
+    }
+    Assertions.assertEquals(expected, HelperMethods.collectAllTuples(join));
+    Assertions.assertTrue(spool.isReplaying());
+    // The join resets its inner side before the first pass, so only that pass reads the table
+    Assertions.assertEquals(6, innerReads[0]);
+
+    join.close();
+    Assertions.assertEquals(0, spillDirectory.toFile().list().length, "Spill files were left");
+  }
+}
@@ -0,0 +1,119 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import compiler.BulkLoader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BulkLoaderTests {
+  @TempDir Path dbDirectory;
+
+  @BeforeEach
+  void copySampleDb() throws URISyntaxException, IOException {
+    Path sampleDb = sampleDb();
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+    EngineConfig.getInstance().setLoadThreads(4);
+  }
+
+  @AfterAll
+  static void restoreSampleDb() throws URISyntaxException {
+    DBCatalog.getInstance().setDataDirectory(sampleDb().toString());
+    EngineConfig.getInstance().setLoadThreads(Runtime.getRuntime().availableProcessors());
+  }
+
+  private static Path sampleDb() throws URISyntaxException {
+    URI path =
+        Objects.requireNonNull(
+                BulkLoaderTests.class.getClassLoader().getResource("samples/input/db"))
+            .toURI();
+    return Paths.get(path);
+  }
+
+  private static List<Tuple> query(String sql) throws JSQLParserException {
+    return HelperMethods.collectAllTuples(
+        new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(sql)));
+  }
+
+  @Test
+  public void testLoadNewTableFromLargeFile() throws IOException, JSQLParserException {
+    // Several parse chunks, with mixed delimiters, blank lines and negative values
+    File input = dbDirectory.resolve("events.txt").toFile();
+    int rows = 200_000;
+    long sum = 0;
+    try (BufferedWriter writer = Files.newBufferedWriter(input.toPath())) {
+      for (int i = 0; i < rows; i++) {
+        int value = (i % 7 == 0) ? -i : i * 3;
+        sum += value;
+        writer.write(i + (i % 2 == 0 ? "," : " \t") + value + ", " + (i % 100) + "\n");
+        if (i % 5000 == 0) {
+          writer.write("\n");
+        }
+      }
+      writer.write(Integer.MIN_VALUE + "," + Integer.MAX_VALUE + ",0");
+    }
+
+    long loaded = BulkLoader.load("Events", input, List.of("Id", "Amount", "Bucket"), null);
+    Assertions.assertEquals(rows + 1, loaded);
+    Assertions.assertTrue(DBCatalog.getInstance().isColumnar("Events"));
+
+    List<Tuple> tuples = query("SELECT * FROM Events");
+    Assertions.assertEquals(rows + 1, tuples.size());
+    long loadedSum = 0;
+    for (int i = 0; i < rows; i++) {
+      Assertions.assertEquals(i, tuples.get(i).getElementAtIndex(0), "Rows out of order");
+      loadedSum += tuples.get(i).getElementAtIndex(1);
+    }
+    Assertions.assertEquals(sum, loadedSum);
+    Assertions.assertEquals(
+        new Tuple(Integer.MIN_VALUE + "," + Integer.MAX_VALUE + ",0"), tuples.get(rows));
+    Assertions.assertEquals(
+        List.of(new Tuple("7,-7,7")), query("SELECT * FROM Events E WHERE E.Id = 7"));
+  }
+
+  @Test
+  public void testSortedLoadReplacesExistingTable() throws IOException, JSQLParserException {
+    File input = dbDirectory.resolve("sailors.txt").toFile();
+    Files.writeString(input.toPath(), "1 300 1\n2 100 2\n3 200 3\n4 100 4\n");
+
+    Assertions.assertEquals(4, BulkLoader.load("Sailors", input, List.of(), "B"));
+    Assertions.assertFalse(DBCatalog.getInstance().getFileForTable("Sailors").exists());
+    Assertions.assertEquals(
+        List.of(
+            new Tuple("2,100,2"), new Tuple("4,100,4"), new Tuple("3,200,3"), new Tuple("1,300,1")),
+        query("SELECT * FROM Sailors"));
+  }
+
+  @Test
+  public void testMalformedInputLeavesTableUnchanged() throws IOException, JSQLParserException {
+    File input = dbDirectory.resolve("reserves.txt").toFile();
+    Files.writeString(input.toPath(), "1,101\n2,x\n");
+
+    Assertions.assertThrows(
+        NumberFormatException.class,
+        () -> BulkLoader.load("Reserves", input, List.of("G", "H"), null));
+    Assertions.assertFalse(DBCatalog.getInstance().isColumnar("Reserves"));
+    Assertions.assertEquals(6, query("SELECT * FROM Reserves").size());
+  }
+}
@@ -0,0 +1,141 @@
+import common.DBCatalog;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.ColumnRange;
+import storage.ColumnarTableWriter;
+import storage.ColumnarTupleReader;
+import storage.TupleReader;
+
+public class ColumnarStorageTests {
+  @TempDir static Path dbDirectory;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException, IOException {
+    ClassLoader classLoader = ColumnarStorageTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input/db")).toURI();
+    Path sampleDb = Paths.get(path);
+
+    // Work on a copy so the columnar tables do not leak into the other tests
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      ColumnarTableWriter.convertTable(table);
+    }
+  }
+
+  @Test
+  public void testQueryOverColumnarTables() throws JSQLParserException {
+    Assertions.assertTrue(DBCatalog.getInstance().isColumnar("Sailors"));
+
+    Operator plan =
+        new QueryPlanBuilder()
+            .buildPlan(
+                CCJSqlParserUtil.parse(
+                    "SELECT S.A, R.G FROM Sailors S, Reserves R WHERE S.A = R.G AND S.B < 200"));
+    List<Tuple> tuples = HelperMethods.collectAllTuples(plan);
+
+    Assertions.assertEquals(2, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(3, 3))), tuples.get(0));
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(4, 4))), tuples.get(1));
+  }
+
+  @Test
+  public void testEncodingsRoundTrip() throws IOException {
+    File directory = dbDirectory.resolve("roundtrip").toFile();
+    List<String> columns = List.of("sorted", "runs", "lowCardinality", "random", "extremes");
+    int rows = ColumnarTableWriter.ROW_GROUP_SIZE * 2 + 17;
+    Random random = new Random(42);
+    List<Tuple> expected = new ArrayList<>();
+    for (int i = 0; i < rows; i++) {
+      expected.add(
+          new Tuple(
+              new ArrayList<>(
+                  List.of(
+                      i * 3,
+                      i / 100,
+                      random.nextInt(5) - 2,
+                      random.nextInt(),
+                      i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE))));
+    }
+    try (ColumnarTableWriter writer = new ColumnarTableWriter(directory, columns)) {
+      for (Tuple tuple : expected) {
+        writer.writeTuple(tuple);
+      }
+    }
+
+    try (TupleReader reader = new ColumnarTupleReader(directory, columns)) {
+      for (int i = 0; i < rows; i++) {
+        Assertions.assertEquals(expected.get(i), reader.readNextTuple(), "Unexpected row " + i);
+      }
+      Assertions.assertNull(reader.readNextTuple());
+    }
+
+    // The sorted and run-heavy columns should be far smaller than 4 bytes per value
+    long sortedSize = ColumnarTableWriter.columnFile(directory, "sorted").length();
+    long runsSize = ColumnarTableWriter.columnFile(directory, "runs").length();
+    Assertions.assertTrue(sortedSize < rows, "Delta encoding was not used");
+    Assertions.assertTrue(runsSize < rows, "Run length encoding was not used");
+  }
+
+  @Test
+  public void testZoneMapsSkipRowGroups() throws IOException {
+    File directory = dbDirectory.resolve("clustered").toFile();
+    List<String> columns = List.of("time", "value");
+    int rows = ColumnarTableWriter.ROW_GROUP_SIZE * 3;
+    try (ColumnarTableWriter writer = new ColumnarTableWriter(directory, columns)) {
+      for (int i = 0; i < rows; i++) {
+        writer.writeTuple(new Tuple(new ArrayList<>(List.of(i, i % 7))));
+      }
+    }
+
+    ColumnRange timeRange = new ColumnRange();
+    timeRange.restrictAtLeast(ColumnarTableWriter.ROW_GROUP_SIZE + 10);
+    timeRange.restrictAtMost(ColumnarTableWriter.ROW_GROUP_SIZE + 19);
+    try (ColumnarTupleReader reader =
+        new ColumnarTupleReader(directory, columns, new ColumnRange[] {timeRange, null})) {
+      int matching = 0;
+      Tuple tuple;
+      while ((tuple = reader.readNextTuple()) != null) {
+        if (timeRange.contains(tuple.getElementAtIndex(0))) {
+          matching++;
+        }
+      }
+      Assertions.assertEquals(10, matching, "Unexpected number of matching rows.");
+      Assertions.assertEquals(2, reader.getRowGroupsSkipped(), "Row groups were not skipped.");
+    }
+  }
+
+  @Test
+  public void testRangePredicateOverColumnarTable() throws JSQLParserException {
+    Operator plan =
+        new QueryPlanBuilder()
+            .buildPlan(CCJSqlParserUtil.parse("SELECT * FROM Sailors S WHERE S.B <= 100"));
+    List<Tuple> tuples = HelperMethods.collectAllTuples(plan);
+
+    Assertions.assertEquals(3, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(3, 100, 105))), tuples.get(0));
+  }
+}
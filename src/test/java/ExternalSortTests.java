@@ -0,0 +1,154 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import operator.Operator;
+import operator.SortOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExternalSortTests {
+  private static long defaultMemoryBytes;
+  private static int defaultThreads;
+  private static String defaultTempDirectory;
+
+  @TempDir Path spillDirectory;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = ExternalSortTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+
+    EngineConfig config = EngineConfig.getInstance();
+    defaultMemoryBytes = config.getSortMemoryBytes();
+    defaultThreads = config.getSortThreads();
+    defaultTempDirectory = config.getTempDirectory();
+  }
+
+  @AfterEach
+  void restoreConfig() {
+    EngineConfig config = EngineConfig.getInstance();
+    config.setSortMemoryBytes(defaultMemoryBytes);
+    config.setSortThreads(defaultThreads);
+    config.setTempDirectory(defaultTempDirectory);
+  }
+
+  /** Operator producing a fixed list of tuples of table T. */
+  private static class ListOperator extends Operator {
+    private final List<Tuple> tuples;
+    private int position;
+
+    ListOperator(List<Tuple> tuples, String... columnNames) {
+      super(new ArrayList<>());
+      for (String columnName : columnNames) {
+        outputSchema.add(new Column(new Table("T"), columnName));
+      }
+      this.tuples = tuples;
+    }
+
+    @Override
+    public void reset() {
+      position = 0;
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+      return position < tuples.size() ? tuples.get(position++) : null;
+    }
+  }
+
+  @Test
+  public void testSpillingQueryMatchesInMemorySort() throws JSQLParserException {
+    Statement statement =
+        CCJSqlParserUtil.parse("SELECT S.A, S.B FROM Sailors S ORDER BY S.B DESC");
+    List<Tuple> expected =
+        HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(statement));
+
+    EngineConfig.getInstance().setSortMemoryBytes(1);
+    EngineConfig.getInstance().setSortThreads(2);
+    EngineConfig.getInstance().setTempDirectory(spillDirectory.toString());
+    List<Tuple> actual =
+        HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(statement));
+
+    Assertions.assertEquals(6, actual.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testMergeTreeKeepsSortStable() {
+    Random random = new Random(38);
+    List<Tuple> input = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      input.add(new Tuple(new ArrayList<>(List.of(random.nextInt(100), i))));
+    }
+    List<Tuple> expected = new ArrayList<>(input);
+    expected.sort(Comparator.comparingInt(t -> t.getElementAtIndex(0)));
+
+    // Room for about 40 tuples: hundreds of runs, merged over two levels
+    EngineConfig.getInstance().setSortMemoryBytes(40 * Tuple.estimatedHeapBytes(2));
+    EngineConfig.getInstance().setSortThreads(4);
+    EngineConfig.getInstance().setTempDirectory(spillDirectory.toString());
+
+    ListOperator child = new ListOperator(input, "K", "V");
+    OrderByElement orderBy = new OrderByElement();
+    orderBy.setExpression(new Column(new Table("T"), "K"));
+    SortOperator sort = new SortOperator(child.getOutputSchema(), child, List.of(orderBy));
+    Assertions.assertEquals(expected, HelperMethods.collectAllTuples(sort));
+
+    List<Tuple> pushed = new ArrayList<>();
+    sort.reset();
+    sort.produce(pushed::add);
+    Assertions.assertEquals(expected, pushed);
+
+    sort.close();
+    Assertions.assertEquals(0, spillDirectory.toFile().list().length, "Runs were left on disk");
+  }
+
+  @Test
+  public void testRadixSortOnSeveralKeys() {
+    Random random = new Random(39);
+    List<Tuple> input = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      int k = random.nextInt(2000) - 1000;
+      int v = random.nextInt() % 3 == 0 ? Integer.MIN_VALUE : random.nextInt(50) - 25;
+      input.add(new Tuple(new ArrayList<>(List.of(k, v, i))));
+    }
+    List<Tuple> expected = new ArrayList<>(input);
+    expected.sort(
+        Comparator.<Tuple>comparingInt(t -> t.getElementAtIndex(0))
+            .thenComparing(Comparator.<Tuple>comparingInt(t -> t.getElementAtIndex(1)).reversed()));
+
+    // Enough rows for the in-memory sort to be split across the workers
+    EngineConfig.getInstance().setSortThreads(4);
+    ListOperator child = new ListOperator(input, "K", "V", "I");
+    OrderByElement byK = new OrderByElement();
+    byK.setExpression(new Column(new Table("T"), "K"));
+    OrderByElement byVDescending = new OrderByElement();
+    byVDescending.setExpression(new Column(new Table("T"), "V"));
+    byVDescending.setAsc(false);
+    SortOperator sort =
+        new SortOperator(child.getOutputSchema(), child, List.of(byK, byVDescending));
+
+    Assertions.assertEquals(expected, HelperMethods.collectAllTuples(sort));
+  }
+}
@@ -0,0 +1,261 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.QueryPlanBuilder;
+import common.TableInserter;
+import common.Tuple;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.create.index.CreateIndex;
+import net.sf.jsqlparser.statement.insert.Insert;
+import operator.AdaptiveJoinOperator;
+import operator.IndexNestedLoopJoinOperator;
+import operator.IndexScanOperator;
+import operator.ScanOperator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.ColumnarTableWriter;
+import storage.HashIndex;
+
+public class HashIndexTests {
+  @TempDir Path dbDirectory;
+
+  @BeforeEach
+  void copySampleDb() throws URISyntaxException, IOException {
+    Path sampleDb = sampleDb();
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+  }
+
+  @AfterAll
+  static void restoreSampleDb() throws URISyntaxException {
+    DBCatalog.getInstance().setDataDirectory(sampleDb().toString());
+  }
+
+  private static Path sampleDb() throws URISyntaxException {
+    URI path =
+        Objects.requireNonNull(
+                HashIndexTests.class.getClassLoader().getResource("samples/input/db"))
+            .toURI();
+    return Paths.get(path);
+  }
+
+  private static List<Tuple> query(String sql) throws JSQLParserException {
+    return HelperMethods.collectAllTuples(
+        new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(sql)));
+  }
+
+  private static HashIndex createIndex(String sql) throws JSQLParserException, IOException {
+    return HashIndex.create((CreateIndex) CCJSqlParserUtil.parse(sql));
+  }
+
+  @Test
+  public void testLookupsAcrossSplitsAndOverflowPages() throws Exception {
+    // Enough distinct keys to split buckets many times, and one key too frequent for a page
+    List<Tuple> rows = new ArrayList<>();
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      int key = i % 3 == 0 ? 7 : i % 4001 - 2000;
+      rows.add(new Tuple(key + "," + i));
+      data.append(key).append(", ").append(i).append('\n');
+    }
+    Files.writeString(dbDirectory.resolve("data").resolve("Big"), data);
+    DBCatalog.getInstance().addTable("Big", List.of("K", "V"));
+    HashIndex.create("Big", "K");
+
+    int sevens = 0;
+    for (int key : new int[] {7, 1, 0, 1999, 2000, 12345}) {
+      List<Tuple> expected = new ArrayList<>();
+      for (Tuple row : rows) {
+        if (row.getElementAtIndex(0) == key) {
+          expected.add(row);
+        }
+      }
+      Assertions.assertEquals(expected, query("SELECT * FROM Big B WHERE B.K = " + key));
+      sevens = key == 7 ? expected.size() : sevens;
+    }
+    Assertions.assertEquals(
+        sevens, DBCatalog.getInstance().getHashIndex("Big", "K").lookup(7).length);
+
+    // The directory is saved, so reopening the database does not rebuild the index
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+    Assertions.assertEquals(sevens, query("SELECT B.V FROM Big B WHERE 7 = B.K").size());
+  }
+
+  @Test
+  public void testQueriesUseIndexAndSeeInsertedRows() throws Exception {
+    List<Tuple> joinBefore =
+        query("SELECT * FROM Reserves R, Sailors S WHERE R.G = S.A AND S.A = 1 AND R.H > 101");
+    HashIndex index = createIndex("CREATE INDEX SailorsA ON Sailors USING HASH (A)");
+    createIndex("CREATE INDEX ReservesG ON Reserves (G)");
+
+    Assertions.assertEquals(
+        List.of(new Tuple("3,100,105")), query("SELECT * FROM Sailors S WHERE S.A = 3"));
+    Assertions.assertEquals(
+        joinBefore,
+        query("SELECT * FROM Reserves R, Sailors S WHERE R.G = S.A AND S.A = 1 AND R.H > 101"));
+    Assertions.assertEquals(List.of(), query("SELECT * FROM Sailors S WHERE S.A = 3 AND S.B = 1"));
+
+    TableInserter.execute((Insert) CCJSqlParserUtil.parse("INSERT INTO Sailors VALUES (3, 1, 1)"));
+    Assertions.assertEquals(
+        List.of(new Tuple("3,100,105"), new Tuple("3,1,1")),
+        query("SELECT * FROM Sailors S WHERE S.A = 3"));
+    // Only a plan that read the index brought it up to date with the insert
+    Assertions.assertEquals(2, index.lookup(3).length);
+  }
+
+  @Test
+  public void testRefreshSkipsRowBeingAppended() throws Exception {
+    HashIndex index = createIndex("CREATE INDEX SailorsA ON Sailors (A)");
+    TableInserter.execute((Insert) CCJSqlParserUtil.parse("INSERT INTO Sailors VALUES (9, 1, 1)"));
+
+    // Half of a row, as a concurrent append would leave it while being applied
+    Files.writeString(
+        DBCatalog.getInstance().getFileForTable("Sailors").toPath(),
+        "12,3",
+        StandardOpenOption.APPEND);
+    index.refresh();
+    Assertions.assertEquals(1, index.lookup(9).length);
+    Assertions.assertEquals(0, index.lookup(12).length);
+
+    TableInserter.execute(
+        (Insert) CCJSqlParserUtil.parse("INSERT INTO Sailors VALUES (12, 34, 5)"));
+    index.refresh();
+    Assertions.assertEquals(1, index.lookup(12).length);
+    Assertions.assertEquals(
+        List.of(new Tuple("12,34,5")), query("SELECT * FROM Sailors S WHERE S.A = 12"));
+  }
+
+  private static ArrayList<Column> aliasedSchema(String tableName, String alias) {
+    ArrayList<Column> schema = new ArrayList<>();
+    for (Column column : DBCatalog.getInstance().getColumns(tableName)) {
+      Table table = new Table(tableName);
+      table.setAlias(new Alias(alias));
+      schema.add(new Column(table, column.getColumnName()));
+    }
+    return schema;
+  }
+
+  private static IndexNestedLoopJoinOperator indexJoin(HashIndex index) throws JSQLParserException {
+    ArrayList<Column> reserves = aliasedSchema("Reserves", "R");
+    IndexScanOperator indexScan = new IndexScanOperator(reserves, "Reserves", index, 0);
+    return new IndexNestedLoopJoinOperator(
+        new ScanOperator(aliasedSchema("Sailors", "S"), "Sailors"),
+        new ScanOperator(reserves, "Reserves"),
+        CCJSqlParserUtil.parseCondExpression("S.A = R.G"),
+        Map.of("S", "Sailors", "R", "Reserves"),
+        indexScan,
+        indexScan,
+        new Column(new Table("S"), "A"));
+  }
+
+  @Test
+  public void testIndexJoinProbesIndexForSmallOuterInput() throws Exception {
+    List<Tuple> expected = query("SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G");
+    HashIndex index = HashIndex.create("Reserves", "G");
+
+    IndexNestedLoopJoinOperator join = indexJoin(index);
+    Assertions.assertEquals(expected, HelperMethods.collectAllTuples(join));
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.INDEX_NESTED_LOOP, join.getStrategy());
+    List<Tuple> pushed = new ArrayList<>();
+    IndexNestedLoopJoinOperator pushJoin = indexJoin(index);
+    pushJoin.produce(pushed::add);
+    Assertions.assertEquals(expected, pushed);
+
+    // The planner picks the index join, and the inner selection still applies to the probes
+    String sql = "SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G AND R.H >= 102 AND S.B = 100";
+    List<Tuple> filtered = new ArrayList<>();
+    for (Tuple tuple : expected) {
+      if (tuple.getElementAtIndex(4) >= 102 && tuple.getElementAtIndex(1) == 100) {
+        filtered.add(tuple);
+      }
+    }
+    Assertions.assertEquals(filtered, query(sql));
+  }
+
+  @Test
+  public void testIndexJoinFallsBackForLargeOuterInput() throws Exception {
+    List<Tuple> expected = query("SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G");
+    HashIndex index = HashIndex.create("Reserves", "G");
+    EngineConfig config = EngineConfig.getInstance();
+    int defaultMaxOuterTuples = config.getJoinIndexMaxOuterTuples();
+    try {
+      config.setJoinIndexMaxOuterTuples(5);
+      IndexNestedLoopJoinOperator join = indexJoin(index);
+      Assertions.assertEquals(expected, HelperMethods.collectAllTuples(join));
+      Assertions.assertEquals(AdaptiveJoinOperator.Strategy.NESTED_LOOP, join.getStrategy());
+      config.setJoinIndexMaxOuterTuples(6);
+      join.reset();
+      Assertions.assertEquals(expected, HelperMethods.collectAllTuples(join));
+      Assertions.assertEquals(AdaptiveJoinOperator.Strategy.INDEX_NESTED_LOOP, join.getStrategy());
+    } finally {
+      config.setJoinIndexMaxOuterTuples(defaultMaxOuterTuples);
+    }
+  }
+
+  @Test
+  public void testIndexJoinRefreshesIndexOncePerRun() throws Exception {
+    List<Tuple> expected = query("SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G");
+    HashIndex index = HashIndex.create("Reserves", "G");
+    IndexNestedLoopJoinOperator join = indexJoin(index);
+
+    // A row appended after the first probe is not seen by the later probes of the same run
+    List<Tuple> firstRun = new ArrayList<>(List.of(join.getNextTuple()));
+    Files.writeString(
+        dbDirectory.resolve("data").resolve("Reserves"), "\n6,999", StandardOpenOption.APPEND);
+    firstRun.addAll(HelperMethods.collectAllTuples(join));
+    Assertions.assertEquals(expected, firstRun);
+
+    join.close();
+    join.reset();
+    List<Tuple> secondRun = HelperMethods.collectAllTuples(join);
+    Assertions.assertEquals(expected.size() + 1, secondRun.size());
+    Assertions.assertEquals(new Tuple("6,300,400,6,999"), secondRun.get(expected.size()));
+  }
+
+  @Test
+  public void testIndexIsRebuiltWhenTableIsRewritten() throws Exception {
+    HashIndex index = HashIndex.create("Reserves", "H");
+    Assertions.assertEquals(2, index.lookup(101).length);
+
+    Files.writeString(dbDirectory.resolve("data").resolve("Reserves"), "9,101\n");
+    Assertions.assertEquals(
+        List.of(new Tuple("9,101")), query("SELECT * FROM Reserves R WHERE R.H = 101"));
+    Assertions.assertEquals(0, index.lookup(102).length);
+  }
+
+  @Test
+  public void testUnsupportedIndexes() throws Exception {
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () -> createIndex("CREATE INDEX SailorsA ON Sailors USING BTREE (A)"));
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () -> createIndex("CREATE INDEX SailorsAB ON Sailors (A, B)"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> HashIndex.create("Sailors", "Z"));
+    ColumnarTableWriter.convertTable("Boats");
+    Assertions.assertThrows(
+        UnsupportedOperationException.class, () -> HashIndex.create("Boats", "D"));
+  }
+}
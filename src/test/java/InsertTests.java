@@ -0,0 +1,200 @@
+import common.DBCatalog;
+import common.MaterializedView;
+import common.QueryPlanBuilder;
+import common.TableInserter;
+import common.Tuple;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.insert.Insert;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.ColumnarTableWriter;
+import storage.WriteAheadLog;
+
+public class InsertTests {
+  @TempDir Path dbDirectory;
+
+  @BeforeEach
+  void copySampleDb() throws URISyntaxException, IOException {
+    Path sampleDb = sampleDb();
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+  }
+
+  @AfterAll
+  static void restoreSampleDb() throws URISyntaxException {
+    DBCatalog.getInstance().setDataDirectory(sampleDb().toString());
+  }
+
+  private static Path sampleDb() throws URISyntaxException {
+    URI path =
+        Objects.requireNonNull(InsertTests.class.getClassLoader().getResource("samples/input/db"))
+            .toURI();
+    return Paths.get(path);
+  }
+
+  private static List<Tuple> query(String sql) throws JSQLParserException {
+    return HelperMethods.collectAllTuples(
+        new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(sql)));
+  }
+
+  private static long insert(String sql) throws JSQLParserException, IOException {
+    return TableInserter.execute((Insert) CCJSqlParserUtil.parse(sql));
+  }
+
+  @Test
+  public void testInsertValues() throws JSQLParserException, IOException {
+    Assertions.assertEquals(2, insert("INSERT INTO Reserves VALUES (7, 101), (8, -3)"));
+    Assertions.assertEquals(1, insert("INSERT INTO Sailors (C, A, B) VALUES (1, 2, 3)"));
+
+    List<Tuple> reserves = query("SELECT * FROM Reserves");
+    Assertions.assertEquals(8, reserves.size());
+    Assertions.assertEquals(List.of(new Tuple("7,101"), new Tuple("8,-3")), reserves.subList(6, 8));
+    Assertions.assertEquals(
+        List.of(new Tuple("2,200,200"), new Tuple("2,3,1")),
+        query("SELECT * FROM Sailors S WHERE S.A = 2"));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> insert("INSERT INTO Reserves VALUES (1, 2, 3)"));
+  }
+
+  @Test
+  public void testInsertSelectFeedsMaterializedView() throws JSQLParserException, IOException {
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse(
+                "CREATE MATERIALIZED VIEW Trips AS SELECT S.A, R.H FROM Sailors S, Reserves R"
+                    + " WHERE S.A = R.G"));
+
+    // Reads the table it inserts into; only the rows that were there before are copied
+    Assertions.assertEquals(
+        3, insert("INSERT INTO Reserves SELECT * FROM Reserves R WHERE R.G = 1"));
+    Assertions.assertEquals(9, query("SELECT * FROM Reserves").size());
+    Assertions.assertEquals(9, query("SELECT * FROM Trips").size());
+  }
+
+  @Test
+  public void testInsertIntoColumnarTableAppendsRowGroups()
+      throws JSQLParserException, IOException {
+    ColumnarTableWriter.convertTable("Boats");
+    insert("INSERT INTO Boats VALUES (500, 1, 1), (501, 2, 2)");
+
+    Assertions.assertEquals(7, query("SELECT * FROM Boats").size());
+    Assertions.assertEquals(
+        List.of(new Tuple("501,2,2")), query("SELECT * FROM Boats B WHERE B.D > 500"));
+  }
+
+  @Test
+  public void testConcurrentInsertsAreGroupCommitted() throws Exception {
+    ExecutorService writers = Executors.newFixedThreadPool(8);
+    List<Future<Long>> results = new ArrayList<>();
+    for (int w = 0; w < 8; w++) {
+      int writer = w;
+      results.add(
+          writers.submit(
+              () -> {
+                long rows = 0;
+                for (int i = 0; i < 25; i++) {
+                  rows += insert("INSERT INTO Reserves VALUES (" + (100 + writer) + ", " + i + ")");
+                }
+                return rows;
+              }));
+    }
+    long inserted = 0;
+    for (Future<Long> result : results) {
+      inserted += result.get();
+    }
+    writers.shutdown();
+
+    Assertions.assertEquals(200, inserted);
+    Assertions.assertEquals(206, query("SELECT * FROM Reserves").size());
+    Assertions.assertEquals(25, query("SELECT * FROM Reserves R WHERE R.G = 103").size());
+  }
+
+  @Test
+  public void testRecoveryReplaysCommittedAppends() throws IOException, JSQLParserException {
+    File reserves = DBCatalog.getInstance().getFileForTable("Reserves");
+    long originalLength = reserves.length();
+    try (WriteAheadLog log = new WriteAheadLog(dbDirectory.toFile())) {
+      log.commit(List.of(new WriteAheadLog.FileAppend(reserves, "9,109\n".getBytes(), true)));
+
+      // Lose the applied append, as if the machine crashed before the table file was synced,
+      // and leave a torn group at the end of the log
+      try (RandomAccessFile file = new RandomAccessFile(reserves, "rw")) {
+        file.setLength(originalLength);
+      }
+      Files.write(
+          dbDirectory.resolve(WriteAheadLog.LOG_FILE),
+          new byte[] {0, 0, 0, 40, 1, 2},
+          StandardOpenOption.APPEND);
+
+      Assertions.assertEquals(1, WriteAheadLog.recover(dbDirectory.toFile()));
+    }
+    Assertions.assertEquals(
+        List.of(new Tuple("9,109")), query("SELECT * FROM Reserves R WHERE R.G = 9"));
+    Assertions.assertEquals(7, query("SELECT * FROM Reserves").size());
+  }
+
+  @Test
+  public void testScansStopAtCommittedLength() throws JSQLParserException, IOException {
+    insert("INSERT INTO Reserves VALUES (7, 101)");
+
+    // Half of a row, as a concurrent append would leave it while being applied
+    Files.write(
+        DBCatalog.getInstance().getFileForTable("Reserves").toPath(),
+        "12,3".getBytes(),
+        StandardOpenOption.APPEND);
+    Assertions.assertEquals(7, query("SELECT * FROM Reserves").size());
+
+    insert("INSERT INTO Reserves VALUES (8, 102)");
+    Assertions.assertEquals(
+        List.of(new Tuple("8,102")), query("SELECT * FROM Reserves R WHERE R.G = 8"));
+  }
+
+  @Test
+  public void testLogRefusesCommitsAfterFailedApply() throws IOException, JSQLParserException {
+    File reserves = DBCatalog.getInstance().getFileForTable("Reserves");
+    File missing = dbDirectory.resolve("missing").resolve("Extra").toFile();
+    try (WriteAheadLog log = new WriteAheadLog(dbDirectory.toFile())) {
+      // The group is logged, then cannot be applied
+      Assertions.assertThrows(
+          IOException.class,
+          () -> log.commit(List.of(new WriteAheadLog.FileAppend(missing, "1\n".getBytes(), true))));
+      Assertions.assertThrows(
+          IOException.class,
+          () ->
+              log.commit(
+                  List.of(new WriteAheadLog.FileAppend(reserves, "9,109\n".getBytes(), true))));
+    }
+    Assertions.assertEquals(6, query("SELECT * FROM Reserves").size());
+
+    // Recovery applies the logged group, and only it
+    Files.createDirectories(missing.toPath().getParent());
+    Assertions.assertEquals(1, WriteAheadLog.recover(dbDirectory.toFile()));
+    Assertions.assertEquals("1\n", Files.readString(missing.toPath()));
+    Assertions.assertEquals(6, query("SELECT * FROM Reserves").size());
+  }
+}
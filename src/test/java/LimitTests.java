@@ -0,0 +1,79 @@
+import common.DBCatalog;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class LimitTests {
+  private static QueryPlanBuilder queryPlanBuilder;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = LimitTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+    queryPlanBuilder = new QueryPlanBuilder();
+  }
+
+  private static List<Tuple> run(String sql) throws JSQLParserException {
+    Operator plan = queryPlanBuilder.buildPlan(CCJSqlParserUtil.parse(sql));
+    return HelperMethods.collectAllTuples(plan);
+  }
+
+  @Test
+  public void testLimitOnScan() throws JSQLParserException {
+    List<Tuple> tuples = run("SELECT * FROM Sailors LIMIT 2");
+
+    Assertions.assertEquals(2, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(1, 200, 50))), tuples.get(0));
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(2, 200, 200))), tuples.get(1));
+  }
+
+  @Test
+  public void testLimitWithOffsetOnJoin() throws JSQLParserException {
+    List<Tuple> tuples =
+        run("SELECT * FROM Sailors S1, Sailors S2 WHERE S1.A < S2.A LIMIT 2 OFFSET 4");
+
+    Assertions.assertEquals(2, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(
+        new Tuple(new ArrayList<>(List.of(1, 200, 50, 6, 300, 400))), tuples.get(0));
+    Assertions.assertEquals(
+        new Tuple(new ArrayList<>(List.of(2, 200, 200, 3, 100, 105))), tuples.get(1));
+  }
+
+  @Test
+  public void testLimitAfterOrderBy() throws JSQLParserException {
+    List<Tuple> tuples = run("SELECT * FROM Sailors ORDER BY Sailors.C LIMIT 1");
+
+    Assertions.assertEquals(1, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(1, 200, 50))), tuples.get(0));
+  }
+
+  @Test
+  public void testLimitPastEndStaysExhausted() throws JSQLParserException {
+    Operator plan =
+        queryPlanBuilder.buildPlan(CCJSqlParserUtil.parse("SELECT * FROM Sailors LIMIT 100"));
+
+    Assertions.assertEquals(6, HelperMethods.collectAllTuples(plan).size());
+    Assertions.assertNull(plan.getNextTuple(), "The closed scan was read again");
+    Assertions.assertEquals(6, run("SELECT * FROM Sailors LIMIT ALL").size());
+  }
+
+  @Test
+  public void testLimitZero() throws JSQLParserException {
+    Assertions.assertEquals(0, run("SELECT * FROM Reserves LIMIT 0").size());
+  }
+}
@@ -0,0 +1,197 @@
+import common.DBCatalog;
+import common.MaterializedView;
+import common.PlanCache;
+import common.PreparedQuery;
+import common.QueryPlanBuilder;
+import common.TableInserter;
+import common.Tuple;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.insert.Insert;
+import operator.Operator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.ColumnarTableWriter;
+
+public class MaterializedViewTests {
+  private static final String VIEW_QUERY =
+      "SELECT S.A, S.B, R.H FROM Sailors S, Reserves R WHERE S.A = R.G AND S.B >= 100";
+
+  @TempDir Path dbDirectory;
+
+  @BeforeEach
+  void copySampleDb() throws URISyntaxException, IOException {
+    URI path =
+        Objects.requireNonNull(
+                MaterializedViewTests.class.getClassLoader().getResource("samples/input/db"))
+            .toURI();
+    Path sampleDb = Paths.get(path);
+
+    // Work on a copy, since the tests append to the base tables
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+  }
+
+  @AfterAll
+  static void restoreSampleDb() throws URISyntaxException {
+    URI path =
+        Objects.requireNonNull(
+                MaterializedViewTests.class.getClassLoader().getResource("samples/input/db"))
+            .toURI();
+    DBCatalog.getInstance().setDataDirectory(Paths.get(path).toString());
+  }
+
+  private static final String VIEW_QUERY_OVER_VIEW =
+      "SELECT V.A, V.H FROM SailorTrips V WHERE V.A = 5";
+
+  private static List<Tuple> query(String sql) throws JSQLParserException {
+    return HelperMethods.collectAllTuples(
+        new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(sql)));
+  }
+
+  private static List<Tuple> sorted(List<Tuple> tuples) {
+    List<Tuple> copy = new ArrayList<>(tuples);
+    copy.sort(Comparator.comparing(Tuple::toString));
+    return copy;
+  }
+
+  private void append(String table, String rows) throws IOException {
+    Files.writeString(dbDirectory.resolve("data").resolve(table), rows, StandardOpenOption.APPEND);
+  }
+
+  @Test
+  public void testViewIsMaintainedIncrementally() throws JSQLParserException, IOException {
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse("CREATE MATERIALIZED VIEW SailorTrips AS " + VIEW_QUERY));
+    List<Tuple> initial = query("SELECT * FROM SailorTrips");
+    Assertions.assertEquals(sorted(query(VIEW_QUERY)), sorted(initial));
+    Assertions.assertEquals(List.of("A", "B", "H"), columnNames("SailorTrips"));
+
+    // New rows joining old rows, old rows joining new rows, and new rows joining each other
+    append("Sailors", "\n7,150,10\n8,50,10");
+    append("Reserves", "\n7,101\n2,104\n8,102\n9,103");
+
+    List<Tuple> refreshed = query("SELECT * FROM SailorTrips");
+    Assertions.assertEquals(sorted(query(VIEW_QUERY)), sorted(refreshed));
+    Assertions.assertEquals(initial.size() + 2, refreshed.size());
+    Assertions.assertEquals(initial, refreshed.subList(0, initial.size()), "View was rewritten");
+
+    // Nothing changed since the refresh, so the view is read as is
+    Assertions.assertEquals(refreshed, query("SELECT * FROM SailorTrips"));
+  }
+
+  @Test
+  public void testViewSurvivesReloadAndFeedsQueries() throws JSQLParserException, IOException {
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse("CREATE MATERIALIZED VIEW SailorTrips AS " + VIEW_QUERY));
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+    Assertions.assertNotNull(DBCatalog.getInstance().getMaterializedView("SailorTrips"));
+
+    append("Reserves", "\n5,103");
+    Assertions.assertEquals(
+        List.of(new Tuple("5,103")),
+        query("SELECT V.A, V.H FROM SailorTrips V WHERE V.A = 5 ORDER BY V.H"));
+    Assertions.assertEquals(sorted(query(VIEW_QUERY)), sorted(query("SELECT * FROM SailorTrips")));
+  }
+
+  @Test
+  public void testPreparedQuerySeesRowsAppendedToBaseTables()
+      throws JSQLParserException, IOException {
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse("CREATE MATERIALIZED VIEW SailorTrips AS " + VIEW_QUERY));
+    PreparedQuery query =
+        new PlanCache().prepare("SELECT V.A, V.H FROM SailorTrips V WHERE V.A = ? ORDER BY V.H");
+    Operator plan = query.execute(5);
+    Assertions.assertEquals(List.of(), HelperMethods.collectAllTuples(plan));
+    plan.close();
+
+    // Appended straight to the base file, so only the view's refresh can change the catalog
+    append("Reserves", "\n5,103");
+    plan = query.execute(5);
+    Assertions.assertEquals(List.of(new Tuple("5,103")), HelperMethods.collectAllTuples(plan));
+    plan.close();
+  }
+
+  @Test
+  public void testViewIsRefreshedWhenReadNotWhenPlanned() throws JSQLParserException, IOException {
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse("CREATE MATERIALIZED VIEW SailorTrips AS " + VIEW_QUERY));
+    Path viewFile = dbDirectory.resolve("data").resolve("SailorTrips");
+    long viewBytes = Files.size(viewFile);
+
+    append("Reserves", "\n5,103");
+    Operator plan = new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(VIEW_QUERY_OVER_VIEW));
+    Assertions.assertEquals(viewBytes, Files.size(viewFile), "Planning refreshed the view");
+    Assertions.assertEquals(List.of(new Tuple("5,103")), HelperMethods.collectAllTuples(plan));
+    plan.close();
+  }
+
+  @Test
+  public void testViewOverColumnarTableIsMaintainedIncrementally()
+      throws JSQLParserException, IOException {
+    ColumnarTableWriter.convertTable("Reserves");
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse("CREATE MATERIALIZED VIEW SailorTrips AS " + VIEW_QUERY));
+    // A row only the view holds, which a recomputation would drop
+    append("SailorTrips", "0,0,0\n");
+
+    TableInserter.execute((Insert) CCJSqlParserUtil.parse("INSERT INTO Reserves VALUES (5, 103)"));
+    List<Tuple> refreshed = query("SELECT * FROM SailorTrips");
+    Assertions.assertTrue(refreshed.contains(new Tuple("0,0,0")), "View was recomputed");
+    Assertions.assertTrue(refreshed.contains(new Tuple("5,100,103")));
+  }
+
+  @Test
+  public void testTruncatedBaseTableRecomputesView() throws JSQLParserException, IOException {
+    MaterializedView.create(
+        (CreateView)
+            CCJSqlParserUtil.parse("CREATE MATERIALIZED VIEW SailorTrips AS " + VIEW_QUERY));
+    Files.writeString(dbDirectory.resolve("data").resolve("Reserves"), "3,102\n");
+
+    Assertions.assertEquals(List.of(new Tuple("3,100,102")), query("SELECT * FROM SailorTrips"));
+  }
+
+  @Test
+  public void testUnsupportedDefinitionIsRejected() {
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () ->
+            MaterializedView.create(
+                (CreateView)
+                    CCJSqlParserUtil.parse(
+                        "CREATE MATERIALIZED VIEW Ordered AS SELECT * FROM Sailors ORDER BY"
+                            + " Sailors.A")));
+    Assertions.assertNull(DBCatalog.getInstance().getColumns("Ordered"));
+  }
+
+  private static List<String> columnNames(String table) {
+    List<String> names = new ArrayList<>();
+    DBCatalog.getInstance().getColumns(table).forEach(column -> names.add(column.getColumnName()));
+    return names;
+  }
+}
@@ -0,0 +1,189 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.MemoryManager;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MemoryManagerTests {
+  private static final long PAGE = 1024;
+
+  private static long defaultTotalBytes;
+  private static long defaultPageBytes;
+  private static long defaultWaitMillis;
+  private static String defaultTempDirectory;
+
+  @TempDir Path spillDirectory;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = MemoryManagerTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+
+    EngineConfig config = EngineConfig.getInstance();
+    defaultTotalBytes = config.getMemoryTotalBytes();
+    defaultPageBytes = config.getMemoryPageBytes();
+    defaultWaitMillis = config.getMemoryWaitMillis();
+    defaultTempDirectory = config.getTempDirectory();
+  }
+
+  @AfterEach
+  void restoreConfig() {
+    EngineConfig config = EngineConfig.getInstance();
+    config.setMemoryTotalBytes(defaultTotalBytes);
+    config.setMemoryPageBytes(defaultPageBytes);
+    config.setMemoryWaitMillis(defaultWaitMillis);
+    config.setTempDirectory(defaultTempDirectory);
+  }
+
+  /** Leaves eight pages free, whatever grants other tests have not released. */
+  private static long limitMemory(long waitMillis) {
+    MemoryManager manager = MemoryManager.getInstance();
+    long baseline = manager.getGrantedBytes();
+    EngineConfig config = EngineConfig.getInstance();
+    config.setMemoryTotalBytes(baseline + 8 * PAGE);
+    config.setMemoryPageBytes(PAGE);
+    config.setMemoryWaitMillis(waitMillis);
+    return baseline;
+  }
+
+  @Test
+  public void testGrantsGrowByPagesWithinBudget() {
+    MemoryManager manager = MemoryManager.getInstance();
+    long baseline = limitMemory(10_000);
+
+    MemoryManager.Grant first = manager.acquire(3 * PAGE);
+    Assertions.assertEquals(PAGE, first.getBytes(), "A grant should start at one page");
+    Assertions.assertTrue(first.grow(PAGE + 1));
+    Assertions.assertEquals(2 * PAGE, first.getBytes(), "A grant should grow by whole pages");
+    Assertions.assertFalse(first.grow(3 * PAGE + 1), "A grant should not exceed its budget");
+
+    MemoryManager.Grant second = manager.acquire(4 * PAGE);
+    Assertions.assertTrue(second.grow(4 * PAGE));
+    MemoryManager.Grant third = manager.acquire(4 * PAGE);
+    Assertions.assertFalse(third.grow(3 * PAGE), "Only one more page is free");
+    Assertions.assertTrue(third.grow(2 * PAGE));
+    Assertions.assertEquals(baseline + 8 * PAGE, manager.getGrantedBytes());
+
+    // The memory is all held by this thread's query, so waiting for it would never end
+    long start = System.nanoTime();
+    MemoryManager.Grant fourth = manager.acquire(2 * PAGE);
+    long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assertions.assertTrue(waitedMillis < 1000, "Waited on its own query for " + waitedMillis);
+    Assertions.assertEquals(0, fourth.getBytes(), "The total should not be exceeded");
+    Assertions.assertFalse(fourth.grow(1));
+
+    second.setUsedBytes(PAGE / 2);
+    Assertions.assertEquals(baseline + 8 * PAGE, manager.getGrantedBytes());
+    third.close();
+    Assertions.assertTrue(fourth.grow(1), "Released memory can be granted again");
+    first.close();
+    second.close();
+    third.close();
+    fourth.close();
+    fourth.close();
+    Assertions.assertEquals(baseline, manager.getGrantedBytes());
+  }
+
+  @Test
+  public void testRequestWaitsForOtherQueries() throws Exception {
+    MemoryManager manager = MemoryManager.getInstance();
+    long baseline = limitMemory(50);
+
+    MemoryManager.Grant held = manager.acquire(4 * PAGE);
+    Assertions.assertTrue(held.grow(4 * PAGE));
+    MemoryManager.Grant alsoHeld = manager.acquire(4 * PAGE);
+    Assertions.assertTrue(alsoHeld.grow(4 * PAGE));
+
+    // Another query waits for memory, then goes without and spills
+    long start = System.nanoTime();
+    MemoryManager.Grant late =
+        CompletableFuture.supplyAsync(() -> manager.acquire(2 * PAGE)).get(5, TimeUnit.SECONDS);
+    long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assertions.assertTrue(waitedMillis >= 40, "Should wait for memory, waited " + waitedMillis);
+    Assertions.assertEquals(0, late.getBytes());
+    late.close();
+
+    // Or until this query releases its memory
+    EngineConfig.getInstance().setMemoryWaitMillis(10_000);
+    CompletableFuture<MemoryManager.Grant> waiting =
+        CompletableFuture.supplyAsync(() -> manager.acquire(2 * PAGE));
+    Thread.sleep(50);
+    Assertions.assertFalse(waiting.isDone(), "The request should wait while memory is held");
+    held.close();
+    alsoHeld.close();
+    MemoryManager.Grant granted = waiting.get(5, TimeUnit.SECONDS);
+    Assertions.assertEquals(PAGE, granted.getBytes());
+    granted.close();
+    Assertions.assertEquals(baseline, manager.getGrantedBytes());
+  }
+
+  @Test
+  public void testJoinsAndSortOfOneQueryDoNotWaitForEachOther() throws JSQLParserException {
+    Statement statement =
+        CCJSqlParserUtil.parse(
+            "SELECT * FROM Sailors S, Reserves R, Boats B WHERE S.A = R.G AND R.H = B.D ORDER BY"
+                + " S.C");
+
+    long start = System.nanoTime();
+    List<Tuple> tuples =
+        HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(statement));
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    Assertions.assertEquals(6, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertTrue(
+        elapsedMillis < EngineConfig.getInstance().getMemoryWaitMillis() / 2,
+        "The query waited for memory: " + elapsedMillis + " ms");
+  }
+
+  @Test
+  public void testOperatorsReturnMemoryAtEndOfOutput() throws JSQLParserException {
+    Statement sort = CCJSqlParserUtil.parse("SELECT S.A, S.B FROM Sailors S ORDER BY S.B DESC");
+    Statement join =
+        CCJSqlParserUtil.parse("SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G ORDER BY S.A");
+    List<Tuple> expectedSort =
+        HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(sort));
+    List<Tuple> expectedJoin =
+        HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(join));
+
+    // With a few bytes to share, the operators spill but still produce the same rows
+    MemoryManager manager = MemoryManager.getInstance();
+    long baseline = manager.getGrantedBytes();
+    EngineConfig config = EngineConfig.getInstance();
+    config.setMemoryTotalBytes(baseline + 256);
+    config.setMemoryPageBytes(64);
+    config.setMemoryWaitMillis(0);
+    config.setTempDirectory(spillDirectory.toString());
+    Assertions.assertEquals(
+        expectedSort, HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(sort)));
+    Assertions.assertEquals(
+        expectedJoin, HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(join)));
+
+    Assertions.assertEquals(baseline, manager.getGrantedBytes(), "Memory was not returned");
+
+    // With none, they are granted nothing and spill everything
+    config.setMemoryTotalBytes(baseline);
+    Assertions.assertEquals(
+        expectedSort, HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(sort)));
+    Assertions.assertEquals(
+        expectedJoin, HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(join)));
+    Assertions.assertEquals(baseline, manager.getGrantedBytes(), "Memory was not returned");
+  }
+}
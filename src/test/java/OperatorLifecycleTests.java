@@ -0,0 +1,103 @@
+import common.DBCatalog;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OperatorLifecycleTests {
+  @TempDir Path dbDirectory;
+
+  @BeforeEach
+  void copyDatabase() throws URISyntaxException, IOException {
+    ClassLoader classLoader = OperatorLifecycleTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input/db")).toURI();
+    Path sampleDb = Paths.get(path);
+
+    // Work on a copy, as the tests modify table files
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+  }
+
+  @Test
+  public void testBuildingPlanReadsNoData() throws JSQLParserException, IOException {
+    Operator plan =
+        new QueryPlanBuilder()
+            .buildPlan(
+                CCJSqlParserUtil.parse("SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G"));
+
+    // Rows added between planning and execution must be seen by the plan
+    Path sailors = dbDirectory.resolve("data").resolve("Sailors");
+    String contents = Files.readString(sailors).strip();
+    Files.writeString(sailors, contents + "\n7,1,1\n");
+    Path reserves = dbDirectory.resolve("data").resolve("Reserves");
+    contents = Files.readString(reserves).strip();
+    Files.writeString(reserves, contents + "\n7,105\n");
+
+    plan.open();
+    List<Tuple> tuples = HelperMethods.collectAllTuples(plan);
+    plan.close();
+
+    Assertions.assertEquals(7, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple("7,1,1,7,105"), tuples.get(6));
+  }
+
+  @Test
+  public void testClosedPlanCanBeResetAndRerun() throws JSQLParserException {
+    Operator plan =
+        new QueryPlanBuilder()
+            .buildPlan(
+                CCJSqlParserUtil.parse(
+                    "SELECT DISTINCT S.A FROM Sailors S, Reserves R WHERE S.A = R.G ORDER BY S.A"));
+
+    plan.open();
+    List<Tuple> first = HelperMethods.collectAllTuples(plan);
+    plan.close();
+    Assertions.assertNull(plan.getNextTuple(), "A closed plan produced tuples");
+
+    plan.reset();
+    plan.open();
+    List<Tuple> second = HelperMethods.collectAllTuples(plan);
+    plan.close();
+
+    Assertions.assertEquals(4, first.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(first, second);
+  }
+
+  @Test
+  public void testClosedOperatorsProduceNothingUntilReset() throws JSQLParserException {
+    for (String sql :
+        List.of("SELECT * FROM Sailors", "SELECT S.A FROM Sailors S WHERE S.B = 200")) {
+      Operator plan = new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(sql));
+      plan.open();
+      List<Tuple> first = HelperMethods.collectAllTuples(plan);
+      plan.close();
+
+      Assertions.assertNull(plan.getNextTuple(), "A closed plan produced tuples: " + sql);
+      plan.open();
+      Assertions.assertTrue(
+          plan.produce(tuple -> Assertions.fail("A closed plan pushed tuples: " + sql)));
+
+      plan.reset();
+      Assertions.assertEquals(first, HelperMethods.collectAllTuples(plan));
+      plan.close();
+    }
+  }
+}
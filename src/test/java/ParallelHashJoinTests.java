@@ -0,0 +1,102 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.Tuple;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import operator.AdaptiveJoinOperator;
+import operator.ScanOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParallelHashJoinTests {
+  private static final Map<String, String> aliases = Map.of("O", "Outer", "I", "Inner");
+
+  @TempDir static Path dbDirectory;
+
+  private static int defaultThreads;
+  private static int defaultParallelMinTuples;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws IOException {
+    // Tables large enough for several probe batches, with many duplicate keys on both sides
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.writeString(dbDirectory.resolve("schema.txt"), "Outer X Y\nInner Z W\n");
+    StringBuilder outer = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      outer.append(i % 5000).append(',').append(i).append('\n');
+    }
+    Files.writeString(dbDirectory.resolve("data").resolve("Outer"), outer);
+    StringBuilder inner = new StringBuilder();
+    for (int i = 0; i < 8000; i++) {
+      inner.append(i % 6000).append(',').append(i).append('\n');
+    }
+    Files.writeString(dbDirectory.resolve("data").resolve("Inner"), inner);
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+
+    EngineConfig config = EngineConfig.getInstance();
+    defaultThreads = config.getJoinThreads();
+    defaultParallelMinTuples = config.getJoinParallelMinTuples();
+  }
+
+  @AfterEach
+  void restoreConfig() {
+    EngineConfig config = EngineConfig.getInstance();
+    config.setJoinThreads(defaultThreads);
+    config.setJoinParallelMinTuples(defaultParallelMinTuples);
+  }
+
+  private static ArrayList<Column> aliasedSchema(String tableName, String alias) {
+    ArrayList<Column> schema = new ArrayList<>();
+    for (Column column : DBCatalog.getInstance().getColumns(tableName)) {
+      Table table = new Table(tableName);
+      table.setAlias(new Alias(alias));
+      schema.add(new Column(table, column.getColumnName()));
+    }
+    return schema;
+  }
+
+  private static AdaptiveJoinOperator join(Expression condition) {
+    return new AdaptiveJoinOperator(
+        new ScanOperator(aliasedSchema("Outer", "O"), "Outer"),
+        new ScanOperator(aliasedSchema("Inner", "I"), "Inner"),
+        condition,
+        aliases);
+  }
+
+  @Test
+  public void testParallelJoinMatchesSequentialHashJoin() throws JSQLParserException {
+    Expression condition = CCJSqlParserUtil.parseCondExpression("O.X = I.Z AND I.W < 7000");
+
+    EngineConfig.getInstance().setJoinThreads(1);
+    AdaptiveJoinOperator sequential = join(condition);
+    List<Tuple> expected = HelperMethods.collectAllTuples(sequential);
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.HASH, sequential.getStrategy());
+
+    EngineConfig.getInstance().setJoinThreads(4);
+    EngineConfig.getInstance().setJoinParallelMinTuples(1000);
+    AdaptiveJoinOperator parallel = join(condition);
+    List<Tuple> actual = HelperMethods.collectAllTuples(parallel);
+    Assertions.assertEquals(AdaptiveJoinOperator.Strategy.PARALLEL_HASH, parallel.getStrategy());
+    parallel.close();
+
+    Assertions.assertEquals(24000, expected.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(expected, actual);
+
+    List<Tuple> pushed = new ArrayList<>();
+    join(condition).produce(pushed::add);
+    Assertions.assertEquals(expected, pushed);
+  }
+}
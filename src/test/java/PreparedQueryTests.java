@@ -0,0 +1,102 @@
+import common.DBCatalog;
+import common.PlanCache;
+import common.PreparedQuery;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class PreparedQueryTests {
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = PreparedQueryTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+  }
+
+  private static List<Tuple> run(PreparedQuery query, int... parameters) {
+    Operator plan = query.execute(parameters);
+    List<Tuple> tuples = HelperMethods.collectAllTuples(plan);
+    plan.close();
+    return tuples;
+  }
+
+  @Test
+  public void testPlanIsReusedWithNewParameters() throws JSQLParserException {
+    PlanCache cache = new PlanCache();
+    PreparedQuery query = cache.prepare("SELECT * FROM Sailors S WHERE S.A = ?");
+    Assertions.assertEquals(1, query.getParameterCount());
+
+    Operator firstPlan = query.execute(3);
+    Assertions.assertEquals(
+        List.of(new Tuple("3,100,105")), HelperMethods.collectAllTuples(firstPlan));
+    firstPlan.close();
+
+    Operator secondPlan = query.execute(5);
+    Assertions.assertSame(firstPlan, secondPlan, "Plan was rebuilt");
+    Assertions.assertEquals(
+        List.of(new Tuple("5,100,500")), HelperMethods.collectAllTuples(secondPlan));
+    secondPlan.close();
+  }
+
+  @Test
+  public void testRuntimeFiltersAreRebuiltForNewParameters() throws JSQLParserException {
+    PreparedQuery query =
+        new PlanCache()
+            .prepare("SELECT S.A, R.H FROM Sailors S, Reserves R WHERE S.A = R.G AND R.H = ?");
+
+    Assertions.assertEquals(List.of(new Tuple("1,101"), new Tuple("2,101")), run(query, 101));
+    Assertions.assertEquals(List.of(new Tuple("1,102"), new Tuple("3,102")), run(query, 102));
+  }
+
+  @Test
+  public void testCacheKeyIgnoresLayout() throws JSQLParserException {
+    PlanCache cache = new PlanCache();
+    PreparedQuery query = cache.prepare("SELECT * FROM Boats B WHERE B.D > ? AND B.E < ?");
+    PreparedQuery sameQuery =
+        cache.prepare("  SELECT *\n  FROM Boats B\n  WHERE B.D > ?   AND B.E < ?;");
+
+    Assertions.assertSame(query, sameQuery);
+    Assertions.assertEquals(1, cache.size());
+    Assertions.assertEquals(2, query.getParameterCount());
+    Assertions.assertEquals(
+        List.of(new Tuple("104,104,2"), new Tuple("107,2,8")), run(query, 103, 200));
+  }
+
+  @Test
+  public void testCatalogChangeInvalidatesPlan() throws JSQLParserException {
+    PreparedQuery query = new PlanCache().prepare("SELECT R.H FROM Reserves R WHERE R.G = ?");
+    Operator firstPlan = query.execute(1);
+    firstPlan.close();
+
+    DBCatalog.getInstance().tableChanged("Reserves");
+    Operator secondPlan = query.execute(4);
+    Assertions.assertNotSame(firstPlan, secondPlan, "Plan was not rebuilt");
+    Assertions.assertEquals(List.of(new Tuple("104")), HelperMethods.collectAllTuples(secondPlan));
+    secondPlan.close();
+  }
+
+  @Test
+  public void testChangeToOtherTableKeepsPlan() throws JSQLParserException {
+    PreparedQuery query = new PlanCache().prepare("SELECT R.H FROM Reserves R WHERE R.G = ?");
+    Operator firstPlan = query.execute(1);
+    firstPlan.close();
+
+    DBCatalog.getInstance().tableChanged("Sailors");
+    DBCatalog.getInstance().tableChanged("Boats");
+    Operator secondPlan = query.execute(4);
+    Assertions.assertSame(firstPlan, secondPlan, "Plan was rebuilt");
+    Assertions.assertEquals(List.of(new Tuple("104")), HelperMethods.collectAllTuples(secondPlan));
+    secondPlan.close();
+  }
+}
@@ -0,0 +1,59 @@
+import common.DBCatalog;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import operator.Operator;
+import operator.ScanOperator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class ProjectionPushdownTests {
+  private static QueryPlanBuilder queryPlanBuilder;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = ProjectionPushdownTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+    queryPlanBuilder = new QueryPlanBuilder();
+  }
+
+  @Test
+  public void testScanDecodesOnlyRequestedColumns() {
+    ArrayList<Column> schema =
+        new ArrayList<>(List.of(DBCatalog.getInstance().getColumns("Boats").get(2)));
+    Operator scan = new ScanOperator(schema, "Boats");
+
+    List<Tuple> tuples = HelperMethods.collectAllTuples(scan);
+
+    Assertions.assertEquals(5, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(3))), tuples.get(0));
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(8))), tuples.get(4));
+  }
+
+  @Test
+  public void testJoinCarriesOnlyReferencedColumns() throws JSQLParserException {
+    Operator plan =
+        queryPlanBuilder.buildPlan(
+            CCJSqlParserUtil.parse(
+                "SELECT S.A, R.G FROM Sailors S, Reserves R WHERE S.A = R.G AND S.B < 200"));
+
+    List<Tuple> tuples = HelperMethods.collectAllTuples(plan);
+
+    Assertions.assertEquals(2, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(3, 3))), tuples.get(0));
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(4, 4))), tuples.get(1));
+  }
+}
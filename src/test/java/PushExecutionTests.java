@@ -0,0 +1,53 @@
+import common.DBCatalog;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import operator.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class PushExecutionTests {
+  private static List<Statement> statementList;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws Exception {
+    ClassLoader classLoader = PushExecutionTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+
+    URI queriesFile =
+        Objects.requireNonNull(classLoader.getResource("samples/input/queries.sql")).toURI();
+    statementList =
+        new ArrayList<>(
+            CCJSqlParserUtil.parseStatements(Files.readString(Paths.get(queriesFile)))
+                .getStatements());
+    statementList.add(CCJSqlParserUtil.parse("SELECT * FROM Sailors S, Reserves R LIMIT 7"));
+    statementList.add(
+        CCJSqlParserUtil.parse(
+            "SELECT DISTINCT R.G FROM Reserves R ORDER BY R.G LIMIT 2 OFFSET 1"));
+  }
+
+  @Test
+  public void testPushAndPullProduceTheSameResults() {
+    for (int i = 0; i < statementList.size(); i++) {
+      Operator pullPlan = new QueryPlanBuilder().buildPlan(statementList.get(i));
+      List<Tuple> expected = HelperMethods.collectAllTuples(pullPlan);
+
+      Operator pushPlan = new QueryPlanBuilder().buildPlan(statementList.get(i));
+      List<Tuple> actual = new ArrayList<>();
+      pushPlan.produce(actual::add);
+
+      Assertions.assertEquals(expected, actual, "Different results for " + statementList.get(i));
+    }
+  }
+}
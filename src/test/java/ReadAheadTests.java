@@ -0,0 +1,96 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.QueryPlanBuilder;
+import common.Tuple;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import operator.Operator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import storage.ReadAheadTupleReader;
+import storage.TupleReader;
+
+public class ReadAheadTests {
+  private static int defaultDepth;
+  private static int defaultPageSize;
+  private static long defaultMinTableBytes;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = ReadAheadTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+
+    // Read every table ahead, two tuples per page, so the sample tables span several pages
+    EngineConfig config = EngineConfig.getInstance();
+    defaultDepth = config.getReadAheadDepth();
+    defaultPageSize = config.getReadAheadPageSize();
+    defaultMinTableBytes = config.getReadAheadMinTableBytes();
+    config.setReadAheadDepth(1);
+    config.setReadAheadPageSize(2);
+    config.setReadAheadMinTableBytes(0);
+  }
+
+  @AfterAll
+  static void restoreConfig() {
+    EngineConfig config = EngineConfig.getInstance();
+    config.setReadAheadDepth(defaultDepth);
+    config.setReadAheadPageSize(defaultPageSize);
+    config.setReadAheadMinTableBytes(defaultMinTableBytes);
+  }
+
+  @Test
+  public void testReaderReturnsEveryTupleInOrder() throws IOException {
+    List<Tuple> source = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      source.add(new Tuple(new ArrayList<>(List.of(i))));
+    }
+    TupleReader listReader =
+        new TupleReader() {
+          private int next = 0;
+
+          @Override
+          public Tuple readNextTuple() {
+            return next < source.size() ? source.get(next++) : null;
+          }
+
+          @Override
+          public void close() {}
+        };
+
+    try (TupleReader reader = new ReadAheadTupleReader(listReader, 3, 7)) {
+      for (int i = 0; i < source.size(); i++) {
+        Assertions.assertEquals(source.get(i), reader.readNextTuple(), "Unexpected tuple " + i);
+      }
+      Assertions.assertNull(reader.readNextTuple());
+      Assertions.assertNull(reader.readNextTuple());
+    }
+  }
+
+  @Test
+  public void testJoinWithReadAheadScans() throws JSQLParserException {
+    Operator plan =
+        new QueryPlanBuilder()
+            .buildPlan(
+                CCJSqlParserUtil.parse(
+                    "SELECT * FROM Sailors S, Reserves R WHERE S.A = R.G ORDER BY S.A LIMIT 3"));
+    List<Tuple> tuples = HelperMethods.collectAllTuples(plan);
+    plan.close();
+
+    Assertions.assertEquals(3, tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(1, 200, 50, 1, 101))), tuples.get(0));
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(1, 200, 50, 1, 102))), tuples.get(1));
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(1, 200, 50, 1, 103))), tuples.get(2));
+  }
+}
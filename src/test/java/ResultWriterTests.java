@@ -0,0 +1,96 @@
+import common.Tuple;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import storage.AsyncResultWriter;
+import storage.BinaryResultWriter;
+import storage.CsvResultWriter;
+import storage.ResultWriter;
+
+public class ResultWriterTests {
+
+  private static List<Tuple> sampleTuples(int count) {
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      tuples.add(
+          new Tuple(
+              new ArrayList<>(
+                  List.of(i, -i, i * 1_000_003, Integer.MIN_VALUE, Integer.MAX_VALUE, 0))));
+    }
+    return tuples;
+  }
+
+  @Test
+  public void testCsvMatchesPrintedTuples() throws IOException {
+    List<Tuple> tuples = sampleTuples(20_000);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    PrintStream printStream = new PrintStream(expected);
+    for (Tuple tuple : tuples) {
+      printStream.println(tuple);
+    }
+    printStream.flush();
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (ResultWriter writer = new CsvResultWriter(actual)) {
+      for (Tuple tuple : tuples) {
+        writer.writeTuple(tuple);
+      }
+    }
+
+    Assertions.assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void testAsyncWriterPreservesOrder() throws IOException {
+    List<Tuple> tuples = sampleTuples(5_000);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (ResultWriter writer = new CsvResultWriter(expected)) {
+      for (Tuple tuple : tuples) {
+        writer.writeTuple(tuple);
+      }
+    }
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (ResultWriter writer = new AsyncResultWriter(new CsvResultWriter(actual), 2)) {
+      for (Tuple tuple : tuples) {
+        writer.writeTuple(tuple);
+      }
+    }
+
+    Assertions.assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void testBinaryPages() throws IOException {
+    List<Tuple> tuples = sampleTuples(200);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ResultWriter writer = new BinaryResultWriter(out)) {
+      for (Tuple tuple : tuples) {
+        writer.writeTuple(tuple);
+      }
+    }
+
+    byte[] bytes = out.toByteArray();
+    Assertions.assertEquals(0, bytes.length % BinaryResultWriter.PAGE_SIZE, "Partial page written");
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    int read = 0;
+    for (int page = 0; page < bytes.length / BinaryResultWriter.PAGE_SIZE; page++) {
+      buffer.position(page * BinaryResultWriter.PAGE_SIZE);
+      Assertions.assertEquals(6, buffer.getInt(), "Unexpected number of attributes");
+      int count = buffer.getInt();
+      for (int t = 0; t < count; t++) {
+        ArrayList<Integer> values = new ArrayList<>();
+        for (int a = 0; a < 6; a++) {
+          values.add(buffer.getInt());
+        }
+        Assertions.assertEquals(tuples.get(read++), new Tuple(values));
+      }
+    }
+    Assertions.assertEquals(tuples.size(), read, "Unexpected number of tuples");
+  }
+}
@@ -0,0 +1,96 @@
+import common.DBCatalog;
+import common.RuntimeFilter;
+import common.Tuple;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import operator.JoinOperator;
+import operator.Operator;
+import operator.ScanOperator;
+import operator.SelectOperator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class RuntimeFilterTests {
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = RuntimeFilterTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+  }
+
+  private static ArrayList<Column> aliasedSchema(String tableName, String alias) {
+    ArrayList<Column> schema = new ArrayList<>();
+    for (Column column : DBCatalog.getInstance().getColumns(tableName)) {
+      Table table = new Table(tableName);
+      table.setAlias(new Alias(alias));
+      schema.add(new Column(table, column.getColumnName()));
+    }
+    return schema;
+  }
+
+  @Test
+  public void testFilterHasNoFalseNegatives() {
+    Random random = new Random(7);
+    int[] keys = new int[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextInt(1_000_000);
+    }
+    RuntimeFilter filter = new RuntimeFilter(keys, keys.length);
+
+    for (int key : keys) {
+      Assertions.assertTrue(filter.mightContain(key), "Filter rejected build key " + key);
+    }
+    Assertions.assertFalse(filter.mightContain(-1), "Key below the build range was accepted");
+    Assertions.assertFalse(
+        filter.mightContain(2_000_000), "Key above the build range was accepted");
+
+    int falsePositives = 0;
+    for (int key = 500_000; key < 510_000; key++) {
+      if (filter.mightContain(key)) {
+        falsePositives++;
+      }
+    }
+    Assertions.assertTrue(falsePositives < 1000, "Too many false positives: " + falsePositives);
+  }
+
+  @Test
+  public void testJoinPushesFilterIntoProbeScan() throws JSQLParserException {
+    Map<String, String> aliases = Map.of("R", "Reserves", "B", "Boats");
+    Operator reserves = new ScanOperator(aliasedSchema("Reserves", "R"), "Reserves");
+    Operator boats =
+        new SelectOperator(
+            new ScanOperator(aliasedSchema("Boats", "B"), "Boats"),
+            CCJSqlParserUtil.parseCondExpression("B.D = 104"),
+            aliases);
+    Operator join =
+        new JoinOperator(
+            reserves, boats, CCJSqlParserUtil.parseCondExpression("R.H = B.D"), aliases);
+
+    List<Tuple> joined = HelperMethods.collectAllTuples(join);
+    Assertions.assertEquals(1, joined.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(
+        new Tuple(new ArrayList<>(List.of(4, 104, 104, 104, 2))), joined.get(0));
+
+    // The probe-side scan now drops every reservation of a boat that was filtered out
+    reserves.reset();
+    List<Tuple> probed = HelperMethods.collectAllTuples(reserves);
+    Assertions.assertEquals(1, probed.size(), "Runtime filter was not applied to the scan.");
+    Assertions.assertEquals(new Tuple(new ArrayList<>(List.of(4, 104))), probed.get(0));
+  }
+}
@@ -0,0 +1,77 @@
+import common.DBCatalog;
+import compiler.QueryClient;
+import compiler.QueryServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ServerModeTests {
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    ClassLoader classLoader = ServerModeTests.class.getClassLoader();
+    URI path = Objects.requireNonNull(classLoader.getResource("samples/input")).toURI();
+    Path resourcePath = Paths.get(path);
+    DBCatalog.getInstance().setDataDirectory(resourcePath.resolve("db").toString());
+  }
+
+  private static Thread start(QueryServer server) {
+    Thread thread = new Thread(server::serve);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  @Test
+  public void testQueriesOverTcp() throws IOException, InterruptedException {
+    QueryServer server =
+        new QueryServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    Thread serverThread = start(server);
+    try (QueryClient client = new QueryClient(server.getAddress())) {
+      Assertions.assertEquals(
+          List.of("3,100,105"), client.query("SELECT * FROM Sailors S WHERE S.A = 3"));
+      Assertions.assertEquals(
+          List.of("1,101", "2,101"),
+          client.query(
+              "SELECT S.A, R.H\nFROM Sailors S, Reserves R\nWHERE S.A = R.G AND R.H = 101;"));
+
+      IOException error =
+          Assertions.assertThrows(IOException.class, () -> client.query("SELECT * FROM"));
+      Assertions.assertFalse(error.getMessage().isEmpty());
+
+      // The connection stays usable after an error, and repeated queries hit the plan cache
+      Assertions.assertEquals(
+          List.of("3,100,105"), client.query("SELECT * FROM Sailors S WHERE S.A = 3"));
+    }
+    server.close();
+    serverThread.join(5000);
+    Assertions.assertFalse(serverThread.isAlive());
+  }
+
+  @Test
+  public void testQueriesOverUnixSocket(@TempDir Path tempDir) throws IOException {
+    UnixDomainSocketAddress address = UnixDomainSocketAddress.of(tempDir.resolve("query.sock"));
+    try (QueryServer server = new QueryServer(address)) {
+      start(server);
+      try (QueryClient first = new QueryClient(address);
+          QueryClient second = new QueryClient(address)) {
+        Assertions.assertEquals(6, first.query("SELECT * FROM Reserves").size());
+        Assertions.assertEquals(
+            List.of("101", "102", "103", "104", "107"),
+            second.query("SELECT B.D FROM Boats B ORDER BY B.D"));
+      }
+    }
+    Assertions.assertFalse(tempDir.resolve("query.sock").toFile().exists());
+  }
+}
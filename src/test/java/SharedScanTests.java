@@ -0,0 +1,129 @@
+import common.DBCatalog;
+import common.EngineConfig;
+import common.QueryPlanBuilder;
+import common.SharedScans;
+import common.TableInserter;
+import common.Tuple;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.insert.Insert;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SharedScanTests {
+  @TempDir Path dbDirectory;
+
+  @BeforeEach
+  void copySampleDb() throws URISyntaxException, IOException {
+    Path sampleDb = sampleDb();
+    Files.createDirectories(dbDirectory.resolve("data"));
+    Files.copy(sampleDb.resolve("schema.txt"), dbDirectory.resolve("schema.txt"));
+    for (String table : List.of("Sailors", "Reserves", "Boats")) {
+      Files.copy(
+          sampleDb.resolve("data").resolve(table), dbDirectory.resolve("data").resolve(table));
+    }
+    DBCatalog.getInstance().setDataDirectory(dbDirectory.toString());
+  }
+
+  @AfterAll
+  static void restore() throws URISyntaxException {
+    EngineConfig.getInstance().setSharedScanMemoryBytes(Runtime.getRuntime().maxMemory() / 4);
+    DBCatalog.getInstance().setDataDirectory(sampleDb().toString());
+  }
+
+  private static Path sampleDb() throws URISyntaxException {
+    URI path =
+        Objects.requireNonNull(
+                SharedScanTests.class.getClassLoader().getResource("samples/input/db"))
+            .toURI();
+    return Paths.get(path);
+  }
+
+  private static List<Statement> parse(String... queries) throws JSQLParserException {
+    List<Statement> statements = new ArrayList<>();
+    for (String query : queries) {
+      statements.add(CCJSqlParserUtil.parse(query));
+    }
+    return statements;
+  }
+
+  @Test
+  public void testSharedScansMatchUnsharedScans() throws JSQLParserException {
+    List<Statement> statements =
+        parse(
+            "SELECT * FROM Sailors S WHERE S.B = 100",
+            "SELECT S.C, R.H FROM Sailors S, Reserves R WHERE S.A = R.G",
+            "SELECT S1.A, S2.A FROM Sailors S1, Sailors S2 WHERE S1.B = S2.C",
+            "SELECT * FROM Boats");
+    SharedScans sharedScans = new SharedScans(statements);
+    QueryPlanBuilder sharedBuilder = new QueryPlanBuilder();
+    sharedBuilder.setSharedScans(sharedScans);
+
+    for (int i = 0; i < statements.size(); i++) {
+      Statement statement = statements.get(i);
+      List<Tuple> expected =
+          HelperMethods.collectAllTuples(new QueryPlanBuilder().buildPlan(statement));
+      Assertions.assertEquals(
+          expected, HelperMethods.collectAllTuples(sharedBuilder.buildPlan(statement)));
+      if (i == 0) {
+        Assertions.assertTrue(sharedScans.holdsTable("Sailors"));
+      }
+      sharedScans.finished(statement);
+    }
+    // Boats and Reserves are scanned once only, so they are never kept
+    Assertions.assertFalse(sharedScans.holdsTable("Boats"));
+    Assertions.assertFalse(sharedScans.holdsTable("Reserves"));
+    Assertions.assertFalse(sharedScans.holdsTable("Sailors"));
+  }
+
+  @Test
+  public void testTableChangedDuringBatchIsReadAgain() throws JSQLParserException, IOException {
+    List<Statement> statements =
+        parse("SELECT * FROM Sailors S WHERE S.A = 7", "SELECT * FROM Sailors S WHERE S.A = 7");
+    SharedScans sharedScans = new SharedScans(statements);
+    QueryPlanBuilder builder = new QueryPlanBuilder();
+    builder.setSharedScans(sharedScans);
+
+    Assertions.assertEquals(
+        List.of(), HelperMethods.collectAllTuples(builder.buildPlan(statements.get(0))));
+    sharedScans.finished(statements.get(0));
+    TableInserter.execute(
+        (Insert) CCJSqlParserUtil.parse("INSERT INTO Sailors VALUES (7, 70, 700)"));
+    Assertions.assertEquals(
+        List.of(new Tuple("7,70,700")),
+        HelperMethods.collectAllTuples(builder.buildPlan(statements.get(1))));
+  }
+
+  @Test
+  public void testTablesOverMemoryBudgetAreNotShared() throws JSQLParserException {
+    // The file fits, but its rows take more memory than it does on disk
+    EngineConfig.getInstance()
+        .setSharedScanMemoryBytes(DBCatalog.getInstance().getTableSizeBytes("Reserves"));
+    List<Statement> statements =
+        parse("SELECT * FROM Reserves", "SELECT R.H FROM Reserves R WHERE R.G = 1");
+    SharedScans sharedScans = new SharedScans(statements);
+    QueryPlanBuilder builder = new QueryPlanBuilder();
+    builder.setSharedScans(sharedScans);
+
+    Assertions.assertEquals(
+        6, HelperMethods.collectAllTuples(builder.buildPlan(statements.get(0))).size());
+    Assertions.assertFalse(sharedScans.holdsTable("Reserves"));
+    Assertions.assertEquals(
+        List.of(new Tuple("101"), new Tuple("102"), new Tuple("103")),
+        HelperMethods.collectAllTuples(builder.buildPlan(statements.get(1))));
+    EngineConfig.getInstance().setSharedScanMemoryBytes(Runtime.getRuntime().maxMemory() / 4);
+  }
+}
@@ -0,0 +1,61 @@
+import common.Tuple;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import storage.TextTupleReader;
+
+public class TextTupleReaderTests {
+  @Test
+  public void testTextReaderParsesDelimitersAndLongLines(@TempDir Path directory)
+      throws IOException {
+    // A line longer than the reader's buffer, then CRLF, tabs, signs, blank lines and no final
+    // newline
+    StringBuilder text = new StringBuilder("1");
+    for (int i = 0; i < 20000; i++) {
+      text.append(',').append(i);
+    }
+    text.append(",7\r\n\n  \n-2147483648\t+5 , 6\r\n8,9,10");
+    File file = directory.resolve("table").toFile();
+    Files.writeString(file.toPath(), text);
+
+    List<Tuple> tuples = new ArrayList<>();
+    try (TextTupleReader reader = new TextTupleReader(file, new int[] {0, 2}, 2)) {
+      Tuple tuple;
+      while ((tuple = reader.readNextTuple()) != null) {
+        tuples.add(tuple);
+      }
+    }
+    Assertions.assertEquals(
+        List.of(new Tuple("1,1"), new Tuple("-2147483648,6"), new Tuple("8,10")), tuples);
+
+    Files.writeString(file.toPath(), "1,2\n3,x\n");
+    try (TextTupleReader reader = new TextTupleReader(file, null, 2)) {
+      Assertions.assertEquals(new Tuple("1,2"), reader.readNextTuple());
+      Assertions.assertThrows(NumberFormatException.class, reader::readNextTuple);
+    }
+  }
+
+  @Test
+  public void testShortRowIsRejectedWithItsOffset(@TempDir Path directory) throws IOException {
+    File file = directory.resolve("table").toFile();
+    Files.writeString(file.toPath(), "1,2,3\n4,5\n6,7,8\n");
+
+    try (TextTupleReader reader = new TextTupleReader(file, null, 3)) {
+      Assertions.assertEquals(new Tuple("1,2,3"), reader.readNextTuple());
+      NumberFormatException e =
+          Assertions.assertThrows(NumberFormatException.class, reader::readNextTuple);
+      Assertions.assertTrue(e.getMessage().contains("byte offset 6"), e.getMessage());
+    }
+    // A projection that stops before the missing field reads the row
+    try (TextTupleReader reader = new TextTupleReader(file, new int[] {1}, 1)) {
+      Assertions.assertEquals(new Tuple("2"), reader.readNextTuple());
+      Assertions.assertEquals(new Tuple("5"), reader.readNextTuple());
+    }
+  }
+}